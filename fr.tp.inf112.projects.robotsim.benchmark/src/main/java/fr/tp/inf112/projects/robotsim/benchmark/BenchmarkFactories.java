@@ -0,0 +1,169 @@
+package fr.tp.inf112.projects.robotsim.benchmark;
+
+import fr.tp.inf112.projects.canvas.model.impl.BasicVertex;
+import fr.tp.inf112.projects.robotsim.model.Area;
+import fr.tp.inf112.projects.robotsim.model.Battery;
+import fr.tp.inf112.projects.robotsim.model.Conveyor;
+import fr.tp.inf112.projects.robotsim.model.Door;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.Machine;
+import fr.tp.inf112.projects.robotsim.model.Robot;
+import fr.tp.inf112.projects.robotsim.model.Room;
+import fr.tp.inf112.projects.robotsim.model.path.CustomDijkstraFactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.path.FactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.path.JGraphTDijkstraFactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.shapes.BasicPolygonShape;
+import fr.tp.inf112.projects.robotsim.model.shapes.CircularShape;
+import fr.tp.inf112.projects.robotsim.model.shapes.RectangularShape;
+
+/**
+ * Builds deterministic factory layouts of configurable size for the benchmarks.
+ *
+ * Rooms (each with a door, an area and a machine) are laid out on a square grid,
+ * followed by a free band in which robots are placed on lanes that never overlap,
+ * so that every robot can move by {@link #LANE_STEP} without being blocked.
+ */
+public final class BenchmarkFactories {
+
+	public static final String JGRAPHT_FINDER = "jgrapht";
+
+	public static final String CUSTOM_FINDER = "custom";
+
+	public static final int RESOLUTION = 5;
+
+	public static final int LANE_STEP = 2;
+
+	private static final int MARGIN = 10;
+
+	private static final int ROOM_SIZE = 30;
+
+	private static final int ROOM_PITCH = 50;
+
+	private static final int ROBOT_RADIUS = 2;
+
+	private static final int LANE_PITCH = 8;
+
+	private BenchmarkFactories() {
+	}
+
+	/**
+	 * Creates a factory holding the given number of rooms and robots. Each room
+	 * adds four components (room, door, area and machine).
+	 *
+	 * @param roomCount The number of rooms
+	 * @param robotCount The number of robots
+	 * @return The factory model
+	 */
+	public static Factory newFactory(final int roomCount,
+									 final int robotCount) {
+		final int roomColumns = Math.max(1, (int) Math.ceil(Math.sqrt(roomCount)));
+		final int roomRows = (roomCount + roomColumns - 1) / roomColumns;
+		final int width = roomColumns * ROOM_PITCH + 2 * MARGIN;
+		final int robotsPerLane = (width - 2 * MARGIN) / LANE_PITCH;
+		final int robotLanes = (robotCount + robotsPerLane - 1) / robotsPerLane;
+		final int height = roomRows * ROOM_PITCH + robotLanes * LANE_PITCH + 2 * MARGIN;
+
+		return newFactory(width, height, roomCount, robotCount);
+	}
+
+	/**
+	 * Creates a square factory of the given size filled with as many rooms as fit,
+	 * leaving one free lane band for the robots.
+	 *
+	 * @param size The width and height of the factory
+	 * @param robotCount The number of robots
+	 * @return The factory model
+	 */
+	public static Factory newSquareFactory(final int size,
+										   final int robotCount) {
+		final int roomColumns = Math.max(1, (size - 2 * MARGIN) / ROOM_PITCH);
+		final int roomRows = Math.max(1, (size - 2 * MARGIN - LANE_PITCH) / ROOM_PITCH);
+
+		return newFactory(size, size, roomColumns * roomRows, robotCount);
+	}
+
+	private static Factory newFactory(final int width,
+									  final int height,
+									  final int roomCount,
+									  final int robotCount) {
+		final Factory factory = new Factory(width, height, "Benchmark Factory " + roomCount + "x" + robotCount);
+		final int roomColumns = Math.max(1, (width - 2 * MARGIN) / ROOM_PITCH);
+
+		for (int roomIndex = 0; roomIndex < roomCount; roomIndex++) {
+			final int xCoordinate = MARGIN + (roomIndex % roomColumns) * ROOM_PITCH;
+			final int yCoordinate = MARGIN + (roomIndex / roomColumns) * ROOM_PITCH;
+			final Room room = new Room(factory, new RectangularShape(xCoordinate, yCoordinate, ROOM_SIZE, ROOM_SIZE), "Room " + roomIndex);
+			new Door(room, Room.WALL.BOTTOM, 10, 10, true, "Door " + roomIndex);
+			final Area area = new Area(room, new RectangularShape(xCoordinate + 7, yCoordinate + 7, 16, 16), "Area " + roomIndex);
+			new Machine(area, new RectangularShape(xCoordinate + 10, yCoordinate + 10, 10, 10), "Machine " + roomIndex);
+		}
+
+		final int robotsPerLane = (width - 2 * MARGIN) / LANE_PITCH;
+		final int firstLaneyCoordinate = height - MARGIN - LANE_PITCH;
+
+		for (int robotIndex = 0; robotIndex < robotCount; robotIndex++) {
+			final int xCoordinate = MARGIN + (robotIndex % robotsPerLane) * LANE_PITCH;
+			final int yCoordinate = firstLaneyCoordinate - (robotIndex / robotsPerLane) * LANE_PITCH;
+			new Robot(factory, null, new CircularShape(xCoordinate, yCoordinate, ROBOT_RADIUS), new Battery(10), "Robot " + robotIndex);
+		}
+
+		return factory;
+	}
+
+	/**
+	 * Adds a polygonal conveyor to the factory so that all shape types are present.
+	 *
+	 * @param factory The factory to add the conveyor to
+	 * @return The conveyor
+	 */
+	public static Conveyor addConveyor(final Factory factory) {
+		return new Conveyor(factory, newConveyorShape(MARGIN, factory.getHeight() - 4 * MARGIN), "Conveyor");
+	}
+
+	/**
+	 * Creates the conveyor polygon used by the simulator applications.
+	 *
+	 * @param xCoordinate The x coordinate of the conveyor
+	 * @param yCoordinate The y coordinate of the conveyor
+	 * @return The polygon shape
+	 */
+	public static BasicPolygonShape newConveyorShape(final int xCoordinate,
+													 final int yCoordinate) {
+		final int baselineSize = 3;
+		final int width = 10;
+		final int height = 30;
+		final BasicPolygonShape conveyorShape = new BasicPolygonShape();
+		conveyorShape.addVertex(new BasicVertex(xCoordinate, yCoordinate));
+		conveyorShape.addVertex(new BasicVertex(xCoordinate + width, yCoordinate));
+		conveyorShape.addVertex(new BasicVertex(xCoordinate + width, yCoordinate + height - baselineSize));
+		conveyorShape.addVertex(new BasicVertex(xCoordinate + width + baselineSize, yCoordinate + height - baselineSize));
+		conveyorShape.addVertex(new BasicVertex(xCoordinate + width + baselineSize, yCoordinate + height));
+		conveyorShape.addVertex(new BasicVertex(xCoordinate - baselineSize, yCoordinate + height));
+		conveyorShape.addVertex(new BasicVertex(xCoordinate - baselineSize, yCoordinate + height - baselineSize));
+		conveyorShape.addVertex(new BasicVertex(xCoordinate, yCoordinate + height - baselineSize));
+
+		return conveyorShape;
+	}
+
+	/**
+	 * Creates one of the existing path finders.
+	 *
+	 * @param finderName {@link #JGRAPHT_FINDER} or {@link #CUSTOM_FINDER}
+	 * @param factory The factory model to find paths in
+	 * @return The path finder
+	 */
+	public static FactoryPathFinder newPathFinder(final String finderName,
+												  final Factory factory) {
+		switch (finderName) {
+			case JGRAPHT_FINDER: {
+				return new JGraphTDijkstraFactoryPathFinder(factory, RESOLUTION);
+			}
+			case CUSTOM_FINDER: {
+				return new CustomDijkstraFactoryPathFinder(factory, RESOLUTION);
+			}
+			default: {
+				throw new IllegalArgumentException("Unexpected path finder: " + finderName);
+			}
+		}
+	}
+}
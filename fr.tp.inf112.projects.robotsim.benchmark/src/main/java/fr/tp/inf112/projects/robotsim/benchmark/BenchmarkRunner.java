@@ -0,0 +1,48 @@
+package fr.tp.inf112.projects.robotsim.benchmark;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmarks JAR. Accepts the regular JMH command line options
+ * but writes the results as JSON to {@value #DEFAULT_RESULT_FILE} unless another
+ * result format or file is given with -rf / -rff.
+ */
+public final class BenchmarkRunner {
+
+	public static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+	private BenchmarkRunner() {
+	}
+
+	public static void main(final String[] args)
+	throws CommandLineOptionException, RunnerException, IOException {
+		final CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+
+		if (commandLineOptions.shouldHelp() || commandLineOptions.shouldList()) {
+			// Delegate listing and help to the standard JMH entry point
+			org.openjdk.jmh.Main.main(args);
+
+			return;
+		}
+
+		final ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLineOptions);
+
+		if (!commandLineOptions.getResultFormat().hasValue()) {
+			options.resultFormat(ResultFormatType.JSON);
+		}
+
+		if (!commandLineOptions.getResult().hasValue()) {
+			options.result(DEFAULT_RESULT_FILE);
+		}
+
+		new Runner(options.build()).run();
+	}
+}
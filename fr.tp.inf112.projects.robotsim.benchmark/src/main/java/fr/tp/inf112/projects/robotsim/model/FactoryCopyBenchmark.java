@@ -0,0 +1,73 @@
+package fr.tp.inf112.projects.robotsim.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.tp.inf112.projects.robotsim.benchmark.BenchmarkFactories;
+
+/**
+ * Compares getting a fresh factory to simulate by reading its file, as done for every
+ * start without cache, with a structural deep copy of a template factory read once, as
+ * done by the factory layout cache of the simulation service.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FactoryCopyBenchmark {
+
+	@Param({ "4", "16", "64" })
+	private int roomCount;
+
+	private FactoryPersistenceManager persistenceManager;
+
+	private File factoryFile;
+
+	private Factory template;
+
+	@Setup
+	public void setUp()
+	throws IOException {
+		factoryFile = File.createTempFile("copy-benchmark", ".factory");
+
+		final Factory factory = BenchmarkFactories.newFactory(roomCount, roomCount);
+		BenchmarkFactories.addConveyor(factory);
+		factory.setId(factoryFile.getPath());
+
+		persistenceManager = new FactoryPersistenceManager(null);
+		persistenceManager.persist(factory);
+		template = (Factory) persistenceManager.read(factoryFile.getPath());
+	}
+
+	@TearDown
+	public void tearDown() {
+		factoryFile.delete();
+	}
+
+	@Benchmark
+	public Factory read()
+	throws IOException {
+		return (Factory) persistenceManager.read(factoryFile.getPath());
+	}
+
+	@Benchmark
+	public Factory copy() {
+		return template.copy();
+	}
+}
@@ -0,0 +1,103 @@
+package fr.tp.inf112.projects.robotsim.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.tp.inf112.projects.robotsim.benchmark.BenchmarkFactories;
+import fr.tp.inf112.projects.robotsim.model.motion.Motion;
+
+/**
+ * Measures {@link Factory#moveComponent(Motion, Component)} when several robot threads
+ * move concurrently in the same factory, as during a simulation. Each benchmark thread
+ * owns one robot moving back and forth on its own lane, so every move succeeds and the
+ * measured cost is the collision test plus the contention on the factory monitor.
+ * Run with -t to change the number of contending threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class FactoryMoveComponentBenchmark {
+
+	private static final int MAX_THREADS = 64;
+
+	@State(Scope.Benchmark)
+	public static class SharedFactory {
+
+		@Param({ "4", "64" })
+		private int roomCount;
+
+		private Factory factory;
+
+		private final List<Robot> robots = new ArrayList<>();
+
+		private final AtomicInteger nextRobotIndex = new AtomicInteger();
+
+		@Setup
+		public void setUp() {
+			factory = BenchmarkFactories.newFactory(roomCount, MAX_THREADS);
+
+			for (final Component component : factory.getComponents()) {
+				if (component instanceof Robot) {
+					robots.add((Robot) component);
+				}
+			}
+		}
+
+		private Robot nextRobot() {
+			return robots.get(nextRobotIndex.getAndIncrement() % robots.size());
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class MovingRobot {
+
+		private Factory factory;
+
+		private Robot robot;
+
+		private Position startPosition;
+
+		private Position stepPosition;
+
+		private boolean forward;
+
+		@Setup
+		public void setUp(final SharedFactory sharedFactory) {
+			factory = sharedFactory.factory;
+			robot = sharedFactory.nextRobot();
+			startPosition = new Position(robot.getxCoordinate(), robot.getyCoordinate());
+			stepPosition = new Position(robot.getxCoordinate() + BenchmarkFactories.LANE_STEP, robot.getyCoordinate());
+			forward = true;
+		}
+
+		private Motion nextMotion() {
+			final Position targetPosition = forward ? stepPosition : startPosition;
+			forward = !forward;
+
+			return new Motion(robot.getPosition(), targetPosition);
+		}
+	}
+
+	@Benchmark
+	public int moveComponent(final MovingRobot movingRobot) {
+		return movingRobot.factory.moveComponent(movingRobot.nextMotion(), movingRobot.robot);
+	}
+}
@@ -0,0 +1,70 @@
+package fr.tp.inf112.projects.robotsim.model;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.tp.inf112.projects.robotsim.benchmark.BenchmarkFactories;
+import fr.tp.inf112.projects.robotsim.model.shapes.PositionedShape;
+import fr.tp.inf112.projects.robotsim.model.shapes.RectangularShape;
+
+/**
+ * Measures the collision queries of {@link Factory} as the number of components grows.
+ * The query shape lies in the robots' band, next to the first robot, so that every
+ * component has to be visited before the query answers.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FactoryQueryBenchmark {
+
+	@Param({ "4", "16", "64", "256" })
+	private int roomCount;
+
+	private Factory factory;
+
+	private Component movingComponent;
+
+	private PositionedShape freeShape;
+
+	@Setup
+	public void setUp() {
+		factory = BenchmarkFactories.newFactory(roomCount, roomCount);
+
+		for (final Component component : factory.getComponents()) {
+			if (component.isMobile()) {
+				movingComponent = component;
+
+				break;
+			}
+		}
+
+		freeShape = new RectangularShape(movingComponent.getxCoordinate() + BenchmarkFactories.LANE_STEP,
+										  movingComponent.getyCoordinate(),
+										  movingComponent.getWidth(),
+										  movingComponent.getHeight());
+	}
+
+	@Benchmark
+	public boolean hasObstacleAt() {
+		return factory.hasObstacleAt(freeShape);
+	}
+
+	@Benchmark
+	public boolean hasMobileComponentAt() {
+		return factory.hasMobileComponentAt(freeShape, movingComponent);
+	}
+}
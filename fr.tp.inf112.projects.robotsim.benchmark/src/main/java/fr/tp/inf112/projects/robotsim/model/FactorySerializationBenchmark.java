@@ -0,0 +1,64 @@
+package fr.tp.inf112.projects.robotsim.model;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fr.tp.inf112.projects.robotsim.app.SimulationServiceUtils;
+import fr.tp.inf112.projects.robotsim.benchmark.BenchmarkFactories;
+
+/**
+ * Measures the Jackson round trip of a whole {@link Factory}, as done for every
+ * simulation event, using the default typing object mapper of the remote viewer.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FactorySerializationBenchmark {
+
+	@Param({ "4", "16", "64" })
+	private int roomCount;
+
+	private ObjectMapper objectMapper;
+
+	private Factory factory;
+
+	private String factoryJson;
+
+	@Setup
+	public void setUp()
+	throws JsonProcessingException {
+		objectMapper = SimulationServiceUtils.createObjectMapper();
+		factory = BenchmarkFactories.newFactory(roomCount, roomCount);
+		BenchmarkFactories.addConveyor(factory);
+		factoryJson = objectMapper.writeValueAsString(factory);
+	}
+
+	@Benchmark
+	public String serialize()
+	throws JsonProcessingException {
+		return objectMapper.writeValueAsString(factory);
+	}
+
+	@Benchmark
+	public Factory deserialize()
+	throws JsonProcessingException {
+		return objectMapper.readValue(factoryJson, Factory.class);
+	}
+}
@@ -0,0 +1,62 @@
+package fr.tp.inf112.projects.robotsim.model;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.tp.inf112.projects.robotsim.benchmark.BenchmarkFactories;
+import fr.tp.inf112.projects.robotsim.model.shapes.PositionedShape;
+import fr.tp.inf112.projects.robotsim.model.shapes.RectangularShape;
+
+/**
+ * Measures the robot-to-robot collision query of {@link Factory} for large fleets,
+ * answered by a linear scan of the {@link FleetState} arrays. The query box is free
+ * so that every robot slot is visited.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FleetStateBenchmark {
+
+	@Param({ "1000", "10000", "100000" })
+	private int robotCount;
+
+	private Factory factory;
+
+	private Component movingComponent;
+
+	private PositionedShape freeShape;
+
+	@Setup
+	public void setUp() {
+		factory = BenchmarkFactories.newFactory(4, robotCount);
+		movingComponent = factory.getFleetState().getComponent(0);
+		freeShape = new RectangularShape(movingComponent.getxCoordinate() + BenchmarkFactories.LANE_STEP,
+										  movingComponent.getyCoordinate(),
+										  movingComponent.getWidth(),
+										  movingComponent.getHeight());
+	}
+
+	@Benchmark
+	public boolean hasMobileComponentAt() {
+		return factory.hasMobileComponentAt(freeShape, movingComponent);
+	}
+
+	@Benchmark
+	public int countBlockedRobots() {
+		return factory.getFleetState().countInState(FleetState.STATE_BLOCKED);
+	}
+}
@@ -0,0 +1,93 @@
+package fr.tp.inf112.projects.robotsim.model.path;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.tp.inf112.projects.robotsim.benchmark.BenchmarkFactories;
+import fr.tp.inf112.projects.robotsim.model.Component;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.Machine;
+import fr.tp.inf112.projects.robotsim.model.Position;
+import fr.tp.inf112.projects.robotsim.model.Robot;
+
+/**
+ * Measures graph construction and shortest path computation of both path finders
+ * on square factories of growing size. Lives in the path finders package so that
+ * the protected {@link AbstractFactoryPathFinder#buildGraph()} can be called.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PathFinderBenchmark {
+
+	@Param({ BenchmarkFactories.JGRAPHT_FINDER, BenchmarkFactories.CUSTOM_FINDER })
+	private String finder;
+
+	@Param({ "100", "200", "400" })
+	private int gridSize;
+
+	private Factory factory;
+
+	private AbstractFactoryPathFinder<?, ?> freshPathFinder;
+
+	private AbstractFactoryPathFinder<?, ?> builtPathFinder;
+
+	private Component sourceComponent;
+
+	private Component targetComponent;
+
+	@Setup(Level.Trial)
+	public void setUpTrial() {
+		factory = BenchmarkFactories.newSquareFactory(gridSize, 1);
+
+		for (final Component component : factory.getComponents()) {
+			if (component instanceof Robot) {
+				sourceComponent = component;
+			}
+			else if (component instanceof Machine) {
+				// Keep the last machine, which is the farthest one from the robots
+				targetComponent = component;
+			}
+		}
+
+		builtPathFinder = newPathFinder();
+		builtPathFinder.buildGraph();
+	}
+
+	@Setup(Level.Invocation)
+	public void setUpInvocation() {
+		freshPathFinder = newPathFinder();
+	}
+
+	private AbstractFactoryPathFinder<?, ?> newPathFinder() {
+		return (AbstractFactoryPathFinder<?, ?>) BenchmarkFactories.newPathFinder(finder, factory);
+	}
+
+	@Benchmark
+	public AbstractFactoryPathFinder<?, ?> buildGraph() {
+		freshPathFinder.buildGraph();
+
+		return freshPathFinder;
+	}
+
+	@Benchmark
+	public List<Position> findPath() {
+		return builtPathFinder.findPath(sourceComponent, targetComponent);
+	}
+}
@@ -0,0 +1,68 @@
+package fr.tp.inf112.projects.robotsim.model.shapes;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.tp.inf112.projects.robotsim.benchmark.BenchmarkFactories;
+
+/**
+ * Measures {@link PositionedShape#getOverlayedSurface(PositionedShape)} for each shape type.
+ * Polygons compute their bounding box from their vertices on every call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PositionedShapeBenchmark {
+
+	private PositionedShape rectangle;
+
+	private PositionedShape overlappingRectangle;
+
+	private PositionedShape disjointRectangle;
+
+	private PositionedShape circle;
+
+	private PositionedShape polygon;
+
+	@Setup
+	public void setUp() {
+		rectangle = new RectangularShape(10, 10, 20, 20);
+		overlappingRectangle = new RectangularShape(15, 15, 20, 20);
+		disjointRectangle = new RectangularShape(100, 100, 20, 20);
+		circle = new CircularShape(12, 12, 2);
+		polygon = BenchmarkFactories.newConveyorShape(5, 5);
+	}
+
+	@Benchmark
+	public float rectangleOverlayingRectangle() {
+		return rectangle.getOverlayedSurface(overlappingRectangle);
+	}
+
+	@Benchmark
+	public float rectangleDisjointFromRectangle() {
+		return rectangle.getOverlayedSurface(disjointRectangle);
+	}
+
+	@Benchmark
+	public float circleOverlayingRectangle() {
+		return circle.getOverlayedSurface(rectangle);
+	}
+
+	@Benchmark
+	public float polygonOverlayingRectangle() {
+		return polygon.getOverlayedSurface(rectangle);
+	}
+}
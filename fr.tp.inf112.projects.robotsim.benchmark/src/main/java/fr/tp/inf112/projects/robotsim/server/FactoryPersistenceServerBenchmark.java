@@ -0,0 +1,155 @@
+package fr.tp.inf112.projects.robotsim.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.tp.inf112.projects.canvas.model.Canvas;
+import fr.tp.inf112.projects.robotsim.benchmark.BenchmarkFactories;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.RemoteFactoryPersistenceManager;
+
+/**
+ * Measures the throughput of the {@link FactoryPersistenceServer} under many concurrent
+ * SAVE, READ and LIST clients, each request on its own connection as done by
+ * {@link RemoteFactoryPersistenceManager}. Slow clients connect and never send their
+ * request, which blocked every other client while connections were handled one at a
+ * time; their number should not change the throughput.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(16)
+@State(Scope.Benchmark)
+public class FactoryPersistenceServerBenchmark {
+
+	private static final String READ_MODEL = "read.factory";
+
+	@Param({ "4", "64" })
+	private int roomCount;
+
+	@Param({ "0", "4" })
+	private int slowClientCount;
+
+	private File storageDir;
+
+	private FactoryPersistenceServer server;
+
+	private Thread serverThread;
+
+	private final List<Socket> slowClients = new ArrayList<>();
+
+	private final AtomicInteger clientCount = new AtomicInteger();
+
+	@Setup(Level.Trial)
+	public void setUp()
+	throws IOException {
+		storageDir = Files.createTempDirectory("persistence-benchmark").toFile();
+		server = new FactoryPersistenceServer(0, storageDir);
+		server.bind();
+
+		serverThread = new Thread(() -> {
+			try {
+				server.start();
+			}
+			catch (IOException ex) {
+				throw new IllegalStateException(ex);
+			}
+		}, "persistence-server");
+		serverThread.start();
+
+		final Factory factory = newFactory(READ_MODEL);
+		newClient().persist(factory);
+
+		for (int index = 0; index < slowClientCount; index++) {
+			final Socket slowClient = new Socket("localhost", server.getLocalPort());
+			new ObjectOutputStream(slowClient.getOutputStream()).flush();
+			slowClients.add(slowClient);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown()
+	throws IOException, InterruptedException {
+		for (final Socket slowClient : slowClients) {
+			slowClient.close();
+		}
+		slowClients.clear();
+
+		server.stop();
+		serverThread.join();
+
+		for (final File file : storageDir.listFiles()) {
+			file.delete();
+		}
+		storageDir.delete();
+	}
+
+	@Benchmark
+	public Canvas read(final ClientState client)
+	throws IOException {
+		return client.client.read(READ_MODEL);
+	}
+
+	@Benchmark
+	public void save(final ClientState client)
+	throws IOException {
+		client.client.persist(client.factory);
+	}
+
+	@Benchmark
+	public String[] list(final ClientState client) {
+		return client.client.listModels();
+	}
+
+	private RemoteFactoryPersistenceManager newClient() {
+		return new RemoteFactoryPersistenceManager(null, "localhost", server.getLocalPort());
+	}
+
+	private Factory newFactory(final String modelId) {
+		final Factory factory = BenchmarkFactories.newFactory(roomCount, roomCount);
+		factory.setId(new File(storageDir, modelId).getPath());
+
+		return factory;
+	}
+
+	/**
+	 * Client of a benchmark thread, saving its own model
+	 */
+	@State(Scope.Thread)
+	public static class ClientState {
+
+		private RemoteFactoryPersistenceManager client;
+
+		private Factory factory;
+
+		@Setup(Level.Trial)
+		public void setUp(final FactoryPersistenceServerBenchmark benchmark) {
+			client = benchmark.newClient();
+			factory = benchmark.newFactory("save-" + benchmark.clientCount.incrementAndGet() + ".factory");
+		}
+	}
+}
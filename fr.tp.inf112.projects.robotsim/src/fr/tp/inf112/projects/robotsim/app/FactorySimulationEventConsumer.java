@@ -1,92 +1,338 @@
 package fr.tp.inf112.projects.robotsim.app;
 
 import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.event.LayoutSnapshotEvent;
+import fr.tp.inf112.projects.robotsim.model.event.SimulationEvent;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.RecordDeserializationException;
 import org.apache.kafka.common.serialization.StringDeserializer;
 
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.UUID;
 import java.util.logging.Logger;
 
 /**
  * Kafka consumer that receives factory simulation events and updates
  * the RemoteSimulatorController with fresh factory model data.
- * 
- * <p>This class consumes JSON-serialized factory objects from Kafka topics
- * and passes them to the controller for parsing and view updates.</p>
+ *
+ * <p>This class consumes binary simulation events from Kafka topics:
+ * a layout snapshot of the factory followed by state deltas listing only the
+ * components that changed. Events are passed to the controller, which keeps its
+ * replica of the factory up to date and notifies the view.</p>
+ *
+ * <p>On start, the consumer first reads the latest snapshot of its factory from
+ * the log-compacted snapshot topic, then tails the live events published since
+ * that snapshot. The time to show the first frame therefore does not depend on
+ * how long the simulation has been running. Each consumer uses its own group so
+ * that concurrent viewers all receive every event.</p>
+ *
+ * <p>The events of a poll are applied as one batch: the frames superseded by a later
+ * layout snapshot or keyframe of the batch are skipped and the view is refreshed once.
+ * A viewer that falls behind therefore degrades to a lower frame rate instead of
+ * accumulating lag. The lag and the number of skipped frames are logged periodically.</p>
  */
 public class FactorySimulationEventConsumer {
-    
+
     private static final Logger LOGGER = Logger.getLogger(FactorySimulationEventConsumer.class.getName());
-    
+
+    /**
+     * Maximum time spent reading the snapshot topic before tailing the live events
+     */
+    private static final Duration BOOTSTRAP_TIMEOUT = Duration.ofSeconds(5);
+
+    /**
+     * Interval between two reports of the consumption statistics
+     */
+    private static final long STATS_INTERVAL_MILLIS = 5000;
+
     /**
      * Kafka consumer for reading simulation events
      */
-    private final KafkaConsumer<String, String> consumer;
-    
+    private final KafkaConsumer<String, SimulationEvent> consumer;
+
     /**
      * Remote simulator controller to update with received events
      */
     private final RemoteSimulatorController controller;
-    
+
     /**
-     * Creates a new Kafka event consumer for the given controller.
-     * 
+     * ID of the factory whose events are consumed
+     */
+    private final String factoryId;
+
+    /**
+     * Topic of the live simulation events
+     */
+    private final String topicName;
+
+    /**
+     * Whether the live events are read from the shared topic
+     */
+    private final boolean sharedTopic;
+
+    /**
+     * Creates a new Kafka event consumer for the given controller, using the topic
+     * topology selected by {@link SimulationServiceUtils#isSharedTopicTopology()}.
+     *
      * @param controller The remote simulator controller to update with events
      */
     public FactorySimulationEventConsumer(final RemoteSimulatorController controller) {
+        this(controller, SimulationServiceUtils.isSharedTopicTopology());
+    }
+
+    /**
+     * Creates a new Kafka event consumer for the given controller.
+     *
+     * <p>With the shared topic, the consumer reads the partition holding the
+     * events of its factory and skips the events of the other factories of that
+     * partition from their header, without decoding them.</p>
+     *
+     * @param controller The remote simulator controller to update with events
+     * @param sharedTopic true to consume the shared simulation topic, false to consume
+     * the topic of the factory
+     */
+    public FactorySimulationEventConsumer(final RemoteSimulatorController controller,
+                                          final boolean sharedTopic) {
         this.controller = controller;
-        
+        this.sharedTopic = sharedTopic;
+
+        final Factory factory = (Factory) controller.getCanvas();
+        this.factoryId = factory.getId();
+        this.topicName = sharedTopic ? SimulationServiceUtils.SHARED_TOPIC : SimulationServiceUtils.getTopicName(factory);
+
+        this.consumer = new KafkaConsumer<>(createConsumerProperties());
+
+        LOGGER.info("Created Kafka consumer for topic: " + topicName);
+    }
+
+    private Properties createConsumerProperties() {
         // Get default consumer properties
         final Properties props = SimulationServiceUtils.getDefaultConsumerProperties();
-        
+
+        // Own group per viewer, so that viewers do not split the partitions between them
+        props.put(ConsumerConfig.GROUP_ID_CONFIG,
+                 props.getProperty(ConsumerConfig.GROUP_ID_CONFIG) + "-" + UUID.randomUUID());
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+
         // Configure deserializers for key and value
         props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
-        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
-        
-        // Create Kafka consumer
-        this.consumer = new KafkaConsumer<>(props);
-        
-        // Subscribe to the topic for this factory
-        final Factory factory = (Factory) controller.getCanvas();
-        final String topicName = SimulationServiceUtils.getTopicName(factory);
-        this.consumer.subscribe(Collections.singletonList(topicName));
-        
-        LOGGER.info("Created Kafka consumer subscribed to topic: " + topicName);
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, SimulationEventDeserializer.class);
+        props.put(SimulationEventDeserializer.FACTORY_ID_CONFIG, factoryId);
+
+        return props;
+    }
+
+    /**
+     * Gets the partitions of a topic to read for the factory: all of them for the
+     * topic of the factory, only the one holding its key for a topic keyed by factory ID.
+     *
+     * @return The partitions, empty if the topic does not exist yet
+     */
+    private List<TopicPartition> getFactoryPartitions(final KafkaConsumer<String, SimulationEvent> kafkaConsumer,
+                                                      final String topic,
+                                                      final boolean keyedByFactory) {
+        final List<PartitionInfo> partitionInfos = kafkaConsumer.partitionsFor(topic);
+        final List<TopicPartition> partitions = new ArrayList<>();
+
+        if (partitionInfos == null || partitionInfos.isEmpty()) {
+            return partitions;
+        }
+
+        if (keyedByFactory) {
+            partitions.add(new TopicPartition(topic,
+                SimulationServiceUtils.getSharedTopicPartition(factoryId, partitionInfos.size())));
+        } else {
+            for (final PartitionInfo partitionInfo : partitionInfos) {
+                partitions.add(new TopicPartition(topic, partitionInfo.partition()));
+            }
+        }
+
+        return partitions;
     }
-    
+
+    /**
+     * Reads the latest snapshot of the factory from the log-compacted snapshot topic.
+     *
+     * @return The latest snapshot, or null if there is none
+     */
+    private LayoutSnapshotEvent readLatestSnapshot() {
+        try (KafkaConsumer<String, SimulationEvent> snapshotConsumer = new KafkaConsumer<>(createConsumerProperties())) {
+            final List<TopicPartition> partitions =
+                getFactoryPartitions(snapshotConsumer, SimulationServiceUtils.SNAPSHOT_TOPIC, true);
+
+            if (partitions.isEmpty()) {
+                return null;
+            }
+
+            snapshotConsumer.assign(partitions);
+            snapshotConsumer.seekToBeginning(partitions);
+
+            final TopicPartition partition = partitions.get(0);
+            final long endOffset = snapshotConsumer.endOffsets(partitions).get(partition);
+            final long deadline = System.nanoTime() + BOOTSTRAP_TIMEOUT.toNanos();
+            LayoutSnapshotEvent latestSnapshot = null;
+
+            while (snapshotConsumer.position(partition) < endOffset && System.nanoTime() < deadline) {
+                for (final ConsumerRecord<String, SimulationEvent> record : snapshotConsumer.poll(Duration.ofMillis(100))) {
+                    if (factoryId.equals(record.key())) {
+                        // A null value is the tombstone of a stopped simulation
+                        latestSnapshot = record.value() instanceof LayoutSnapshotEvent
+                            ? (LayoutSnapshotEvent) record.value()
+                            : null;
+                    }
+                }
+            }
+
+            return latestSnapshot;
+
+        } catch (final RuntimeException e) {
+            LOGGER.warning("Error reading the snapshot topic, tailing live events only: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Positions the consumer on the live events published since the given snapshot,
+     * or on the end of the live topic if there is no snapshot.
+     */
+    private void startTailing(final LayoutSnapshotEvent snapshot) {
+        final List<TopicPartition> partitions = getFactoryPartitions(consumer, topicName, sharedTopic);
+
+        if (partitions.isEmpty()) {
+            // The simulation has not published yet, read its topic from the beginning once created
+            consumer.subscribe(Collections.singletonList(topicName));
+            LOGGER.info("Topic " + topicName + " does not exist yet, subscribed to it");
+            return;
+        }
+
+        consumer.assign(partitions);
+
+        if (snapshot == null) {
+            consumer.seekToEnd(partitions);
+            controller.requestLayoutSnapshot();
+            LOGGER.info("No snapshot found for factory " + factoryId + ", tailing live events of topic " + topicName);
+            return;
+        }
+
+        final Map<TopicPartition, Long> timestamps = new HashMap<>();
+
+        for (final TopicPartition partition : partitions) {
+            timestamps.put(partition, snapshot.getTimestamp());
+        }
+
+        final Map<TopicPartition, OffsetAndTimestamp> offsets = consumer.offsetsForTimes(timestamps);
+
+        for (final TopicPartition partition : partitions) {
+            final OffsetAndTimestamp offset = offsets.get(partition);
+
+            if (offset == null) {
+                consumer.seekToEnd(Collections.singletonList(partition));
+            } else {
+                consumer.seek(partition, offset.offset());
+            }
+        }
+
+        LOGGER.info("Bootstrapped factory " + factoryId + " from snapshot " + snapshot.getSequence() +
+                  ", tailing live events of topic " + topicName);
+    }
+
+    /**
+     * Logs the number of received and skipped frames and the lag of the consumer.
+     *
+     * @param receivedFrames The number of frames received so far
+     * @param timeLagMillis The age of the last received frame when its batch was polled
+     */
+    private void logStatistics(final long receivedFrames, final long timeLagMillis) {
+        long recordLag = 0;
+
+        for (final TopicPartition partition : consumer.assignment()) {
+            recordLag += consumer.currentLag(partition).orElse(0);
+        }
+
+        LOGGER.info("Factory " + factoryId + ": " + receivedFrames + " frames received, " +
+                  controller.getSkippedSimulationEvents() + " skipped, lag of " + recordLag +
+                  " records and " + timeLagMillis + " ms");
+    }
+
     /**
      * Continuously polls Kafka for simulation events and updates the controller.
-     * This method blocks until the simulation is stopped.
-     * 
-     * <p>Each received event contains a JSON-serialized Factory object which is
-     * passed to the controller for parsing and view notification.</p>
+     * This method blocks until the simulation is stopped, by the viewer or by a
+     * lifecycle event of the stream. The loop only checks the status cached by the
+     * controller and never calls the microservice.
+     *
+     * <p>Each received record contains a simulation event which is passed to the
+     * controller for view update. Records that cannot be decoded are skipped.</p>
      */
     public void consumeMessages() {
         try {
+            final LayoutSnapshotEvent snapshot = readLatestSnapshot();
+
+            if (snapshot != null) {
+                controller.applySimulationEvent(snapshot);
+            }
+
+            startTailing(snapshot);
+
             LOGGER.info("Starting Kafka message consumption loop");
-            
+
+            final List<SimulationEvent> batch = new ArrayList<>();
+            long receivedFrames = 0;
+            long timeLagMillis = 0;
+            long lastStatsTime = System.currentTimeMillis();
+
             while (controller.isAnimationRunning()) {
                 // Poll Kafka for new records (wait up to 100ms)
-                final ConsumerRecords<String, String> records = 
-                    consumer.poll(Duration.ofMillis(100));
-                
-                // Process each received record
-                for (final ConsumerRecord<String, String> record : records) {
-                    LOGGER.fine("Received JSON Factory text from topic '" + record.topic() + 
-                              "' at offset " + record.offset());
-                    
-                    // Pass the JSON text to the controller for parsing and view update
-                    controller.setCanvasFromJson(record.value());
+                final ConsumerRecords<String, SimulationEvent> records;
+
+                try {
+                    records = consumer.poll(Duration.ofMillis(100));
+                } catch (final RecordDeserializationException e) {
+                    LOGGER.warning("Skipping undecodable simulation event at offset " + e.offset() +
+                                 " of " + e.topicPartition() + ": " + e.getMessage());
+                    consumer.seek(e.topicPartition(), e.offset() + 1);
+                    continue;
+                }
+
+                batch.clear();
+                long lastRecordTimestamp = 0;
+
+                for (final ConsumerRecord<String, SimulationEvent> record : records) {
+                    if (record.value() != null) {
+                        batch.add(record.value());
+                        lastRecordTimestamp = record.timestamp();
+                    }
+                }
+
+                final long now = System.currentTimeMillis();
+
+                if (!batch.isEmpty()) {
+                    // Only the newest frames of the batch are applied and shown
+                    controller.applySimulationEvents(batch);
+                    receivedFrames += batch.size();
+                    timeLagMillis = now - lastRecordTimestamp;
+                }
+
+                if (now - lastStatsTime >= STATS_INTERVAL_MILLIS) {
+                    logStatistics(receivedFrames, timeLagMillis);
+                    lastStatsTime = now;
                 }
             }
-            
+
+            logStatistics(receivedFrames, timeLagMillis);
             LOGGER.info("Kafka message consumption loop stopped");
-            
+
         } finally {
             // Always close the consumer to release resources
             consumer.close();
@@ -6,34 +6,51 @@ import java.net.URISyntaxException;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
-import com.fasterxml.jackson.databind.jsontype.PolymorphicTypeValidator;
 
 import fr.tp.inf112.projects.canvas.controller.Observer;
 import fr.tp.inf112.projects.canvas.model.Canvas;
 import fr.tp.inf112.projects.canvas.model.CanvasPersistenceManager;
-import fr.tp.inf112.projects.robotsim.model.Component;
 import fr.tp.inf112.projects.robotsim.model.Factory;
 import fr.tp.inf112.projects.robotsim.model.LocalFactoryModelChangedNotifier;
-import fr.tp.inf112.projects.robotsim.model.shapes.PositionedShape;
+import fr.tp.inf112.projects.robotsim.model.event.FactoryStateReplica;
+import fr.tp.inf112.projects.robotsim.model.event.SimulationEvent;
+import fr.tp.inf112.projects.robotsim.model.event.SimulationLifecycleEvent;
+import fr.tp.inf112.projects.robotsim.model.event.StateDeltaEvent;
+import fr.tp.inf112.projects.robotsim.model.event.StateInterpolator;
 
 /**
  * Remote simulator controller that communicates with a simulation microservice
  * instead of directly controlling a local Factory object. This controller makes
  * HTTP REST calls to start/stop simulation and periodically updates the viewer
  * with fresh model data from the microservice.
+ * 
+ * The status of the simulation is cached: it is set by the start and stop calls
+ * and updated by the lifecycle events received with the model data, so checking
+ * it never calls the microservice.
+ * 
+ * The positions of the components are interpolated between the received frames
+ * and rendered at display rate, so the microservice may publish a few frames per
+ * second only.
  */
 public class RemoteSimulatorController extends SimulatorController {
     
     private static final Logger LOGGER = Logger.getLogger(RemoteSimulatorController.class.getName());
     
+    // Interval between two rendered frames when interpolating, about 60 frames per second
+    private static final long RENDER_INTERVAL_MILLIS = 16;
+    
     // Microservice connection settings
     private final String microserviceHost;
     private final int microservicePort;
@@ -47,6 +64,8 @@ public class RemoteSimulatorController extends SimulatorController {
     private final ExecutorService executorService;
     private CompletableFuture<Void> updateViewerTask;
     private volatile boolean isUpdatingViewer = false;
+    private final ScheduledExecutorService renderScheduler;
+    private ScheduledFuture<?> renderTask;
     
     // Local registry of observers that have been added to this controller. We
     // keep our own list because Canvas/Factory doesn't expose a getObservers()
@@ -57,6 +76,24 @@ public class RemoteSimulatorController extends SimulatorController {
     // Local notifier for notifying observers of model changes
     private final LocalFactoryModelChangedNotifier localNotifier = new LocalFactoryModelChangedNotifier();
     
+    // Replica of the simulated factory, updated from the simulation events
+    private final FactoryStateReplica replica = new FactoryStateReplica();
+    
+    // Set once a layout snapshot was requested, until one is received
+    private volatile boolean layoutSnapshotRequested = false;
+    
+    // Last known status of the remote simulation
+    private volatile boolean simulationRunning = false;
+    
+    // Interpolation of the positions between frames, guarded by its own lock
+    private final StateInterpolator interpolator = new StateInterpolator();
+    private volatile boolean interpolationEnabled = true;
+    private volatile boolean interpolating = false;
+    
+    // Last factory fetched over REST and its model version, for conditional requests
+    private volatile Factory fetchedFactory;
+    private volatile long fetchedModelVersion;
+    
     /**
      * Creates a new RemoteSimulatorController.
      * 
@@ -81,12 +118,7 @@ public class RemoteSimulatorController extends SimulatorController {
         this.httpClient = HttpClient.newHttpClient();
         
         // Initialize Jackson ObjectMapper with polymorphic type support
-        this.objectMapper = new ObjectMapper();
-        PolymorphicTypeValidator typeValidator = BasicPolymorphicTypeValidator.builder()
-            .allowIfSubType(PositionedShape.class.getPackageName())
-            .allowIfSubType(Component.class.getPackageName())
-            .build();
-        objectMapper.activateDefaultTyping(typeValidator, ObjectMapper.DefaultTyping.NON_FINAL);
+        this.objectMapper = SimulationServiceUtils.createObjectMapper();
         
         // Initialize thread pool for background tasks
         this.executorService = Executors.newSingleThreadExecutor(r -> {
@@ -94,6 +126,12 @@ public class RemoteSimulatorController extends SimulatorController {
             t.setDaemon(true);
             return t;
         });
+        
+        this.renderScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "RemoteSimulator-Renderer");
+            t.setDaemon(true);
+            return t;
+        });
     }
     
     /**
@@ -128,9 +166,13 @@ public class RemoteSimulatorController extends SimulatorController {
             
             if (response.statusCode() == 200) {
                 LOGGER.info("Simulation started successfully via microservice");
+                simulationRunning = true;
                 
                 // Start background viewer update process
                 startViewerUpdates();
+            } else if (response.statusCode() == 503) {
+                LOGGER.warning("Simulation service at capacity, retry after " +
+                               response.headers().firstValue("Retry-After").orElse("a few") + " seconds");
             } else {
                 LOGGER.severe("Failed to start simulation. HTTP status: " + response.statusCode() + 
                             ", Response: " + response.body());
@@ -151,6 +193,7 @@ public class RemoteSimulatorController extends SimulatorController {
     public void stopAnimation() {
         try {
             // Stop background viewer updates first
+            simulationRunning = false;
             stopViewerUpdates();
             
             // Call microservice to stop simulation
@@ -182,56 +225,64 @@ public class RemoteSimulatorController extends SimulatorController {
     /**
      * {@inheritDoc}
      * 
-     * Checks simulation status via microservice.
+     * Returns the cached simulation status, updated by the start and stop calls and
+     * by the lifecycle events published by the microservice.
      */
     @Override
     public boolean isAnimationRunning() {
-        try {
-            // Use the /running endpoint to check if this factory is in the running list
-            final URI uri = new URI("http", null, microserviceHost, microservicePort, 
-                                  "/api/simulation/running", null, null);
-            
-            final HttpRequest request = HttpRequest.newBuilder()
-                .uri(uri)
-                .GET()
-                .build();
-            
-            final HttpResponse<String> response = httpClient.send(request, 
-                HttpResponse.BodyHandlers.ofString());
-            
-            if (response.statusCode() == 200) {
-                // Check if our factoryId is in the running simulations list
-                return response.body().contains("\"" + factoryId + "\"");
-            }
-            
-        } catch (URISyntaxException | IOException | InterruptedException e) {
-            LOGGER.warning("Error checking simulation status: " + e.getMessage());
-        }
-        
-        return false;
+        return simulationRunning;
     }
     
     /**
      * Fetches the current factory model from the microservice.
      * 
+     * The last fetched factory is kept with its model version, sent back as entity tag
+     * and delta base: when the model did not change the microservice answers 304 and
+     * the kept factory is returned as is, and when only component states changed it
+     * answers 226 with a state delta that is applied to the kept factory in place.
+     * 
      * @return Factory model from microservice, or null if error occurred
      */
     public Factory getFactory() {
         try {
+            final Factory cachedFactory = fetchedFactory;
+            final long cachedVersion = fetchedModelVersion;
             final URI uri = new URI("http", null, microserviceHost, microservicePort, 
-                                  "/api/simulation/factory/" + factoryId, null, null);
+                                  "/api/simulation/factory/" + factoryId,
+                                  cachedFactory == null ? null : "since=" + cachedVersion, null);
             
-            final HttpRequest request = HttpRequest.newBuilder()
+            final HttpRequest.Builder requestBuilder = HttpRequest.newBuilder()
                 .uri(uri)
-                .GET()
-                .build();
+                .GET();
             
-            final HttpResponse<String> response = httpClient.send(request, 
+            if (cachedFactory != null) {
+                requestBuilder.header("If-None-Match", "\"" + cachedVersion + "\"");
+            }
+            
+            final HttpResponse<String> response = httpClient.send(requestBuilder.build(), 
                 HttpResponse.BodyHandlers.ofString());
             
+            if (response.statusCode() == 304 && cachedFactory != null) {
+                LOGGER.fine("Factory model unchanged since version " + cachedVersion);
+                return cachedFactory;
+            }
+            
+            if (response.statusCode() == 226 && cachedFactory != null) {
+                // State delta since the version of the kept factory
+                final StateDeltaEvent delta = objectMapper.readValue(response.body(), StateDeltaEvent.class);
+                delta.applyTo(cachedFactory);
+                fetchedModelVersion = delta.getSequence();
+                LOGGER.fine("Applied factory model delta of " + delta.getComponentCount() + " components");
+                return cachedFactory;
+            }
+            
             if (response.statusCode() == 200) {
                 // Parse JSON response to Factory object
                 final Factory factory = objectMapper.readValue(response.body(), Factory.class);
+                fetchedModelVersion = response.headers().firstValue("ETag")
+                    .map(RemoteSimulatorController::parseModelVersion)
+                    .orElse(factory.getModelVersion());
+                fetchedFactory = factory;
                 LOGGER.fine("Successfully retrieved factory model from microservice");
                 return factory;
             } else {
@@ -245,6 +296,10 @@ public class RemoteSimulatorController extends SimulatorController {
         return null;
     }
     
+    private static long parseModelVersion(final String entityTag) {
+        return Long.parseLong(entityTag.replace("W/", "").replace("\"", ""));
+    }
+    
     /**
      * Starts the background process that periodically updates the viewer
      * with fresh factory model data from the microservice.
@@ -254,6 +309,13 @@ public class RemoteSimulatorController extends SimulatorController {
             isUpdatingViewer = true;
             updateViewerTask = CompletableFuture.runAsync(this::updateViewer, executorService);
         }
+        
+        interpolating = interpolationEnabled;
+        
+        if (interpolating && (renderTask == null || renderTask.isDone())) {
+            renderTask = renderScheduler.scheduleAtFixedRate(this::renderFrame, RENDER_INTERVAL_MILLIS,
+                                                             RENDER_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        }
     }
     
     /**
@@ -264,6 +326,40 @@ public class RemoteSimulatorController extends SimulatorController {
         if (updateViewerTask != null) {
             updateViewerTask.cancel(true);
         }
+        if (renderTask != null) {
+            renderTask.cancel(false);
+        }
+    }
+    
+    /**
+     * Moves the components to their interpolated positions and repaints the viewer,
+     * while a transition between two received frames is in progress.
+     */
+    private void renderFrame() {
+        final boolean moved;
+        
+        synchronized (interpolator) {
+            moved = interpolator.interpolate(System.currentTimeMillis());
+        }
+        
+        if (moved) {
+            localNotifier.notifyObservers();
+        }
+    }
+    
+    /**
+     * Enables or disables the interpolation of the positions between the received
+     * frames. Without interpolation, the viewer only shows the received frames.
+     * Takes effect when the viewer updates are next started.
+     * 
+     * @param interpolationEnabled true to interpolate the positions
+     */
+    public void setInterpolationEnabled(final boolean interpolationEnabled) {
+        this.interpolationEnabled = interpolationEnabled;
+    }
+    
+    public boolean isInterpolationEnabled() {
+        return interpolationEnabled;
     }
     
     /**
@@ -286,6 +382,9 @@ public class RemoteSimulatorController extends SimulatorController {
             e.printStackTrace();
         }
         
+        // The simulation may have been stopped by the microservice
+        isUpdatingViewer = false;
+        
         LOGGER.info("Kafka event consumer stopped");
     }
     
@@ -297,6 +396,11 @@ public class RemoteSimulatorController extends SimulatorController {
      */
     @Override
     public void setCanvas(final Canvas canvasModel) {
+        if (canvasModel == getCanvas()) {
+            // Same model, keep the observer registrations as they are
+            return;
+        }
+        
         // Remove observers from previous canvas (if any) and attach local
         // observers to the new canvas via the public addObserver API.
         final Canvas previous = getCanvas();
@@ -395,15 +499,21 @@ public class RemoteSimulatorController extends SimulatorController {
      * Parses JSON text into a Factory object and updates the canvas.
      * Also notifies local observers of the model change.
      * 
+     * If the parsed factory has the same layout as the current canvas, its component
+     * states are copied into the current canvas in place and the observers stay bound.
+     * 
      * @param jsonText JSON representation of the Factory object
      */
     public void setCanvasFromJson(final String jsonText) {
         try {
             // Parse JSON into Factory object using ObjectMapper
             final Factory factory = objectMapper.readValue(jsonText, Factory.class);
+            final Canvas current = getCanvas();
             
-            // Update the canvas
-            setCanvas(factory);
+            // Update the canvas, in place when possible
+            if (!(current instanceof Factory) || !((Factory) current).applyComponentStates(factory)) {
+                setCanvas(factory);
+            }
             
             // Notify local observers
             localNotifier.notifyObservers();
@@ -416,6 +526,118 @@ public class RemoteSimulatorController extends SimulatorController {
         }
     }
     
+    /**
+     * Applies a simulation event received from the microservice. A layout snapshot
+     * replaces the canvas while a state delta updates the components of the current
+     * canvas in place and a lifecycle event updates the cached simulation status.
+     * Local observers are notified if the model or status changed.
+     * 
+     * @param event The simulation event
+     */
+    public void applySimulationEvent(final SimulationEvent event) {
+        applySimulationEvents(Collections.singletonList(event));
+    }
+    
+    /**
+     * Applies the simulation events received together from the microservice. The
+     * state events superseded by a later layout snapshot or keyframe of the batch are
+     * skipped, and local observers are notified once for the whole batch, so that a
+     * viewer that fell behind catches up at a lower frame rate.
+     * 
+     * @param events The simulation events, in the order they were received
+     */
+    public void applySimulationEvents(final List<SimulationEvent> events) {
+        final List<SimulationEvent> stateEvents = new ArrayList<>(events.size());
+        boolean changed = false;
+        
+        for (final SimulationEvent event : events) {
+            if (event instanceof SimulationLifecycleEvent) {
+                simulationRunning = ((SimulationLifecycleEvent) event).isRunning();
+                LOGGER.info("Simulation status changed: " + event);
+                changed = true;
+            } else {
+                stateEvents.add(event);
+            }
+        }
+        
+        if (!stateEvents.isEmpty()) {
+            final Factory previousFactory = replica.getFactory();
+            final boolean applied;
+            
+            synchronized (interpolator) {
+                if (interpolating) {
+                    interpolator.beforeFrame(previousFactory);
+                }
+                
+                applied = replica.applyLatest(stateEvents);
+                
+                if (applied && interpolating) {
+                    interpolator.afterFrame(replica.getFactory(), replica.getLastTimestamp(), System.currentTimeMillis());
+                }
+            }
+            
+            if (applied) {
+                final Factory factory = replica.getFactory();
+                
+                if (factory != previousFactory) {
+                    layoutSnapshotRequested = false;
+                    setCanvas(factory);
+                }
+                
+                changed = true;
+            } else {
+                LOGGER.fine("Ignored out of sequence simulation events: " + stateEvents);
+            }
+            
+            if (!replica.hasLayout()) {
+                requestLayoutSnapshot();
+            }
+        }
+        
+        if (changed) {
+            localNotifier.notifyObservers();
+        }
+    }
+    
+    /**
+     * Gets the number of received simulation events that were not displayed because
+     * a later event received with them superseded them.
+     * 
+     * @return The number of skipped events
+     */
+    public long getSkippedSimulationEvents() {
+        return replica.getSkippedEvents();
+    }
+    
+    /**
+     * Asks the microservice to publish a layout snapshot of the factory, needed to
+     * apply the state deltas when the viewer joined after the simulation started.
+     * Only one request is sent until a snapshot is received.
+     */
+    void requestLayoutSnapshot() {
+        if (layoutSnapshotRequested) {
+            return;
+        }
+        
+        layoutSnapshotRequested = true;
+        
+        try {
+            final URI uri = new URI("http", null, microserviceHost, microservicePort, 
+                                  "/api/simulation/snapshot/" + factoryId, null, null);
+            
+            final HttpRequest request = HttpRequest.newBuilder()
+                .uri(uri)
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+            
+            httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .thenAccept(response -> LOGGER.info("Requested layout snapshot, HTTP status: " + response.statusCode()));
+            
+        } catch (URISyntaxException e) {
+            LOGGER.warning("Error requesting layout snapshot: " + e.getMessage());
+        }
+    }
+    
     /**
      * Shuts down the controller and releases resources.
      * Call this when the controller is no longer needed.
@@ -423,6 +645,7 @@ public class RemoteSimulatorController extends SimulatorController {
     public void shutdown() {
         stopViewerUpdates();
         executorService.shutdown();
+        renderScheduler.shutdown();
         LOGGER.info("RemoteSimulatorController shut down");
     }
     
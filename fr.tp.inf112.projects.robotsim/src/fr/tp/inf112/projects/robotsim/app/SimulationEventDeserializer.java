@@ -0,0 +1,91 @@
+package fr.tp.inf112.projects.robotsim.app;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fr.tp.inf112.projects.robotsim.model.event.SimulationEvent;
+import fr.tp.inf112.projects.robotsim.model.event.SimulationEventCodec;
+
+/**
+ * Kafka deserializer reading simulation events from compact binary frames.
+ * 
+ * <p>When the {@link #FACTORY_ID_CONFIG} property is configured, records whose
+ * factory ID header names another factory are not decoded and deserialize to
+ * null, which lets viewers of the shared topic skip the events of other factories
+ * at the cost of a header comparison.</p>
+ * 
+ * @see SimulationEventCodec
+ */
+public class SimulationEventDeserializer implements Deserializer<SimulationEvent> {
+    
+    /**
+     * Consumer property holding the ID of the only factory whose events are decoded
+     */
+    public static final String FACTORY_ID_CONFIG = "simulation.event.factory.id";
+    
+    private final SimulationEventCodec codec;
+    
+    private byte[] factoryIdFilter;
+    
+    /**
+     * Creates a deserializer using the default simulation object mapper, for use
+     * through the Kafka value deserializer class configuration.
+     */
+    public SimulationEventDeserializer() {
+        this(SimulationServiceUtils.createObjectMapper());
+    }
+    
+    /**
+     * Creates a deserializer.
+     * 
+     * @param objectMapper The mapper of the factory JSON carried by layout snapshots
+     */
+    public SimulationEventDeserializer(final ObjectMapper objectMapper) {
+        this.codec = new SimulationEventCodec(objectMapper);
+        this.factoryIdFilter = null;
+    }
+    
+    @Override
+    public void configure(final Map<String, ?> configs, final boolean isKey) {
+        final Object factoryId = configs.get(FACTORY_ID_CONFIG);
+        
+        if (factoryId != null) {
+            factoryIdFilter = factoryId.toString().getBytes(StandardCharsets.UTF_8);
+        }
+    }
+    
+    @Override
+    public SimulationEvent deserialize(final String topic, final Headers headers, final byte[] data) {
+        if (factoryIdFilter != null && headers != null) {
+            final Header factoryIdHeader = headers.lastHeader(SimulationServiceUtils.FACTORY_ID_HEADER);
+            
+            if (factoryIdHeader != null && !Arrays.equals(factoryIdFilter, factoryIdHeader.value())) {
+                // Event of another factory, left undecoded
+                return null;
+            }
+        }
+        
+        return deserialize(topic, data);
+    }
+    
+    @Override
+    public SimulationEvent deserialize(final String topic, final byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        
+        try {
+            return codec.decode(data);
+        } catch (final IllegalArgumentException e) {
+            throw new SerializationException("Cannot deserialize simulation event from topic " + topic, e);
+        }
+    }
+}
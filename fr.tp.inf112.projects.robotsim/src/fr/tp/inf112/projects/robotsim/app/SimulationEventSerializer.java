@@ -0,0 +1,49 @@
+package fr.tp.inf112.projects.robotsim.app;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Serializer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fr.tp.inf112.projects.robotsim.model.event.SimulationEvent;
+import fr.tp.inf112.projects.robotsim.model.event.SimulationEventCodec;
+
+/**
+ * Kafka serializer writing simulation events as compact binary frames.
+ * 
+ * @see SimulationEventCodec
+ */
+public class SimulationEventSerializer implements Serializer<SimulationEvent> {
+    
+    private final SimulationEventCodec codec;
+    
+    /**
+     * Creates a serializer using the default simulation object mapper, for use
+     * through the Kafka value serializer class configuration.
+     */
+    public SimulationEventSerializer() {
+        this(SimulationServiceUtils.createObjectMapper());
+    }
+    
+    /**
+     * Creates a serializer.
+     * 
+     * @param objectMapper The mapper of the factory JSON carried by layout snapshots
+     */
+    public SimulationEventSerializer(final ObjectMapper objectMapper) {
+        this.codec = new SimulationEventCodec(objectMapper);
+    }
+    
+    @Override
+    public byte[] serialize(final String topic, final SimulationEvent event) {
+        if (event == null) {
+            return null;
+        }
+        
+        try {
+            return codec.encode(event);
+        } catch (final IllegalArgumentException e) {
+            throw new SerializationException("Cannot serialize simulation event for topic " + topic, e);
+        }
+    }
+}
@@ -1,13 +1,25 @@
 package fr.tp.inf112.projects.robotsim.app;
 
+import fr.tp.inf112.projects.canvas.model.impl.BasicVertex;
+import fr.tp.inf112.projects.robotsim.model.Component;
 import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.shapes.PositionedShape;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.utils.Utils;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
+import com.fasterxml.jackson.databind.jsontype.PolymorphicTypeValidator;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.Properties;
 
 /**
  * Utility class providing common configuration for Kafka simulation services.
- * Contains methods to generate topic names and default consumer properties.
+ * Contains methods to generate topic names, default consumer properties and
+ * the JSON object mapper used to decode simulated factory models.
  */
 public class SimulationServiceUtils {
     
@@ -31,6 +43,29 @@ public class SimulationServiceUtils {
      */
     private static final String TOPIC = "simulation-";
     
+    /**
+     * Name of the partitioned topic shared by all simulations, keyed by factory ID
+     */
+    public static final String SHARED_TOPIC = "simulation-events";
+
+    /**
+     * Name of the log-compacted topic holding the latest snapshot of each running
+     * simulation, keyed by factory ID
+     */
+    public static final String SNAPSHOT_TOPIC = "simulation-snapshots";
+    
+    /**
+     * Header carrying the factory ID of a simulation event, so that consumers of the
+     * shared topic can skip the events of other factories without decoding them
+     */
+    public static final String FACTORY_ID_HEADER = "factory-id";
+    
+    /**
+     * System property selecting the topic topology of the viewers: "shared" for the
+     * shared topic, anything else for one topic per factory
+     */
+    public static final String TOPOLOGY_PROPERTY = "robotsim.kafka.topology";
+    
     /**
      * Generates the Kafka topic name for a factory model.
      * 
@@ -41,6 +76,32 @@ public class SimulationServiceUtils {
         return TOPIC + factoryModel.getId();
     }
     
+    /**
+     * Checks whether the viewers should consume the shared simulation topic rather
+     * than one topic per factory, as selected by the {@link #TOPOLOGY_PROPERTY}
+     * system property.
+     * 
+     * @return true for the shared topic topology
+     */
+    public static boolean isSharedTopicTopology() {
+        return "shared".equalsIgnoreCase(System.getProperty(TOPOLOGY_PROPERTY));
+    }
+    
+    /**
+     * Gets the partition of the shared topic holding the events of a factory. Events
+     * are keyed by factory ID, so this is the partition chosen by the default Kafka
+     * partitioner for that key.
+     * 
+     * @param factoryId The factory ID
+     * @param partitionCount The number of partitions of the shared topic
+     * @return The partition of the factory
+     */
+    public static int getSharedTopicPartition(final String factoryId, final int partitionCount) {
+        final byte[] keyBytes = factoryId.getBytes(StandardCharsets.UTF_8);
+        
+        return Utils.toPositive(Utils.murmur2(keyBytes)) % partitionCount;
+    }
+    
     /**
      * Creates default Kafka consumer properties.
      * 
@@ -54,4 +115,27 @@ public class SimulationServiceUtils {
         
         return props;
     }
+    
+    /**
+     * Creates the Jackson ObjectMapper used to read factory models published by
+     * the simulation service. Default typing is enabled for non-final types so that
+     * Component and PositionedShape subclasses, as well as the collections holding
+     * them, are restored with their concrete class.
+     * 
+     * @return ObjectMapper configured with polymorphic type handling
+     */
+    public static ObjectMapper createObjectMapper() {
+        final PolymorphicTypeValidator typeValidator = BasicPolymorphicTypeValidator.builder()
+            .allowIfSubType(PositionedShape.class.getPackageName())
+            .allowIfSubType(Component.class.getPackageName())
+            .allowIfSubType(BasicVertex.class.getPackageName())
+            .allowIfSubType(ArrayList.class.getName())
+            .allowIfSubType(LinkedHashSet.class.getName())
+            .build();
+        
+        final ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.activateDefaultTyping(typeValidator, ObjectMapper.DefaultTyping.NON_FINAL);
+        
+        return objectMapper;
+    }
 }
@@ -1,5 +1,7 @@
 package fr.tp.inf112.projects.robotsim.model;
 
+import java.util.Map;
+
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import fr.tp.inf112.projects.canvas.model.Style;
@@ -30,6 +32,27 @@ public class Area extends Component {
 		machine = null;
 	}
 	
+	// Copy, added to the copy of its room once all components are copied
+	private Area(final Factory factory,
+				 final RectangularShape shape,
+				 final String name) {
+		super(factory, shape, name);
+		
+		machine = null;
+	}
+	
+	@Override
+	protected Area copy(final Factory factory,
+						final Map<Object, Object> copies) {
+		return new Area(factory, (RectangularShape) copyShape(), getName());
+	}
+	
+	@Override
+	protected void copyReferences(final Component copy,
+								  final Map<Object, Object> copies) {
+		((Area) copy).setMachine((Machine) copies.get(machine));
+	}
+	
 	protected void setMachine( final Machine machine ) {
 		this.machine = machine;
 	}
@@ -20,6 +20,18 @@ public class Battery implements Serializable {
 		level = capacity;
 	}
 	
+	/**
+	 * Creates a copy of this battery, charged at the same level.
+	 * 
+	 * @return The copy
+	 */
+	public Battery copy() {
+		final Battery copy = new Battery(capacity);
+		copy.level = level;
+		
+		return copy;
+	}
+	
 	public float getCapacity() {
 		return capacity;
 	}
@@ -1,5 +1,7 @@
 package fr.tp.inf112.projects.robotsim.model;
 
+import java.util.Map;
+
 import fr.tp.inf112.projects.robotsim.model.shapes.PositionedShape;
 import fr.tp.inf112.projects.robotsim.model.shapes.RectangularShape;
 
@@ -28,6 +30,15 @@ public class ChargingStation extends Component {
 		charging = false;
 	}
 
+	@Override
+	protected ChargingStation copy(final Factory factory,
+								   final Map<Object, Object> copies) {
+		final ChargingStation copy = new ChargingStation(factory, (RectangularShape) copyShape(), getName());
+		copy.charging = charging;
+		
+		return copy;
+	}
+	
 	@Override
 	public String toString() {
 		return super.toString() + "]";
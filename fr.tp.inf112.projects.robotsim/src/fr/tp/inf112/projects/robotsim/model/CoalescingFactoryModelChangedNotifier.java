@@ -0,0 +1,210 @@
+package fr.tp.inf112.projects.robotsim.model;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import fr.tp.inf112.projects.canvas.controller.Observer;
+
+/**
+ * FactoryModelChangedNotifier decorator that coalesces change signals.
+ *
+ * Simulation threads calling notifyObservers() only mark the model as dirty. A
+ * dedicated dispatcher thread then notifies the observers of the decorated notifier
+ * at most once per frame interval, however many changes happened in between. The
+ * observers therefore never run on simulation threads, and a factory with many
+ * robots does not notify its observers more often than they can repaint.
+ *
+ * The dispatcher thread is started when the first observer is added and stops
+ * when the last one is removed.
+ */
+public class CoalescingFactoryModelChangedNotifier implements FactoryModelChangedNotifier {
+
+    private static final Logger LOGGER = Logger.getLogger(CoalescingFactoryModelChangedNotifier.class.getName());
+
+    /**
+     * Default minimum interval between two notifications (25 frames per second).
+     */
+    public static final long DEFAULT_FRAME_INTERVAL_MILLIS = 40;
+
+    private static final AtomicInteger DISPATCHER_COUNT = new AtomicInteger();
+
+    /**
+     * The notifier whose observers are notified by the dispatcher thread.
+     */
+    private final FactoryModelChangedNotifier delegate;
+
+    /**
+     * Set when the model changed since the last dispatch.
+     */
+    private final AtomicBoolean dirty;
+
+    private volatile long frameIntervalNanos;
+
+    private int observerCount;
+
+    private volatile Thread dispatcherThread;
+
+    /**
+     * Creates a coalescing notifier dispatching to a new local notifier with the
+     * default frame interval.
+     */
+    public CoalescingFactoryModelChangedNotifier() {
+        this(new LocalFactoryModelChangedNotifier());
+    }
+
+    /**
+     * Creates a coalescing notifier with the default frame interval.
+     *
+     * @param delegate The notifier whose observers are notified
+     */
+    public CoalescingFactoryModelChangedNotifier(final FactoryModelChangedNotifier delegate) {
+        this(delegate, DEFAULT_FRAME_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Creates a coalescing notifier.
+     *
+     * @param delegate The notifier whose observers are notified
+     * @param frameIntervalMillis The minimum interval between two notifications
+     */
+    public CoalescingFactoryModelChangedNotifier(final FactoryModelChangedNotifier delegate,
+                                                 final long frameIntervalMillis) {
+        this.delegate = delegate;
+        this.dirty = new AtomicBoolean(false);
+        this.observerCount = 0;
+        this.dispatcherThread = null;
+        setFrameIntervalMillis(frameIntervalMillis);
+    }
+
+    /**
+     * Gets the notifier whose observers are notified by the dispatcher thread.
+     *
+     * @return The decorated notifier
+     */
+    public FactoryModelChangedNotifier getDelegate() {
+        return delegate;
+    }
+
+    public long getFrameIntervalMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(frameIntervalNanos);
+    }
+
+    /**
+     * Sets the minimum interval between two notifications.
+     *
+     * @param frameIntervalMillis The interval in milliseconds, 0 to notify as soon as possible
+     */
+    public void setFrameIntervalMillis(final long frameIntervalMillis) {
+        if (frameIntervalMillis < 0) {
+            throw new IllegalArgumentException("Frame interval must not be negative: " + frameIntervalMillis);
+        }
+
+        this.frameIntervalNanos = TimeUnit.MILLISECONDS.toNanos(frameIntervalMillis);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Marks the model as dirty and wakes up the dispatcher thread. Never calls the
+     * observers on the calling thread.
+     */
+    @Override
+    public void notifyObservers() {
+        if (dirty.get() || !dirty.compareAndSet(false, true)) {
+            // Already signalled, the next dispatch will cover this change
+            return;
+        }
+
+        final Thread dispatcher = dispatcherThread;
+
+        if (dispatcher != null) {
+            LockSupport.unpark(dispatcher);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Adds the observer to the decorated notifier and starts the dispatcher thread
+     * if needed.
+     */
+    @Override
+    public synchronized boolean addObserver(final Observer observer) {
+        if (!delegate.addObserver(observer)) {
+            return false;
+        }
+
+        observerCount++;
+
+        if (dispatcherThread == null) {
+            final Thread dispatcher = new Thread(this::dispatch, "factory-model-dispatcher-" + DISPATCHER_COUNT.incrementAndGet());
+            dispatcher.setDaemon(true);
+            dispatcherThread = dispatcher;
+            dispatcher.start();
+        }
+
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Removes the observer from the decorated notifier and stops the dispatcher
+     * thread once there are no observers left.
+     */
+    @Override
+    public synchronized boolean removeObserver(final Observer observer) {
+        if (!delegate.removeObserver(observer)) {
+            return false;
+        }
+
+        observerCount--;
+
+        if (observerCount == 0) {
+            final Thread dispatcher = dispatcherThread;
+            dispatcherThread = null;
+
+            if (dispatcher != null) {
+                LockSupport.unpark(dispatcher);
+            }
+        }
+
+        return true;
+    }
+
+    private void dispatch() {
+        final Thread currentThread = Thread.currentThread();
+        long lastDispatchTime = System.nanoTime() - frameIntervalNanos;
+
+        while (dispatcherThread == currentThread) {
+            if (!dirty.get()) {
+                LockSupport.park(this);
+
+                continue;
+            }
+
+            final long waitNanos = lastDispatchTime + frameIntervalNanos - System.nanoTime();
+
+            if (waitNanos > 0) {
+                LockSupport.parkNanos(this, waitNanos);
+
+                continue;
+            }
+
+            // Clear the flag before notifying so that changes made meanwhile trigger another frame
+            dirty.set(false);
+            lastDispatchTime = System.nanoTime();
+
+            try {
+                delegate.notifyObservers();
+            }
+            catch (final RuntimeException ex) {
+                LOGGER.log(Level.WARNING, "Error while notifying factory model observers", ex);
+            }
+        }
+    }
+}
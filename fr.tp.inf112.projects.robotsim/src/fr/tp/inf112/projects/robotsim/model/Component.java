@@ -1,6 +1,7 @@
 package fr.tp.inf112.projects.robotsim.model;
 
 import java.io.Serializable;
+import java.util.Map;
 import java.util.logging.Logger;
 
 import com.fasterxml.jackson.annotation.JsonBackReference;
@@ -21,6 +22,16 @@ public abstract class Component implements Figure, Serializable, Runnable {
 	
 	private static final long serialVersionUID = -5960950869184030220L;
 
+	/**
+	 * State flag set for a robot that is blocked by another mobile component.
+	 */
+	public static final int STATE_FLAG_BLOCKED = 1;
+
+	/**
+	 * State flag set for a door that is open.
+	 */
+	public static final int STATE_FLAG_OPEN = 2;
+
 	private String id;
 
 	@JsonBackReference
@@ -30,6 +41,8 @@ public abstract class Component implements Figure, Serializable, Runnable {
 	
 	private final String name;
 
+	private transient int fleetIndex = -1;
+
 	protected Component(final Factory factory,
 						final PositionedShape shape,
 						final String name) {
@@ -50,9 +63,55 @@ public abstract class Component implements Figure, Serializable, Runnable {
 		this.id = id;
 	}
 
+	/**
+	 * Gets the index of the slot of this component in the fleet state of its factory.
+	 * Only meaningful for mobile components, once the fleet state has been built.
+	 */
+	int getFleetIndex() {
+		return fleetIndex;
+	}
+
+	void setFleetIndex(final int fleetIndex) {
+		this.fleetIndex = fleetIndex;
+	}
+
+	/**
+	 * Called once this component has been given a slot in the given fleet state, so that
+	 * subclasses can copy their persistent state into it.
+	 */
+	void attachedToFleet(final FleetState fleetState) {
+	}
+
 	public PositionedShape getPositionedShape() {
 		return positionedShape;
 	}
+
+	/**
+	 * Creates a copy of this component in a copy of its factory, sharing no mutable state
+	 * with it. Components are copied in the order of the factory, so the copies of the
+	 * components created before this one, such as its room, are already in the copies.
+	 * 
+	 * @param factory The copy of the factory of this component, to which the copy is added
+	 * @param copies The copies made so far by original, components and path finders
+	 * @return The copy
+	 */
+	protected abstract Component copy(final Factory factory,
+									  final Map<Object, Object> copies);
+
+	/**
+	 * Sets the references of the copy of this component to other components, once all the
+	 * components of the factory were copied.
+	 * 
+	 * @param copy The copy of this component
+	 * @param copies The copies by original
+	 */
+	protected void copyReferences(final Component copy,
+								  final Map<Object, Object> copies) {
+	}
+
+	protected PositionedShape copyShape() {
+		return positionedShape == null ? null : positionedShape.copy();
+	}
 	
 	@JsonIgnore
 	public Position getPosition() {
@@ -145,6 +204,43 @@ public abstract class Component implements Figure, Serializable, Runnable {
 		return false;
 	}
 	
+	/**
+	 * Gets a rectangle containing every shape this component may overlay, used by the
+	 * broad phase of the obstacle test.
+	 * 
+	 * @return The overlay bounds, by default the shape of the component
+	 */
+	@JsonIgnore
+	public PositionedShape getOverlayBounds() {
+		return getPositionedShape();
+	}
+	
+	/**
+	 * Gets the flags of the dynamic state of this component that are not part of its
+	 * position, such as {@link #STATE_FLAG_BLOCKED} or {@link #STATE_FLAG_OPEN}.
+	 * 
+	 * @return The state flags, 0 by default
+	 */
+	@JsonIgnore
+	public int getStateFlags() {
+		return 0;
+	}
+	
+	/**
+	 * Sets the dynamic state of this component as published by a remote simulation,
+	 * without notifying the observers.
+	 */
+	void applyState(final int xCoordinate,
+					final int yCoordinate,
+					final int stateFlags) {
+		final PositionedShape shape = getPositionedShape();
+		
+		if (shape != null) {
+			shape.setxCoordinate(xCoordinate);
+			shape.setyCoordinate(yCoordinate);
+		}
+	}
+	
 	@JsonIgnore
 	@Override
 	public Style getStyle() {
@@ -1,5 +1,7 @@
 package fr.tp.inf112.projects.robotsim.model;
 
+import java.util.Map;
+
 import fr.tp.inf112.projects.robotsim.model.shapes.PositionedShape;
 
 public class Conveyor extends Component {
@@ -17,6 +19,12 @@ public class Conveyor extends Component {
 		super(factory, shape, name);
 	}
 
+	@Override
+	protected Conveyor copy(final Factory factory,
+							final Map<Object, Object> copies) {
+		return new Conveyor(factory, copyShape(), getName());
+	}
+	
 	@Override
 	public String toString() {
 		return super.toString() + "]";
@@ -1,5 +1,7 @@
 package fr.tp.inf112.projects.robotsim.model;
 
+import java.util.Map;
+
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import fr.tp.inf112.projects.canvas.model.Style;
@@ -99,6 +101,24 @@ public class Door extends Component {
 		this.open = open;
 	}
 	
+	// Copy of a door in the copy of its room
+	private Door(final Room room,
+				 final PositionedShape shape,
+				 final boolean open,
+				 final String name) {
+		super(room.getFactory(), shape, name);
+		
+		this.room = room;
+		this.room.addDoor(this);
+		this.open = open;
+	}
+	
+	@Override
+	protected Door copy(final Factory factory,
+						final Map<Object, Object> copies) {
+		return new Door((Room) copies.get(room), copyShape(), open, getName());
+	}
+	
 	@JsonIgnore
 	@Override
 	public Style getStyle() {
@@ -133,6 +153,21 @@ public class Door extends Component {
 		return false;
 	}
 
+	@JsonIgnore
+	@Override
+	public int getStateFlags() {
+		return isOpen() ? STATE_FLAG_OPEN : 0;
+	}
+
+	@Override
+	void applyState(final int xCoordinate,
+					final int yCoordinate,
+					final int stateFlags) {
+		super.applyState(xCoordinate, yCoordinate, stateFlags);
+		
+		open = (stateFlags & STATE_FLAG_OPEN) != 0;
+	}
+
 	@Override
 	public String toString() {
 		return super.toString() + "]";
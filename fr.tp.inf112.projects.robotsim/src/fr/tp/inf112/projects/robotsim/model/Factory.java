@@ -2,7 +2,13 @@ package fr.tp.inf112.projects.robotsim.model;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
@@ -15,6 +21,7 @@ import fr.tp.inf112.projects.canvas.model.Canvas;
 import fr.tp.inf112.projects.canvas.model.Figure;
 import fr.tp.inf112.projects.canvas.model.Style;
 import fr.tp.inf112.projects.robotsim.model.motion.Motion;
+import fr.tp.inf112.projects.robotsim.model.shapes.MutableRectangularShape;
 import fr.tp.inf112.projects.robotsim.model.shapes.PositionedShape;
 import fr.tp.inf112.projects.robotsim.model.shapes.RectangularShape;
 
@@ -26,7 +33,7 @@ public class Factory extends Component implements Canvas, Observable {
 		this(0, 0, null);
 		// Ensure notifier is initialized even for Jackson deserialization
 		if (this.notifier == null) {
-			this.notifier = new LocalFactoryModelChangedNotifier();
+			this.notifier = new CoalescingFactoryModelChangedNotifier();
 		}
 	}
 
@@ -34,6 +41,9 @@ public class Factory extends Component implements Canvas, Observable {
 	
 	private static final ComponentStyle DEFAULT = new ComponentStyle(5.0f);
 
+	private static final AtomicLongFieldUpdater<Factory> MODEL_VERSION =
+		AtomicLongFieldUpdater.newUpdater(Factory.class, "modelVersion");
+
 
 	@JsonManagedReference
     private final List<Component> components;
@@ -41,6 +51,25 @@ public class Factory extends Component implements Canvas, Observable {
 	@JsonIgnore
 	private transient FactoryModelChangedNotifier notifier;
 
+	@JsonIgnore
+	private transient volatile FleetState fleetState;
+
+	@JsonIgnore
+	private transient volatile ObstacleIndex obstacleIndex;
+
+	// Query box reused by moveComponent, only accessed while holding the factory monitor
+	@JsonIgnore
+	private transient MutableRectangularShape moveShape;
+
+	@JsonIgnore
+	private transient volatile int layoutVersion;
+
+	// Counts the collision queries of the components, contended by the component threads
+	@JsonIgnore
+	private transient volatile LongAdder collisionQueries;
+
+	private volatile long modelVersion;
+
 	@JsonInclude
 	private boolean simulationStarted;
 	
@@ -50,7 +79,7 @@ public class Factory extends Component implements Canvas, Observable {
 		super(null, new RectangularShape(0, 0, width, height), name);
 		
 		components = new ArrayList<>();
-		notifier = new LocalFactoryModelChangedNotifier();
+		notifier = new CoalescingFactoryModelChangedNotifier();
 		simulationStarted = false;
 	}
 	
@@ -59,6 +88,7 @@ public class Factory extends Component implements Canvas, Observable {
 	 * 
 	 * @return The notifier instance
 	 */
+	@JsonIgnore
 	public FactoryModelChangedNotifier getNotifier() {
 		return notifier;
 	}
@@ -90,6 +120,8 @@ public class Factory extends Component implements Canvas, Observable {
 	}
 	
 	protected void notifyObservers() {
+		MODEL_VERSION.incrementAndGet(this);
+		
 		if (notifier != null) {
 			notifier.notifyObservers();
 		}
@@ -98,8 +130,137 @@ public class Factory extends Component implements Canvas, Observable {
 		//  }
 	}
 	
+	/**
+	 * Gets the struct-of-arrays state of the mobile components of this factory. It is built
+	 * lazily from the components list, which also covers factories that were deserialized.
+	 * 
+	 * @return The fleet state of this factory
+	 */
+	@JsonIgnore
+	public FleetState getFleetState() {
+		final FleetState currentFleetState = fleetState;
+		
+		return currentFleetState == null ? buildFleetState() : currentFleetState;
+	}
+	
+	private synchronized FleetState buildFleetState() {
+		if (fleetState == null) {
+			final FleetState newFleetState = new FleetState(components.size());
+			
+			for (final Component component : components) {
+				if (component.isMobile()) {
+					newFleetState.add(component);
+				}
+			}
+			
+			fleetState = newFleetState;
+		}
+		
+		return fleetState;
+	}
+	
+	/**
+	 * Copies the current position of a mobile component into the fleet state. Must be
+	 * called whenever the position of a mobile component changed.
+	 * 
+	 * @param component The component that moved
+	 */
+	void componentMoved(final Component component) {
+		if (component.isMobile()) {
+			getFleetState().setPosition(component.getFleetIndex(), component.getxCoordinate(), component.getyCoordinate());
+		}
+	}
+	
+	/**
+	 * Gets the number of queries for obstacles or mobile components made since this
+	 * factory was created or deserialized.
+	 * 
+	 * @return The number of collision queries
+	 */
+	@JsonIgnore
+	public long getCollisionQueryCount() {
+		return getCollisionQueries().sum();
+	}
+	
+	private LongAdder getCollisionQueries() {
+		final LongAdder currentCollisionQueries = collisionQueries;
+		
+		return currentCollisionQueries == null ? createCollisionQueries() : currentCollisionQueries;
+	}
+	
+	private synchronized LongAdder createCollisionQueries() {
+		if (collisionQueries == null) {
+			collisionQueries = new LongAdder();
+		}
+		
+		return collisionQueries;
+	}
+	
+	/**
+	 * Gets the broad phase index of the non mobile components of this factory, built
+	 * lazily and rebuilt after components were added or removed.
+	 * 
+	 * @return The obstacle index of this factory
+	 */
+	@JsonIgnore
+	public ObstacleIndex getObstacleIndex() {
+		ObstacleIndex currentObstacleIndex = obstacleIndex;
+		
+		if (currentObstacleIndex == null) {
+			currentObstacleIndex = new ObstacleIndex(components);
+			obstacleIndex = currentObstacleIndex;
+		}
+		
+		return currentObstacleIndex;
+	}
+	
+	/**
+	 * Creates a deep copy of this factory and its components, sharing no mutable state
+	 * with it, such as a new simulation of a layout loaded once. Observers are not copied.
+	 * 
+	 * @return The copy
+	 */
+	public Factory copy() {
+		final Factory copy = new Factory(getWidth(), getHeight(), getName());
+		copy.setId(getId());
+		copy.simulationStarted = simulationStarted;
+		
+		final Map<Object, Object> copies = new IdentityHashMap<>();
+		copies.put(this, copy);
+		
+		for (final Component component : components) {
+			final Component componentCopy = component.copy(copy, copies);
+			componentCopy.setId(component.getId());
+			copies.put(component, componentCopy);
+		}
+		
+		for (final Component component : components) {
+			component.copyReferences((Component) copies.get(component), copies);
+		}
+		
+		copy.modelVersion = modelVersion;
+		
+		return copy;
+	}
+	
+	/**
+	 * Factories are not components of other factories, so this copies the factory alone.
+	 */
+	@Override
+	protected Factory copy(final Factory factory,
+						   final Map<Object, Object> copies) {
+		return copy();
+	}
+	
 	public boolean addComponent(final Component component) {
 		if (components.add(component)) {
+			obstacleIndex = null;
+			layoutVersion++;
+			
+			if (fleetState != null && component.isMobile()) {
+				fleetState.add(component);
+			}
+			
 			notifyObservers();
 			
 			return true;
@@ -110,6 +271,13 @@ public class Factory extends Component implements Canvas, Observable {
 
 	public boolean removeComponent(final Component component) {
 		if (components.remove(component)) {
+			obstacleIndex = null;
+			layoutVersion++;
+			
+			if (fleetState != null && component.isMobile()) {
+				fleetState.remove(component);
+			}
+			
 			notifyObservers();
 			
 			return true;
@@ -118,6 +286,82 @@ public class Factory extends Component implements Canvas, Observable {
 		return false;
 	}
 
+	/**
+	 * Gets the version of the layout of this factory, incremented whenever components
+	 * are added or removed. The index of a component in {@link #getComponents()} only
+	 * identifies it for a given layout version.
+	 * 
+	 * @return The layout version
+	 */
+	@JsonIgnore
+	public int getLayoutVersion() {
+		return layoutVersion;
+	}
+	
+	/**
+	 * Gets the version of the state of this factory, incremented after each change when
+	 * observers are notified of it. A state read after reading a version is at least as
+	 * recent as that version.
+	 * 
+	 * @return The model version
+	 */
+	public long getModelVersion() {
+		return modelVersion;
+	}
+	
+	/**
+	 * Sets the position and state flags of a component as published by a remote
+	 * simulation. Observers are not notified.
+	 * 
+	 * @param componentIndex The index of the component in {@link #getComponents()}
+	 * @param xCoordinate The x coordinate of the component
+	 * @param yCoordinate The y coordinate of the component
+	 * @param stateFlags The state flags of the component
+	 */
+	public void applyComponentState(final int componentIndex,
+									final int xCoordinate,
+									final int yCoordinate,
+									final int stateFlags) {
+		components.get(componentIndex).applyState(xCoordinate, yCoordinate, stateFlags);
+	}
+	
+	/**
+	 * Copies the positions and state flags of the components of another instance of
+	 * this factory, for instance deserialized from a remote simulation, into the
+	 * components of this factory. Components are matched by index and must have the
+	 * same type and name. Observers are not notified.
+	 * 
+	 * @param source The factory to copy the component states from
+	 * @return true if the states were copied, false if the layouts differ, in which case
+	 * nothing is changed
+	 */
+	public boolean applyComponentStates(final Factory source) {
+		final List<Component> sourceComponents = source.getComponents();
+		
+		if (sourceComponents.size() != components.size()) {
+			return false;
+		}
+		
+		for (int index = 0; index < components.size(); index++) {
+			final Component component = components.get(index);
+			final Component sourceComponent = sourceComponents.get(index);
+			
+			if (component.getClass() != sourceComponent.getClass() || !Objects.equals(component.getName(), sourceComponent.getName())) {
+				return false;
+			}
+		}
+		
+		for (int index = 0; index < components.size(); index++) {
+			final Component sourceComponent = sourceComponents.get(index);
+			applyComponentState(index,
+								sourceComponent.getxCoordinate(),
+								sourceComponent.getyCoordinate(),
+								sourceComponent.getStateFlags());
+		}
+		
+		return true;
+	}
+	
 	public List<Component> getComponents() {
 		return components;
 	}
@@ -137,13 +381,59 @@ public class Factory extends Component implements Canvas, Observable {
 	}
 
 	public void startSimulation() {
+		startSimulation(true);
+	}
+
+	/**
+	 * Starts the simulation of this factory.
+	 * 
+	 * @param componentThreads true to run each component on its own thread, false to
+	 * leave the components to be stepped by the caller with {@link #behaveComponents()}
+	 */
+	public void startSimulation(final boolean componentThreads) {
 		if (!isSimulationStarted()) {
 			this.simulationStarted = true;
 			notifyObservers();
 			
-			// Start parallel execution of components
-			behave();
+			if (componentThreads) {
+				// Start parallel execution of components
+				behave();
+			}
+		}
+	}
+
+	/**
+	 * Makes every component behave once on the calling thread, whether the simulation is
+	 * started or not. Used by hosts advancing a paused simulation a given number of steps.
+	 * 
+	 * @return The number of components whose behaviour changed the model, such as the
+	 * robots that moved
+	 */
+	public int step() {
+		int behavedCount = 0;
+		
+		for (int index = 0; index < components.size(); index++) {
+			if (components.get(index).behave()) {
+				behavedCount++;
+			}
+		}
+		
+		return behavedCount;
+	}
+
+	/**
+	 * Makes every component behave once on the calling thread, as its own thread does
+	 * at each step. Used by hosts stepping many factories on a shared thread pool
+	 * instead of running one thread per component.
+	 * 
+	 * @return true if the simulation is still started
+	 */
+	public boolean behaveComponents() {
+		for (int index = 0; index < components.size() && isSimulationStarted(); index++) {
+			components.get(index).behave();
 		}
+		
+		return isSimulationStarted();
 	}
 
 	public void stopSimulation() {
@@ -173,25 +463,31 @@ public class Factory extends Component implements Canvas, Observable {
 		return DEFAULT;
 	}
 	
+	/**
+	 * Checks whether a non mobile component is an obstacle for the given shape. Mobile
+	 * components are not obstacles as they can always be overlayed; collisions between
+	 * them are checked with {@link #hasMobileComponentAt(PositionedShape, Component)}.
+	 * 
+	 * @param shape The shape to test
+	 * @return true if there is an obstacle at the shape
+	 */
 	public boolean hasObstacleAt(final PositionedShape shape) {
-		for (final Component component : getComponents()) {
-			if (component.overlays(shape) && !component.canBeOverlayed(shape)) {
-				return true;
-			}
-		}
+		getCollisionQueries().increment();
 		
-		return false;
+		return getObstacleIndex().hasObstacleAt(shape);
 	}
 	
 	public boolean hasMobileComponentAt(final PositionedShape shape,
 										final Component movingComponent) {
-		for (final Component component : getComponents()) {
-			if (component != movingComponent && component.isMobile() && component.overlays(shape)) {
-				return true;
-			}
-		}
-		
-		return false;
+		return hasMobileComponentAt(shape.getxCoordinate(), shape.getyCoordinate(), shape.getWidth(), shape.getHeight(), movingComponent);
+	}
+	
+	public boolean hasMobileComponentAt(final int xCoordinate,
+										final int yCoordinate,
+										final int width,
+										final int height,
+										final Component movingComponent) {
+		return findMobileComponentIndex(xCoordinate, yCoordinate, width, height, movingComponent) >= 0;
 	}
 	
 	public Component getMobileComponentAt(	final Position position,
@@ -200,7 +496,7 @@ public class Factory extends Component implements Canvas, Observable {
 			return null;
 		}
 		
-		return getMobileComponentAt(new RectangularShape(position.getxCoordinate(), position.getyCoordinate(), 2, 2), ignoredComponent);
+		return getMobileComponentAt(position.getxCoordinate(), position.getyCoordinate(), 2, 2, ignoredComponent);
 	}
 	
 	public Component getMobileComponentAt(	final PositionedShape shape,
@@ -209,13 +505,30 @@ public class Factory extends Component implements Canvas, Observable {
 			return null;
 		}
 		
-		for (final Component component : getComponents()) {
-			if (component != ignoredComponent && component.isMobile() && component.overlays(shape)) {
-				return component;
-			}
-		}
+		return getMobileComponentAt(shape.getxCoordinate(), shape.getyCoordinate(), shape.getWidth(), shape.getHeight(), ignoredComponent);
+	}
+	
+	public Component getMobileComponentAt(	final int xCoordinate,
+											final int yCoordinate,
+											final int width,
+											final int height,
+											final Component ignoredComponent) {
+		final int index = findMobileComponentIndex(xCoordinate, yCoordinate, width, height, ignoredComponent);
+		
+		return index < 0 ? null : getFleetState().getComponent(index);
+	}
+	
+	private int findMobileComponentIndex(final int xCoordinate,
+										 final int yCoordinate,
+										 final int width,
+										 final int height,
+										 final Component ignoredComponent) {
+		getCollisionQueries().increment();
+		
+		final FleetState fleet = getFleetState();
+		final int ignoredIndex = ignoredComponent != null && ignoredComponent.isMobile() ? ignoredComponent.getFleetIndex() : -1;
 		
-		return null;
+		return fleet.findOverlaying(xCoordinate, yCoordinate, width, height, ignoredIndex);
 	}
 	
 	/**
@@ -232,26 +545,91 @@ public class Factory extends Component implements Canvas, Observable {
 		}
 		
 		final Position targetPosition = motion.getTargetPosition();
-		final PositionedShape targetShape = new RectangularShape(targetPosition.getxCoordinate(),
-																 targetPosition.getyCoordinate(),
-																 componentToMove.getWidth(),
-																 componentToMove.getHeight());
+		
+		if (!isFreeFor(componentToMove, targetPosition.getxCoordinate(), targetPosition.getyCoordinate())) {
+			return 0;
+		}
+		
+		final int displacement = motion.moveToTarget();
+		
+		if (displacement != 0) {
+			componentMoved(componentToMove);
+		}
+		
+		return displacement;
+	}
+	
+	/**
+	 * Same as {@link #moveComponent(Motion, Component)} with the target given as primitive
+	 * coordinates, so that the simulation loop of the robots does not allocate a motion.
+	 * 
+	 * @param componentToMove The component that wants to move
+	 * @param xCoordinate The target x coordinate
+	 * @param yCoordinate The target y coordinate
+	 * @return The displacement achieved by the movement (0 if no movement occurred)
+	 */
+	public synchronized int moveComponent(final Component componentToMove,
+										  final int xCoordinate,
+										  final int yCoordinate) {
+		if (componentToMove == null || !isFreeFor(componentToMove, xCoordinate, yCoordinate)) {
+			return 0;
+		}
+		
+		final Position currentPosition = componentToMove.getPosition();
+		final int displacement = Motion.computeDisplacement(currentPosition.getxCoordinate(),
+															currentPosition.getyCoordinate(),
+															xCoordinate,
+															yCoordinate);
+		
+		currentPosition.setxCoordinate(xCoordinate);
+		currentPosition.setyCoordinate(yCoordinate);
+		
+		if (displacement != 0) {
+			componentMoved(componentToMove);
+		}
+		
+		return displacement;
+	}
+	
+	/**
+	 * Checks that the given component could be placed at the given coordinates. Must be
+	 * called while holding the monitor of this factory as it uses the shared move shape.
+	 */
+	private boolean isFreeFor(final Component componentToMove,
+							  final int xCoordinate,
+							  final int yCoordinate) {
+		final int width = componentToMove.getWidth();
+		final int height = componentToMove.getHeight();
 		
 		// Check if the target position is free of mobile components
-		if (hasMobileComponentAt(targetShape, componentToMove)) {
+		if (hasMobileComponentAt(xCoordinate, yCoordinate, width, height, componentToMove)) {
 			// Position is occupied, cannot move
-			LOGGER.fine(componentToMove.getName() + " blocked by another robot at " + targetPosition);
-			return 0;
+			if (LOGGER.isLoggable(Level.FINE)) {
+				LOGGER.fine(componentToMove.getName() + " blocked by another robot at (" + xCoordinate + ", " + yCoordinate + ")");
+			}
+			
+			return false;
 		}
 		
 		// Check if there are obstacles at the target position
-		if (hasObstacleAt(targetShape)) {
+		if (hasObstacleAt(getMoveShape().set(xCoordinate, yCoordinate, width, height))) {
 			// Position has obstacles, cannot move
-			return 0;
+			return false;
+		}
+		
+		// Position is free, the movement can be performed
+		if (LOGGER.isLoggable(Level.FINE)) {
+			LOGGER.fine(componentToMove.getName() + " moving to (" + xCoordinate + ", " + yCoordinate + ")");
+		}
+		
+		return true;
+	}
+	
+	private MutableRectangularShape getMoveShape() {
+		if (moveShape == null) {
+			moveShape = new MutableRectangularShape();
 		}
 		
-		// Position is free, perform the movement
-		LOGGER.fine(componentToMove.getName() + " moving to " + targetPosition);
-		return motion.moveToTarget();
+		return moveShape;
 	}
 }
@@ -0,0 +1,241 @@
+package fr.tp.inf112.projects.robotsim.model;
+
+import java.util.Arrays;
+
+import fr.tp.inf112.projects.robotsim.model.shapes.BoxOverlapKernel;
+
+/**
+ * Struct-of-arrays store of the mobile components (robots) of a factory.
+ *
+ * Each mobile component owns one slot, identified by an index, in parallel primitive
+ * arrays holding its bounding box, speed, state and current target index. Collision
+ * queries between robots then run the {@link BoxOverlapKernel} over these arrays instead
+ * of walking the Component / PositionedShape / Position object graph of every component.
+ *
+ * Structural changes and writes are synchronized on the store; queries read a snapshot
+ * of the arrays without locking, as the robots of a running simulation are queried far
+ * more often than they move.
+ */
+public class FleetState {
+
+	public static final byte STATE_IDLE = 0;
+
+	public static final byte STATE_MOVING = 1;
+
+	public static final byte STATE_BLOCKED = 2;
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private Component[] components;
+
+	private int[] xCoordinates;
+
+	private int[] yCoordinates;
+
+	private int[] widths;
+
+	private int[] heights;
+
+	private int[] speeds;
+
+	private byte[] states;
+
+	private int[] targetIndexes;
+
+	private volatile int size;
+
+	public FleetState() {
+		this(INITIAL_CAPACITY);
+	}
+
+	public FleetState(final int initialCapacity) {
+		final int capacity = Math.max(1, initialCapacity);
+
+		components = new Component[capacity];
+		xCoordinates = new int[capacity];
+		yCoordinates = new int[capacity];
+		widths = new int[capacity];
+		heights = new int[capacity];
+		speeds = new int[capacity];
+		states = new byte[capacity];
+		targetIndexes = new int[capacity];
+		size = 0;
+	}
+
+	/**
+	 * Gets the number of mobile components in the store.
+	 *
+	 * @return The number of occupied slots
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Adds a mobile component to the store and assigns it its slot index.
+	 *
+	 * @param component The mobile component
+	 * @return The index of the slot of the component
+	 */
+	public synchronized int add(final Component component) {
+		if (size == components.length) {
+			grow();
+		}
+
+		final int index = size;
+
+		components[index] = component;
+		xCoordinates[index] = component.getxCoordinate();
+		yCoordinates[index] = component.getyCoordinate();
+		widths[index] = component.getWidth();
+		heights[index] = component.getHeight();
+		speeds[index] = 0;
+		states[index] = STATE_IDLE;
+		targetIndexes[index] = -1;
+		component.setFleetIndex(index);
+		size = index + 1;
+
+		component.attachedToFleet(this);
+
+		return index;
+	}
+
+	/**
+	 * Removes a mobile component from the store. The last slot is moved into the freed
+	 * one so that the arrays stay dense.
+	 *
+	 * @param component The mobile component to remove
+	 * @return true if the component was in the store
+	 */
+	public synchronized boolean remove(final Component component) {
+		final int index = component.getFleetIndex();
+
+		if (index < 0 || index >= size || components[index] != component) {
+			return false;
+		}
+
+		final int lastIndex = size - 1;
+
+		if (index != lastIndex) {
+			components[index] = components[lastIndex];
+			xCoordinates[index] = xCoordinates[lastIndex];
+			yCoordinates[index] = yCoordinates[lastIndex];
+			widths[index] = widths[lastIndex];
+			heights[index] = heights[lastIndex];
+			speeds[index] = speeds[lastIndex];
+			states[index] = states[lastIndex];
+			targetIndexes[index] = targetIndexes[lastIndex];
+			components[index].setFleetIndex(index);
+		}
+
+		components[lastIndex] = null;
+		component.setFleetIndex(-1);
+		size = lastIndex;
+
+		return true;
+	}
+
+	private void grow() {
+		final int capacity = components.length * 2;
+
+		components = Arrays.copyOf(components, capacity);
+		xCoordinates = Arrays.copyOf(xCoordinates, capacity);
+		yCoordinates = Arrays.copyOf(yCoordinates, capacity);
+		widths = Arrays.copyOf(widths, capacity);
+		heights = Arrays.copyOf(heights, capacity);
+		speeds = Arrays.copyOf(speeds, capacity);
+		states = Arrays.copyOf(states, capacity);
+		targetIndexes = Arrays.copyOf(targetIndexes, capacity);
+	}
+
+	public Component getComponent(final int index) {
+		return components[index];
+	}
+
+	public int getxCoordinate(final int index) {
+		return xCoordinates[index];
+	}
+
+	public int getyCoordinate(final int index) {
+		return yCoordinates[index];
+	}
+
+	public synchronized void setPosition(final int index,
+										 final int xCoordinate,
+										 final int yCoordinate) {
+		xCoordinates[index] = xCoordinate;
+		yCoordinates[index] = yCoordinate;
+	}
+
+	public int getSpeed(final int index) {
+		return speeds[index];
+	}
+
+	public synchronized void setSpeed(final int index,
+									  final int speed) {
+		speeds[index] = speed;
+	}
+
+	public byte getState(final int index) {
+		return states[index];
+	}
+
+	public synchronized void setState(final int index,
+									  final byte state) {
+		states[index] = state;
+	}
+
+	public int getTargetIndex(final int index) {
+		return targetIndexes[index];
+	}
+
+	public synchronized void setTargetIndex(final int index,
+											final int targetIndex) {
+		targetIndexes[index] = targetIndex;
+	}
+
+	/**
+	 * Finds the first mobile component whose bounding box overlays the given box.
+	 *
+	 * @param xCoordinate The x coordinate of the box
+	 * @param yCoordinate The y coordinate of the box
+	 * @param width The width of the box
+	 * @param height The height of the box
+	 * @param ignoredIndex The index of a slot to skip (typically the moving component), or -1
+	 * @return The index of the overlaying slot, or -1 if there is none
+	 */
+	public int findOverlaying(final int xCoordinate,
+							  final int yCoordinate,
+							  final int width,
+							  final int height,
+							  final int ignoredIndex) {
+		final int[] xs = xCoordinates;
+		final int[] ys = yCoordinates;
+		final int[] ws = widths;
+		final int[] hs = heights;
+		final int count = Math.min(size, Math.min(Math.min(xs.length, ys.length), Math.min(ws.length, hs.length)));
+
+		return BoxOverlapKernel.nextOverlaying(xs, ys, ws, hs, 0, count, xCoordinate, yCoordinate, width, height, ignoredIndex);
+	}
+
+	/**
+	 * Counts the mobile components currently in the given state.
+	 *
+	 * @param state One of the STATE_ constants
+	 * @return The number of mobile components in that state
+	 */
+	public int countInState(final byte state) {
+		final int count = size;
+		final byte[] currentStates = states;
+		final int length = Math.min(count, currentStates.length);
+		int inState = 0;
+
+		for (int index = 0; index < length; index++) {
+			if (currentStates[index] == state) {
+				inState++;
+			}
+		}
+
+		return inState;
+	}
+}
@@ -1,7 +1,7 @@
 package fr.tp.inf112.projects.robotsim.model;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import fr.tp.inf112.projects.canvas.controller.Observer;
 
@@ -11,7 +11,8 @@ import fr.tp.inf112.projects.canvas.controller.Observer;
  * the user interface are running on the same computer.
  * 
  * This class maintains the list of observers and calls their modelChanged()
- * method when notifyObservers() is invoked.
+ * method when notifyObservers() is invoked. The list is copy-on-write so that
+ * observers may be added or removed while a notification is running.
  */
 public class LocalFactoryModelChangedNotifier implements FactoryModelChangedNotifier {
     
@@ -34,7 +35,7 @@ public class LocalFactoryModelChangedNotifier implements FactoryModelChangedNoti
      */
     protected List<Observer> getObservers() {
         if (observers == null) {
-            observers = new ArrayList<>();
+            observers = new CopyOnWriteArrayList<>();
         }
         
         return observers;
@@ -1,5 +1,7 @@
 package fr.tp.inf112.projects.robotsim.model;
 
+import java.util.Map;
+
 import fr.tp.inf112.projects.robotsim.model.shapes.PositionedShape;
 import fr.tp.inf112.projects.robotsim.model.shapes.RectangularShape;
 
@@ -20,6 +22,19 @@ public class Machine extends Component {
 		area.setMachine(this);
 	}
 
+	// Copy, set as the machine of the copy of its area once all components are copied
+	private Machine(final Factory factory,
+					final RectangularShape shape,
+					final String name) {
+		super(factory, shape, name);
+	}
+	
+	@Override
+	protected Machine copy(final Factory factory,
+						   final Map<Object, Object> copies) {
+		return new Machine(factory, (RectangularShape) copyShape(), getName());
+	}
+	
 	@Override
 	public String toString() {
 		return super.toString() + "]";
@@ -10,12 +10,23 @@ import fr.tp.inf112.projects.robotsim.model.shapes.RectangularShape;
  */
 public class NotifierTest {
     
-    private static boolean observerWasNotified = false;
+    private static volatile boolean observerWasNotified = false;
+    
+    /**
+     * Waits long enough for the coalescing notifier to dispatch pending changes.
+     */
+    private static void waitForDispatch() {
+        try {
+            Thread.sleep(3 * CoalescingFactoryModelChangedNotifier.DEFAULT_FRAME_INTERVAL_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
     
     public static void main(String[] args) {
         System.out.println("=== Testing Factory Model with Notifier ===\n");
         
-        // Create a factory - should automatically get LocalFactoryModelChangedNotifier
+        // Create a factory - should automatically get CoalescingFactoryModelChangedNotifier
         Factory factory = new Factory(200, 200, "Test Factory");
         System.out.println("✓ Created factory: " + factory.getName());
         System.out.println("✓ Notifier type: " + factory.getNotifier().getClass().getSimpleName());
@@ -36,6 +47,7 @@ public class NotifierTest {
         // Add a component - should trigger notification
         System.out.println("\nAdding a room to the factory...");
         Room room = new Room(factory, new RectangularShape(20, 20, 50, 50), "Test Room");
+        waitForDispatch();
         
         // Check if observer was notified
         if (observerWasNotified) {
@@ -56,6 +68,7 @@ public class NotifierTest {
         // Add another component - should NOT trigger notification
         System.out.println("\nAdding another room after observer removal...");
         Room room2 = new Room(factory, new RectangularShape(80, 80, 50, 50), "Test Room 2");
+        waitForDispatch();
         
         if (!observerWasNotified) {
             System.out.println("✓ SUCCESS: Observer was NOT notified after removal!");
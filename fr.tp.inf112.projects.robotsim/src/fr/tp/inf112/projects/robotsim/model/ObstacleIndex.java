@@ -0,0 +1,97 @@
+package fr.tp.inf112.projects.robotsim.model;
+
+import java.util.List;
+
+import fr.tp.inf112.projects.robotsim.model.shapes.BoxOverlapKernel;
+import fr.tp.inf112.projects.robotsim.model.shapes.PositionedShape;
+
+/**
+ * Broad phase of the obstacle test of a factory. The overlay bounds of the non mobile
+ * components are stored as struct-of-arrays and tested against a query box with the
+ * {@link BoxOverlapKernel}; only the components whose bounds overlay the query box are
+ * then asked whether they really are an obstacle for it.
+ *
+ * The index is immutable: the factory builds a new one when components are added or
+ * removed, which leaves the queries running on other threads unaffected.
+ */
+public class ObstacleIndex {
+
+	private final Component[] components;
+
+	private final int[] xCoordinates;
+
+	private final int[] yCoordinates;
+
+	private final int[] widths;
+
+	private final int[] heights;
+
+	private final int size;
+
+	public ObstacleIndex(final List<Component> allComponents) {
+		int count = 0;
+
+		for (final Component component : allComponents) {
+			if (!component.isMobile()) {
+				count++;
+			}
+		}
+
+		components = new Component[count];
+		xCoordinates = new int[count];
+		yCoordinates = new int[count];
+		widths = new int[count];
+		heights = new int[count];
+
+		int index = 0;
+
+		for (final Component component : allComponents) {
+			if (!component.isMobile()) {
+				final PositionedShape bounds = component.getOverlayBounds();
+
+				components[index] = component;
+				xCoordinates[index] = bounds.getxCoordinate();
+				yCoordinates[index] = bounds.getyCoordinate();
+				widths[index] = bounds.getWidth();
+				heights[index] = bounds.getHeight();
+				index++;
+			}
+		}
+
+		size = count;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Checks whether one of the indexed components is an obstacle for the given shape,
+	 * i.e. overlays it and cannot be overlayed by it.
+	 *
+	 * @param shape The shape to test
+	 * @return true if there is an obstacle
+	 */
+	public boolean hasObstacleAt(final PositionedShape shape) {
+		final int xCoordinate = shape.getxCoordinate();
+		final int yCoordinate = shape.getyCoordinate();
+		final int width = shape.getWidth();
+		final int height = shape.getHeight();
+
+		for (int blockStart = 0; blockStart < size; blockStart += BoxOverlapKernel.BLOCK_SIZE) {
+			long mask = BoxOverlapKernel.overlayMask(xCoordinates, yCoordinates, widths, heights, blockStart, size, xCoordinate, yCoordinate, width, height);
+
+			while (mask != 0L) {
+				final Component component = components[blockStart + Long.numberOfTrailingZeros(mask)];
+
+				if (component.overlays(shape) && !component.canBeOverlayed(shape)) {
+					return true;
+				}
+
+				mask &= mask - 1;
+			}
+		}
+
+		return false;
+	}
+}
@@ -1,5 +1,7 @@
 package fr.tp.inf112.projects.robotsim.model;
 
+import java.util.Map;
+
 import fr.tp.inf112.projects.robotsim.model.shapes.CircularShape;
 
 public class Puck extends Component {
@@ -12,6 +14,12 @@ public class Puck extends Component {
 		super(factory, shape, name);
 	}
 
+	@Override
+	protected Puck copy(final Factory factory,
+						final Map<Object, Object> copies) {
+		return new Puck(factory, (CircularShape) copyShape(), getName());
+	}
+	
 	@Override
 	public String toString() {
 		return super.toString() + "]";
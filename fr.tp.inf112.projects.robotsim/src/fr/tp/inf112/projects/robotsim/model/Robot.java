@@ -1,19 +1,21 @@
 package fr.tp.inf112.projects.robotsim.model;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import fr.tp.inf112.projects.canvas.model.Style;
 import fr.tp.inf112.projects.canvas.model.impl.RGBColor;
-import fr.tp.inf112.projects.robotsim.model.motion.Motion;
 import fr.tp.inf112.projects.robotsim.model.path.FactoryPathFinder;
 import fr.tp.inf112.projects.robotsim.model.shapes.CircularShape;
+import fr.tp.inf112.projects.robotsim.model.shapes.MutableRectangularShape;
 import fr.tp.inf112.projects.robotsim.model.shapes.PositionedShape;
-import fr.tp.inf112.projects.robotsim.model.shapes.RectangularShape;
 
 public class Robot extends Component {
 	private static final Logger LOGGER = Logger.getLogger(Robot.class.getName());
@@ -29,30 +31,44 @@ public class Robot extends Component {
 
 	private static final Style BLOCKED_STYLE = new ComponentStyle(RGBColor.RED, RGBColor.BLACK, 3.0f, new float[]{4.0f});
 
+	// Offsets of the 8 neighbouring positions (up, down, left, right, and diagonals)
+	private static final int[] NEIGHBOUR_DELTA_X = {-1, -1, -1, 0, 0, 1, 1, 1};
+
+	private static final int[] NEIGHBOUR_DELTA_Y = {-1, 0, 1, -1, 1, -1, 0, 1};
+
 	private final Battery battery;
 	
 	private int speed;
 	
 	private List<Component> targetComponents;
 	
-	@JsonIgnore
-	private transient Iterator<Component> targetComponentsIterator;
-	
 	private Component currTargetComponent;
 	
 	@JsonIgnore
 	private transient Iterator<Position> currentPathPositionsIter;
 	
-	@JsonIgnore
-	private transient boolean blocked;
-	
 	private Position memorizedTargetPosition;
 	
 	@JsonIgnore
 	private transient int waitCounter;
 	
+	// Query box reused by the step aside search, only accessed from the thread of this robot
+	@JsonIgnore
+	private transient MutableRectangularShape queryShape;
+	
 	private FactoryPathFinder pathFinder;
 
+	// Statistics of the simulation of this robot, for experiments comparing layouts
+	@JsonIgnore
+	private transient int reachedTargetCount;
+	
+	// Written by the thread simulating this robot only, read by metrics
+	@JsonIgnore
+	private transient volatile long pathFindingNanos;
+	
+	@JsonIgnore
+	private transient volatile int pathFindingCount;
+
 	public Robot(final Factory factory,
 				 final FactoryPathFinder pathFinder,
 				 final CircularShape shape,
@@ -67,23 +83,132 @@ public class Robot extends Component {
 		targetComponents = new ArrayList<>();
 		currTargetComponent = null;
 		currentPathPositionsIter = null;
-		speed = 5;
-		blocked = false;
 		memorizedTargetPosition = null;
 		waitCounter = 0;
+		setSpeed(5);
 	}
 
 	@Override
 	public String toString() {
 		return super.toString() + " battery=" + battery + "]";
 	}
+	
+	@Override
+	protected Robot copy(final Factory factory,
+						 final Map<Object, Object> copies) {
+		// Robots of a factory usually share their path finder
+		final FactoryPathFinder pathFinderCopy = pathFinder == null
+			? null
+			: (FactoryPathFinder) copies.computeIfAbsent(pathFinder, original -> pathFinder.copy(factory));
+		final Robot copy = new Robot(factory,
+									 pathFinderCopy,
+									 (CircularShape) copyShape(),
+									 battery == null ? null : battery.copy(),
+									 getName());
+		copy.setSpeed(getSpeed());
+		
+		if (memorizedTargetPosition != null) {
+			copy.memorizedTargetPosition = new Position(memorizedTargetPosition.getxCoordinate(),
+														memorizedTargetPosition.getyCoordinate());
+		}
+		
+		return copy;
+	}
+	
+	@Override
+	protected void copyReferences(final Component copy,
+								  final Map<Object, Object> copies) {
+		final Robot robotCopy = (Robot) copy;
+		
+		for (final Component targetComponent : getTargetComponents()) {
+			robotCopy.addTargetComponent((Component) copies.get(targetComponent));
+		}
+		
+		robotCopy.currTargetComponent = (Component) copies.get(currTargetComponent);
+	}
+
+	/**
+	 * Gets the fleet state holding the per-tick state of this robot, or null if the robot
+	 * does not belong to a factory.
+	 */
+	private FleetState getFleetState() {
+		final Factory factory = getFactory();
+		
+		return factory == null ? null : factory.getFleetState();
+	}
+	
+	@Override
+	void attachedToFleet(final FleetState fleetState) {
+		fleetState.setSpeed(getFleetIndex(), speed);
+		fleetState.setTargetIndex(getFleetIndex(), getTargetComponents().indexOf(currTargetComponent));
+	}
 
 	protected int getSpeed() {
-		return speed;
+		final FleetState fleetState = getFleetState();
+		
+		return fleetState == null ? speed : fleetState.getSpeed(getFleetIndex());
 	}
 
 	protected void setSpeed(final int speed) {
 		this.speed = speed;
+		
+		final FleetState fleetState = getFleetState();
+		
+		if (fleetState != null) {
+			fleetState.setSpeed(getFleetIndex(), speed);
+		}
+	}
+	
+	private boolean isBlocked() {
+		final FleetState fleetState = getFleetState();
+		
+		return fleetState != null && fleetState.getState(getFleetIndex()) == FleetState.STATE_BLOCKED;
+	}
+	
+	private void setBlocked(final boolean blocked) {
+		getFleetState().setState(getFleetIndex(), blocked ? FleetState.STATE_BLOCKED : FleetState.STATE_MOVING);
+	}
+	
+	@Override
+	protected boolean setxCoordinate(final int xCoordinate) {
+		if (super.setxCoordinate(xCoordinate)) {
+			getFactory().componentMoved(this);
+			
+			return true;
+		}
+		
+		return false;
+	}
+	
+	@Override
+	protected boolean setyCoordinate(final int yCoordinate) {
+		if (super.setyCoordinate(yCoordinate)) {
+			getFactory().componentMoved(this);
+			
+			return true;
+		}
+		
+		return false;
+	}
+	
+	@JsonIgnore
+	@Override
+	public int getStateFlags() {
+		return isBlocked() ? STATE_FLAG_BLOCKED : 0;
+	}
+	
+	@Override
+	void applyState(final int xCoordinate,
+					final int yCoordinate,
+					final int stateFlags) {
+		super.applyState(xCoordinate, yCoordinate, stateFlags);
+		
+		final Factory factory = getFactory();
+		
+		if (factory != null) {
+			factory.componentMoved(this);
+			setBlocked((stateFlags & STATE_FLAG_BLOCKED) != 0);
+		}
 	}
 	
 	public Position getMemorizedTargetPosition() {
@@ -98,6 +223,57 @@ public class Robot extends Component {
 		return targetComponents;
 	}
 	
+	/**
+	 * Reverses the order in which this robot visits its targets, before the simulation starts.
+	 */
+	public void reverseTargetComponents() {
+		Collections.reverse(getTargetComponents());
+	}
+	
+	/**
+	 * Rotates the order in which this robot visits its targets, before the simulation starts.
+	 * 
+	 * @param distance The number of positions by which the targets are rotated
+	 */
+	public void rotateTargetComponents(final int distance) {
+		Collections.rotate(getTargetComponents(), distance);
+	}
+	
+	@JsonIgnore
+	public int getTargetCount() {
+		return getTargetComponents().size();
+	}
+	
+	/**
+	 * Gets the number of targets reached since the simulation of this robot started.
+	 * 
+	 * @return The number of reached targets
+	 */
+	@JsonIgnore
+	public int getReachedTargetCount() {
+		return reachedTargetCount;
+	}
+	
+	/**
+	 * Gets the number of paths computed since the simulation of this robot started.
+	 * 
+	 * @return The number of path computations
+	 */
+	@JsonIgnore
+	public int getPathFindingCount() {
+		return pathFindingCount;
+	}
+	
+	/**
+	 * Gets the time spent computing the paths of this robot since its simulation started.
+	 * 
+	 * @return The path finding time in nanoseconds
+	 */
+	@JsonIgnore
+	public long getPathFindingNanos() {
+		return pathFindingNanos;
+	}
+	
 	public boolean addTargetComponent(final Component targetComponent) {
 		return getTargetComponents().add(targetComponent);
 	}
@@ -119,6 +295,7 @@ public class Robot extends Component {
 		
 		if (currTargetComponent == null || hasReachedCurrentTarget()) {
 			if (currTargetComponent != null) {
+				reachedTargetCount++;
 				LOGGER.info(getName() + " REACHED target: " + currTargetComponent.getName() + 
 								   " at " + getPosition());
 			}
@@ -134,17 +311,29 @@ public class Robot extends Component {
 
 
 	private Component nextTargetComponentToVisit() {
-		if (targetComponentsIterator == null || !targetComponentsIterator.hasNext()) {
-			targetComponentsIterator = getTargetComponents().iterator();
+		final List<Component> targetComponents = getTargetComponents();
+		
+		if (targetComponents.isEmpty()) {
+			return null;
+		}
+		
+		final FleetState fleetState = getFleetState();
+		final int fleetIndex = getFleetIndex();
+		int targetIndex = fleetState.getTargetIndex(fleetIndex) + 1;
+		
+		if (targetIndex < 0 || targetIndex >= targetComponents.size()) {
+			targetIndex = 0;
 		}
 		
-		return targetComponentsIterator.hasNext() ? targetComponentsIterator.next() : null;
+		fleetState.setTargetIndex(fleetIndex, targetIndex);
+		
+		return targetComponents.get(targetIndex);
 	}
 
 	private int moveToNextPathPosition() {
-		final Motion motion = computeMotion();
+		final Position nextPosition = computeNextPosition();
 		// Use synchronized factory method to move safely
-		int displacement = motion == null ? 0 : getFactory().moveComponent(motion, this);
+		int displacement = nextPosition == null ? 0 : getFactory().moveComponent(this, nextPosition.getxCoordinate(), nextPosition.getyCoordinate());
 		
 		if (displacement != 0) {
 			// Successfully moved, reset wait counter
@@ -155,12 +344,8 @@ public class Robot extends Component {
 			// Classic livelock detected - step aside immediately
 			LOGGER.warning(getName() + " LIVELOCK DETECTED at " + getPosition() + 
 							   " - trying to reach " + memorizedTargetPosition);
-			final Position freeNeighbouringPosition = findFreeNeighbouringPosition();
-			if (freeNeighbouringPosition != null) {
-				LOGGER.info(getName() + " Stepping aside to " + freeNeighbouringPosition);
-				// Move the robot to the free neighboring position
-				setxCoordinate(freeNeighbouringPosition.getxCoordinate());
-				setyCoordinate(freeNeighbouringPosition.getyCoordinate());
+			if (stepAsideToFreeNeighbouringPosition()) {
+				LOGGER.info(getName() + " Stepped aside to " + getPosition());
 				// Clear the memorized target position
 				memorizedTargetPosition = null;
 				waitCounter = 0;
@@ -176,13 +361,17 @@ public class Robot extends Component {
 			waitCounter++;
 			
 			if (waitCounter == 1) {
-				LOGGER.fine(getName() + " BLOCKED at " + getPosition() + 
-								   " - target: " + (currTargetComponent != null ? currTargetComponent.getName() : "null") +
-								   " - memorized: " + memorizedTargetPosition);
+				if (LOGGER.isLoggable(Level.FINE)) {
+					LOGGER.fine(getName() + " BLOCKED at " + getPosition() + 
+									   " - target: " + (currTargetComponent != null ? currTargetComponent.getName() : "null") +
+									   " - memorized: " + memorizedTargetPosition);
+				}
 				
 				// If memorized is null, it means we have no path - try recomputing immediately
 				if (memorizedTargetPosition == null) {
-					LOGGER.fine(getName() + " No memorized position - recomputing path");
+					if (LOGGER.isLoggable(Level.FINE)) {
+						LOGGER.fine(getName() + " No memorized position - recomputing path");
+					}
 					computePathToCurrentTargetComponent();
 					
 					// If still no path after recomputing, target is unreachable
@@ -199,13 +388,11 @@ public class Robot extends Component {
 			
 			// After waiting for a while, try to step aside to let other robot pass
 			if (waitCounter > 10) {
-				LOGGER.info(getName() + " Waited " + waitCounter + " iterations, trying to step aside");
-				final Position freeNeighbouringPosition = findFreeNeighbouringPosition();
-				if (freeNeighbouringPosition != null) {
-					LOGGER.info(getName() + " Stepping aside to " + freeNeighbouringPosition);
-					// Move the robot to the free neighboring position
-					setxCoordinate(freeNeighbouringPosition.getxCoordinate());
-					setyCoordinate(freeNeighbouringPosition.getyCoordinate());
+				if (LOGGER.isLoggable(Level.FINE)) {
+					LOGGER.fine(getName() + " Waited " + waitCounter + " iterations, trying to step aside");
+				}
+				if (stepAsideToFreeNeighbouringPosition()) {
+					LOGGER.info(getName() + " Stepped aside to " + getPosition());
 					// Clear the memorized target position
 					memorizedTargetPosition = null;
 					waitCounter = 0;
@@ -213,11 +400,13 @@ public class Robot extends Component {
 					computePathToCurrentTargetComponent();
 					notifyObservers();
 				} else {
-					LOGGER.fine(getName() + " Cannot find free neighbor, resetting counter");
+					if (LOGGER.isLoggable(Level.FINE)) {
+						LOGGER.fine(getName() + " Cannot find free neighbor, resetting counter");
+					}
 					// Can't step aside, reset counter to try again later
 					waitCounter = 5;
 				}
-			} else if (waitCounter % 5 == 0) {
+			} else if (waitCounter % 5 == 0 && LOGGER.isLoggable(Level.FINE)) {
 				LOGGER.fine(getName() + " Still waiting... (" + waitCounter + " iterations)");
 			}
 		}
@@ -226,43 +415,49 @@ public class Robot extends Component {
 	}
 	
 	private void computePathToCurrentTargetComponent() {
+		final long start = System.nanoTime();
 		final List<Position> currentPathPositions = pathFinder.findPath(this, currTargetComponent);
+		pathFindingNanos += System.nanoTime() - start;
+		pathFindingCount++;
 		currentPathPositionsIter = currentPathPositions.iterator();
 		
-		LOGGER.fine(getName() + " Computed path to " + 
-						   (currTargetComponent != null ? currTargetComponent.getName() : "null") + 
-						   " - path has " + (currentPathPositions != null ? currentPathPositions.size() : 0) + " positions");
+		if (LOGGER.isLoggable(Level.FINE)) {
+			LOGGER.fine(getName() + " Computed path to " + 
+							   (currTargetComponent != null ? currTargetComponent.getName() : "null") + 
+							   " - path has " + (currentPathPositions != null ? currentPathPositions.size() : 0) + " positions");
+		}
 	}
 	
-	private Motion computeMotion() {
+	/**
+	 * Computes the position the robot should move to during this tick.
+	 * 
+	 * @return The next position, or null if the robot is blocked
+	 */
+	private Position computeNextPosition() {
 		if (!currentPathPositionsIter.hasNext()) {
 
 			// There is no free path to the target
-			blocked = true;
+			setBlocked(true);
 			
 			return null;
 		}
 		
 		
 		final Position targetPosition = getTargetPosition();
-		final PositionedShape shape = new RectangularShape(targetPosition.getxCoordinate(),
-														   targetPosition.getyCoordinate(),
-				   										   2,
-				   										   2);
 		
 		// If there is another robot, memorize the target position for the next run
-		if (getFactory().hasMobileComponentAt(shape, this)) {
+		if (getFactory().hasMobileComponentAt(targetPosition.getxCoordinate(), targetPosition.getyCoordinate(), 2, 2, this)) {
 			this.memorizedTargetPosition = targetPosition;
-			blocked = true;
+			setBlocked(true);
 			
 			return null;
 		}
 
 		// Reset the memorized position and blocked state
 		this.memorizedTargetPosition = null;
-		blocked = false;
+		setBlocked(false);
 			
-		return new Motion(getPosition(), targetPosition);
+		return targetPosition;
 	}
 	
 	private Position getTargetPosition() {
@@ -284,7 +479,7 @@ public class Robot extends Component {
 		if (otherRobot != null && otherRobot instanceof Robot) {
 			final Position otherMemorized = ((Robot)otherRobot).getMemorizedTargetPosition();
 			boolean isLocked = getPosition().equals(otherMemorized);
-			if (isLocked) {
+			if (isLocked && LOGGER.isLoggable(Level.FINE)) {
 				LOGGER.fine(getName() + " Livelock check: YES - " +
 								   "I'm at " + getPosition() + " wanting " + memorizedTargetPosition +
 								   ", " + otherRobot.getName() + " is at " + otherRobot.getPosition() + 
@@ -299,96 +494,45 @@ public class Robot extends Component {
 		return getPositionedShape().overlays(currTargetComponent.getPositionedShape());
 	}
 	
-	private Position findFreeNeighbouringPosition() {
-		final Position currentPosition = getPosition();
-		final int x = currentPosition.getxCoordinate();
-		final int y = currentPosition.getyCoordinate();
-		
-		// Check 8 neighboring positions (up, down, left, right, and diagonals)
-		final int[] deltaX = {-1, -1, -1, 0, 0, 1, 1, 1};
-		final int[] deltaY = {-1, 0, 1, -1, 1, -1, 0, 1};
-		
-		for (int i = 0; i < deltaX.length; i++) {
-			final Position neighborPosition = new Position(x + deltaX[i], y + deltaY[i]);
-			
-			// Skip positions that would be out of bounds (negative coordinates)
-			if (neighborPosition.getxCoordinate() < 0 || neighborPosition.getyCoordinate() < 0) {
-				continue;
-			}
-			
-			final PositionedShape neighborShape = new RectangularShape(neighborPosition.getxCoordinate(),
-																	   neighborPosition.getyCoordinate(),
-																	   getWidth(),
-																	   getHeight());
-			
-			// Check if this neighboring position is free of mobile components and obstacles
-			if (!getFactory().hasMobileComponentAt(neighborShape, this) && 
-				!getFactory().hasObstacleAt(neighborShape)) {
-				return neighborPosition;
-			}
+	private MutableRectangularShape getQueryShape() {
+		if (queryShape == null) {
+			queryShape = new MutableRectangularShape();
 		}
 		
-		// No free neighboring position found
-		return null;
+		return queryShape;
 	}
 	
 	/**
-	 * Finds a waiting position away from the current target for yielding to another robot.
-	 * Tries to move in the opposite direction of the target to get out of the way.
+	 * Moves the robot to the first of its 8 neighbouring positions that is free of mobile
+	 * components and obstacles.
+	 * 
+	 * @return true if the robot moved
 	 */
-	private Position findWaitingPosition() {
-		final Position currentPosition = getPosition();
-		final Position targetPosition = currTargetComponent.getPosition();
-		
-		// Calculate direction away from target
-		final int dx = currentPosition.getxCoordinate() - targetPosition.getxCoordinate();
-		final int dy = currentPosition.getyCoordinate() - targetPosition.getyCoordinate();
-		
-		// Try positions moving away from target (3-5 steps back)
-		for (int distance = 3; distance <= 5; distance++) {
-			int moveX = 0;
-			int moveY = 0;
-			
-			// Normalize direction and move away
-			if (dx != 0) {
-				moveX = (dx > 0 ? distance : -distance);
-			}
-			if (dy != 0) {
-				moveY = (dy > 0 ? distance : -distance);
-			}
-			
-			// If no clear direction, try diagonal moves
-			if (moveX == 0 && moveY == 0) {
-				moveX = distance;
-				moveY = distance;
-			}
-			
-			final Position waitPosition = new Position(
-				currentPosition.getxCoordinate() + moveX,
-				currentPosition.getyCoordinate() + moveY
-			);
+	private boolean stepAsideToFreeNeighbouringPosition() {
+		final int x = getxCoordinate();
+		final int y = getyCoordinate();
+		
+		for (int i = 0; i < NEIGHBOUR_DELTA_X.length; i++) {
+			final int neighbourxCoordinate = x + NEIGHBOUR_DELTA_X[i];
+			final int neighbouryCoordinate = y + NEIGHBOUR_DELTA_Y[i];
 			
-			// Skip out of bounds
-			if (waitPosition.getxCoordinate() < 0 || waitPosition.getyCoordinate() < 0) {
+			// Skip positions that would be out of bounds (negative coordinates)
+			if (neighbourxCoordinate < 0 || neighbouryCoordinate < 0) {
 				continue;
 			}
 			
-			final PositionedShape waitShape = new RectangularShape(
-				waitPosition.getxCoordinate(),
-				waitPosition.getyCoordinate(),
-				getWidth(),
-				getHeight()
-			);
-			
-			// Check if position is free
-			if (!getFactory().hasMobileComponentAt(waitShape, this) && 
-				!getFactory().hasObstacleAt(waitShape)) {
-				return waitPosition;
+			// Check if this neighboring position is free of mobile components and obstacles
+			if (!getFactory().hasMobileComponentAt(neighbourxCoordinate, neighbouryCoordinate, getWidth(), getHeight(), this) && 
+				!getFactory().hasObstacleAt(getQueryShape().set(neighbourxCoordinate, neighbouryCoordinate, getWidth(), getHeight()))) {
+				setxCoordinate(neighbourxCoordinate);
+				setyCoordinate(neighbouryCoordinate);
+				
+				return true;
 			}
 		}
 		
-		// Fallback: try any neighboring position
-		return findFreeNeighbouringPosition();
+		// No free neighboring position found
+		return false;
 	}
 	
 	@Override
@@ -399,6 +543,6 @@ public class Robot extends Component {
 	@JsonIgnore
 	@Override
 	public Style getStyle() {
-		return blocked ? BLOCKED_STYLE : STYLE;
+		return isBlocked() ? BLOCKED_STYLE : STYLE;
 	}
 }
@@ -2,6 +2,9 @@ package fr.tp.inf112.projects.robotsim.model;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import fr.tp.inf112.projects.robotsim.model.shapes.PositionedShape;
 import fr.tp.inf112.projects.robotsim.model.shapes.RectangularShape;
@@ -51,6 +54,21 @@ public class Room extends Component {
 		doors = new ArrayList<>();
 	}
 	
+	@Override
+	protected Room copy(final Factory factory,
+						final Map<Object, Object> copies) {
+		return new Room(factory, (RectangularShape) copyShape(), getName());
+	}
+
+	@Override
+	protected void copyReferences(final Component copy,
+								  final Map<Object, Object> copies) {
+		// Doors add themselves to the copy of their room
+		for (final Area area : areas) {
+			((Room) copy).addArea((Area) copies.get(area));
+		}
+	}
+	
 	protected boolean addArea(final Area area) {
 		return areas.add(area);
 	}
@@ -73,6 +91,13 @@ public class Room extends Component {
 			   topWall.overlays(shape) || bottomWall.overlays(shape);
 	}
 
+	@JsonIgnore
+	@Override
+	public PositionedShape getOverlayBounds() {
+		// The right and bottom walls lie outside of the room shape
+		return new RectangularShape(getxCoordinate(), getyCoordinate(), getWidth() + WALL_THICKNESS, getHeight() + WALL_THICKNESS);
+	}
+
 	@Override
 	public boolean canBeOverlayed(final PositionedShape shape) {
 		final Door overlayedDoor = getOverlayedDoor(shape);
@@ -90,7 +115,11 @@ public class Room extends Component {
 	}
 	
 	private Door getOverlayedDoor(final PositionedShape shape) {
-		for (final Door door : getDoors()) {
+		final List<Door> doors = getDoors();
+		
+		for (int index = 0; index < doors.size(); index++) {
+			final Door door = doors.get(index);
+			
 			if (door.overlays(shape)) {
 				return door;
 			}
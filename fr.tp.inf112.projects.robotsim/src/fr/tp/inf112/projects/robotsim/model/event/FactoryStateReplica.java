@@ -0,0 +1,175 @@
+package fr.tp.inf112.projects.robotsim.model.event;
+
+import java.util.List;
+
+import fr.tp.inf112.projects.robotsim.model.Factory;
+
+/**
+ * Viewer side copy of a remotely simulated factory, rebuilt from its layout snapshots and
+ * kept up to date by applying its state delta events in sequence.
+ *
+ * The replica keeps a single factory instance updated in place, replaced only by a
+ * layout snapshot of a different layout.
+ *
+ * When an event is missing, the following deltas are ignored until the next keyframe or
+ * layout snapshot, so the replica never shows a state mixing two points in time.
+ *
+ * Events received together may be applied as a batch, in which the events superseded by
+ * a later layout snapshot or keyframe are skipped: a viewer that fell behind then jumps
+ * to the newest state at a lower frame rate instead of replaying every frame.
+ */
+public class FactoryStateReplica {
+
+	private Factory factory;
+
+	private long layoutSequence;
+
+	private long lastSequence;
+
+	private long lastTimestamp;
+
+	private long skippedEvents;
+
+	public FactoryStateReplica() {
+		this.factory = null;
+		this.layoutSequence = -1;
+		this.lastSequence = -1;
+		this.lastTimestamp = Long.MIN_VALUE;
+		this.skippedEvents = 0;
+	}
+
+	/**
+	 * Gets the factory read from the last layout snapshot, with the state of the last
+	 * applied event.
+	 * 
+	 * @return The factory, or null if no layout snapshot was received yet
+	 */
+	public Factory getFactory() {
+		return factory;
+	}
+
+	public boolean hasLayout() {
+		return factory != null;
+	}
+
+	public long getLastSequence() {
+		return lastSequence;
+	}
+
+	/**
+	 * Gets the time at which the state of the last applied event was captured.
+	 * 
+	 * @return The time in milliseconds since the epoch
+	 */
+	public long getLastTimestamp() {
+		return lastTimestamp;
+	}
+
+	/**
+	 * Gets the number of events skipped by {@link #applyLatest(List)} because a later
+	 * event of their batch superseded them.
+	 * 
+	 * @return The number of skipped events
+	 */
+	public long getSkippedEvents() {
+		return skippedEvents;
+	}
+
+	/**
+	 * Applies a batch of events received in order, skipping the events superseded by a
+	 * later event of the batch: everything before the last layout snapshot, and the
+	 * deltas before the last keyframe of the layout in use.
+	 * 
+	 * @param events The received events, in order
+	 * @return true if the factory or its state changed, false if every event was ignored
+	 */
+	public boolean applyLatest(final List<SimulationEvent> events) {
+		int layoutIndex = -1;
+		long expectedLayoutSequence = layoutSequence;
+
+		for (int index = events.size() - 1; index >= 0; index--) {
+			if (events.get(index) instanceof LayoutSnapshotEvent) {
+				layoutIndex = index;
+				expectedLayoutSequence = ((LayoutSnapshotEvent) events.get(index)).getLayoutSequence();
+				break;
+			}
+		}
+
+		int keyframeIndex = -1;
+
+		for (int index = events.size() - 1; index > layoutIndex; index--) {
+			final SimulationEvent event = events.get(index);
+
+			// A keyframe carries every component changed since its layout snapshot
+			if (event instanceof StateDeltaEvent
+				&& ((StateDeltaEvent) event).isKeyframe()
+				&& ((StateDeltaEvent) event).getLayoutSequence() == expectedLayoutSequence) {
+				keyframeIndex = index;
+				break;
+			}
+		}
+
+		boolean changed = false;
+
+		for (int index = 0; index < events.size(); index++) {
+			if (index < layoutIndex || index < keyframeIndex && index != layoutIndex) {
+				skippedEvents++;
+				continue;
+			}
+
+			changed |= apply(events.get(index));
+		}
+
+		return changed;
+	}
+
+	/**
+	 * Applies an event to this replica.
+	 * 
+	 * @param event The received event
+	 * @return true if the factory or its state changed, false if the event was ignored
+	 */
+	public boolean apply(final SimulationEvent event) {
+		if (event instanceof LayoutSnapshotEvent) {
+			// An older snapshot only applies if it is newer in time, when the simulation was restarted
+			if (event.getSequence() <= lastSequence && event.getTimestamp() <= lastTimestamp) {
+				return false;
+			}
+
+			final LayoutSnapshotEvent layout = (LayoutSnapshotEvent) event;
+			layout.applyStateFlags();
+
+			// Keep the current instance, and the observers bound to it, when only the state changed
+			if (factory == null || !factory.applyComponentStates(layout.getFactory())) {
+				factory = layout.getFactory();
+			}
+
+			layoutSequence = layout.getLayoutSequence();
+			lastSequence = event.getSequence();
+			lastTimestamp = event.getTimestamp();
+
+			return true;
+		}
+
+		if (event instanceof StateDeltaEvent) {
+			final StateDeltaEvent delta = (StateDeltaEvent) event;
+
+			if (factory == null || delta.getLayoutSequence() != layoutSequence || delta.getSequence() <= lastSequence) {
+				return false;
+			}
+
+			if (!delta.isKeyframe() && delta.getSequence() != lastSequence + 1) {
+				// Missed an event, wait for the next keyframe
+				return false;
+			}
+
+			delta.applyTo(factory);
+			lastSequence = delta.getSequence();
+			lastTimestamp = delta.getTimestamp();
+
+			return true;
+		}
+
+		return false;
+	}
+}
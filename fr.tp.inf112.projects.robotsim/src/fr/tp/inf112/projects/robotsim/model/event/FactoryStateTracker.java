@@ -0,0 +1,232 @@
+package fr.tp.inf112.projects.robotsim.model.event;
+
+import java.util.Arrays;
+import java.util.List;
+
+import fr.tp.inf112.projects.robotsim.model.Component;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+
+/**
+ * Builds the events published for a simulated factory: a layout snapshot first, then
+ * state delta events listing only the components whose position or state flags changed
+ * since the previous event, with a keyframe every {@code keyframeInterval} deltas.
+ *
+ * The state last published for each component is kept in primitive arrays, so building
+ * a delta compares the current state of the components against them. Events must be
+ * built by a single thread; {@link #requestLayoutSnapshot()} may be called from any thread.
+ */
+public class FactoryStateTracker {
+
+	/**
+	 * Default number of state delta events between two keyframes.
+	 */
+	public static final int DEFAULT_KEYFRAME_INTERVAL = 50;
+
+	private final Factory factory;
+
+	private final String factoryId;
+
+	private final int keyframeInterval;
+
+	private volatile boolean layoutSnapshotRequested;
+
+	private long sequence;
+
+	private long layoutSequence;
+
+	private int layoutVersion;
+
+	private int deltasSinceKeyframe;
+
+	private int componentCount;
+
+	private int[] publishedxCoordinates;
+
+	private int[] publishedyCoordinates;
+
+	private int[] publishedStateFlags;
+
+	/**
+	 * Components whose state changed since the last layout snapshot, included in keyframes.
+	 */
+	private boolean[] touched;
+
+	// Scratch buffers collecting the entries of the next delta
+	private int[] changedIndexes;
+
+	private int[] changedxCoordinates;
+
+	private int[] changedyCoordinates;
+
+	private byte[] changedStateFlags;
+
+	public FactoryStateTracker(final Factory factory) {
+		this(factory, factory.getId(), DEFAULT_KEYFRAME_INTERVAL);
+	}
+
+	/**
+	 * Creates a tracker whose first event is a layout snapshot.
+	 * 
+	 * @param factory The simulated factory
+	 * @param factoryId The identifier of the factory stamped on the events
+	 * @param keyframeInterval The number of state delta events between two keyframes
+	 */
+	public FactoryStateTracker(final Factory factory,
+							   final String factoryId,
+							   final int keyframeInterval) {
+		if (keyframeInterval < 1) {
+			throw new IllegalArgumentException("Keyframe interval must be positive: " + keyframeInterval);
+		}
+
+		this.factory = factory;
+		this.factoryId = factoryId;
+		this.keyframeInterval = keyframeInterval;
+		this.layoutSnapshotRequested = true;
+		this.sequence = 0;
+		this.layoutSequence = 0;
+		this.deltasSinceKeyframe = 0;
+		this.componentCount = 0;
+	}
+
+	public Factory getFactory() {
+		return factory;
+	}
+
+	public String getFactoryId() {
+		return factoryId;
+	}
+
+	/**
+	 * Requests the next event to be a layout snapshot, for instance because a viewer
+	 * joined without having received the previous one.
+	 */
+	public void requestLayoutSnapshot() {
+		layoutSnapshotRequested = true;
+	}
+
+	/**
+	 * Builds the next event to publish from the current state of the factory.
+	 * 
+	 * @param timestamp The time at which the state is captured
+	 * @return The next event, or null if nothing changed since the previous event
+	 */
+	public SimulationEvent nextEvent(final long timestamp) {
+		final int currentLayoutVersion = factory.getLayoutVersion();
+
+		if (layoutSnapshotRequested || currentLayoutVersion != layoutVersion) {
+			layoutSnapshotRequested = false;
+			layoutVersion = currentLayoutVersion;
+
+			return nextLayoutSnapshot(timestamp);
+		}
+
+		final boolean keyframe = deltasSinceKeyframe + 1 >= keyframeInterval;
+		final List<Component> components = factory.getComponents();
+		int changedCount = 0;
+
+		for (int index = 0; index < componentCount; index++) {
+			final Component component = components.get(index);
+			final int xCoordinate = component.getxCoordinate();
+			final int yCoordinate = component.getyCoordinate();
+			final int stateFlags = component.getStateFlags();
+
+			if (xCoordinate != publishedxCoordinates[index] ||
+				yCoordinate != publishedyCoordinates[index] ||
+				stateFlags != publishedStateFlags[index]) {
+				publishedxCoordinates[index] = xCoordinate;
+				publishedyCoordinates[index] = yCoordinate;
+				publishedStateFlags[index] = stateFlags;
+				touched[index] = true;
+			}
+			else if (!keyframe || !touched[index]) {
+				continue;
+			}
+
+			changedIndexes[changedCount] = index;
+			changedxCoordinates[changedCount] = xCoordinate;
+			changedyCoordinates[changedCount] = yCoordinate;
+			changedStateFlags[changedCount] = (byte) stateFlags;
+			changedCount++;
+		}
+
+		if (changedCount == 0 && !keyframe) {
+			return null;
+		}
+
+		deltasSinceKeyframe = keyframe ? 0 : deltasSinceKeyframe + 1;
+
+		return new StateDeltaEvent(factoryId,
+								   ++sequence,
+								   timestamp,
+								   layoutSequence,
+								   keyframe,
+								   Arrays.copyOf(changedIndexes, changedCount),
+								   Arrays.copyOf(changedxCoordinates, changedCount),
+								   Arrays.copyOf(changedyCoordinates, changedCount),
+								   Arrays.copyOf(changedStateFlags, changedCount));
+	}
+
+	/**
+	 * Builds a lifecycle event of the simulation, ordered after the events built so far.
+	 * 
+	 * @param status The new status of the simulation
+	 * @param timestamp The time of the status change
+	 * @return The lifecycle event
+	 */
+	public SimulationLifecycleEvent lifecycleEvent(final SimulationLifecycleEvent.Status status,
+												   final long timestamp) {
+		return new SimulationLifecycleEvent(factoryId, sequence, timestamp, status);
+	}
+
+	/**
+	 * Builds a catch-up snapshot of the current state of the factory, equivalent to the
+	 * last layout snapshot followed by the events built so far. It does not change the
+	 * events built next.
+	 * 
+	 * @param timestamp The time at which the state is captured
+	 * @return The snapshot, or null if no layout snapshot was built yet or the layout changed since
+	 */
+	public LayoutSnapshotEvent currentSnapshot(final long timestamp) {
+		if (layoutSequence == 0 || factory.getLayoutVersion() != layoutVersion) {
+			return null;
+		}
+
+		final List<Component> components = factory.getComponents();
+		final byte[] stateFlags = new byte[componentCount];
+
+		for (int index = 0; index < componentCount; index++) {
+			stateFlags[index] = (byte) components.get(index).getStateFlags();
+		}
+
+		return new LayoutSnapshotEvent(factoryId, sequence, timestamp, factory, stateFlags, layoutSequence);
+	}
+
+	private LayoutSnapshotEvent nextLayoutSnapshot(final long timestamp) {
+		final List<Component> components = factory.getComponents();
+		componentCount = components.size();
+
+		publishedxCoordinates = new int[componentCount];
+		publishedyCoordinates = new int[componentCount];
+		publishedStateFlags = new int[componentCount];
+		touched = new boolean[componentCount];
+		changedIndexes = new int[componentCount];
+		changedxCoordinates = new int[componentCount];
+		changedyCoordinates = new int[componentCount];
+		changedStateFlags = new byte[componentCount];
+
+		final byte[] layoutStateFlags = new byte[componentCount];
+
+		for (int index = 0; index < componentCount; index++) {
+			final Component component = components.get(index);
+			publishedxCoordinates[index] = component.getxCoordinate();
+			publishedyCoordinates[index] = component.getyCoordinate();
+			publishedStateFlags[index] = component.getStateFlags();
+			layoutStateFlags[index] = (byte) publishedStateFlags[index];
+		}
+
+		layoutSequence = ++sequence;
+		deltasSinceKeyframe = 0;
+
+		return new LayoutSnapshotEvent(factoryId, layoutSequence, timestamp, factory, layoutStateFlags);
+	}
+}
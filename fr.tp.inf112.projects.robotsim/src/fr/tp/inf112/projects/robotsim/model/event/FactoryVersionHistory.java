@@ -0,0 +1,179 @@
+package fr.tp.inf112.projects.robotsim.model.event;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import fr.tp.inf112.projects.robotsim.model.Component;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+
+/**
+ * Keeps the component states of a simulated factory at the model versions served to
+ * polling clients, so that a client holding one of these versions can be sent a state
+ * delta instead of the whole factory.
+ *
+ * Only the last {@code capacity} captured versions are kept, in primitive arrays. A
+ * delta lists the components whose position or state flags differ between the captured
+ * state and the current one; since it carries absolute states, components that changed
+ * while the client was reading the factory are sent again, which is harmless. Instances
+ * are thread safe.
+ */
+public class FactoryVersionHistory {
+
+	/**
+	 * Default number of captured versions kept.
+	 */
+	public static final int DEFAULT_CAPACITY = 16;
+
+	private final Factory factory;
+
+	private final Map<Long, Capture> captures;
+
+	public FactoryVersionHistory(final Factory factory) {
+		this(factory, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates an empty history.
+	 *
+	 * @param factory The simulated factory
+	 * @param capacity The number of captured versions kept
+	 */
+	public FactoryVersionHistory(final Factory factory,
+								 final int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+		}
+
+		this.factory = factory;
+		this.captures = new LinkedHashMap<>(capacity * 2, 0.75f, true) {
+
+			private static final long serialVersionUID = -4173402683185190542L;
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<Long, Capture> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	public Factory getFactory() {
+		return factory;
+	}
+
+	/**
+	 * Captures the current state of the factory before it is served to a client.
+	 *
+	 * @return The model version of the captured state, to be given to the client
+	 */
+	public synchronized long capture() {
+		return currentCapture().modelVersion;
+	}
+
+	/**
+	 * Builds a state delta from a version previously captured to the current state of
+	 * the factory, which is captured in turn.
+	 *
+	 * @param factoryId The identifier of the factory stamped on the delta
+	 * @param version The model version held by the client
+	 * @param timestamp The time at which the current state is captured
+	 * @return The delta, whose sequence is the current model version, or null if the
+	 * version is no longer kept or the layout changed since, in which case the whole
+	 * factory must be sent
+	 */
+	public synchronized StateDeltaEvent deltaSince(final String factoryId,
+												   final long version,
+												   final long timestamp) {
+		final Capture base = captures.get(version);
+
+		if (base == null) {
+			return null;
+		}
+
+		final Capture current = currentCapture();
+
+		if (current.layoutVersion != base.layoutVersion) {
+			return null;
+		}
+
+		final int componentCount = current.xCoordinates.length;
+		final int[] componentIndexes = new int[componentCount];
+		final int[] xCoordinates = new int[componentCount];
+		final int[] yCoordinates = new int[componentCount];
+		final byte[] stateFlags = new byte[componentCount];
+		int changedCount = 0;
+
+		for (int index = 0; index < componentCount; index++) {
+			if (current.xCoordinates[index] == base.xCoordinates[index] &&
+				current.yCoordinates[index] == base.yCoordinates[index] &&
+				current.stateFlags[index] == base.stateFlags[index]) {
+				continue;
+			}
+
+			componentIndexes[changedCount] = index;
+			xCoordinates[changedCount] = current.xCoordinates[index];
+			yCoordinates[changedCount] = current.yCoordinates[index];
+			stateFlags[changedCount] = (byte) current.stateFlags[index];
+			changedCount++;
+		}
+
+		return new StateDeltaEvent(factoryId,
+								   current.modelVersion,
+								   timestamp,
+								   current.layoutVersion,
+								   false,
+								   Arrays.copyOf(componentIndexes, changedCount),
+								   Arrays.copyOf(xCoordinates, changedCount),
+								   Arrays.copyOf(yCoordinates, changedCount),
+								   Arrays.copyOf(stateFlags, changedCount));
+	}
+
+	private Capture currentCapture() {
+		// Versions are read before the state, which is thus at least as recent
+		final long modelVersion = factory.getModelVersion();
+		final int layoutVersion = factory.getLayoutVersion();
+		final Capture latest = captures.get(modelVersion);
+
+		if (latest != null && latest.layoutVersion == layoutVersion) {
+			return latest;
+		}
+
+		final Capture capture = new Capture(modelVersion, layoutVersion, factory.getComponents());
+		captures.put(modelVersion, capture);
+
+		return capture;
+	}
+
+	private static final class Capture {
+
+		private final long modelVersion;
+
+		private final int layoutVersion;
+
+		private final int[] xCoordinates;
+
+		private final int[] yCoordinates;
+
+		private final int[] stateFlags;
+
+		private Capture(final long modelVersion,
+						final int layoutVersion,
+						final List<Component> components) {
+			final int componentCount = components.size();
+
+			this.modelVersion = modelVersion;
+			this.layoutVersion = layoutVersion;
+			this.xCoordinates = new int[componentCount];
+			this.yCoordinates = new int[componentCount];
+			this.stateFlags = new int[componentCount];
+
+			for (int index = 0; index < componentCount; index++) {
+				final Component component = components.get(index);
+				xCoordinates[index] = component.getxCoordinate();
+				yCoordinates[index] = component.getyCoordinate();
+				stateFlags[index] = component.getStateFlags();
+			}
+		}
+	}
+}
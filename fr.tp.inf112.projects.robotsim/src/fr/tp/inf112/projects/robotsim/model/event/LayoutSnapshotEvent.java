@@ -0,0 +1,102 @@
+package fr.tp.inf112.projects.robotsim.model.event;
+
+import java.util.List;
+
+import fr.tp.inf112.projects.robotsim.model.Component;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+
+/**
+ * Event carrying the whole factory: its static layout (rooms, doors, areas, machines...)
+ * and the state of its components when the snapshot was taken.
+ *
+ * It is published when a simulation starts, when components are added or removed and
+ * whenever a viewer requests it. The state delta events that follow refer to the
+ * components by their index in the component list of this snapshot.
+ *
+ * The state flags of the components are not part of the JSON form of the factory, so
+ * they are carried next to it.
+ *
+ * A catch-up snapshot, published for viewers joining a running simulation, carries the
+ * sequence of the last event whose state it includes and the sequence of the layout
+ * snapshot it is equivalent to, so that the following state deltas apply to it.
+ */
+public class LayoutSnapshotEvent extends SimulationEvent {
+
+	private static final long serialVersionUID = -3851207963512245918L;
+
+	private Factory factory;
+
+	private byte[] stateFlags;
+
+	private long layoutSequence;
+
+	// Empty constructor for Jackson
+	public LayoutSnapshotEvent() {
+		this(null, 0, 0, null, new byte[0]);
+	}
+
+	public LayoutSnapshotEvent(final String factoryId,
+							   final long sequence,
+							   final long timestamp,
+							   final Factory factory,
+							   final byte[] stateFlags) {
+		this(factoryId, sequence, timestamp, factory, stateFlags, sequence);
+	}
+
+	public LayoutSnapshotEvent(final String factoryId,
+							   final long sequence,
+							   final long timestamp,
+							   final Factory factory,
+							   final byte[] stateFlags,
+							   final long layoutSequence) {
+		super(factoryId, sequence, timestamp);
+
+		this.factory = factory;
+		this.stateFlags = stateFlags;
+		this.layoutSequence = layoutSequence;
+	}
+
+	/**
+	 * Gets the sequence that the state deltas following this snapshot refer to, which
+	 * is the sequence of this event unless it is a catch-up snapshot.
+	 * 
+	 * @return The layout sequence
+	 */
+	public long getLayoutSequence() {
+		return layoutSequence;
+	}
+
+	public Factory getFactory() {
+		return factory;
+	}
+
+	/**
+	 * Gets the state flags of the components, in the order of the component list.
+	 * 
+	 * @return The state flags
+	 */
+	public byte[] getStateFlags() {
+		return stateFlags;
+	}
+
+	/**
+	 * Sets the state flags carried by this event on the components of its factory.
+	 */
+	public void applyStateFlags() {
+		final List<Component> components = factory.getComponents();
+		final int count = Math.min(components.size(), stateFlags.length);
+
+		for (int index = 0; index < count; index++) {
+			final Component component = components.get(index);
+			factory.applyComponentState(index,
+										component.getxCoordinate(),
+										component.getyCoordinate(),
+										stateFlags[index] & 0xFF);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return super.toString() + "]";
+	}
+}
@@ -0,0 +1,56 @@
+package fr.tp.inf112.projects.robotsim.model.event;
+
+import java.io.Serializable;
+
+/**
+ * Base class of the events published by a simulation to its remote viewers.
+ *
+ * Events of a factory are numbered by a sequence incremented for each event, so that
+ * viewers can detect the events they missed, and are stamped with the simulation time
+ * at which they were captured.
+ */
+public abstract class SimulationEvent implements Serializable {
+
+	private static final long serialVersionUID = 2684017592238175041L;
+
+	private String factoryId;
+
+	private long sequence;
+
+	private long timestamp;
+
+	// Empty constructor for Jackson
+	protected SimulationEvent() {
+		this(null, 0, 0);
+	}
+
+	protected SimulationEvent(final String factoryId,
+							  final long sequence,
+							  final long timestamp) {
+		this.factoryId = factoryId;
+		this.sequence = sequence;
+		this.timestamp = timestamp;
+	}
+
+	public String getFactoryId() {
+		return factoryId;
+	}
+
+	public long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * Gets the time at which the state carried by this event was captured.
+	 * 
+	 * @return The time in milliseconds since the epoch
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + " [factoryId=" + factoryId + ", sequence=" + sequence + ", timestamp=" + timestamp;
+	}
+}
@@ -0,0 +1,438 @@
+package fr.tp.inf112.projects.robotsim.model.event;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fr.tp.inf112.projects.robotsim.model.Factory;
+
+/**
+ * Compact binary encoding of the simulation events.
+ *
+ * Every frame starts with a format version, the event kind, the factory identifier and
+ * the sequence and timestamp of the event as variable length integers (varints).
+ *
+ * A state delta frame then holds the number of entries and, for each entry, the component
+ * index and its coordinates encoded as zig-zag varints of their difference with the
+ * previous entry, so that components listed in order and robots moving close to each
+ * other take one or two bytes each. The state flags of the entries are bit-packed with
+ * as few bits per entry as the largest flag needs.
+ *
+ * A layout snapshot frame holds its layout sequence and the bit-packed state flags of the
+ * components followed by the JSON form of the factory: the component list of a snapshot
+ * is the dictionary that the component indexes of the following deltas refer to, and it
+ * is only sent once.
+ *
+ * A lifecycle frame holds the ordinal of the new status of the simulation.
+ *
+ * Instances are stateless and may be shared between threads.
+ */
+public class SimulationEventCodec {
+
+	/**
+	 * Version of the frame format, first byte of every frame.
+	 */
+	public static final int FORMAT_VERSION = 2;
+
+	private static final int KIND_LAYOUT_SNAPSHOT = 1;
+
+	private static final int KIND_STATE_DELTA = 2;
+
+	private static final int KIND_STATE_KEYFRAME = 3;
+
+	private static final int KIND_LIFECYCLE = 4;
+
+	private final ObjectMapper objectMapper;
+
+	/**
+	 * Creates a codec.
+	 *
+	 * @param objectMapper The mapper of the factory JSON carried by layout snapshots,
+	 * configured for polymorphic component types
+	 */
+	public SimulationEventCodec(final ObjectMapper objectMapper) {
+		this.objectMapper = objectMapper;
+	}
+
+	/**
+	 * Encodes an event into a frame.
+	 *
+	 * @param event The event to encode
+	 * @return The frame
+	 * @throws IllegalArgumentException If the event cannot be encoded
+	 */
+	public byte[] encode(final SimulationEvent event) {
+		final FrameWriter writer = new FrameWriter(64);
+		writer.writeByte(FORMAT_VERSION);
+
+		if (event instanceof LayoutSnapshotEvent) {
+			final LayoutSnapshotEvent layout = (LayoutSnapshotEvent) event;
+			writeHeader(writer, KIND_LAYOUT_SNAPSHOT, event);
+			writer.writeVarLong(layout.getSequence() - layout.getLayoutSequence());
+			writeStateFlags(writer, layout.getStateFlags());
+
+			try {
+				writer.writeBytes(objectMapper.writeValueAsBytes(layout.getFactory()));
+			}
+			catch (final IOException ex) {
+				throw new IllegalArgumentException("Cannot write factory of " + event, ex);
+			}
+		}
+		else if (event instanceof StateDeltaEvent) {
+			final StateDeltaEvent delta = (StateDeltaEvent) event;
+			writeHeader(writer, delta.isKeyframe() ? KIND_STATE_KEYFRAME : KIND_STATE_DELTA, event);
+			writer.writeVarLong(delta.getSequence() - delta.getLayoutSequence());
+			writeEntries(writer, delta);
+		}
+		else if (event instanceof SimulationLifecycleEvent) {
+			writeHeader(writer, KIND_LIFECYCLE, event);
+			writer.writeByte(((SimulationLifecycleEvent) event).getStatus().ordinal());
+		}
+		else {
+			throw new IllegalArgumentException("Unsupported simulation event: " + event);
+		}
+
+		return writer.toByteArray();
+	}
+
+	/**
+	 * Decodes a frame produced by {@link #encode(SimulationEvent)}.
+	 *
+	 * @param frame The frame
+	 * @return The decoded event
+	 * @throws IllegalArgumentException If the frame is malformed or of another version
+	 */
+	public SimulationEvent decode(final byte[] frame) {
+		final FrameReader reader = new FrameReader(frame);
+		final int version = reader.readByte();
+
+		if (version != FORMAT_VERSION) {
+			throw new IllegalArgumentException("Unsupported frame format version: " + version);
+		}
+
+		final int kind = reader.readByte();
+		final String factoryId = reader.readString();
+		final long sequence = reader.readVarLong();
+		final long timestamp = reader.readVarLong();
+
+		switch (kind) {
+			case KIND_LAYOUT_SNAPSHOT: {
+				final long layoutSequence = sequence - reader.readVarLong();
+				final byte[] stateFlags = readStateFlags(reader);
+				final Factory factory;
+
+				try {
+					factory = objectMapper.readValue(reader.readBytes(), Factory.class);
+				}
+				catch (final IOException ex) {
+					throw new IllegalArgumentException("Cannot read factory of layout snapshot " + sequence, ex);
+				}
+
+				return new LayoutSnapshotEvent(factoryId, sequence, timestamp, factory, stateFlags, layoutSequence);
+			}
+			case KIND_STATE_DELTA:
+			case KIND_STATE_KEYFRAME:
+				return readDelta(reader, factoryId, sequence, timestamp, kind == KIND_STATE_KEYFRAME);
+			case KIND_LIFECYCLE: {
+				final int status = reader.readByte();
+
+				if (status >= SimulationLifecycleEvent.Status.values().length) {
+					throw new IllegalArgumentException("Unknown simulation status: " + status);
+				}
+
+				return new SimulationLifecycleEvent(factoryId, sequence, timestamp, SimulationLifecycleEvent.Status.values()[status]);
+			}
+			default:
+				throw new IllegalArgumentException("Unknown frame kind: " + kind);
+		}
+	}
+
+	private static void writeHeader(final FrameWriter writer,
+									final int kind,
+									final SimulationEvent event) {
+		writer.writeByte(kind);
+		writer.writeString(event.getFactoryId());
+		writer.writeVarLong(event.getSequence());
+		writer.writeVarLong(event.getTimestamp());
+	}
+
+	private static void writeEntries(final FrameWriter writer,
+									 final StateDeltaEvent delta) {
+		final int[] componentIndexes = delta.getComponentIndexes();
+		final int[] xCoordinates = delta.getxCoordinates();
+		final int[] yCoordinates = delta.getyCoordinates();
+		final int count = componentIndexes.length;
+		writer.writeVarInt(count);
+
+		int previousIndex = 0;
+		int previousxCoordinate = 0;
+		int previousyCoordinate = 0;
+
+		for (int entry = 0; entry < count; entry++) {
+			writer.writeVarInt(zigZag(componentIndexes[entry] - previousIndex));
+			writer.writeVarInt(zigZag(xCoordinates[entry] - previousxCoordinate));
+			writer.writeVarInt(zigZag(yCoordinates[entry] - previousyCoordinate));
+			previousIndex = componentIndexes[entry];
+			previousxCoordinate = xCoordinates[entry];
+			previousyCoordinate = yCoordinates[entry];
+		}
+
+		writeStateFlags(writer, delta.getStateFlags());
+	}
+
+	private static StateDeltaEvent readDelta(final FrameReader reader,
+											 final String factoryId,
+											 final long sequence,
+											 final long timestamp,
+											 final boolean keyframe) {
+		final long layoutSequence = sequence - reader.readVarLong();
+		final int count = reader.readCount();
+		final int[] componentIndexes = new int[count];
+		final int[] xCoordinates = new int[count];
+		final int[] yCoordinates = new int[count];
+
+		int previousIndex = 0;
+		int previousxCoordinate = 0;
+		int previousyCoordinate = 0;
+
+		for (int entry = 0; entry < count; entry++) {
+			previousIndex += unZigZag(reader.readVarInt());
+			previousxCoordinate += unZigZag(reader.readVarInt());
+			previousyCoordinate += unZigZag(reader.readVarInt());
+			componentIndexes[entry] = previousIndex;
+			xCoordinates[entry] = previousxCoordinate;
+			yCoordinates[entry] = previousyCoordinate;
+		}
+
+		final byte[] stateFlags = readStateFlags(reader);
+
+		if (stateFlags.length != count) {
+			throw new IllegalArgumentException("Expected " + count + " state flags, got " + stateFlags.length);
+		}
+
+		return new StateDeltaEvent(factoryId,
+								   sequence,
+								   timestamp,
+								   layoutSequence,
+								   keyframe,
+								   componentIndexes,
+								   xCoordinates,
+								   yCoordinates,
+								   stateFlags);
+	}
+
+	/**
+	 * Writes the number of flags, the number of bits per flag then the flags packed with
+	 * that number of bits, least significant bits first.
+	 */
+	private static void writeStateFlags(final FrameWriter writer,
+										final byte[] stateFlags) {
+		int allFlags = 0;
+
+		for (final byte flags : stateFlags) {
+			allFlags |= flags & 0xFF;
+		}
+
+		final int bitsPerFlag = 32 - Integer.numberOfLeadingZeros(allFlags);
+		writer.writeVarInt(stateFlags.length);
+		writer.writeByte(bitsPerFlag);
+
+		int bitBuffer = 0;
+		int bufferedBits = 0;
+
+		for (final byte flags : stateFlags) {
+			bitBuffer |= (flags & 0xFF) << bufferedBits;
+			bufferedBits += bitsPerFlag;
+
+			while (bufferedBits >= Byte.SIZE) {
+				writer.writeByte(bitBuffer);
+				bitBuffer >>>= Byte.SIZE;
+				bufferedBits -= Byte.SIZE;
+			}
+		}
+
+		if (bufferedBits > 0) {
+			writer.writeByte(bitBuffer);
+		}
+	}
+
+	private static byte[] readStateFlags(final FrameReader reader) {
+		// Flags of 0 bits take no space, but each flag comes with at least one byte of entry or JSON
+		final int count = reader.readVarInt();
+		final int bitsPerFlag = reader.readByte();
+
+		if (count < 0 || count > reader.getFrameLength()) {
+			throw new IllegalArgumentException("Invalid number of state flags: " + count);
+		}
+
+		if (bitsPerFlag > Byte.SIZE) {
+			throw new IllegalArgumentException("Invalid number of bits per state flag: " + bitsPerFlag);
+		}
+
+		final byte[] stateFlags = new byte[count];
+		final int mask = (1 << bitsPerFlag) - 1;
+		int bitBuffer = 0;
+		int bufferedBits = 0;
+
+		for (int entry = 0; entry < count; entry++) {
+			while (bufferedBits < bitsPerFlag) {
+				bitBuffer |= reader.readByte() << bufferedBits;
+				bufferedBits += Byte.SIZE;
+			}
+
+			stateFlags[entry] = (byte) (bitBuffer & mask);
+			bitBuffer >>>= bitsPerFlag;
+			bufferedBits -= bitsPerFlag;
+		}
+
+		return stateFlags;
+	}
+
+	private static int zigZag(final int value) {
+		return (value << 1) ^ (value >> 31);
+	}
+
+	private static int unZigZag(final int value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/**
+	 * Growable byte buffer writing varints.
+	 */
+	private static final class FrameWriter {
+
+		private byte[] buffer;
+
+		private int size;
+
+		FrameWriter(final int initialCapacity) {
+			buffer = new byte[initialCapacity];
+			size = 0;
+		}
+
+		void writeByte(final int value) {
+			if (size == buffer.length) {
+				buffer = Arrays.copyOf(buffer, buffer.length * 2);
+			}
+
+			buffer[size++] = (byte) value;
+		}
+
+		void writeVarInt(final int value) {
+			writeVarLong(value & 0xFFFFFFFFL);
+		}
+
+		void writeVarLong(long value) {
+			if (value < 0) {
+				throw new IllegalArgumentException("Negative varint: " + value);
+			}
+
+			while (value >= 0x80) {
+				writeByte((int) (value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+
+			writeByte((int) value);
+		}
+
+		void writeBytes(final byte[] bytes) {
+			writeVarInt(bytes.length);
+
+			if (size + bytes.length > buffer.length) {
+				buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + bytes.length));
+			}
+
+			System.arraycopy(bytes, 0, buffer, size, bytes.length);
+			size += bytes.length;
+		}
+
+		void writeString(final String value) {
+			writeBytes(value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8));
+		}
+
+		byte[] toByteArray() {
+			return Arrays.copyOf(buffer, size);
+		}
+	}
+
+	/**
+	 * Reader of the frames written by a {@link FrameWriter}, failing on truncated frames.
+	 */
+	private static final class FrameReader {
+
+		private final byte[] frame;
+
+		private int position;
+
+		FrameReader(final byte[] frame) {
+			this.frame = frame;
+			this.position = 0;
+		}
+
+		int getFrameLength() {
+			return frame.length;
+		}
+
+		int readByte() {
+			if (position >= frame.length) {
+				throw new IllegalArgumentException("Truncated frame of " + frame.length + " bytes");
+			}
+
+			return frame[position++] & 0xFF;
+		}
+
+		long readVarLong() {
+			long value = 0;
+
+			for (int shift = 0; shift < Long.SIZE; shift += 7) {
+				final int current = readByte();
+				value |= (long) (current & 0x7F) << shift;
+
+				if ((current & 0x80) == 0) {
+					return value;
+				}
+			}
+
+			throw new IllegalArgumentException("Malformed varint");
+		}
+
+		int readVarInt() {
+			final long value = readVarLong();
+
+			if (value > 0xFFFFFFFFL) {
+				throw new IllegalArgumentException("Varint out of int range: " + value);
+			}
+
+			return (int) value;
+		}
+
+		/**
+		 * Reads a number of elements, which cannot exceed the number of remaining bytes.
+		 */
+		int readCount() {
+			final int count = readVarInt();
+
+			if (count < 0 || count > frame.length - position) {
+				throw new IllegalArgumentException("Invalid count " + count + " at byte " + position);
+			}
+
+			return count;
+		}
+
+		byte[] readBytes() {
+			final int length = readCount();
+			final byte[] bytes = Arrays.copyOfRange(frame, position, position + length);
+			position += length;
+
+			return bytes;
+		}
+
+		String readString() {
+			final byte[] bytes = readBytes();
+
+			return bytes.length == 0 ? null : new String(bytes, StandardCharsets.UTF_8);
+		}
+	}
+}
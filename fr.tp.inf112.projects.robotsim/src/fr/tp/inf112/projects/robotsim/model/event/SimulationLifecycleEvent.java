@@ -0,0 +1,57 @@
+package fr.tp.inf112.projects.robotsim.model.event;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * Control event announcing a change of the lifecycle of a simulation, published on the
+ * same stream as its state events so that viewers follow the simulation status without
+ * querying the service.
+ *
+ * It carries the sequence of the last state event published before it and does not
+ * take a sequence number of its own, so that it never breaks the sequence of the state
+ * deltas.
+ */
+public class SimulationLifecycleEvent extends SimulationEvent {
+
+	private static final long serialVersionUID = -5307729124855306472L;
+
+	// Statuses are encoded by ordinal, so new ones are added last
+	public enum Status {
+		STARTED,
+		STOPPED,
+		/**
+		 * Loaded without running, such as to be advanced step by step
+		 */
+		PAUSED
+	}
+
+	private Status status;
+
+	// Empty constructor for Jackson
+	public SimulationLifecycleEvent() {
+		this(null, 0, 0, Status.STOPPED);
+	}
+
+	public SimulationLifecycleEvent(final String factoryId,
+									final long sequence,
+									final long timestamp,
+									final Status status) {
+		super(factoryId, sequence, timestamp);
+
+		this.status = status;
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	@JsonIgnore
+	public boolean isRunning() {
+		return status == Status.STARTED;
+	}
+
+	@Override
+	public String toString() {
+		return super.toString() + ", status=" + status + "]";
+	}
+}
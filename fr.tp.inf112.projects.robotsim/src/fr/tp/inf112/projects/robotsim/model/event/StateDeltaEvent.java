@@ -0,0 +1,108 @@
+package fr.tp.inf112.projects.robotsim.model.event;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import fr.tp.inf112.projects.robotsim.model.Factory;
+
+/**
+ * Event carrying the dynamic state of the components of a factory that changed since
+ * the previous event: their position and state flags, stored in parallel arrays.
+ *
+ * Components are identified by their index in the component list of the layout snapshot
+ * this event applies to. A keyframe carries every component whose state changed since
+ * that layout snapshot, so that a viewer that missed events can resynchronize from it.
+ */
+public class StateDeltaEvent extends SimulationEvent {
+
+	private static final long serialVersionUID = 7420915634021788352L;
+
+	private long layoutSequence;
+
+	private boolean keyframe;
+
+	private int[] componentIndexes;
+
+	private int[] xCoordinates;
+
+	private int[] yCoordinates;
+
+	private byte[] stateFlags;
+
+	// Empty constructor for Jackson
+	public StateDeltaEvent() {
+		this(null, 0, 0, 0, false, new int[0], new int[0], new int[0], new byte[0]);
+	}
+
+	public StateDeltaEvent(final String factoryId,
+						   final long sequence,
+						   final long timestamp,
+						   final long layoutSequence,
+						   final boolean keyframe,
+						   final int[] componentIndexes,
+						   final int[] xCoordinates,
+						   final int[] yCoordinates,
+						   final byte[] stateFlags) {
+		super(factoryId, sequence, timestamp);
+
+		this.layoutSequence = layoutSequence;
+		this.keyframe = keyframe;
+		this.componentIndexes = componentIndexes;
+		this.xCoordinates = xCoordinates;
+		this.yCoordinates = yCoordinates;
+		this.stateFlags = stateFlags;
+	}
+
+	/**
+	 * Gets the sequence of the layout snapshot whose component indexes this event uses.
+	 * 
+	 * @return The sequence of the layout snapshot
+	 */
+	public long getLayoutSequence() {
+		return layoutSequence;
+	}
+
+	public boolean isKeyframe() {
+		return keyframe;
+	}
+
+	public int[] getComponentIndexes() {
+		return componentIndexes;
+	}
+
+	public int[] getxCoordinates() {
+		return xCoordinates;
+	}
+
+	public int[] getyCoordinates() {
+		return yCoordinates;
+	}
+
+	public byte[] getStateFlags() {
+		return stateFlags;
+	}
+
+	@JsonIgnore
+	public int getComponentCount() {
+		return componentIndexes.length;
+	}
+
+	/**
+	 * Sets the state carried by this event on the components of the given factory, which
+	 * must have been read from the layout snapshot this event applies to.
+	 * 
+	 * @param factory The factory to update
+	 */
+	public void applyTo(final Factory factory) {
+		for (int entry = 0; entry < componentIndexes.length; entry++) {
+			factory.applyComponentState(componentIndexes[entry],
+										xCoordinates[entry],
+										yCoordinates[entry],
+										stateFlags[entry] & 0xFF);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return super.toString() + ", layoutSequence=" + layoutSequence + ", keyframe=" + keyframe + ", components=" + componentIndexes.length + "]";
+	}
+}
@@ -0,0 +1,165 @@
+package fr.tp.inf112.projects.robotsim.model.event;
+
+import java.util.List;
+
+import fr.tp.inf112.projects.robotsim.model.Component;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+
+/**
+ * Viewer side interpolation of the component positions between the frames received
+ * from a remote simulation, so that the view renders smoothly at display rate while the
+ * simulation publishes at a few frames per second.
+ *
+ * When a frame is applied to the factory, the displayed positions are restored and then
+ * moved linearly to the positions of the frame over the simulation time elapsed since
+ * the previous frame. The view is therefore one frame interval behind the simulation.
+ * State flags are shown as soon as they are received.
+ *
+ * The position buffers are only reallocated when the layout of the factory changes.
+ * Instances are not thread safe: frames and interpolation steps must be synchronized
+ * by the caller.
+ */
+public class StateInterpolator {
+
+	/**
+	 * Longest transition between two frames, beyond which the positions jump
+	 */
+	public static final long MAX_TRANSITION_MILLIS = 1000;
+
+	private Factory factory;
+
+	private int componentCount;
+
+	private int[] fromxCoordinates = new int[0];
+
+	private int[] fromyCoordinates = new int[0];
+
+	private int[] toxCoordinates = new int[0];
+
+	private int[] toyCoordinates = new int[0];
+
+	private long lastFrameTimestamp;
+
+	private long transitionStart;
+
+	private long transitionDuration;
+
+	private boolean transitioning;
+
+	/**
+	 * Records the displayed positions of the components and moves them back to the
+	 * positions of the last frame, before the next frame is applied on top of it.
+	 *
+	 * @param displayedFactory The displayed factory, or null if there is none yet
+	 */
+	public void beforeFrame(final Factory displayedFactory) {
+		if (!isTracking(displayedFactory)) {
+			return;
+		}
+
+		copyPositions(displayedFactory.getComponents(), fromxCoordinates, fromyCoordinates);
+
+		if (transitioning) {
+			moveComponents(1, 1);
+		}
+	}
+
+	/**
+	 * Starts the transition from the displayed positions to the positions of the frame
+	 * just applied, which are reset to the displayed positions.
+	 *
+	 * @param displayedFactory The displayed factory, with the state of the frame
+	 * @param frameTimestamp The time at which the state of the frame was captured
+	 * @param now The current time
+	 */
+	public void afterFrame(final Factory displayedFactory,
+						   final long frameTimestamp,
+						   final long now) {
+		if (!isTracking(displayedFactory)) {
+			// New layout: shown as received, interpolated from the next frame
+			factory = displayedFactory;
+			componentCount = displayedFactory.getComponents().size();
+			fromxCoordinates = new int[componentCount];
+			fromyCoordinates = new int[componentCount];
+			toxCoordinates = new int[componentCount];
+			toyCoordinates = new int[componentCount];
+			copyPositions(displayedFactory.getComponents(), toxCoordinates, toyCoordinates);
+			lastFrameTimestamp = frameTimestamp;
+			transitioning = false;
+
+			return;
+		}
+
+		copyPositions(displayedFactory.getComponents(), toxCoordinates, toyCoordinates);
+		transitionDuration = frameTimestamp - lastFrameTimestamp;
+		lastFrameTimestamp = frameTimestamp;
+
+		if (transitionDuration <= 0 || transitionDuration > MAX_TRANSITION_MILLIS) {
+			transitioning = false;
+
+			return;
+		}
+
+		transitionStart = now;
+		transitioning = true;
+		moveComponents(0, 1);
+	}
+
+	/**
+	 * Moves the components to their interpolated positions at the given time.
+	 *
+	 * @param now The current time
+	 * @return true if components were moved, false if no transition is in progress
+	 */
+	public boolean interpolate(final long now) {
+		if (!transitioning) {
+			return false;
+		}
+
+		final long elapsed = Math.min(Math.max(now - transitionStart, 0), transitionDuration);
+		moveComponents(elapsed, transitionDuration);
+		transitioning = elapsed < transitionDuration;
+
+		return true;
+	}
+
+	public boolean isTransitioning() {
+		return transitioning;
+	}
+
+	private boolean isTracking(final Factory displayedFactory) {
+		return displayedFactory != null
+			&& displayedFactory == factory
+			&& displayedFactory.getComponents().size() == componentCount;
+	}
+
+	private void moveComponents(final long elapsed, final long duration) {
+		final List<Component> components = factory.getComponents();
+
+		for (int index = 0; index < componentCount; index++) {
+			final int fromxCoordinate = fromxCoordinates[index];
+			final int fromyCoordinate = fromyCoordinates[index];
+			final int toxCoordinate = toxCoordinates[index];
+			final int toyCoordinate = toyCoordinates[index];
+
+			if (fromxCoordinate == toxCoordinate && fromyCoordinate == toyCoordinate) {
+				continue;
+			}
+
+			factory.applyComponentState(index,
+										fromxCoordinate + (int) ((toxCoordinate - fromxCoordinate) * elapsed / duration),
+										fromyCoordinate + (int) ((toyCoordinate - fromyCoordinate) * elapsed / duration),
+										components.get(index).getStateFlags());
+		}
+	}
+
+	private static void copyPositions(final List<Component> components,
+									  final int[] xCoordinates,
+									  final int[] yCoordinates) {
+		for (int index = 0; index < xCoordinates.length; index++) {
+			final Component component = components.get(index);
+			xCoordinates[index] = component.getxCoordinate();
+			yCoordinates[index] = component.getyCoordinate();
+		}
+	}
+}
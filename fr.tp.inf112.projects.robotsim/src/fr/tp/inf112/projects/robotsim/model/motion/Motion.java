@@ -4,6 +4,19 @@ import fr.tp.inf112.projects.robotsim.model.Position;
 
 public class Motion {
 	
+	/**
+	 * Computes the euclidean displacement, rounded to the nearest integer, between two points.
+	 */
+	public static int computeDisplacement(final int xCoordinate1,
+										  final int yCoordinate1,
+										  final int xCoordinate2,
+										  final int yCoordinate2) {
+		final int xDisplacement = Math.abs(xCoordinate2 - xCoordinate1);
+		final int yDisplacement = Math.abs(yCoordinate2 - yCoordinate1);
+		
+		return (int) Math.round(Math.sqrt(xDisplacement * xDisplacement + yDisplacement * yDisplacement));
+	}
+	
 	private final Position currentPosition;
 
 	private final Position targetPosition;
@@ -23,9 +36,10 @@ public class Motion {
 	}
 	
 	public int moveToTarget() {
-		final int xDisplacement = Math.abs(targetPosition.getxCoordinate() - currentPosition.getxCoordinate());
-		final int yDisplacement = Math.abs(targetPosition.getyCoordinate() - currentPosition.getyCoordinate());
-		final int displacement = (int) Math.round(Math.sqrt(xDisplacement * xDisplacement + yDisplacement * yDisplacement));
+		final int displacement = computeDisplacement(currentPosition.getxCoordinate(),
+													 currentPosition.getyCoordinate(),
+													 targetPosition.getxCoordinate(),
+													 targetPosition.getyCoordinate());
 		
 		currentPosition.setxCoordinate(targetPosition.getxCoordinate());
 		currentPosition.setyCoordinate(targetPosition.getyCoordinate());
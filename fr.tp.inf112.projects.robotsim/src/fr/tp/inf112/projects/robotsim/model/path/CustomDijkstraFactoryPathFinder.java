@@ -28,6 +28,11 @@ public class CustomDijkstraFactoryPathFinder extends AbstractFactoryPathFinder<G
 		super(factoryModel, resolution);
 	}
 
+	@Override
+	public CustomDijkstraFactoryPathFinder copy(final Factory factoryModel) {
+		return new CustomDijkstraFactoryPathFinder(factoryModel, getResolution());
+	}
+
 	@Override
 	public List<Position> findPath(final Component sourceComponent,
 								   final Component targetComponent) {
@@ -3,10 +3,22 @@ package fr.tp.inf112.projects.robotsim.model.path;
 import java.util.List;
 
 import fr.tp.inf112.projects.robotsim.model.Component;
+import fr.tp.inf112.projects.robotsim.model.Factory;
 import fr.tp.inf112.projects.robotsim.model.Position;
 
 public interface FactoryPathFinder {
 
 	List<Position> findPath(Component sourceComponent,
 							Component targetComponent);
+
+	/**
+	 * Gets a path finder of the same kind for a copy of the factory of this one. Path
+	 * finders holding no state of their factory may be shared, as by default.
+	 * 
+	 * @param factoryModel The copy of the factory
+	 * @return The path finder of the copy
+	 */
+	default FactoryPathFinder copy(final Factory factoryModel) {
+		return this;
+	}
 }
@@ -30,6 +30,11 @@ public class JGraphTDijkstraFactoryPathFinder extends AbstractFactoryPathFinder<
 		super(factoryModel, resolution);
 	}
 
+	@Override
+	public JGraphTDijkstraFactoryPathFinder copy(final Factory factoryModel) {
+		return new JGraphTDijkstraFactoryPathFinder(factoryModel, getResolution());
+	}
+
 	@Override
 	public List<Position> findPath(final Component sourceComponent,
 								   final Component targetComponent) {
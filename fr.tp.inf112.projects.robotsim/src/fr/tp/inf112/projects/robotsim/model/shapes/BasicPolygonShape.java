@@ -14,10 +14,20 @@ public class BasicPolygonShape extends PositionedShape implements PolygonShape {
 
 	private final Set<Vertex> vertices;
 	
+	// Bounding box size cached from the vertices, recomputed when vertices are added
+	private transient boolean sizeComputed;
+	
+	private transient int sizeVertexCount;
+	
+	private transient int width;
+	
+	private transient int height;
+	
 	public BasicPolygonShape() {
 		super(0, 0);
 		
 		this.vertices = new LinkedHashSet<>();
+		this.sizeComputed = false;
 	}
 	
 	@Override
@@ -46,35 +56,56 @@ public class BasicPolygonShape extends PositionedShape implements PolygonShape {
 		setyCoordinate(minyCoordinate);
 	}
 	
-	@JsonIgnore
-	@Override
-	public int getWidth() {
-		int minCoordinate = Integer.MAX_VALUE;
-		int maxCoordinate = 0;
+	private void updateSize() {
+		// Vertices may also be added directly to the set (e.g. by Jackson), so the cache
+		// is checked against the vertex count as well
+		if (sizeComputed && sizeVertexCount == getVertices().size()) {
+			return;
+		}
+		
+		int minxCoordinate = Integer.MAX_VALUE;
+		int maxxCoordinate = 0;
+		int minyCoordinate = Integer.MAX_VALUE;
+		int maxyCoordinate = 0;
 		
 		for (final Vertex vertex : getVertices()) {
-			final int coordinate = vertex.getxCoordinate();
-
-			minCoordinate = Math.min(minCoordinate, coordinate);
-			maxCoordinate = Math.max(maxCoordinate, coordinate);
+			minxCoordinate = Math.min(minxCoordinate, vertex.getxCoordinate());
+			maxxCoordinate = Math.max(maxxCoordinate, vertex.getxCoordinate());
+			minyCoordinate = Math.min(minyCoordinate, vertex.getyCoordinate());
+			maxyCoordinate = Math.max(maxyCoordinate, vertex.getyCoordinate());
 		}
 		
-		return maxCoordinate - minCoordinate;
+		width = maxxCoordinate - minxCoordinate;
+		height = maxyCoordinate - minyCoordinate;
+		sizeVertexCount = getVertices().size();
+		sizeComputed = true;
+	}
+	
+	@JsonIgnore
+	@Override
+	public int getWidth() {
+		updateSize();
+		
+		return width;
 	}
 
 	@JsonIgnore
 	@Override
 	public int getHeight() {
-		int minCoordinate = Integer.MAX_VALUE;
-		int maxCoordinate = 0;
+		updateSize();
+		
+		return height;
+	}
+	
+	@Override
+	public BasicPolygonShape copy() {
+		final BasicPolygonShape copy = new BasicPolygonShape();
 		
+		// Vertices are read only
 		for (final Vertex vertex : getVertices()) {
-			final int coordinate = vertex.getyCoordinate();
-
-			minCoordinate = Math.min(minCoordinate, coordinate);
-			maxCoordinate = Math.max(maxCoordinate, coordinate);
+			copy.addVertex(vertex);
 		}
 		
-		return maxCoordinate - minCoordinate;
+		return copy;
 	}
 }
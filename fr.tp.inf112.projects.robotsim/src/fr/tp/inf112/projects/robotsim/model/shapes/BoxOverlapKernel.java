@@ -0,0 +1,104 @@
+package fr.tp.inf112.projects.robotsim.model.shapes;
+
+/**
+ * Batch overlap test of one query box against many axis-aligned boxes stored as
+ * struct-of-arrays (x, y, width and height arrays indexed alike).
+ *
+ * Boxes are tested in blocks of {@link #BLOCK_SIZE}: the test of each box is computed
+ * without branches and recorded as one bit of a mask, so that a whole block is a
+ * straight-line loop the JIT can unroll, and only the boxes whose bit is set need to be
+ * looked at by the caller.
+ *
+ * The overlay rule is the one of {@link PositionedShape#overlays(PositionedShape)}: the
+ * intersection length must be strictly positive along both axes.
+ */
+public final class BoxOverlapKernel {
+
+	public static final int BLOCK_SIZE = Long.SIZE;
+
+	private BoxOverlapKernel() {
+	}
+
+	/**
+	 * Tests two segments for an intersection of strictly positive length.
+	 *
+	 * @return 1 if the segments intersect, 0 otherwise
+	 */
+	public static int intersects(final int coordinate1,
+								 final int width1,
+								 final int coordinate2,
+								 final int width2) {
+		// 1 if coordinate1 <= coordinate2
+		final int firstBefore = (coordinate1 - coordinate2 - 1) >>> 31;
+		// 1 if the first segment ends after the second one starts
+		final int firstReaches = (coordinate2 - coordinate1 - width1) >>> 31;
+		// 1 if the second segment ends after the first one starts
+		final int secondReaches = (coordinate1 - coordinate2 - width2) >>> 31;
+
+		return (firstBefore & firstReaches) | ((firstBefore ^ 1) & secondReaches);
+	}
+
+	/**
+	 * Tests the boxes of one block against the query box.
+	 *
+	 * @param blockStart The index of the first box of the block
+	 * @param count The number of boxes in the arrays; boxes past it are not tested
+	 * @return A mask whose bit i is set if box blockStart + i overlays the query box
+	 */
+	public static long overlayMask(final int[] xCoordinates,
+								   final int[] yCoordinates,
+								   final int[] widths,
+								   final int[] heights,
+								   final int blockStart,
+								   final int count,
+								   final int xCoordinate,
+								   final int yCoordinate,
+								   final int width,
+								   final int height) {
+		final int blockEnd = Math.min(count, blockStart + BLOCK_SIZE);
+		long mask = 0L;
+
+		for (int index = blockStart; index < blockEnd; index++) {
+			final int overlays = intersects(xCoordinates[index], widths[index], xCoordinate, width) &
+								 intersects(yCoordinates[index], heights[index], yCoordinate, height);
+
+			mask |= (long) overlays << (index - blockStart);
+		}
+
+		return mask;
+	}
+
+	/**
+	 * Finds the first box overlaying the query box, starting from the given index.
+	 *
+	 * @param fromIndex The index of the first box to test
+	 * @param count The number of boxes in the arrays
+	 * @param ignoredIndex The index of a box to skip, or -1
+	 * @return The index of the first overlaying box, or -1 if there is none
+	 */
+	public static int nextOverlaying(final int[] xCoordinates,
+									 final int[] yCoordinates,
+									 final int[] widths,
+									 final int[] heights,
+									 final int fromIndex,
+									 final int count,
+									 final int xCoordinate,
+									 final int yCoordinate,
+									 final int width,
+									 final int height,
+									 final int ignoredIndex) {
+		for (int blockStart = fromIndex; blockStart < count; blockStart += BLOCK_SIZE) {
+			long mask = overlayMask(xCoordinates, yCoordinates, widths, heights, blockStart, count, xCoordinate, yCoordinate, width, height);
+
+			if (ignoredIndex >= blockStart && ignoredIndex < blockStart + BLOCK_SIZE) {
+				mask &= ~(1L << (ignoredIndex - blockStart));
+			}
+
+			if (mask != 0L) {
+				return blockStart + Long.numberOfTrailingZeros(mask);
+			}
+		}
+
+		return -1;
+	}
+}
@@ -39,6 +39,11 @@ public class CircularShape extends PositionedShape implements OvalShape {
 		return getWidth();
 	}
 
+	@Override
+	public CircularShape copy() {
+		return new CircularShape(getxCoordinate(), getyCoordinate(), radius);
+	}
+
 	@Override
 	public String toString() {
 		return super.toString() + " [radius=" + radius + "]";
@@ -0,0 +1,68 @@
+package fr.tp.inf112.projects.robotsim.model.shapes;
+
+import fr.tp.inf112.projects.canvas.model.RectangleShape;
+
+/**
+ * Rectangular shape whose position and size can be reset. Used as a reusable query box
+ * on the simulation hot path so that collision tests do not allocate a new shape each
+ * time. It is never part of a factory model.
+ */
+public class MutableRectangularShape extends PositionedShape implements RectangleShape {
+
+	private static final long serialVersionUID = 3519021478563360962L;
+
+	private int width;
+
+	private int height;
+
+	public MutableRectangularShape() {
+		this(0, 0, 0, 0);
+	}
+
+	public MutableRectangularShape(final int xCoordinate,
+								   final int yCoordinate,
+								   final int width,
+								   final int height) {
+		super(xCoordinate, yCoordinate);
+
+		this.width = width;
+		this.height = height;
+	}
+
+	/**
+	 * Moves and resizes this shape.
+	 *
+	 * @return This shape, for chaining
+	 */
+	public MutableRectangularShape set(final int xCoordinate,
+									   final int yCoordinate,
+									   final int width,
+									   final int height) {
+		setxCoordinate(xCoordinate);
+		setyCoordinate(yCoordinate);
+		this.width = width;
+		this.height = height;
+
+		return this;
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	@Override
+	public MutableRectangularShape copy() {
+		return new MutableRectangularShape(getxCoordinate(), getyCoordinate(), width, height);
+	}
+
+	@Override
+	public String toString() {
+		return super.toString() + " [width=" + width + ", height=" + height + "]";
+	}
+}
@@ -45,6 +45,14 @@ public abstract class PositionedShape implements Shape, Serializable {
 	public abstract int getWidth();
 
 	public abstract int getHeight();
+
+	/**
+	 * Creates a copy of this shape at the same position, so that moving one does not
+	 * move the other.
+	 * 
+	 * @return The copy
+	 */
+	public abstract PositionedShape copy();
 	
 	public boolean overlays(final PositionedShape shape) {
 		return getOverlayedSurface(shape) > 0.0f;
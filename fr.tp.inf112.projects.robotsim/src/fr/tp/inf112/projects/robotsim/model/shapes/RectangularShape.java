@@ -44,6 +44,11 @@ public class RectangularShape extends PositionedShape implements RectangleShape
 		return heigth;
 	}
 
+	@Override
+	public RectangularShape copy() {
+		return new RectangularShape(getxCoordinate(), getyCoordinate(), width, heigth);
+	}
+
 	@Override
 	public String toString() {
 		return super.toString() + " [width=" + width + ", heigth=" + heigth + "]";
@@ -1,11 +1,25 @@
 package fr.tp.inf112.projects.robotsim.server;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import fr.tp.inf112.projects.robotsim.model.Factory;
@@ -14,70 +28,246 @@ import fr.tp.inf112.projects.robotsim.model.FactoryPersistenceManager;
 /**
  * Remote persistence server for the robotic factory simulator.
  * Handles requests to save and load Factory models.
- * 
+ *
  * Protocol:
  * - Receives String: Read factory model with that ID/filename
  * - Receives Factory: Save factory model with its ID as filename
  * - Receives "LIST": Return array of available model filenames
+ *
+ * Connections are handled concurrently, each on a thread of a pool bounded by the
+ * maximum number of connections: beyond it, new connections wait in the backlog of
+ * the server socket until one closes. Clients sending or reading slowly only hold
+ * their own connection, and are disconnected when idle for the client timeout. The
+ * number of requests accessing the storage at the same time is bounded separately,
+ * and saves of a model exclude the other reads and saves of that model.
+ *
+ * Stopping the server stops accepting connections and lets the requests in progress
+ * complete for the shutdown timeout before closing the remaining connections.
  */
 public class FactoryPersistenceServer {
 	private static final Logger LOGGER = Logger.getLogger(FactoryPersistenceServer.class.getName());
 	private static final int DEFAULT_PORT = 8888;
 	private static final String STORAGE_DIR = "server_models";
 	private static final String LIST_COMMAND = "LIST";
-	
+
+	/**
+	 * System properties of the limits of the server started from the command line
+	 */
+	public static final String MAX_CONNECTIONS_PROPERTY = "robotsim.server.maxConnections";
+	public static final String MAX_IN_FLIGHT_PROPERTY = "robotsim.server.maxInFlight";
+	public static final String CLIENT_TIMEOUT_PROPERTY = "robotsim.server.clientTimeoutMillis";
+	public static final String SHUTDOWN_TIMEOUT_PROPERTY = "robotsim.server.shutdownTimeoutMillis";
+
+	public static final int DEFAULT_MAX_CONNECTIONS = 64;
+	public static final int DEFAULT_MAX_IN_FLIGHT = 16;
+	public static final int DEFAULT_CLIENT_TIMEOUT_MILLIS = 30_000;
+	public static final long DEFAULT_SHUTDOWN_TIMEOUT_MILLIS = 10_000;
+
 	private final int port;
+	private final File storageDir;
 	private final FactoryPersistenceManager localPersistenceManager;
-	private boolean running;
-	
+	private volatile boolean running;
+
+	private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+	private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+	private int clientTimeoutMillis = DEFAULT_CLIENT_TIMEOUT_MILLIS;
+	private long shutdownTimeoutMillis = DEFAULT_SHUTDOWN_TIMEOUT_MILLIS;
+
+	private ServerSocket serverSocket;
+	private ExecutorService connectionExecutor;
+	private Semaphore connectionPermits;
+	private Semaphore inFlightPermits;
+
+	/**
+	 * Connections open, closed when the shutdown timeout expires
+	 */
+	private final Set<Socket> openConnections = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Locks of the model files, by path
+	 */
+	private final Map<String, ReadWriteLock> modelLocks = new ConcurrentHashMap<>();
+
 	public FactoryPersistenceServer(int port) {
+		this(port, new File(STORAGE_DIR));
+	}
+
+	public FactoryPersistenceServer(int port, File storageDir) {
 		this.port = port;
+		this.storageDir = storageDir;
 		this.localPersistenceManager = new FactoryPersistenceManager(null);
 		this.running = false;
-		
+
 		// Create storage directory if it doesn't exist
-		File storageDir = new File(STORAGE_DIR);
 		if (!storageDir.exists()) {
 			storageDir.mkdirs();
-			LOGGER.info("Created storage directory: " + STORAGE_DIR);
+			LOGGER.info("Created storage directory: " + storageDir);
+		}
+	}
+
+	/**
+	 * Sets the maximum number of connections handled at the same time.
+	 *
+	 * @param maxConnections The maximum number of open connections
+	 */
+	public void setMaxConnections(int maxConnections) {
+		if (maxConnections < 1) {
+			throw new IllegalArgumentException("At least one connection is required: " + maxConnections);
 		}
+
+		this.maxConnections = maxConnections;
 	}
-	
+
+	/**
+	 * Sets the maximum number of requests accessing the storage at the same time.
+	 *
+	 * @param maxInFlight The maximum number of requests in flight
+	 */
+	public void setMaxInFlight(int maxInFlight) {
+		if (maxInFlight < 1) {
+			throw new IllegalArgumentException("At least one request in flight is required: " + maxInFlight);
+		}
+
+		this.maxInFlight = maxInFlight;
+	}
+
+	/**
+	 * Sets the time a client may stay idle while sending its request or reading the
+	 * response before being disconnected.
+	 *
+	 * @param clientTimeoutMillis The timeout in milliseconds, 0 for none
+	 */
+	public void setClientTimeoutMillis(int clientTimeoutMillis) {
+		this.clientTimeoutMillis = clientTimeoutMillis;
+	}
+
+	/**
+	 * Sets the time the requests in progress may take to complete once the server stops.
+	 *
+	 * @param shutdownTimeoutMillis The timeout in milliseconds
+	 */
+	public void setShutdownTimeoutMillis(long shutdownTimeoutMillis) {
+		this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+	}
+
+	/**
+	 * Binds the server socket, so that clients may connect before {@link #start()} is called.
+	 *
+	 * @throws IOException If the port cannot be bound
+	 */
+	public synchronized void bind() throws IOException {
+		if (serverSocket == null || serverSocket.isClosed()) {
+			serverSocket = new ServerSocket(port);
+		}
+	}
+
+	/**
+	 * Gets the port the server is bound to, useful when created with port 0.
+	 *
+	 * @return The local port, or -1 if not bound
+	 */
+	public synchronized int getLocalPort() {
+		return serverSocket == null ? -1 : serverSocket.getLocalPort();
+	}
+
 	public void start() throws IOException {
-		running = true;
-		
-		try (ServerSocket serverSocket = new ServerSocket(port)) {
-			LOGGER.info("FactoryPersistenceServer started on port " + port);
-			LOGGER.info("Storage directory: " + new File(STORAGE_DIR).getAbsolutePath());
-			
+		bind();
+
+		synchronized (this) {
+			connectionPermits = new Semaphore(maxConnections);
+			inFlightPermits = new Semaphore(maxInFlight);
+			connectionExecutor = Executors.newFixedThreadPool(maxConnections, new ConnectionThreadFactory());
+			running = true;
+		}
+
+		LOGGER.info("FactoryPersistenceServer started on port " + getLocalPort() + " with at most " + maxConnections
+					+ " connections and " + maxInFlight + " requests in flight");
+		LOGGER.info("Storage directory: " + storageDir.getAbsolutePath());
+
+		try {
 			while (running) {
-				LOGGER.info("Waiting for client connection...");
-				
-				try (Socket clientSocket = serverSocket.accept()) {
-					LOGGER.info("Client connected: " + clientSocket.getInetAddress());
-					
-					handleClient(clientSocket);
-					
+				// Connections beyond the limit wait in the backlog of the server socket
+				if (!acquireConnectionPermit()) {
+					continue;
+				}
+
+				final Socket clientSocket;
+				try {
+					clientSocket = serverSocket.accept();
 				} catch (IOException e) {
-					if (running) {
-						LOGGER.severe("Error handling client: " + e.getMessage());
-						e.printStackTrace();
+					connectionPermits.release();
+
+					if (running && !serverSocket.isClosed()) {
+						LOGGER.severe("Error accepting client: " + e.getMessage());
+						continue;
 					}
+					break;
 				}
+
+				LOGGER.fine("Client connected: " + clientSocket.getInetAddress());
+				openConnections.add(clientSocket);
+
+				try {
+					connectionExecutor.execute(() -> serveClient(clientSocket));
+				} catch (RuntimeException e) {
+					// The executor is shut down
+					closeConnection(clientSocket);
+				}
+			}
+		} finally {
+			closeServerSocket();
+		}
+	}
+
+	private boolean acquireConnectionPermit() {
+		try {
+			// Checks regularly whether the server stopped
+			return connectionPermits.tryAcquire(100, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			running = false;
+			return false;
+		}
+	}
+
+	private void serveClient(Socket clientSocket) {
+		try {
+			clientSocket.setSoTimeout(clientTimeoutMillis);
+			handleClient(clientSocket);
+
+		} catch (EOFException e) {
+			LOGGER.fine("Client disconnected: " + clientSocket.getInetAddress());
+		} catch (IOException e) {
+			if (running) {
+				LOGGER.warning("Error handling client " + clientSocket.getInetAddress() + ": " + e.getMessage());
+			}
+		} finally {
+			closeConnection(clientSocket);
+		}
+	}
+
+	private void closeConnection(Socket clientSocket) {
+		if (openConnections.remove(clientSocket)) {
+			try {
+				clientSocket.close();
+			} catch (IOException e) {
+				LOGGER.fine("Error closing client connection: " + e.getMessage());
 			}
+
+			connectionPermits.release();
 		}
 	}
-	
+
 	private void handleClient(Socket clientSocket) throws IOException {
 		try (ObjectInputStream input = new ObjectInputStream(clientSocket.getInputStream());
 		     ObjectOutputStream output = new ObjectOutputStream(clientSocket.getOutputStream())) {
-			
+
 			// Read request from client
 			Object receivedObject = input.readObject();
-			
+
 			if (receivedObject instanceof String) {
 				String request = (String) receivedObject;
-				
+
 				if (LIST_COMMAND.equals(request)) {
 					// List available models
 					handleListRequest(output);
@@ -85,94 +275,208 @@ public class FactoryPersistenceServer {
 					// Read factory model
 					handleReadRequest(request, output);
 				}
-				
+
 			} else if (receivedObject instanceof Factory) {
 				// Save factory model
 				handleSaveRequest((Factory) receivedObject, output);
-				
+
 			} else {
 				LOGGER.warning("Received unknown object type: " + receivedObject.getClass().getName());
 				output.writeObject(new IOException("Unknown request type"));
 				output.flush();
 			}
-			
+
 		} catch (ClassNotFoundException e) {
 			LOGGER.severe("Class not found while deserializing: " + e.getMessage());
 			e.printStackTrace();
 		}
 	}
-	
+
 	private void handleReadRequest(String modelId, ObjectOutputStream output) throws IOException {
-		LOGGER.info("READ request for model: " + modelId);
-		
+		LOGGER.fine("READ request for model: " + modelId);
+
+		Object response;
+
 		try {
-			String fullPath = STORAGE_DIR + File.separator + modelId;
-			Factory factory = (Factory) localPersistenceManager.read(fullPath);
-			
-			output.writeObject(factory);
-			output.flush();
-			
-			LOGGER.info("Successfully sent factory model: " + modelId);
-			
+			String fullPath = new File(storageDir, modelId).getPath();
+
+			response = accessStorage(fullPath, false, () -> localPersistenceManager.read(fullPath));
+
+			LOGGER.fine("Successfully read factory model: " + modelId);
+
 		} catch (Exception e) {
 			LOGGER.severe("Error reading factory model: " + e.getMessage());
-			output.writeObject(e);
-			output.flush();
+			response = e;
 		}
+
+		// Written outside of the storage access, so that slow readers only hold their connection
+		output.writeObject(response);
+		output.flush();
 	}
-	
+
 	private void handleSaveRequest(Factory factory, ObjectOutputStream output) throws IOException {
-		LOGGER.info("SAVE request for factory: " + factory.getId());
-		
+		LOGGER.fine("SAVE request for factory: " + factory.getId());
+
+		Object response;
+
 		try {
 			// The persist method now only takes Canvas parameter
 			// The factory ID already contains the filename
-			localPersistenceManager.persist(factory);
-			
+			accessStorage(factory.getId(), true, () -> {
+				localPersistenceManager.persist(factory);
+				return null;
+			});
+
 			// Send success response
-			output.writeObject("SUCCESS");
-			output.flush();
-			
-			LOGGER.info("Successfully saved factory model: " + factory.getId());
-			
+			response = "SUCCESS";
+
+			LOGGER.fine("Successfully saved factory model: " + factory.getId());
+
 		} catch (Exception e) {
 			LOGGER.severe("Error saving factory model: " + e.getMessage());
-			output.writeObject(e);
-			output.flush();
+			response = e;
 		}
+
+		output.writeObject(response);
+		output.flush();
 	}
-	
+
 	private void handleListRequest(ObjectOutputStream output) throws IOException {
-		LOGGER.info("LIST request received");
-		
+		LOGGER.fine("LIST request received");
+
+		String[] files;
+
 		try {
-			File storageDir = new File(STORAGE_DIR);
-			String[] files = storageDir.list((dir, name) -> name.endsWith(".factory"));
-			
+			files = accessStorage(null, false, () -> storageDir.list((dir, name) -> name.endsWith(".factory")));
+
 			if (files == null) {
 				files = new String[0];
 			}
-			
-			output.writeObject(files);
-			output.flush();
-			
-			LOGGER.info("Sent list of " + files.length + " files");
-			
+
+			LOGGER.fine("Listed " + files.length + " files");
+
 		} catch (Exception e) {
 			LOGGER.severe("Error listing files: " + e.getMessage());
-			output.writeObject(new String[0]);
-			output.flush();
+			files = new String[0];
+		}
+
+		output.writeObject(files);
+		output.flush();
+	}
+
+	/**
+	 * Accesses the storage within the limit of requests in flight, holding the lock of
+	 * the model file if any.
+	 *
+	 * @param modelPath The path of the model file accessed, null for none
+	 * @param write true to write the model file
+	 * @param access The access to the storage
+	 * @return The result of the access
+	 */
+	private <T> T accessStorage(String modelPath, boolean write, StorageAccess<T> access) throws IOException {
+		try {
+			inFlightPermits.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting to access the storage", e);
+		}
+
+		try {
+			if (modelPath == null) {
+				return access.run();
+			}
+
+			final ReadWriteLock modelLock = modelLocks.computeIfAbsent(new File(modelPath).getAbsolutePath(),
+																	   path -> new ReentrantReadWriteLock());
+			final Lock lock = write ? modelLock.writeLock() : modelLock.readLock();
+
+			lock.lock();
+			try {
+				return access.run();
+			} finally {
+				lock.unlock();
+			}
+
+		} finally {
+			inFlightPermits.release();
 		}
 	}
-	
+
+	/**
+	 * Stops accepting connections, waits for the requests in progress for the shutdown
+	 * timeout, then closes the remaining connections.
+	 */
 	public void stop() {
-		running = false;
+		final ExecutorService executor;
+
+		synchronized (this) {
+			running = false;
+			executor = connectionExecutor;
+		}
+
+		// Unblocks the accept loop
+		closeServerSocket();
+
+		if (executor != null) {
+			executor.shutdown();
+
+			try {
+				if (!executor.awaitTermination(shutdownTimeoutMillis, TimeUnit.MILLISECONDS)) {
+					LOGGER.warning("Closing " + openConnections.size() + " connections still open after "
+								   + shutdownTimeoutMillis + " ms");
+
+					for (Socket clientSocket : openConnections) {
+						closeConnection(clientSocket);
+					}
+					executor.shutdownNow();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				executor.shutdownNow();
+			}
+		}
+
 		LOGGER.info("Server stopped");
 	}
-	
+
+	private synchronized void closeServerSocket() {
+		if (serverSocket != null && !serverSocket.isClosed()) {
+			try {
+				serverSocket.close();
+			} catch (IOException e) {
+				LOGGER.log(Level.FINE, "Error closing server socket", e);
+			}
+		}
+	}
+
+	/**
+	 * Access to the storage, run within the in-flight limit
+	 */
+	@FunctionalInterface
+	private interface StorageAccess<T> {
+
+		T run() throws IOException;
+	}
+
+	/**
+	 * Creates daemon connection threads, so that a stuck client never prevents the JVM from exiting
+	 */
+	private static final class ConnectionThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger threadCount = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			final Thread thread = new Thread(runnable, "persistence-connection-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+
+			return thread;
+		}
+	}
+
 	public static void main(String[] args) {
 		int port = DEFAULT_PORT;
-		
+
 		if (args.length > 0) {
 			try {
 				port = Integer.parseInt(args[0]);
@@ -181,15 +485,19 @@ public class FactoryPersistenceServer {
 				System.exit(1);
 			}
 		}
-		
+
 		FactoryPersistenceServer server = new FactoryPersistenceServer(port);
-		
+		server.setMaxConnections(Integer.getInteger(MAX_CONNECTIONS_PROPERTY, DEFAULT_MAX_CONNECTIONS));
+		server.setMaxInFlight(Integer.getInteger(MAX_IN_FLIGHT_PROPERTY, DEFAULT_MAX_IN_FLIGHT));
+		server.setClientTimeoutMillis(Integer.getInteger(CLIENT_TIMEOUT_PROPERTY, DEFAULT_CLIENT_TIMEOUT_MILLIS));
+		server.setShutdownTimeoutMillis(Long.getLong(SHUTDOWN_TIMEOUT_PROPERTY, DEFAULT_SHUTDOWN_TIMEOUT_MILLIS));
+
 		// Add shutdown hook
 		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
 			LOGGER.info("Shutting down server...");
 			server.stop();
 		}));
-		
+
 		try {
 			server.start();
 		} catch (IOException e) {
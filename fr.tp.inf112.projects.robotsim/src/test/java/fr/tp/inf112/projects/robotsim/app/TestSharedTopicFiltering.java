@@ -0,0 +1,54 @@
+package fr.tp.inf112.projects.robotsim.app;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.apache.kafka.clients.producer.internals.BuiltInPartitioner;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Test;
+
+import fr.tp.inf112.projects.robotsim.model.event.SimulationEvent;
+import fr.tp.inf112.projects.robotsim.model.event.StateDeltaEvent;
+
+/**
+ * Test class for the shared simulation topic: viewers must read the partition the
+ * producer writes the events of their factory to, and skip the events of the other
+ * factories without decoding them.
+ */
+public class TestSharedTopicFiltering {
+
+    @Test
+    public void testPartitionMatchesProducerPartitioner() {
+        for (final String factoryId : new String[] {"factory1.factory", "factory2.factory", "Main Factory", "é"}) {
+            final byte[] key = factoryId.getBytes(StandardCharsets.UTF_8);
+
+            assertEquals(BuiltInPartitioner.partitionForKey(key, 12),
+                         SimulationServiceUtils.getSharedTopicPartition(factoryId, 12));
+        }
+    }
+
+    @Test
+    public void testEventsOfOtherFactoriesAreNotDecoded() {
+        final SimulationEventSerializer serializer = new SimulationEventSerializer();
+        final SimulationEventDeserializer deserializer = new SimulationEventDeserializer();
+        deserializer.configure(Map.of(SimulationEventDeserializer.FACTORY_ID_CONFIG, "mine.factory"), false);
+
+        final byte[] mine = serializer.serialize(SimulationServiceUtils.SHARED_TOPIC, delta("mine.factory"));
+        final RecordHeaders mineHeaders = new RecordHeaders();
+        mineHeaders.add(SimulationServiceUtils.FACTORY_ID_HEADER, "mine.factory".getBytes(StandardCharsets.UTF_8));
+
+        final SimulationEvent decoded = deserializer.deserialize(SimulationServiceUtils.SHARED_TOPIC, mineHeaders, mine);
+        assertEquals("mine.factory", decoded.getFactoryId());
+
+        // Garbage payload: it must be skipped from the header alone
+        final RecordHeaders otherHeaders = new RecordHeaders();
+        otherHeaders.add(SimulationServiceUtils.FACTORY_ID_HEADER, "other.factory".getBytes(StandardCharsets.UTF_8));
+        assertNull(deserializer.deserialize(SimulationServiceUtils.SHARED_TOPIC, otherHeaders, new byte[] {42}));
+    }
+
+    private static StateDeltaEvent delta(final String factoryId) {
+        return new StateDeltaEvent(factoryId, 2, 0, 1, false, new int[] {3}, new int[] {4}, new int[] {5}, new byte[] {1});
+    }
+}
@@ -0,0 +1,72 @@
+package fr.tp.inf112.projects.robotsim.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+import fr.tp.inf112.projects.canvas.controller.Observer;
+
+/**
+ * Test class for the coalescing notifier: bursts of change signals must result in
+ * a few notifications delivered on the dispatcher thread, never on the caller.
+ */
+public class TestCoalescingNotifier {
+
+    private static final long FRAME_INTERVAL_MILLIS = 50;
+
+    @Test
+    public void testBurstIsCoalescedOffCallerThread() throws InterruptedException {
+        final CoalescingFactoryModelChangedNotifier notifier =
+            new CoalescingFactoryModelChangedNotifier(new LocalFactoryModelChangedNotifier(), FRAME_INTERVAL_MILLIS);
+        final AtomicInteger notificationCount = new AtomicInteger();
+        final AtomicReference<Thread> notifyingThread = new AtomicReference<>();
+        final CountDownLatch notified = new CountDownLatch(1);
+        final Observer observer = () -> {
+            notifyingThread.set(Thread.currentThread());
+            notificationCount.incrementAndGet();
+            notified.countDown();
+        };
+
+        assertTrue(notifier.addObserver(observer));
+
+        final long start = System.nanoTime();
+        for (int signal = 0; signal < 100_000; signal++) {
+            notifier.notifyObservers();
+        }
+        final long burstMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(notified.await(1, TimeUnit.SECONDS));
+        Thread.sleep(3 * FRAME_INTERVAL_MILLIS);
+
+        assertNotSame(Thread.currentThread(), notifyingThread.get());
+        // At most one notification per started frame, plus the trailing one
+        assertTrue(notificationCount.get() <= burstMillis / FRAME_INTERVAL_MILLIS + 2,
+                   notificationCount.get() + " notifications for a burst of " + burstMillis + " ms");
+
+        assertTrue(notifier.removeObserver(observer));
+        final int countAfterRemoval = notificationCount.get();
+        notifier.notifyObservers();
+        Thread.sleep(2 * FRAME_INTERVAL_MILLIS);
+
+        assertEquals(countAfterRemoval, notificationCount.get());
+    }
+
+    @Test
+    public void testChangeDuringFrameIsNotLost() throws InterruptedException {
+        final CoalescingFactoryModelChangedNotifier notifier =
+            new CoalescingFactoryModelChangedNotifier(new LocalFactoryModelChangedNotifier(), FRAME_INTERVAL_MILLIS);
+        final CountDownLatch notified = new CountDownLatch(2);
+
+        notifier.addObserver(notified::countDown);
+        notifier.notifyObservers();
+        Thread.sleep(FRAME_INTERVAL_MILLIS / 5);
+        notifier.notifyObservers();
+
+        assertTrue(notified.await(1, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,91 @@
+package fr.tp.inf112.projects.robotsim.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import fr.tp.inf112.projects.robotsim.model.shapes.CircularShape;
+import fr.tp.inf112.projects.robotsim.model.shapes.RectangularShape;
+
+/**
+ * Test class for the deep copy of factories: copies have the same layout and state as
+ * the original, and simulating a copy does not change the original.
+ */
+public class TestFactoryCopy {
+
+    private static final int TICKS = 40;
+
+    @Test
+    public void testCopyHasSameLayoutAndNoSharedComponents() {
+        final Factory factory = createFactory();
+        factory.setId("test.factory");
+        final Factory copy = factory.copy();
+
+        assertNotSame(factory, copy);
+        assertEquals(factory.getId(), copy.getId());
+        assertEquals(factory.getModelVersion(), copy.getModelVersion());
+        assertEquals(factory.getComponents().size(), copy.getComponents().size());
+
+        for (int index = 0; index < factory.getComponents().size(); index++) {
+            final Component component = factory.getComponents().get(index);
+            final Component componentCopy = copy.getComponents().get(index);
+
+            assertNotSame(component, componentCopy);
+            assertNotSame(component.getPositionedShape(), componentCopy.getPositionedShape());
+            assertSame(copy, componentCopy.getFactory());
+            assertEquals(component.getClass(), componentCopy.getClass());
+            assertEquals(component.toString(), componentCopy.toString());
+        }
+
+        final Room room = (Room) factory.getComponents().get(0);
+        final Room roomCopy = (Room) copy.getComponents().get(0);
+        assertSame(copy.getComponents().get(1), roomCopy.getAreas().get(0));
+        assertSame(copy.getComponents().get(3), roomCopy.getDoors().get(0));
+        assertEquals(room.getAreas().size(), roomCopy.getAreas().size());
+    }
+
+    @Test
+    public void testSteppingCopyLeavesOriginalUnchanged() {
+        final Factory factory = createFactory();
+        final Factory copy = factory.copy();
+        final Factory otherFactory = createFactory();
+
+        for (int tick = 0; tick < TICKS; tick++) {
+            copy.step();
+            otherFactory.step();
+        }
+
+        final Robot robot = (Robot) factory.getComponents().get(5);
+        assertEquals(5, robot.getxCoordinate());
+
+        // The copy moves like a factory of the same layout, towards its own targets
+        for (int index = 0; index < copy.getComponents().size(); index++) {
+            assertEquals(otherFactory.getComponents().get(index).getxCoordinate(),
+                         copy.getComponents().get(index).getxCoordinate());
+        }
+        assertEquals(5 + TICKS, copy.getComponents().get(5).getxCoordinate());
+    }
+
+    private static Factory createFactory() {
+        final Factory factory = new Factory(200, 200, "Copied Factory");
+        final Room room = new Room(factory, new RectangularShape(20, 60, 100, 100), "Room");
+        final Area area = new Area(room, new RectangularShape(30, 70, 40, 40), "Area");
+        new Machine(area, new RectangularShape(35, 75, 10, 10), "Machine");
+        new Door(room, Room.WALL.TOP, 10, 20, true, "Door");
+        final ChargingStation target = new ChargingStation(factory, new RectangularShape(180, 10, 10, 10), "Target");
+
+        // Straight path along the top of the factory
+        final List<Position> path = new ArrayList<>();
+        for (int xCoordinate = 6; xCoordinate < 6 + 2 * TICKS; xCoordinate++) {
+            path.add(new Position(xCoordinate, 10));
+        }
+
+        final Robot robot = new Robot(factory, (source, destination) -> path, new CircularShape(5, 10, 2), new Battery(10), "Robot");
+        robot.addTargetComponent(target);
+
+        return factory;
+    }
+}
@@ -0,0 +1,60 @@
+package fr.tp.inf112.projects.robotsim.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import fr.tp.inf112.projects.robotsim.model.shapes.CircularShape;
+import fr.tp.inf112.projects.robotsim.model.shapes.RectangularShape;
+
+/**
+ * Test class for the stepping of paused simulations: each step makes every component
+ * behave once on the calling thread, so that stepping is deterministic.
+ */
+public class TestFactoryStep {
+
+    private static final int TICKS = 40;
+
+    @Test
+    public void testPausedFactoryIsSteppedDeterministically() {
+        final Factory factory = createFactory();
+        final Factory otherFactory = createFactory();
+        int moves = 0;
+
+        for (int tick = 0; tick < TICKS; tick++) {
+            moves += factory.step();
+            otherFactory.step();
+        }
+
+        assertFalse(factory.isSimulationStarted());
+        assertEquals(TICKS, moves);
+
+        for (int index = 0; index < factory.getComponents().size(); index++) {
+            final Component component = factory.getComponents().get(index);
+            final Component otherComponent = otherFactory.getComponents().get(index);
+            assertEquals(component.getxCoordinate(), otherComponent.getxCoordinate());
+            assertEquals(component.getyCoordinate(), otherComponent.getyCoordinate());
+        }
+
+        assertEquals(5 + TICKS, factory.getComponents().get(1).getxCoordinate());
+    }
+
+    private static Factory createFactory() {
+        final Factory factory = new Factory(200, 200, "Stepped Factory");
+        final ChargingStation target = new ChargingStation(factory, new RectangularShape(180, 10, 10, 10), "Target");
+
+        // Straight path along the top of the factory
+        final List<Position> path = new ArrayList<>();
+        for (int xCoordinate = 6; xCoordinate < 6 + 2 * TICKS; xCoordinate++) {
+            path.add(new Position(xCoordinate, 10));
+        }
+
+        final Robot robot = new Robot(factory, (source, destination) -> path, new CircularShape(5, 10, 2), new Battery(10), "Robot");
+        robot.addTargetComponent(target);
+
+        return factory;
+    }
+}
@@ -0,0 +1,103 @@
+package fr.tp.inf112.projects.robotsim.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fr.tp.inf112.projects.robotsim.app.SimulationServiceUtils;
+import fr.tp.inf112.projects.robotsim.model.motion.Motion;
+import fr.tp.inf112.projects.robotsim.model.shapes.CircularShape;
+import fr.tp.inf112.projects.robotsim.model.shapes.RectangularShape;
+
+/**
+ * Test class for the struct-of-arrays fleet state of a factory. Checks that the
+ * collision queries answered from the arrays agree with the component shapes and
+ * that the arrays follow the robots as they move, are added or are removed.
+ */
+public class TestFleetState {
+
+    private Factory factory;
+    private Robot robot1;
+    private Robot robot2;
+    private Machine machine;
+
+    @BeforeEach
+    public void setUp() {
+        factory = new Factory(200, 200, "Fleet Test Factory");
+        final Room room = new Room(factory, new RectangularShape(100, 100, 50, 50), "Room");
+        final Area area = new Area(room, new RectangularShape(110, 110, 30, 30), "Area");
+        machine = new Machine(area, new RectangularShape(120, 120, 10, 10), "Machine");
+        robot1 = new Robot(factory, null, new CircularShape(10, 10, 2), new Battery(10), "Robot 1");
+        robot2 = new Robot(factory, null, new CircularShape(30, 10, 2), new Battery(10), "Robot 2");
+    }
+
+    @Test
+    public void testOnlyMobileComponentsHaveSlots() {
+        final FleetState fleetState = factory.getFleetState();
+
+        assertEquals(2, fleetState.size());
+        assertSame(robot1, fleetState.getComponent(robot1.getFleetIndex()));
+        assertSame(robot2, fleetState.getComponent(robot2.getFleetIndex()));
+        assertEquals(-1, machine.getFleetIndex());
+        assertEquals(5, robot1.getSpeed());
+    }
+
+    @Test
+    public void testMobileQueriesMatchShapes() {
+        final RectangularShape onRobot2 = new RectangularShape(31, 11, 2, 2);
+        final RectangularShape touchingRobot2 = new RectangularShape(34, 10, 2, 2);
+
+        assertTrue(factory.hasMobileComponentAt(onRobot2, robot1));
+        assertFalse(factory.hasMobileComponentAt(onRobot2, robot2));
+        assertSame(robot2, factory.getMobileComponentAt(onRobot2, robot1));
+        assertEquals(robot2.overlays(touchingRobot2), factory.hasMobileComponentAt(touchingRobot2, robot1));
+        assertNull(factory.getMobileComponentAt(new Position(60, 60), null));
+    }
+
+    @Test
+    public void testMoveUpdatesSlot() {
+        final Position target = new Position(28, 10);
+
+        assertEquals(0, factory.moveComponent(new Motion(robot1.getPosition(), target), robot1));
+
+        final Position freeTarget = new Position(15, 10);
+
+        assertEquals(5, factory.moveComponent(new Motion(robot1.getPosition(), freeTarget), robot1));
+
+        final FleetState fleetState = factory.getFleetState();
+
+        assertEquals(15, fleetState.getxCoordinate(robot1.getFleetIndex()));
+        assertEquals(10, fleetState.getyCoordinate(robot1.getFleetIndex()));
+        assertSame(robot1, factory.getMobileComponentAt(new Position(16, 11), null));
+        assertNull(factory.getMobileComponentAt(new Position(10, 10), robot2));
+    }
+
+    @Test
+    public void testRemoveKeepsSlotsDense() {
+        final Robot robot3 = new Robot(factory, null, new CircularShape(50, 10, 2), new Battery(10), "Robot 3");
+
+        assertTrue(factory.removeComponent(robot1));
+
+        final FleetState fleetState = factory.getFleetState();
+
+        assertEquals(2, fleetState.size());
+        assertEquals(-1, robot1.getFleetIndex());
+        assertSame(robot3, fleetState.getComponent(robot3.getFleetIndex()));
+        assertSame(robot3, factory.getMobileComponentAt(new Position(51, 11), null));
+        assertNull(factory.getMobileComponentAt(new Position(11, 11), null));
+    }
+
+    @Test
+    public void testDeserializedFactoryRebuildsFleet() throws JsonProcessingException {
+        final ObjectMapper objectMapper = SimulationServiceUtils.createObjectMapper();
+        final Factory roundTrip = objectMapper.readValue(objectMapper.writeValueAsString(factory), Factory.class);
+
+        assertEquals(2, roundTrip.getFleetState().size());
+        assertNotNull(roundTrip.getMobileComponentAt(new Position(31, 11), null));
+        assertEquals(0, roundTrip.getFleetState().countInState(FleetState.STATE_BLOCKED));
+    }
+}
@@ -0,0 +1,90 @@
+package fr.tp.inf112.projects.robotsim.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import fr.tp.inf112.projects.robotsim.model.shapes.BoxOverlapKernel;
+import fr.tp.inf112.projects.robotsim.model.shapes.CircularShape;
+import fr.tp.inf112.projects.robotsim.model.shapes.PositionedShape;
+import fr.tp.inf112.projects.robotsim.model.shapes.RectangularShape;
+
+/**
+ * Test class for the batch overlap kernel and the obstacle broad phase. Both must give
+ * exactly the same answers as the per shape overlay test they replace.
+ */
+public class TestObstacleIndex {
+
+    @Test
+    public void testKernelMatchesShapeOverlay() {
+        final Random random = new Random(42);
+        final int count = 200;
+        final int[] xs = new int[count];
+        final int[] ys = new int[count];
+        final int[] ws = new int[count];
+        final int[] hs = new int[count];
+        final PositionedShape[] shapes = new PositionedShape[count];
+
+        for (int index = 0; index < count; index++) {
+            xs[index] = random.nextInt(50);
+            ys[index] = random.nextInt(50);
+            ws[index] = random.nextInt(6);
+            hs[index] = random.nextInt(6);
+            shapes[index] = new RectangularShape(xs[index], ys[index], ws[index], hs[index]);
+        }
+
+        for (int query = 0; query < 500; query++) {
+            final PositionedShape queryShape = new RectangularShape(random.nextInt(50), random.nextInt(50), random.nextInt(6), random.nextInt(6));
+
+            for (int blockStart = 0; blockStart < count; blockStart += BoxOverlapKernel.BLOCK_SIZE) {
+                final long mask = BoxOverlapKernel.overlayMask(xs, ys, ws, hs, blockStart, count,
+                                                               queryShape.getxCoordinate(), queryShape.getyCoordinate(),
+                                                               queryShape.getWidth(), queryShape.getHeight());
+
+                for (int index = blockStart; index < Math.min(count, blockStart + BoxOverlapKernel.BLOCK_SIZE); index++) {
+                    assertEquals(shapes[index].overlays(queryShape), (mask & (1L << (index - blockStart))) != 0,
+                                 shapes[index] + " / " + queryShape);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testObstacleIndexMatchesComponentScan() {
+        final Factory factory = new Factory(200, 200, "Obstacle Test Factory");
+        final Room room1 = new Room(factory, new RectangularShape(20, 20, 75, 75), "Room 1");
+        final Door door1 = new Door(room1, Room.WALL.BOTTOM, 10, 20, true, "Door 1");
+        final Area area1 = new Area(room1, new RectangularShape(35, 35, 50, 50), "Area 1");
+        new Machine(area1, new RectangularShape(50, 50, 15, 15), "Machine 1");
+        final Room room2 = new Room(factory, new RectangularShape(120, 22, 75, 75), "Room 2");
+        new Door(room2, Room.WALL.LEFT, 10, 20, false, "Door 2");
+        new ChargingStation(factory, new RectangularShape(150, 145, 15, 15), "Charging Station");
+        new Robot(factory, null, new CircularShape(5, 5, 2), new Battery(10), "Robot");
+
+        assertObstacleScanMatches(factory);
+
+        door1.close();
+        factory.removeComponent(room2);
+
+        assertObstacleScanMatches(factory);
+    }
+
+    private void assertObstacleScanMatches(final Factory factory) {
+        for (int xCoordinate = 0; xCoordinate < 200; xCoordinate += 3) {
+            for (int yCoordinate = 0; yCoordinate < 200; yCoordinate += 3) {
+                final PositionedShape shape = new RectangularShape(xCoordinate, yCoordinate, 4, 4);
+                boolean expected = false;
+
+                for (final Component component : factory.getComponents()) {
+                    if (component.overlays(shape) && !component.canBeOverlayed(shape)) {
+                        expected = true;
+                    }
+                }
+
+                assertEquals(expected, factory.hasObstacleAt(shape), shape.toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package fr.tp.inf112.projects.robotsim.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import fr.tp.inf112.projects.robotsim.model.shapes.CircularShape;
+import fr.tp.inf112.projects.robotsim.model.shapes.RectangularShape;
+
+/**
+ * Allocation-rate regression test for the simulation loop of the robots. Once a robot
+ * has computed its path, each call to {@link Robot#behave()} (motion, collision tests
+ * against robots and obstacles, move commit and notification) must not allocate.
+ */
+public class TestRobotTickAllocation {
+
+    private static final int PATH_LENGTH = 150;
+    private static final int WARMUP_TICKS = 20;
+    private static final int MEASURED_TICKS = 100;
+
+    private com.sun.management.ThreadMXBean threadBean;
+    private Factory factory;
+    private Robot robot;
+
+    @BeforeEach
+    public void setUp() {
+        final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assumptions.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        threadBean = (com.sun.management.ThreadMXBean) bean;
+        Assumptions.assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        factory = new Factory(200, 200, "Allocation Test Factory");
+        final Room room = new Room(factory, new RectangularShape(20, 60, 60, 60), "Room");
+        new Door(room, Room.WALL.BOTTOM, 10, 20, true, "Door");
+        final Area area = new Area(room, new RectangularShape(30, 70, 30, 30), "Area");
+        new Machine(area, new RectangularShape(40, 80, 10, 10), "Machine");
+        final ChargingStation target = new ChargingStation(factory, new RectangularShape(180, 10, 10, 10), "Target");
+
+        // Straight path along the top of the factory, away from every obstacle
+        final List<Position> path = new ArrayList<>();
+        for (int xCoordinate = 6; xCoordinate < 6 + PATH_LENGTH; xCoordinate++) {
+            path.add(new Position(xCoordinate, 10));
+        }
+
+        robot = new Robot(factory, (source, destination) -> path, new CircularShape(5, 10, 2), new Battery(10), "Robot");
+        robot.addTargetComponent(target);
+        new Robot(factory, null, new CircularShape(5, 150, 2), new Battery(10), "Parked Robot");
+        factory.addObserver(() -> { });
+    }
+
+    @Test
+    public void testMovingTickDoesNotAllocate() {
+        for (int tick = 0; tick < WARMUP_TICKS; tick++) {
+            assertTrue(robot.behave());
+        }
+
+        final long threadId = Thread.currentThread().getId();
+        // Calibrate the cost of reading the counter itself
+        final long calibrationStart = threadBean.getThreadAllocatedBytes(threadId);
+        final long calibrationEnd = threadBean.getThreadAllocatedBytes(threadId);
+        final long counterCost = calibrationEnd - calibrationStart;
+
+        final long start = threadBean.getThreadAllocatedBytes(threadId);
+        boolean moved = true;
+        for (int tick = 0; tick < MEASURED_TICKS; tick++) {
+            moved &= robot.behave();
+        }
+        final long allocated = threadBean.getThreadAllocatedBytes(threadId) - start - counterCost;
+
+        assertTrue(moved);
+        assertEquals(6 + WARMUP_TICKS + MEASURED_TICKS - 1, robot.getxCoordinate());
+        assertTrue(allocated <= 0, "Robot ticks allocated " + allocated + " bytes");
+    }
+}
@@ -0,0 +1,235 @@
+package fr.tp.inf112.projects.robotsim.model.event;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fr.tp.inf112.projects.robotsim.app.SimulationServiceUtils;
+import fr.tp.inf112.projects.robotsim.model.Area;
+import fr.tp.inf112.projects.robotsim.model.Battery;
+import fr.tp.inf112.projects.robotsim.model.Component;
+import fr.tp.inf112.projects.robotsim.model.Door;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.Machine;
+import fr.tp.inf112.projects.robotsim.model.Robot;
+import fr.tp.inf112.projects.robotsim.model.Room;
+import fr.tp.inf112.projects.robotsim.model.shapes.CircularShape;
+import fr.tp.inf112.projects.robotsim.model.shapes.RectangularShape;
+
+/**
+ * Test class for the layout snapshot and state delta events: deltas must only carry
+ * the components that changed, and a replica fed with the serialized events must
+ * end up with the state of the simulated factory, also after missing events.
+ */
+public class TestFactoryStateTracker {
+
+    private static final int KEYFRAME_INTERVAL = 4;
+
+    private final ObjectMapper objectMapper = SimulationServiceUtils.createObjectMapper();
+
+    private Factory factory;
+    private Robot robot;
+    private Door door;
+    private FactoryStateTracker tracker;
+    private FactoryStateReplica replica;
+
+    @BeforeEach
+    public void setUp() {
+        factory = new Factory(400, 400, "Event Test Factory");
+
+        for (int roomIndex = 0; roomIndex < 8; roomIndex++) {
+            final int xCoordinate = 10 + (roomIndex % 4) * 95;
+            final int yCoordinate = roomIndex < 4 ? 10 : 300;
+            final Room room = new Room(factory, new RectangularShape(xCoordinate, yCoordinate, 80, 80), "Room " + roomIndex);
+            final Door roomDoor = new Door(room, Room.WALL.BOTTOM, 10, 20, true, "Door " + roomIndex);
+            final Area area = new Area(room, new RectangularShape(xCoordinate + 10, yCoordinate + 10, 40, 40), "Area " + roomIndex);
+            new Machine(area, new RectangularShape(xCoordinate + 20, yCoordinate + 20, 10, 10), "Machine " + roomIndex);
+
+            if (door == null) {
+                door = roomDoor;
+            }
+        }
+
+        robot = new Robot(factory, null, new CircularShape(50, 200, 2), new Battery(10), "Robot 1");
+        new Robot(factory, null, new CircularShape(150, 200, 2), new Battery(10), "Robot 2");
+
+        tracker = new FactoryStateTracker(factory, "events.factory", KEYFRAME_INTERVAL);
+        replica = new FactoryStateReplica();
+    }
+
+    private String publish(final SimulationEvent event) throws JsonProcessingException {
+        final String json = objectMapper.writeValueAsString(event);
+        replica.apply(objectMapper.readValue(json, SimulationEvent.class));
+
+        return json;
+    }
+
+    private void assertReplicaInSync() {
+        assertEquals(factory.getComponents().size(), replica.getFactory().getComponents().size());
+
+        for (int index = 0; index < factory.getComponents().size(); index++) {
+            final Component expected = factory.getComponents().get(index);
+            final Component actual = replica.getFactory().getComponents().get(index);
+
+            assertEquals(expected.getName(), actual.getName());
+            assertEquals(expected.getxCoordinate(), actual.getxCoordinate(), expected.getName());
+            assertEquals(expected.getyCoordinate(), actual.getyCoordinate(), expected.getName());
+            assertEquals(expected.getStateFlags(), actual.getStateFlags(), expected.getName());
+        }
+    }
+
+    @Test
+    public void testDeltasOnlyCarryChangedComponents() throws JsonProcessingException {
+        final SimulationEvent layout = tracker.nextEvent(1);
+        assertInstanceOf(LayoutSnapshotEvent.class, layout);
+        final String layoutJson = publish(layout);
+        assertReplicaInSync();
+
+        assertNull(tracker.nextEvent(2));
+
+        factory.moveComponent(robot, 51, 201);
+        door.close();
+
+        final StateDeltaEvent delta = assertInstanceOf(StateDeltaEvent.class, tracker.nextEvent(3));
+        assertEquals(layout.getSequence(), delta.getLayoutSequence());
+        assertEquals(layout.getSequence() + 1, delta.getSequence());
+        assertEquals(2, delta.getComponentCount());
+
+        final String deltaJson = publish(delta);
+        assertReplicaInSync();
+        assertEquals(0, replica.getFactory().getComponents().get(factory.getComponents().indexOf(door)).getStateFlags());
+        assertTrue(deltaJson.length() * 20 < layoutJson.length(),
+                   "Delta of " + deltaJson.length() + " chars for a layout of " + layoutJson.length() + " chars");
+    }
+
+    @Test
+    public void testReplicaResynchronizesOnKeyframe() throws JsonProcessingException {
+        publish(tracker.nextEvent(1));
+
+        door.close();
+        // Lost event
+        assertNotNull(tracker.nextEvent(2));
+
+        int xCoordinate = robot.getxCoordinate();
+        boolean keyframe = false;
+
+        while (!keyframe) {
+            factory.moveComponent(robot, ++xCoordinate, robot.getyCoordinate());
+            final StateDeltaEvent delta = (StateDeltaEvent) tracker.nextEvent(xCoordinate);
+            publish(delta);
+            keyframe = delta.isKeyframe();
+
+            if (!keyframe) {
+                assertNotEquals(robot.getxCoordinate(), replica.getFactory().getComponents().get(factory.getComponents().indexOf(robot)).getxCoordinate());
+            }
+        }
+
+        assertReplicaInSync();
+    }
+
+    @Test
+    public void testLayoutChangeSendsSnapshot() throws JsonProcessingException {
+        publish(tracker.nextEvent(1));
+
+        new Robot(factory, null, new CircularShape(250, 200, 2), new Battery(10), "Robot 3");
+        assertInstanceOf(LayoutSnapshotEvent.class, tracker.nextEvent(2));
+
+        tracker.requestLayoutSnapshot();
+        publish(assertInstanceOf(LayoutSnapshotEvent.class, tracker.nextEvent(3)));
+        assertReplicaInSync();
+    }
+
+    @Test
+    public void testCatchUpSnapshotBootstrapsLateReplica() {
+        final SimulationEventCodec codec = new SimulationEventCodec(objectMapper);
+        assertNull(tracker.currentSnapshot(0));
+
+        final SimulationEvent layout = tracker.nextEvent(1);
+        door.close();
+        factory.moveComponent(robot, 60, 210);
+        tracker.nextEvent(2);
+
+        final LayoutSnapshotEvent snapshot = tracker.currentSnapshot(2);
+        assertEquals(layout.getSequence() + 1, snapshot.getSequence());
+        assertEquals(layout.getSequence(), snapshot.getLayoutSequence());
+
+        // A viewer joining now starts from the snapshot then tails the live deltas
+        final LayoutSnapshotEvent decoded = (LayoutSnapshotEvent) codec.decode(codec.encode(snapshot));
+        assertEquals(snapshot.getLayoutSequence(), decoded.getLayoutSequence());
+        assertTrue(replica.apply(decoded));
+        assertReplicaInSync();
+
+        factory.moveComponent(robot, 61, 211);
+        assertTrue(replica.apply(codec.decode(codec.encode(tracker.nextEvent(3)))));
+        assertReplicaInSync();
+    }
+
+    @Test
+    public void testLaggingReplicaSkipsSupersededEvents() {
+        final List<SimulationEvent> batch = new ArrayList<>();
+        batch.add(tracker.nextEvent(1));
+
+        int xCoordinate = robot.getxCoordinate();
+
+        // Two keyframe intervals of robot moves, ending with a delta after the last keyframe
+        for (int tick = 0; tick <= 2 * KEYFRAME_INTERVAL; tick++) {
+            factory.moveComponent(robot, ++xCoordinate, robot.getyCoordinate());
+
+            if (tick == KEYFRAME_INTERVAL) {
+                door.close();
+            }
+
+            batch.add(tracker.nextEvent(2 + tick));
+        }
+
+        final StateDeltaEvent lastKeyframe = (StateDeltaEvent) batch.get(batch.size() - 2);
+        assertTrue(lastKeyframe.isKeyframe());
+
+        assertTrue(replica.applyLatest(batch));
+        assertReplicaInSync();
+        // Only the layout, the last keyframe and the delta following it are applied
+        assertEquals(batch.size() - 3, replica.getSkippedEvents());
+
+        // Behind a new layout snapshot, the previous events of the batch are all skipped
+        new Robot(factory, null, new CircularShape(250, 200, 2), new Battery(10), "Robot 3");
+        factory.moveComponent(robot, ++xCoordinate, robot.getyCoordinate());
+        final List<SimulationEvent> layoutBatch = new ArrayList<>();
+        layoutBatch.add(tracker.nextEvent(100));
+        factory.moveComponent(robot, ++xCoordinate, robot.getyCoordinate());
+        layoutBatch.add(0, new StateDeltaEvent("events.factory", lastKeyframe.getSequence() + 2, 99,
+                                               lastKeyframe.getLayoutSequence(), false,
+                                               new int[0], new int[0], new int[0], new byte[0]));
+        layoutBatch.add(tracker.nextEvent(101));
+
+        assertTrue(replica.applyLatest(layoutBatch));
+        assertReplicaInSync();
+        assertEquals(batch.size() - 2, replica.getSkippedEvents());
+    }
+
+    @Test
+    public void testSnapshotOfSameLayoutAppliesInPlace() throws JsonProcessingException {
+        publish(tracker.nextEvent(1));
+        final Factory replicaFactory = replica.getFactory();
+
+        factory.moveComponent(robot, 70, 220);
+        door.close();
+        tracker.requestLayoutSnapshot();
+        publish(assertInstanceOf(LayoutSnapshotEvent.class, tracker.nextEvent(2)));
+
+        assertSame(replicaFactory, replica.getFactory());
+        assertReplicaInSync();
+
+        new Robot(factory, null, new CircularShape(250, 200, 2), new Battery(10), "Robot 3");
+        publish(assertInstanceOf(LayoutSnapshotEvent.class, tracker.nextEvent(3)));
+
+        assertNotSame(replicaFactory, replica.getFactory());
+        assertReplicaInSync();
+    }
+}
@@ -0,0 +1,76 @@
+package fr.tp.inf112.projects.robotsim.model.event;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import fr.tp.inf112.projects.robotsim.model.Battery;
+import fr.tp.inf112.projects.robotsim.model.Door;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.Robot;
+import fr.tp.inf112.projects.robotsim.model.Room;
+import fr.tp.inf112.projects.robotsim.model.shapes.CircularShape;
+import fr.tp.inf112.projects.robotsim.model.shapes.RectangularShape;
+
+/**
+ * Test class for the model versions served to polling clients: the version must change
+ * with the model, and a delta since a served version must bring a copy of the factory
+ * at that version up to date.
+ */
+public class TestFactoryVersionHistory {
+
+    private static final int DOOR_INDEX = 1;
+    private static final int OTHER_DOOR_INDEX = 2;
+    private static final int ROBOT_INDEX = 3;
+
+    @Test
+    public void testDeltaSinceServedVersion() {
+        final Factory factory = createFactory();
+        final Factory clientFactory = createFactory();
+        final Robot robot = (Robot) factory.getComponents().get(ROBOT_INDEX);
+        final Door door = (Door) factory.getComponents().get(DOOR_INDEX);
+        final Door otherDoor = (Door) factory.getComponents().get(OTHER_DOOR_INDEX);
+        final FactoryVersionHistory history = new FactoryVersionHistory(factory, 2);
+
+        final long servedVersion = history.capture();
+        assertEquals(factory.getModelVersion(), servedVersion);
+
+        door.close();
+        assertTrue(factory.getModelVersion() > servedVersion);
+
+        final StateDeltaEvent delta = history.deltaSince("factory", servedVersion, 0);
+        assertNotNull(delta);
+        assertEquals(factory.getModelVersion(), delta.getSequence());
+        assertEquals(1, delta.getComponentCount());
+
+        delta.applyTo(clientFactory);
+        assertEquals(0, clientFactory.getComponents().get(DOOR_INDEX).getStateFlags());
+
+        // The delta version is itself a base for the next delta
+        factory.moveComponent(robot, 60, 210);
+        otherDoor.close();
+        final StateDeltaEvent nextDelta = history.deltaSince("factory", delta.getSequence(), 0);
+        assertEquals(2, nextDelta.getComponentCount());
+
+        nextDelta.applyTo(clientFactory);
+        assertEquals(60, clientFactory.getComponents().get(ROBOT_INDEX).getxCoordinate());
+        assertEquals(210, clientFactory.getComponents().get(ROBOT_INDEX).getyCoordinate());
+        assertEquals(0, clientFactory.getComponents().get(OTHER_DOOR_INDEX).getStateFlags());
+
+        // Evicted versions and layout changes require the whole factory
+        assertNull(history.deltaSince("factory", servedVersion, 0));
+        final long layoutVersion = history.capture();
+        new Robot(factory, null, new CircularShape(250, 200, 2), new Battery(10), "Robot 2");
+        assertNull(history.deltaSince("factory", layoutVersion, 0));
+    }
+
+    private static Factory createFactory() {
+        final Factory factory = new Factory(400, 400, "Versioned Factory");
+        final Room room = new Room(factory, new RectangularShape(10, 10, 80, 80), "Room");
+        new Door(room, Room.WALL.BOTTOM, 10, 20, true, "Door 1");
+        new Door(room, Room.WALL.TOP, 10, 20, true, "Door 2");
+        new Robot(factory, null, new CircularShape(50, 200, 2), new Battery(10), "Robot 1");
+
+        return factory;
+    }
+}
@@ -0,0 +1,142 @@
+package fr.tp.inf112.projects.robotsim.model.event;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fr.tp.inf112.projects.robotsim.app.SimulationServiceUtils;
+import fr.tp.inf112.projects.robotsim.model.Battery;
+import fr.tp.inf112.projects.robotsim.model.Component;
+import fr.tp.inf112.projects.robotsim.model.Door;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.Robot;
+import fr.tp.inf112.projects.robotsim.model.Room;
+import fr.tp.inf112.projects.robotsim.model.shapes.CircularShape;
+import fr.tp.inf112.projects.robotsim.model.shapes.RectangularShape;
+
+/**
+ * Test class for the binary frame codec of the simulation events: frames must decode
+ * to the encoded events and be smaller than their JSON form.
+ */
+public class TestSimulationEventCodec {
+
+    private final ObjectMapper objectMapper = SimulationServiceUtils.createObjectMapper();
+
+    private final SimulationEventCodec codec = new SimulationEventCodec(objectMapper);
+
+    @Test
+    public void testStateDeltaRoundTrip() throws JsonProcessingException {
+        final int count = 200;
+        final int[] componentIndexes = new int[count];
+        final int[] xCoordinates = new int[count];
+        final int[] yCoordinates = new int[count];
+        final byte[] stateFlags = new byte[count];
+
+        for (int entry = 0; entry < count; entry++) {
+            componentIndexes[entry] = 3 * entry + 1;
+            xCoordinates[entry] = 500 + entry % 17 - 8;
+            yCoordinates[entry] = 300 - entry;
+            stateFlags[entry] = (byte) (entry % 4);
+        }
+
+        xCoordinates[7] = Integer.MIN_VALUE;
+        yCoordinates[8] = Integer.MAX_VALUE;
+
+        final StateDeltaEvent delta = new StateDeltaEvent("codec.factory", 1_000_042, 1_700_000_000_123L, 1_000_000,
+                                                          true, componentIndexes, xCoordinates, yCoordinates, stateFlags);
+        final byte[] frame = codec.encode(delta);
+        final StateDeltaEvent decoded = assertInstanceOf(StateDeltaEvent.class, codec.decode(frame));
+
+        assertEquals("codec.factory", decoded.getFactoryId());
+        assertEquals(1_000_042, decoded.getSequence());
+        assertEquals(1_700_000_000_123L, decoded.getTimestamp());
+        assertEquals(1_000_000, decoded.getLayoutSequence());
+        assertTrue(decoded.isKeyframe());
+        assertArrayEquals(componentIndexes, decoded.getComponentIndexes());
+        assertArrayEquals(xCoordinates, decoded.getxCoordinates());
+        assertArrayEquals(yCoordinates, decoded.getyCoordinates());
+        assertArrayEquals(stateFlags, decoded.getStateFlags());
+
+        final int jsonLength = objectMapper.writeValueAsBytes(delta).length;
+        assertTrue(frame.length * 2 < jsonLength, frame.length + " bytes frame for " + jsonLength + " bytes of JSON");
+    }
+
+    @Test
+    public void testLayoutSnapshotRoundTrip() {
+        final Factory factory = new Factory(200, 200, "Codec Test Factory");
+        final Room room = new Room(factory, new RectangularShape(20, 20, 60, 60), "Room");
+        final Door door = new Door(room, Room.WALL.BOTTOM, 10, 20, false, "Door");
+        new Robot(factory, null, new CircularShape(120, 120, 2), new Battery(10), "Robot");
+        door.open();
+
+        final FactoryStateTracker tracker = new FactoryStateTracker(factory, "codec.factory", 10);
+        final FactoryStateReplica replica = new FactoryStateReplica();
+        assertTrue(replica.apply(codec.decode(codec.encode(tracker.nextEvent(1)))));
+
+        door.close();
+        factory.moveComponent(factory.getComponents().get(factory.getComponents().size() - 1), 121, 119);
+        final byte[] deltaFrame = codec.encode(tracker.nextEvent(2));
+        assertTrue(replica.apply(codec.decode(deltaFrame)));
+        assertTrue(deltaFrame.length < 40, deltaFrame.length + " bytes delta frame");
+
+        for (int index = 0; index < factory.getComponents().size(); index++) {
+            final Component expected = factory.getComponents().get(index);
+            final Component actual = replica.getFactory().getComponents().get(index);
+
+            assertEquals(expected.getName(), actual.getName());
+            assertEquals(expected.getxCoordinate(), actual.getxCoordinate());
+            assertEquals(expected.getyCoordinate(), actual.getyCoordinate());
+            assertEquals(expected.getStateFlags(), actual.getStateFlags());
+        }
+    }
+
+    @Test
+    public void testMalformedFramesAreRejected() {
+        final StateDeltaEvent delta = new StateDeltaEvent("codec.factory", 5, 10, 1, false,
+                                                          new int[] {1, 2}, new int[] {3, 4}, new int[] {5, 6}, new byte[] {0, 1});
+        final byte[] frame = codec.encode(delta);
+
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(Arrays.copyOf(frame, frame.length - 1)));
+
+        final byte[] otherVersion = frame.clone();
+        otherVersion[0] = SimulationEventCodec.FORMAT_VERSION + 1;
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(otherVersion));
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(new byte[0]));
+    }
+
+    @Test
+    public void testLifecycleEventRoundTrip() {
+        final SimulationLifecycleEvent stopped = new SimulationLifecycleEvent("codec.factory", 42, 1_700_000_000_123L,
+                                                                              SimulationLifecycleEvent.Status.STOPPED);
+        final byte[] frame = codec.encode(stopped);
+        final SimulationLifecycleEvent decoded = assertInstanceOf(SimulationLifecycleEvent.class, codec.decode(frame));
+
+        assertEquals("codec.factory", decoded.getFactoryId());
+        assertEquals(42, decoded.getSequence());
+        assertEquals(1_700_000_000_123L, decoded.getTimestamp());
+        assertEquals(SimulationLifecycleEvent.Status.STOPPED, decoded.getStatus());
+        assertFalse(decoded.isRunning());
+
+        // Lifecycle events do not take part in the sequence of the state events
+        final FactoryStateReplica replica = new FactoryStateReplica();
+        final long initialSequence = replica.getLastSequence();
+        assertFalse(replica.apply(decoded));
+        assertEquals(initialSequence, replica.getLastSequence());
+    }
+
+    @Test
+    public void testPausedLifecycleEventRoundTrip() {
+        final SimulationLifecycleEvent paused = new SimulationLifecycleEvent("codec.factory", 0, 1_700_000_000_123L,
+                                                                             SimulationLifecycleEvent.Status.PAUSED);
+        final SimulationLifecycleEvent decoded =
+            assertInstanceOf(SimulationLifecycleEvent.class, codec.decode(codec.encode(paused)));
+
+        assertEquals(SimulationLifecycleEvent.Status.PAUSED, decoded.getStatus());
+        assertFalse(decoded.isRunning());
+    }
+}
@@ -0,0 +1,54 @@
+package fr.tp.inf112.projects.robotsim.model.event;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import fr.tp.inf112.projects.robotsim.model.Battery;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.Robot;
+import fr.tp.inf112.projects.robotsim.model.shapes.CircularShape;
+
+/**
+ * Test class for the viewer side interpolation: positions must move linearly from the
+ * displayed ones to those of the last frame over the interval between two frames.
+ */
+public class TestStateInterpolator {
+
+    @Test
+    public void testPositionsAreInterpolatedBetweenFrames() {
+        final Factory factory = new Factory(400, 400, "Interpolated Factory");
+        final Robot robot = new Robot(factory, null, new CircularShape(50, 200, 2), new Battery(10), "Robot 1");
+        final Robot otherRobot = new Robot(factory, null, new CircularShape(150, 200, 2), new Battery(10), "Robot 2");
+        final int robotIndex = factory.getComponents().indexOf(robot);
+        final int otherRobotIndex = factory.getComponents().indexOf(otherRobot);
+        final StateInterpolator interpolator = new StateInterpolator();
+
+        // First frame of the layout, shown as received
+        interpolator.beforeFrame(null);
+        interpolator.afterFrame(factory, 0, 1000);
+        assertFalse(interpolator.interpolate(1000));
+
+        interpolator.beforeFrame(factory);
+        factory.applyComponentState(robotIndex, 60, 200, 0);
+        interpolator.afterFrame(factory, 100, 1000);
+        assertEquals(50, robot.getxCoordinate());
+
+        assertTrue(interpolator.interpolate(1050));
+        assertEquals(55, robot.getxCoordinate());
+
+        // Next frame received mid-transition: starts from the displayed position
+        interpolator.beforeFrame(factory);
+        factory.applyComponentState(otherRobotIndex, 160, 200, 0);
+        interpolator.afterFrame(factory, 200, 1050);
+        assertEquals(55, robot.getxCoordinate());
+        assertEquals(150, otherRobot.getxCoordinate());
+
+        assertTrue(interpolator.interpolate(1100));
+        assertTrue(interpolator.interpolate(1150));
+        assertEquals(60, robot.getxCoordinate());
+        assertEquals(160, otherRobot.getxCoordinate());
+        assertFalse(interpolator.isTransitioning());
+        assertFalse(interpolator.interpolate(1200));
+    }
+}
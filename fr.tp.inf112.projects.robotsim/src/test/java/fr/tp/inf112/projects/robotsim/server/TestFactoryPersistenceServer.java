@@ -0,0 +1,115 @@
+package fr.tp.inf112.projects.robotsim.server;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.RemoteFactoryPersistenceManager;
+
+/**
+ * Test class for the persistence server: a client that connects and never sends its
+ * request must not block the other clients, and stopping the server must not wait
+ * for it longer than the shutdown timeout.
+ */
+public class TestFactoryPersistenceServer {
+
+    private static final int CLIENT_TIMEOUT_MILLIS = 500;
+
+    @TempDir
+    File storageDir;
+
+    private FactoryPersistenceServer server;
+
+    private Thread serverThread;
+
+    @AfterEach
+    public void stopServer() throws InterruptedException {
+        server.stop();
+        serverThread.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    @Test
+    public void testSlowClientDoesNotBlockOthers() throws Exception {
+        final RemoteFactoryPersistenceManager client = startServer(8);
+
+        try (Socket slowClient = connectSlowClient()) {
+            final Factory factory = new Factory(100, 100, "Test");
+            factory.setId(new File(storageDir, "test.factory").getPath());
+
+            final long start = System.nanoTime();
+            client.persist(factory);
+            final Factory readFactory = (Factory) client.read("test.factory");
+            final String[] models = client.listModels();
+            final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            assertEquals("Test", readFactory.getName());
+            assertArrayEquals(new String[] { "test.factory" }, models);
+            assertTrue(elapsedMillis < CLIENT_TIMEOUT_MILLIS, elapsedMillis + " ms with a slow client connected");
+        }
+    }
+
+    @Test
+    public void testConnectionLimitAndShutdown() throws Exception {
+        final RemoteFactoryPersistenceManager client = startServer(1);
+
+        try (Socket slowClient = connectSlowClient()) {
+            // Waits in the backlog until the slow client times out
+            final long start = System.nanoTime();
+            assertEquals(0, client.listModels().length);
+            final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            assertTrue(elapsedMillis >= CLIENT_TIMEOUT_MILLIS / 2, elapsedMillis + " ms beyond the connection limit");
+        }
+
+        try (Socket slowClient = connectSlowClient()) {
+            final long start = System.nanoTime();
+            server.stop();
+            serverThread.join(TimeUnit.SECONDS.toMillis(5));
+            final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            assertFalse(serverThread.isAlive());
+            assertTrue(elapsedMillis < CLIENT_TIMEOUT_MILLIS, elapsedMillis + " ms to stop with a slow client connected");
+        }
+    }
+
+    private RemoteFactoryPersistenceManager startServer(final int maxConnections) throws IOException {
+        server = new FactoryPersistenceServer(0, storageDir);
+        server.setMaxConnections(maxConnections);
+        server.setClientTimeoutMillis(CLIENT_TIMEOUT_MILLIS);
+        server.setShutdownTimeoutMillis(CLIENT_TIMEOUT_MILLIS / 5);
+        server.bind();
+
+        serverThread = new Thread(() -> {
+            try {
+                server.start();
+            } catch (IOException e) {
+                fail(e);
+            }
+        }, "persistence-server");
+        serverThread.start();
+
+        return new RemoteFactoryPersistenceManager(null, "localhost", server.getLocalPort());
+    }
+
+    /**
+     * Connects a client that sends the stream header and then nothing
+     */
+    private Socket connectSlowClient() throws IOException, InterruptedException {
+        final Socket socket = new Socket("localhost", server.getLocalPort());
+        new ObjectOutputStream(socket.getOutputStream()).flush();
+
+        // Lets the server accept it first
+        Thread.sleep(100);
+
+        return socket;
+    }
+}
@@ -3,9 +3,12 @@ package com.example.demo.config;
 import java.util.ArrayList;
 import java.util.LinkedHashSet;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.web.client.RestTemplate;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -24,18 +27,33 @@ public class ApplicationConfig {
     
     /**
      * Creates a RestTemplate bean for making HTTP requests to external services.
+     * Connections and reads time out, so that an unresponsive persistence server
+     * cannot hold the threads calling it indefinitely. Responses are read with the
+     * object mapper of the service, whose type handling the factory components need.
      * 
+     * @param timeoutMillis The connect and read timeout in milliseconds
      * @return RestTemplate instance
      */
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public RestTemplate restTemplate(@Value("${simulation.persistence.server.timeout:5000}") int timeoutMillis) {
+        final SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(timeoutMillis);
+        requestFactory.setReadTimeout(timeoutMillis);
+        
+        final RestTemplate restTemplate = new RestTemplate(requestFactory);
+        restTemplate.getMessageConverters().add(0, new MappingJackson2HttpMessageConverter(objectMapper()));
+        
+        return restTemplate;
     }
     
     /**
      * Configures Jackson ObjectMapper with polymorphic type handling for factory model classes.
      * This is required for proper serialization/deserialization of Component subclasses.
      * 
+     * Type information is written and required for non-final classes only, so the
+     * request and response bodies of the service that are not part of the model, such
+     * as experiments and shard members, are final classes exchanged as plain JSON.
+     * 
      * @return Configured ObjectMapper instance
      */
     @Bean
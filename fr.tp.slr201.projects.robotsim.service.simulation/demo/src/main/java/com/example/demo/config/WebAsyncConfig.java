@@ -0,0 +1,62 @@
+package com.example.demo.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Configuration of the asynchronous request processing of the REST controllers.
+ *
+ * Requests doing blocking work (reading factory files, calling the persistence
+ * server, waiting for admission, serializing whole factories) hand it over to a
+ * dedicated pool of I/O threads and release their servlet container thread, so that
+ * slow requests cannot exhaust the container pool and starve cheap ones such as the
+ * polling of unchanged factories. The pool and its queue are bounded: requests beyond
+ * them are rejected rather than piling up.
+ */
+@Configuration
+public class WebAsyncConfig implements WebMvcConfigurer {
+
+    public static final String IO_EXECUTOR = "simulationIoExecutor";
+
+    /**
+     * Number of threads doing the blocking work of the requests
+     */
+    @Value("${simulation.web.io-threads:64}")
+    private int ioThreads;
+
+    /**
+     * Number of requests waiting for an I/O thread before being rejected
+     */
+    @Value("${simulation.web.io-queue-size:256}")
+    private int ioQueueSize;
+
+    /**
+     * Creates the pool of threads doing the blocking work of the requests.
+     *
+     * @return The I/O executor
+     */
+    @Bean(name = IO_EXECUTOR)
+    public ThreadPoolTaskExecutor simulationIoExecutor() {
+        final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(ioThreads);
+        executor.setMaxPoolSize(ioThreads);
+        executor.setQueueCapacity(ioQueueSize);
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.setThreadNamePrefix("simulation-io-");
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+
+        return executor;
+    }
+
+    /**
+     * Writes the streamed response bodies, such as serialized factories, on the I/O threads.
+     */
+    @Override
+    public void configureAsyncSupport(final AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(simulationIoExecutor());
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.demo.controller;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.demo.config.WebAsyncConfig;
+import com.example.demo.hosting.AdmissionRejectedException;
+import com.example.demo.service.SimulationService;
+import com.example.demo.sharding.ShardMembers;
+import com.example.demo.sharding.ShardingService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fr.tp.inf112.projects.robotsim.model.Factory;
+
+/**
+ * REST Controller of the shard ring the instances of the service form when simulations
+ * are sharded: membership heartbeats and departures, and the hand over of simulations
+ * between members.
+ */
+@RestController
+@RequestMapping("/api/simulation/shard")
+public class ShardController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardController.class);
+
+    /**
+     * Service sharding the simulations across instances
+     */
+    @Autowired
+    private ShardingService shardingService;
+
+    /**
+     * Service for managing simulations
+     */
+    @Autowired
+    private SimulationService simulationService;
+
+    /**
+     * Executor of the blocking work of the requests
+     */
+    @Autowired
+    @Qualifier(WebAsyncConfig.IO_EXECUTOR)
+    private Executor ioExecutor;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * Gets the status of the sharding: this instance, the members of the ring and the
+     * owners of the local simulations.
+     *
+     * @return ResponseEntity with the status by name
+     */
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> getShardStatus() {
+        logger.debug("Shard status requested");
+        return ResponseEntity.ok(shardingService.getStatus());
+    }
+
+    /**
+     * Receives the heartbeat of another member, which also joins the ring with it.
+     *
+     * @param heartbeat The sender and the members it knows
+     * @return ResponseEntity with the members known by this instance, or 404 if
+     * simulations are not sharded
+     */
+    @PostMapping("/heartbeat")
+    public ResponseEntity<ShardMembers> heartbeat(@RequestBody ShardMembers heartbeat) {
+        logger.debug("Received heartbeat from {}", heartbeat.getSender());
+
+        ShardMembers members = shardingService.onHeartbeat(heartbeat);
+
+        if (members == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+
+        return ResponseEntity.ok(members);
+    }
+
+    /**
+     * Receives the departure of a member leaving the ring.
+     *
+     * @param departure The leaving member
+     * @return ResponseEntity with success status
+     */
+    @PostMapping("/leave")
+    public ResponseEntity<Boolean> leave(@RequestBody ShardMembers departure) {
+        logger.info("Received departure of {}", departure.getSender());
+
+        shardingService.onLeave(departure);
+        return ResponseEntity.ok(true);
+    }
+
+    /**
+     * Starts a simulation handed over by another member, from the current state of its
+     * factory model.
+     *
+     * @param factoryId The ID of the simulated factory model
+     * @param paused true if the simulation was paused
+     * @param factoryJson The factory model in JSON
+     * @return ResponseEntity with success/failure status
+     */
+    @PostMapping("/adopt/{factoryId}")
+    public CompletableFuture<ResponseEntity<Boolean>> adoptSimulation(@PathVariable String factoryId,
+                                                                      @RequestParam(defaultValue = "false") boolean paused,
+                                                                      @RequestBody byte[] factoryJson) {
+        logger.info("Received hand over of simulation for factory ID: {}", factoryId);
+
+        if (simulationService.getSimulatedFactory(factoryId) != null) {
+            logger.warn("Simulation for factory ID {} is already running", factoryId);
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.CONFLICT).body(false));
+        }
+
+        try {
+            // Waiting for admission blocks
+            return CompletableFuture.supplyAsync(() -> doAdoptSimulation(factoryId, paused, factoryJson), ioExecutor);
+
+        } catch (RejectedExecutionException e) {
+            logger.warn("I/O executor saturated, rejected hand over of factory ID {}", factoryId);
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(false));
+        }
+    }
+
+    private ResponseEntity<Boolean> doAdoptSimulation(String factoryId, boolean paused, byte[] factoryJson) {
+        try {
+            Factory factoryModel = objectMapper.readValue(factoryJson, Factory.class);
+
+            if (simulationService.startSimulation(factoryId, factoryModel, paused)) {
+                logger.info("Successfully adopted simulation for factory ID: {}", factoryId);
+                return ResponseEntity.ok(true);
+            }
+
+            // Already running unless the start failed
+            HttpStatus status = simulationService.getSimulatedFactory(factoryId) != null
+                ? HttpStatus.CONFLICT
+                : HttpStatus.INTERNAL_SERVER_ERROR;
+            return ResponseEntity.status(status).body(false);
+
+        } catch (AdmissionRejectedException e) {
+            logger.warn("Service at capacity, rejected hand over of factory ID {}: {}", factoryId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(e.getRetryAfterSeconds()))
+                .body(false);
+
+        } catch (Exception e) {
+            logger.error("Error adopting simulation for factory ID {}: {}", factoryId, e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(false);
+        }
+    }
+}
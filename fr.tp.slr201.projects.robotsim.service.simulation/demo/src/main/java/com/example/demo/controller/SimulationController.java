@@ -1,23 +1,57 @@
 package com.example.demo.controller;
 
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.example.demo.config.WebAsyncConfig;
+import com.example.demo.experiment.ExperimentRequest;
+import com.example.demo.experiment.ExperimentService;
+import com.example.demo.hosting.AdmissionController;
+import com.example.demo.hosting.AdmissionRejectedException;
+import com.example.demo.metrics.SimulationMetrics;
 import com.example.demo.service.SimulationService;
+import com.example.demo.service.StepResult;
+import com.example.demo.stream.FrameStreamService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.event.FactoryVersionHistory;
+import fr.tp.inf112.projects.robotsim.model.event.StateDeltaEvent;
 
 /**
  * REST Controller for managing robot factory simulation services.
  * Provides endpoints to start, retrieve, and stop factory model simulations.
+ * 
+ * Endpoints doing blocking work run it on the I/O executor and return without
+ * holding a servlet container thread: starts and experiments, which load factories
+ * from files or the persistence server, and the serialization of whole factories.
  */
 @RestController
 @RequestMapping("/api/simulation")
@@ -32,33 +66,105 @@ public class SimulationController {
     private SimulationService simulationService;
     
     /**
-     * Starts simulating a factory model identified by its ID.
+     * Service streaming the frames of the simulations
+     */
+    @Autowired
+    private FrameStreamService frameStreamService;
+    
+    /**
+     * Admission control of the simulation starts
+     */
+    @Autowired
+    private AdmissionController admissionController;
+    
+    /**
+     * Service running parameter sweep experiments
+     */
+    @Autowired
+    private ExperimentService experimentService;
+    
+    /**
+     * Executor of the blocking work of the requests
+     */
+    @Autowired
+    @Qualifier(WebAsyncConfig.IO_EXECUTOR)
+    private Executor ioExecutor;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    /**
+     * Meters of the simulations
+     */
+    @Autowired
+    private SimulationMetrics simulationMetrics;
+    
+    /**
+     * Delay after which clients should retry requests rejected when the I/O executor is saturated
+     */
+    @Value("${simulation.admission.retry-after-seconds:5}")
+    private long retryAfterSeconds;
+    
+    /**
+     * Maximum number of ticks of one step request
+     */
+    @Value("${simulation.step.max-ticks:100000}")
+    private int maxStepTicks;
+    
+    /**
+     * Starts simulating a factory model identified by its ID. When the service is at
+     * capacity the start waits for running simulations to stop, and is answered with
+     * 503 and a Retry-After delay if none stops in time.
      * 
      * @param factoryId The ID of the factory model to simulate
+     * @param paused true to load the simulation without running it, to advance it
+     * with the step endpoint
      * @return ResponseEntity with success/failure status
      */
     @PostMapping("/start/{factoryId}")
-    public ResponseEntity<Boolean> startSimulation(@PathVariable String factoryId) {
+    public CompletableFuture<ResponseEntity<Boolean>> startSimulation(@PathVariable String factoryId,
+                                                                      @RequestParam(defaultValue = "false") boolean paused) {
         logger.info("Received request to start simulation for factory ID: {}", factoryId);
         
+        // Check if simulation is already running or loaded paused
+        if (simulationService.getSimulatedFactory(factoryId) != null) {
+            logger.warn("Simulation for factory ID {} is already running", factoryId);
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.CONFLICT).body(false));
+        }
+        
         try {
-            // Check if simulation is already running
-            if (simulationService.isSimulationRunning(factoryId)) {
-                logger.warn("Simulation for factory ID {} is already running", factoryId);
-                return ResponseEntity.status(HttpStatus.CONFLICT).body(false);
-            }
+            // Loading the factory and waiting for admission block
+            return CompletableFuture.supplyAsync(() -> doStartSimulation(factoryId, paused), ioExecutor);
             
+        } catch (RejectedExecutionException e) {
+            logger.warn("I/O executor saturated, rejected simulation for factory ID {}", factoryId);
+            return CompletableFuture.completedFuture(serviceUnavailable(false));
+        }
+    }
+    
+    private ResponseEntity<Boolean> doStartSimulation(String factoryId, boolean paused) {
+        try {
             // Start the simulation using the service
-            boolean success = simulationService.startSimulation(factoryId);
+            boolean success = simulationService.startSimulation(factoryId, paused);
             
             if (success) {
                 logger.info("Successfully started simulation for factory ID: {}", factoryId);
                 return ResponseEntity.ok(true);
+            } else if (simulationService.getSimulatedFactory(factoryId) != null) {
+                // Started concurrently by another request
+                logger.warn("Simulation for factory ID {} is already running", factoryId);
+                return ResponseEntity.status(HttpStatus.CONFLICT).body(false);
             } else {
                 logger.error("Failed to start simulation for factory ID: {}", factoryId);
                 return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(false);
             }
             
+        } catch (AdmissionRejectedException e) {
+            logger.warn("Service at capacity, rejected simulation for factory ID {}: {}", factoryId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(e.getRetryAfterSeconds()))
+                .body(false);
+            
         } catch (Exception e) {
             logger.error("Error starting simulation for factory ID {}: {}", factoryId, e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(false);
@@ -69,23 +175,59 @@ public class SimulationController {
      * Retrieves a factory model currently being simulated by its ID.
      * Used by the factory viewer to obtain the simulated model state.
      * 
+     * The model version of the factory is sent as entity tag, so that a client
+     * polling with If-None-Match gets 304 while the model did not change. A client
+     * giving the version it holds with since= gets 226 (IM Used) with a state delta
+     * from that version when the service still knows it and the layout did not
+     * change, and the whole factory otherwise, serialized on the I/O executor.
+     * 
      * @param factoryId The ID of the factory model to retrieve
-     * @return ResponseEntity with the factory model or error status
+     * @param since The model version held by the client, null for the whole factory
+     * @param webRequest The request, for its conditional headers
+     * @return ResponseEntity with the factory model, a state delta or error status
      */
     @GetMapping("/factory/{factoryId}")
-    public ResponseEntity<Factory> getSimulatedFactory(@PathVariable String factoryId) {
+    public ResponseEntity<StreamingResponseBody> getSimulatedFactory(@PathVariable String factoryId,
+                                                                     @RequestParam(required = false) Long since,
+                                                                     WebRequest webRequest) {
         logger.info("Received request to retrieve simulated factory with ID: {}", factoryId);
         
         try {
-            Factory factoryModel = simulationService.getSimulatedFactory(factoryId);
+            FactoryVersionHistory versionHistory = simulationService.getVersionHistory(factoryId);
             
-            if (factoryModel == null) {
+            if (versionHistory == null) {
                 logger.warn("No running simulation found for factory ID: {}", factoryId);
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
             }
             
+            Factory factoryModel = versionHistory.getFactory();
+            long modelVersion = factoryModel.getModelVersion();
+            
+            if (webRequest.checkNotModified(toEntityTag(modelVersion)) || (since != null && since == modelVersion)) {
+                logger.debug("Factory model for ID {} not modified since version {}", factoryId, modelVersion);
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(toEntityTag(modelVersion)).build();
+            }
+            
+            if (since != null) {
+                StateDeltaEvent delta = versionHistory.deltaSince(factoryId, since, System.currentTimeMillis());
+                
+                if (delta != null) {
+                    logger.debug("Sending delta of {} components for factory ID {} since version {}",
+                                delta.getComponentCount(), factoryId, since);
+                    return ResponseEntity.status(HttpStatus.IM_USED).eTag(toEntityTag(delta.getSequence()))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(toJson(delta));
+                }
+            }
+            
+            // Captured before serialization, so the body is at least as recent as its tag
+            long capturedVersion = versionHistory.capture();
+            
             logger.debug("Successfully retrieved factory model for ID: {}", factoryId);
-            return ResponseEntity.ok(factoryModel);
+            return ResponseEntity.ok()
+                .eTag(toEntityTag(capturedVersion))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(toJson(factoryModel));
             
         } catch (Exception e) {
             logger.error("Error retrieving factory model for ID {}: {}", factoryId, e.getMessage(), e);
@@ -93,6 +235,170 @@ public class SimulationController {
         }
     }
     
+    /**
+     * Serializes a response body on the I/O executor, with the type information the
+     * object mapper adds to values of undeclared type, and records its time and size.
+     * The body is streamed to the client, so the time includes writing it.
+     */
+    private StreamingResponseBody toJson(Object value) {
+        return outputStream -> {
+            long start = System.nanoTime();
+            CountingOutputStream countingStream = new CountingOutputStream(outputStream);
+            
+            // The container closes its own output stream
+            objectMapper.writerFor(Object.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .writeValue(countingStream, value);
+            simulationMetrics.recordSerialization(value.getClass().getSimpleName(),
+                                                  System.nanoTime() - start, countingStream.getCount());
+        };
+    }
+    
+    private <T> ResponseEntity<T> serviceUnavailable(T body) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds))
+            .body(body);
+    }
+    
+    private static String toEntityTag(long modelVersion) {
+        return "\"" + modelVersion + "\"";
+    }
+    
+    /**
+     * Streams the frames of a simulated factory as Server-Sent Events: a layout
+     * snapshot then state deltas in JSON, conflated to at most the requested frame
+     * rate. The stream ends with a lifecycle event when the simulation stops.
+     * 
+     * @param factoryId The ID of the simulated factory model
+     * @param maxFps The maximum number of frames per second, capped by the service
+     * @return ResponseEntity with the event stream or error status
+     */
+    @GetMapping(path = "/stream/{factoryId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamSimulation(@PathVariable String factoryId,
+                                                       @RequestParam(required = false) Integer maxFps) {
+        logger.info("Received request to stream simulation of factory ID: {}", factoryId);
+        
+        Factory factoryModel = simulationService.getSimulatedFactory(factoryId);
+        
+        if (factoryModel == null) {
+            logger.warn("No running simulation found for factory ID: {}", factoryId);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+        
+        return ResponseEntity.ok(frameStreamService.open(factoryId, factoryModel,
+                                                         !simulationService.isSimulationRunning(factoryId), maxFps));
+    }
+    
+    /**
+     * Advances a paused simulation a number of ticks as fast as possible and returns
+     * the summary of the steps: final positions of the mobile components, number of
+     * moves and blocked steps, simulated and elapsed times.
+     * 
+     * @param factoryId The ID of the simulated factory model
+     * @param ticks The number of ticks to advance
+     * @return ResponseEntity with the step summary or error status
+     */
+    @PostMapping("/{factoryId}/step")
+    public ResponseEntity<StepResult> stepSimulation(@PathVariable String factoryId,
+                                                     @RequestParam(defaultValue = "1") int ticks) {
+        logger.debug("Received request to step simulation of factory ID {} by {} ticks", factoryId, ticks);
+        
+        if (ticks < 1 || ticks > maxStepTicks) {
+            logger.warn("Invalid number of ticks {} for factory ID {}", ticks, factoryId);
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        
+        try {
+            StepResult result = simulationService.stepSimulation(factoryId, ticks);
+            
+            if (result == null) {
+                logger.warn("No simulation found for factory ID: {}", factoryId);
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+            }
+            
+            return ResponseEntity.ok(result);
+            
+        } catch (IllegalStateException e) {
+            logger.warn("Cannot step simulation for factory ID {}: {}", factoryId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+            
+        } catch (Exception e) {
+            logger.error("Error stepping simulation for factory ID {}: {}", factoryId, e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+    
+    /**
+     * Runs an experiment: every variant of a parameter grid over a base factory layout
+     * is simulated headless in parallel, and the key performance indicators of the
+     * variants are streamed back as Server-Sent Events, a "result" event per variant
+     * then a "summary" event.
+     * 
+     * @param request The base factory ID and parameter grid of the experiment
+     * @return ResponseEntity with the event stream or error status
+     */
+    @PostMapping(path = "/experiments",
+                 consumes = MediaType.APPLICATION_JSON_VALUE,
+                 produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public CompletableFuture<ResponseEntity<SseEmitter>> runExperiment(@RequestBody ExperimentRequest request) {
+        logger.info("Received request to run experiment over factory ID: {}", request.getFactoryId());
+        
+        try {
+            // Loading the base factory blocks
+            return CompletableFuture.supplyAsync(() -> doRunExperiment(request), ioExecutor);
+            
+        } catch (RejectedExecutionException e) {
+            logger.warn("I/O executor saturated, rejected experiment over factory ID {}", request.getFactoryId());
+            return CompletableFuture.completedFuture(serviceUnavailable(null));
+        }
+    }
+    
+    private ResponseEntity<SseEmitter> doRunExperiment(ExperimentRequest request) {
+        try {
+            SseEmitter emitter = experimentService.run(request);
+            
+            if (emitter == null) {
+                logger.warn("No factory found for experiment over factory ID: {}", request.getFactoryId());
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+            }
+            
+            return ResponseEntity.ok(emitter);
+            
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid experiment over factory ID {}: {}", request.getFactoryId(), e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+            
+        } catch (Exception e) {
+            logger.error("Error running experiment over factory ID {}: {}", request.getFactoryId(), e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+    
+    /**
+     * Requests a layout snapshot of a simulated factory to be published on its
+     * simulation topic. Used by viewers that joined after the simulation started.
+     * 
+     * @param factoryId The ID of the simulated factory model
+     * @return ResponseEntity with success/failure status
+     */
+    @PostMapping("/snapshot/{factoryId}")
+    public ResponseEntity<Boolean> requestLayoutSnapshot(@PathVariable String factoryId) {
+        logger.info("Received request for a layout snapshot of factory ID: {}", factoryId);
+        
+        try {
+            if (simulationService.requestLayoutSnapshot(factoryId)) {
+                return ResponseEntity.ok(true);
+            }
+            
+            logger.warn("No running simulation found for factory ID: {}", factoryId);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(false);
+            
+        } catch (Exception e) {
+            logger.error("Error requesting layout snapshot for factory ID {}: {}", factoryId, e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(false);
+        }
+    }
+    
     /**
      * Stops the simulation of a robotic factory model identified by its ID.
      * 
@@ -140,6 +446,18 @@ public class SimulationController {
         }
     }
     
+    /**
+     * Gets the admission statistics of the simulation starts: load and capacity,
+     * queue depth and wait times.
+     * 
+     * @return ResponseEntity with the statistics by name
+     */
+    @GetMapping("/admission")
+    public ResponseEntity<Map<String, Object>> getAdmissionStatistics() {
+        logger.debug("Admission statistics requested");
+        return ResponseEntity.ok(admissionController.getStatistics());
+    }
+    
     /**
      * Health check endpoint to verify the service is running.
      * 
@@ -150,4 +468,37 @@ public class SimulationController {
         logger.debug("Health check requested");
         return ResponseEntity.ok("Simulation service is running");
     }
-}
\ No newline at end of file
+    
+    /**
+     * Stream counting the bytes written to the response, without closing it
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        
+        private long count;
+        
+        private CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+        
+        @Override
+        public void write(int value) throws IOException {
+            out.write(value);
+            count++;
+        }
+        
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            out.write(bytes, offset, length);
+            count += length;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+        
+        private long getCount() {
+            return count;
+        }
+    }
+}
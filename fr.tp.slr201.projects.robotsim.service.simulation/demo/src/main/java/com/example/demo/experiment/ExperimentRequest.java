@@ -0,0 +1,92 @@
+package com.example.demo.experiment;
+
+/**
+ * Experiment over a base factory layout: the grid of the parameters of its variants.
+ * Every combination of the parameter values is simulated, so the number of variants
+ * is the product of the number of values of each parameter. Parameters without values
+ * keep the base layout unchanged.
+ */
+public final class ExperimentRequest {
+
+    public static final String DOORS_OPEN = "open";
+
+    public static final String DOORS_CLOSED = "closed";
+
+    public static final String ORIGINAL = "original";
+
+    public static final String TARGETS_REVERSED = "reversed";
+
+    private String factoryId;
+
+    private int maxTicks;
+
+    private int[] robotCounts;
+
+    private String[] doorStates;
+
+    private String[] targetOrders;
+
+    public String getFactoryId() {
+        return factoryId;
+    }
+
+    public void setFactoryId(final String factoryId) {
+        this.factoryId = factoryId;
+    }
+
+    /**
+     * Gets the number of ticks after which a variant whose robots did not visit all
+     * their targets is stopped.
+     *
+     * @return The maximum number of ticks of a variant, 0 for the service maximum
+     */
+    public int getMaxTicks() {
+        return maxTicks;
+    }
+
+    public void setMaxTicks(final int maxTicks) {
+        this.maxTicks = maxTicks;
+    }
+
+    /**
+     * Gets the numbers of robots of the variants. A variant with N robots keeps the
+     * first N robots of the layout and removes the others.
+     *
+     * @return The robot counts, or null for the robots of the layout
+     */
+    public int[] getRobotCounts() {
+        return robotCounts;
+    }
+
+    public void setRobotCounts(final int[] robotCounts) {
+        this.robotCounts = robotCounts;
+    }
+
+    /**
+     * Gets the states of the doors of the variants: {@value #DOORS_OPEN},
+     * {@value #DOORS_CLOSED} or {@value #ORIGINAL}.
+     *
+     * @return The door states, or null for the doors of the layout
+     */
+    public String[] getDoorStates() {
+        return doorStates;
+    }
+
+    public void setDoorStates(final String[] doorStates) {
+        this.doorStates = doorStates;
+    }
+
+    /**
+     * Gets the orders in which the robots of the variants visit their targets:
+     * {@value #ORIGINAL} or {@value #TARGETS_REVERSED}.
+     *
+     * @return The target orders, or null for the order of the layout
+     */
+    public String[] getTargetOrders() {
+        return targetOrders;
+    }
+
+    public void setTargetOrders(final String[] targetOrders) {
+        this.targetOrders = targetOrders;
+    }
+}
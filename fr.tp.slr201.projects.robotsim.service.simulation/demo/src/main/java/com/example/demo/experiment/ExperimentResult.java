@@ -0,0 +1,115 @@
+package com.example.demo.experiment;
+
+/**
+ * Key performance indicators of one variant of an experiment.
+ */
+public final class ExperimentResult {
+
+    private final int variant;
+
+    private final int robotCount;
+
+    private final String doorState;
+
+    private final String targetOrder;
+
+    private final boolean completed;
+
+    private final int ticks;
+
+    private final long blockedTicks;
+
+    private final long moves;
+
+    private final long pathFindingMicros;
+
+    private final long elapsedMillis;
+
+    public ExperimentResult(final int variant,
+                            final int robotCount,
+                            final String doorState,
+                            final String targetOrder,
+                            final boolean completed,
+                            final int ticks,
+                            final long blockedTicks,
+                            final long moves,
+                            final long pathFindingMicros,
+                            final long elapsedMillis) {
+        this.variant = variant;
+        this.robotCount = robotCount;
+        this.doorState = doorState;
+        this.targetOrder = targetOrder;
+        this.completed = completed;
+        this.ticks = ticks;
+        this.blockedTicks = blockedTicks;
+        this.moves = moves;
+        this.pathFindingMicros = pathFindingMicros;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * Gets the index of the variant in the parameter grid of the experiment.
+     *
+     * @return The variant index
+     */
+    public int getVariant() {
+        return variant;
+    }
+
+    public int getRobotCount() {
+        return robotCount;
+    }
+
+    public String getDoorState() {
+        return doorState;
+    }
+
+    public String getTargetOrder() {
+        return targetOrder;
+    }
+
+    /**
+     * Tells whether every robot visited all its targets within the maximum number of ticks.
+     *
+     * @return true if the variant completed
+     */
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    /**
+     * Gets the number of ticks simulated: the ticks to completion if the variant
+     * completed, the maximum number of ticks otherwise.
+     *
+     * @return The number of ticks
+     */
+    public int getTicks() {
+        return ticks;
+    }
+
+    /**
+     * Gets the number of ticks after which a robot was blocked, summed over the robots.
+     *
+     * @return The number of blocked ticks
+     */
+    public long getBlockedTicks() {
+        return blockedTicks;
+    }
+
+    public long getMoves() {
+        return moves;
+    }
+
+    /**
+     * Gets the time spent computing the paths of the robots, summed over the robots.
+     *
+     * @return The path finding time in microseconds
+     */
+    public long getPathFindingMicros() {
+        return pathFindingMicros;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+}
@@ -0,0 +1,417 @@
+package com.example.demo.experiment;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.example.demo.service.SimulationService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fr.tp.inf112.projects.robotsim.model.Component;
+import fr.tp.inf112.projects.robotsim.model.Door;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.Robot;
+
+/**
+ * Service running parameter sweep experiments: every variant of a parameter grid over
+ * a base factory layout is simulated headless, as fast as possible, and the key
+ * performance indicators of the variants are streamed back as Server-Sent Events.
+ *
+ * <p>Variants run in parallel on a dedicated fork-join pool sized to the processors,
+ * so that experiments do not slow down the real-time simulations. Each variant
+ * simulates its own deep copy of the base layout and is stepped on a single worker
+ * thread, so variants share no state and their results do not depend on scheduling. A "result" event is sent as each variant
+ * ends, then a "summary" event once all variants ended.</p>
+ */
+@Service
+public class ExperimentService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExperimentService.class);
+
+    private static final int[] ALL_ROBOTS = { -1 };
+
+    /**
+     * Number of variants simulated in parallel, 0 for the number of processors
+     */
+    @Value("${simulation.experiments.parallelism:0}")
+    private int parallelism;
+
+    /**
+     * Maximum size of the parameter grid of an experiment
+     */
+    @Value("${simulation.experiments.max-variants:256}")
+    private int maxVariants;
+
+    /**
+     * Maximum number of ticks of a variant
+     */
+    @Value("${simulation.experiments.max-ticks:100000}")
+    private int maxTicks;
+
+    @Autowired
+    private SimulationService simulationService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private ForkJoinPool experimentPool;
+
+    @PostConstruct
+    public void init() {
+        final int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        experimentPool = new ForkJoinPool(threads, pool -> {
+            final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("experiment-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+
+        logger.info("Experiments run up to {} variants in parallel", threads);
+    }
+
+    /**
+     * Starts an experiment over a factory layout.
+     *
+     * @param request The base factory and parameter grid of the experiment
+     * @return The emitter of the results, or null if the base factory cannot be loaded
+     * @throws IllegalArgumentException If the parameter grid is invalid
+     */
+    public SseEmitter run(final ExperimentRequest request) {
+        final List<Variant> variants = createVariants(request);
+        final int variantTicks = request.getMaxTicks() > 0 ? Math.min(request.getMaxTicks(), maxTicks) : maxTicks;
+        final Factory baseFactory = simulationService.loadFactoryModel(request.getFactoryId());
+
+        if (baseFactory == null) {
+            return null;
+        }
+
+        final int robotCount = getRobots(baseFactory).size();
+        for (final Variant variant : variants) {
+            if (variant.robotCount > robotCount) {
+                throw new IllegalArgumentException("Factory '" + request.getFactoryId() + "' has only "
+                                                   + robotCount + " robots");
+            }
+        }
+
+        final AtomicBoolean cancelled = new AtomicBoolean();
+
+        // No timeout: the stream ends with the experiment or the client
+        final SseEmitter emitter = new SseEmitter(0L);
+        emitter.onCompletion(() -> cancelled.set(true));
+        emitter.onTimeout(() -> cancelled.set(true));
+        emitter.onError(error -> cancelled.set(true));
+
+        experimentPool.execute(() -> runVariants(request.getFactoryId(), variants, baseFactory, variantTicks, emitter, cancelled));
+
+        logger.info("Started experiment over factory '{}' with {} variants of at most {} ticks",
+                   request.getFactoryId(), variants.size(), variantTicks);
+        return emitter;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        experimentPool.shutdownNow();
+    }
+
+    /**
+     * Creates the variants of the parameter grid of an experiment.
+     *
+     * @param request The experiment
+     * @return The variants, in the order of the grid
+     * @throws IllegalArgumentException If the parameter grid is invalid or too large
+     */
+    List<Variant> createVariants(final ExperimentRequest request) {
+        if (request.getFactoryId() == null || request.getFactoryId().isBlank()) {
+            throw new IllegalArgumentException("Missing base factory ID");
+        }
+
+        final int[] robotCounts = isEmpty(request.getRobotCounts()) ? ALL_ROBOTS : request.getRobotCounts();
+        final String[] doorStates = valuesOf(request.getDoorStates(),
+                                             ExperimentRequest.DOORS_OPEN, ExperimentRequest.DOORS_CLOSED);
+        final String[] targetOrders = valuesOf(request.getTargetOrders(), ExperimentRequest.TARGETS_REVERSED);
+        final long size = (long) robotCounts.length * doorStates.length * targetOrders.length;
+
+        if (size > maxVariants) {
+            throw new IllegalArgumentException("Experiment of " + size + " variants exceeds the maximum of "
+                                               + maxVariants);
+        }
+
+        final List<Variant> variants = new ArrayList<>((int) size);
+        for (final int robotCount : robotCounts) {
+            if (robotCount < 0 && robotCounts != ALL_ROBOTS) {
+                throw new IllegalArgumentException("Invalid robot count " + robotCount);
+            }
+
+            for (final String doorState : doorStates) {
+                for (final String targetOrder : targetOrders) {
+                    variants.add(new Variant(variants.size(), robotCount, doorState, targetOrder));
+                }
+            }
+        }
+
+        return variants;
+    }
+
+    /**
+     * Simulates a variant on the calling thread until every robot visited all its
+     * targets once, or the maximum number of ticks is reached.
+     *
+     * @param variant The variant
+     * @param factory The copy of the base layout of the variant, modified by the variant
+     * @param maxTicks The maximum number of ticks
+     * @param cancelled Tells when the experiment was cancelled
+     * @return The key performance indicators of the variant
+     */
+    static ExperimentResult simulate(final Variant variant,
+                                     final Factory factory,
+                                     final int maxTicks,
+                                     final AtomicBoolean cancelled) {
+        final long start = System.nanoTime();
+        final List<Robot> robots = apply(variant, factory);
+        long moves = 0;
+        long blockedTicks = 0;
+        int tick = 0;
+        boolean completed = hasCompleted(robots);
+
+        while (!completed && tick < maxTicks && !cancelled.get()) {
+            moves += factory.step();
+            tick++;
+
+            for (final Robot robot : robots) {
+                if ((robot.getStateFlags() & Component.STATE_FLAG_BLOCKED) != 0) {
+                    blockedTicks++;
+                }
+            }
+
+            completed = hasCompleted(robots);
+        }
+
+        long pathFindingNanos = 0;
+        for (final Robot robot : robots) {
+            pathFindingNanos += robot.getPathFindingNanos();
+        }
+
+        return new ExperimentResult(variant.index, robots.size(), variant.doorState, variant.targetOrder,
+                                    completed, tick, blockedTicks, moves,
+                                    TimeUnit.NANOSECONDS.toMicros(pathFindingNanos),
+                                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Aggregates the results of the variants of an experiment.
+     *
+     * @param factoryId The ID of the base factory
+     * @param results The results of the variants
+     * @param elapsedMillis The wall clock time of the experiment
+     * @return The summary of the experiment
+     */
+    static ExperimentSummary summarize(final String factoryId,
+                                       final List<ExperimentResult> results,
+                                       final long elapsedMillis) {
+        ExperimentResult best = null;
+        int completedVariants = 0;
+        long completionTicks = 0;
+        long blockedTicks = 0;
+        long pathFindingMicros = 0;
+
+        for (final ExperimentResult result : results) {
+            blockedTicks += result.getBlockedTicks();
+            pathFindingMicros += result.getPathFindingMicros();
+
+            if (!result.isCompleted()) {
+                continue;
+            }
+
+            completedVariants++;
+            completionTicks += result.getTicks();
+
+            if (best == null
+                || result.getTicks() < best.getTicks()
+                || (result.getTicks() == best.getTicks() && result.getBlockedTicks() < best.getBlockedTicks())) {
+                best = result;
+            }
+        }
+
+        return new ExperimentSummary(factoryId, results.size(), completedVariants,
+                                     best == null ? -1 : best.getVariant(),
+                                     completedVariants == 0 ? 0 : (double) completionTicks / completedVariants,
+                                     blockedTicks, pathFindingMicros, elapsedMillis);
+    }
+
+    private void runVariants(final String factoryId,
+                             final List<Variant> variants,
+                             final Factory baseFactory,
+                             final int variantTicks,
+                             final SseEmitter emitter,
+                             final AtomicBoolean cancelled) {
+        final long start = System.nanoTime();
+        final List<ForkJoinTask<ExperimentResult>> tasks = new ArrayList<>(variants.size());
+
+        for (final Variant variant : variants) {
+            tasks.add(ForkJoinTask.adapt(() -> {
+                if (cancelled.get()) {
+                    return null;
+                }
+
+                final ExperimentResult result = simulate(variant, baseFactory.copy(), variantTicks, cancelled);
+                send(emitter, "result", result, cancelled);
+                return result;
+            }));
+        }
+
+        try {
+            ForkJoinTask.invokeAll(tasks);
+
+        } catch (RuntimeException e) {
+            logger.error("Experiment over factory '{}' failed: {}", factoryId, e.getMessage(), e);
+            emitter.completeWithError(e);
+            return;
+        }
+
+        final List<ExperimentResult> results = new ArrayList<>(tasks.size());
+        for (final ForkJoinTask<ExperimentResult> task : tasks) {
+            if (task.getRawResult() != null) {
+                results.add(task.getRawResult());
+            }
+        }
+
+        final ExperimentSummary summary =
+            summarize(factoryId, results, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        send(emitter, "summary", summary, cancelled);
+
+        if (!cancelled.get()) {
+            emitter.complete();
+        }
+
+        logger.info("Experiment over factory '{}' ended: {} of {} variants completed in {} ms",
+                   factoryId, summary.getCompletedVariants(), summary.getVariants(), summary.getElapsedMillis());
+    }
+
+    private void send(final SseEmitter emitter,
+                      final String eventName,
+                      final Object data,
+                      final AtomicBoolean cancelled) {
+        if (cancelled.get()) {
+            return;
+        }
+
+        try {
+            emitter.send(SseEmitter.event()
+                .name(eventName)
+                .data(objectMapper.writeValueAsString(data), MediaType.APPLICATION_JSON));
+
+        } catch (IOException | IllegalStateException e) {
+            // The client went away, the remaining variants are skipped
+            logger.debug("Failed to send experiment {}: {}", eventName, e.getMessage());
+            cancelled.set(true);
+            emitter.completeWithError(e);
+        }
+    }
+
+    private static List<Robot> apply(final Variant variant, final Factory factory) {
+        final List<Robot> robots = getRobots(factory);
+
+        if (variant.robotCount >= 0) {
+            while (robots.size() > variant.robotCount) {
+                factory.removeComponent(robots.remove(robots.size() - 1));
+            }
+        }
+
+        for (final Component component : factory.getComponents()) {
+            if (component instanceof Door) {
+                if (ExperimentRequest.DOORS_OPEN.equals(variant.doorState)) {
+                    ((Door) component).open();
+                } else if (ExperimentRequest.DOORS_CLOSED.equals(variant.doorState)) {
+                    ((Door) component).close();
+                }
+            }
+        }
+
+        if (ExperimentRequest.TARGETS_REVERSED.equals(variant.targetOrder)) {
+            for (final Robot robot : robots) {
+                robot.reverseTargetComponents();
+            }
+        }
+
+        return robots;
+    }
+
+    private static List<Robot> getRobots(final Factory factory) {
+        final List<Robot> robots = new ArrayList<>();
+
+        for (final Component component : factory.getComponents()) {
+            if (component instanceof Robot) {
+                robots.add((Robot) component);
+            }
+        }
+
+        return robots;
+    }
+
+    private static boolean hasCompleted(final List<Robot> robots) {
+        for (final Robot robot : robots) {
+            if (robot.getReachedTargetCount() < robot.getTargetCount()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isEmpty(final int[] values) {
+        return values == null || values.length == 0;
+    }
+
+    private static String[] valuesOf(final String[] values, final String... allowedValues) {
+        if (values == null || values.length == 0) {
+            return new String[] { ExperimentRequest.ORIGINAL };
+        }
+
+        for (final String value : values) {
+            if (!ExperimentRequest.ORIGINAL.equals(value) && !Arrays.asList(allowedValues).contains(value)) {
+                throw new IllegalArgumentException("Invalid parameter value '" + value + "'");
+            }
+        }
+
+        return values;
+    }
+
+    /**
+     * Combination of parameter values of an experiment
+     */
+    static final class Variant {
+
+        private final int index;
+
+        /**
+         * Number of robots kept, -1 for the robots of the layout
+         */
+        private final int robotCount;
+
+        private final String doorState;
+
+        private final String targetOrder;
+
+        Variant(final int index, final int robotCount, final String doorState, final String targetOrder) {
+            this.index = index;
+            this.robotCount = robotCount;
+            this.doorState = doorState;
+            this.targetOrder = targetOrder;
+        }
+    }
+}
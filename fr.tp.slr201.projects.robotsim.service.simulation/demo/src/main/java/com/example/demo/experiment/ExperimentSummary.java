@@ -0,0 +1,96 @@
+package com.example.demo.experiment;
+
+/**
+ * Aggregated key performance indicators of the variants of an experiment, sent once
+ * all variants are simulated.
+ */
+public final class ExperimentSummary {
+
+    private final String factoryId;
+
+    private final int variants;
+
+    private final int completedVariants;
+
+    private final int bestVariant;
+
+    private final double meanTicksToCompletion;
+
+    private final long totalBlockedTicks;
+
+    private final long totalPathFindingMicros;
+
+    private final long elapsedMillis;
+
+    public ExperimentSummary(final String factoryId,
+                             final int variants,
+                             final int completedVariants,
+                             final int bestVariant,
+                             final double meanTicksToCompletion,
+                             final long totalBlockedTicks,
+                             final long totalPathFindingMicros,
+                             final long elapsedMillis) {
+        this.factoryId = factoryId;
+        this.variants = variants;
+        this.completedVariants = completedVariants;
+        this.bestVariant = bestVariant;
+        this.meanTicksToCompletion = meanTicksToCompletion;
+        this.totalBlockedTicks = totalBlockedTicks;
+        this.totalPathFindingMicros = totalPathFindingMicros;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public String getFactoryId() {
+        return factoryId;
+    }
+
+    /**
+     * Gets the number of variants simulated, less than the size of the parameter grid
+     * if the experiment was cancelled.
+     *
+     * @return The number of variants
+     */
+    public int getVariants() {
+        return variants;
+    }
+
+    public int getCompletedVariants() {
+        return completedVariants;
+    }
+
+    /**
+     * Gets the completed variant with the fewest ticks to completion, the fewest
+     * blocked ticks breaking ties.
+     *
+     * @return The index of the best variant, -1 if no variant completed
+     */
+    public int getBestVariant() {
+        return bestVariant;
+    }
+
+    /**
+     * Gets the mean number of ticks to completion of the completed variants.
+     *
+     * @return The mean ticks to completion, 0 if no variant completed
+     */
+    public double getMeanTicksToCompletion() {
+        return meanTicksToCompletion;
+    }
+
+    public long getTotalBlockedTicks() {
+        return totalBlockedTicks;
+    }
+
+    public long getTotalPathFindingMicros() {
+        return totalPathFindingMicros;
+    }
+
+    /**
+     * Gets the wall clock time of the experiment, the variants being simulated in parallel.
+     *
+     * @return The elapsed time in milliseconds
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+}
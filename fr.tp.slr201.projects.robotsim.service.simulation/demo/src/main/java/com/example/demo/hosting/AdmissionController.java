@@ -0,0 +1,329 @@
+package com.example.demo.hosting;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import fr.tp.inf112.projects.robotsim.model.Component;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+
+/**
+ * Service deciding whether a new simulation may start, so that the service degrades by
+ * refusing new tenants rather than slowing down all of them.
+ *
+ * <p>Each factory is given an estimated cost from its components, robots and area. A
+ * start is admitted while the cost of the running simulations stays within capacity,
+ * the JVM has enough free heap and, for simulations running one thread per component,
+ * the thread count stays under its limit. Otherwise the start waits in a FIFO queue
+ * for running simulations to stop, and is rejected with a retry delay when the queue is
+ * full or the wait times out.</p>
+ */
+@Service
+public class AdmissionController {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdmissionController.class);
+
+    private static final long RECHECK_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+
+    /**
+     * Total cost of the running simulations, 0 for 500 per available processor
+     */
+    @Value("${simulation.admission.capacity:0}")
+    private long capacity;
+
+    /**
+     * Cost of a robot on top of that of any component
+     */
+    @Value("${simulation.admission.robot-weight:10}")
+    private long robotWeight;
+
+    /**
+     * Factory area adding one to the cost, in square units
+     */
+    @Value("${simulation.admission.area-unit:10000}")
+    private long areaUnit;
+
+    /**
+     * Maximum number of live threads of the JVM
+     */
+    @Value("${simulation.admission.max-threads:1000}")
+    private int maxThreads;
+
+    /**
+     * Minimum share of the maximum heap that must be free, in percent
+     */
+    @Value("${simulation.admission.min-free-heap-percent:10}")
+    private int minFreeHeapPercent;
+
+    /**
+     * Maximum number of starts waiting for capacity
+     */
+    @Value("${simulation.admission.queue-size:16}")
+    private int queueSize;
+
+    /**
+     * Maximum time a start waits for capacity
+     */
+    @Value("${simulation.admission.max-wait-ms:10000}")
+    private long maxWaitMillis;
+
+    /**
+     * Delay after which rejected starts should be retried
+     */
+    @Value("${simulation.admission.retry-after-seconds:5}")
+    private long retryAfterSeconds;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition capacityReleased = lock.newCondition();
+
+    /**
+     * Waiting starts, in arrival order, guarded by the lock
+     */
+    private final Deque<Object> queue = new ArrayDeque<>();
+
+    /**
+     * IDs of the factories of the waiting starts, guarded by the lock
+     */
+    private final Set<String> queuedFactoryIds = new HashSet<>();
+
+    /**
+     * Cost of the running simulations by factory ID
+     */
+    private final Map<String, Long> admittedCosts = new ConcurrentHashMap<>();
+
+    // Guarded by the lock
+    private long load;
+
+    private long admittedCount;
+
+    private long queuedCount;
+
+    private long rejectedCount;
+
+    private long waitedCount;
+
+    private long totalWaitNanos;
+
+    private long maxWaitNanos;
+
+    @PostConstruct
+    public void init() {
+        if (capacity <= 0) {
+            capacity = 500L * Runtime.getRuntime().availableProcessors();
+        }
+
+        logger.info("Simulation admission capacity: {} cost units, {} queued starts waiting at most {} ms",
+                   capacity, queueSize, maxWaitMillis);
+    }
+
+    /**
+     * Estimates the cost of simulating a factory: one per component, robots weighing
+     * more as they move and look for paths, plus its area for the grid they search.
+     *
+     * @param factory The factory to simulate
+     * @return The estimated cost
+     */
+    public long estimateCost(final Factory factory) {
+        long cost = (long) factory.getWidth() * factory.getHeight() / areaUnit;
+
+        for (final Component component : factory.getComponents()) {
+            cost += component.isMobile() ? 1 + robotWeight : 1;
+        }
+
+        return Math.max(1, cost);
+    }
+
+    /**
+     * Admits the start of a simulation, waiting for capacity if needed.
+     *
+     * @param factoryId The ID of the factory to simulate
+     * @param cost The estimated cost of the simulation
+     * @param threads The number of threads the simulation starts
+     * @throws AdmissionRejectedException If there is no capacity for the simulation
+     * @throws InterruptedException If interrupted while waiting for capacity
+     */
+    public void admit(final String factoryId, final long cost, final int threads) throws InterruptedException {
+        final Object ticket = new Object();
+        final long start = System.nanoTime();
+
+        lock.lock();
+        try {
+            if (admittedCosts.containsKey(factoryId) || queuedFactoryIds.contains(factoryId)) {
+                throw new IllegalStateException("Simulation of factory '" + factoryId + "' is already admitted");
+            }
+
+            if (queue.isEmpty() && fits(cost, threads)) {
+                register(factoryId, cost, 0);
+                return;
+            }
+
+            if (queue.size() >= queueSize) {
+                rejectedCount++;
+                throw new AdmissionRejectedException("Simulation queue is full (" + queue.size() + " waiting starts)",
+                                                     retryAfterSeconds);
+            }
+
+            queue.addLast(ticket);
+            queuedFactoryIds.add(factoryId);
+            queuedCount++;
+            logger.info("Queued start of factory '{}' with cost {}: load {} of {}, {} waiting starts",
+                       factoryId, cost, load, capacity, queue.size());
+
+            final long deadline = start + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+            try {
+                while (queue.peekFirst() != ticket || !fits(cost, threads)) {
+                    final long remainingNanos = deadline - System.nanoTime();
+
+                    if (remainingNanos <= 0) {
+                        rejectedCount++;
+                        throw new AdmissionRejectedException("No capacity for simulation with cost " + cost + " within "
+                                                             + maxWaitMillis + " ms", retryAfterSeconds);
+                    }
+
+                    // Heap and threads are also freed without any release, so check again periodically
+                    capacityReleased.awaitNanos(Math.min(remainingNanos, RECHECK_INTERVAL_NANOS));
+                }
+
+                register(factoryId, cost, System.nanoTime() - start);
+                waitedCount++;
+            } finally {
+                queue.remove(ticket);
+                queuedFactoryIds.remove(factoryId);
+                // The next waiting start may fit as well
+                capacityReleased.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases the capacity used by a simulation that stopped or failed to start.
+     *
+     * @param factoryId The ID of the simulated factory
+     */
+    public void release(final String factoryId) {
+        lock.lock();
+        try {
+            final Long cost = admittedCosts.remove(factoryId);
+
+            if (cost == null) {
+                return;
+            }
+
+            load -= cost;
+            capacityReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of starts waiting for capacity.
+     *
+     * @return The queue depth
+     */
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the total estimated cost of the admitted simulations.
+     *
+     * @return The load, in cost units
+     */
+    public long getLoad() {
+        lock.lock();
+        try {
+            return load;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of starts rejected for lack of capacity.
+     *
+     * @return The number of rejected starts
+     */
+    public long getRejectedCount() {
+        lock.lock();
+        try {
+            return rejectedCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the load, queue and wait time statistics of the admission.
+     *
+     * @return The statistics by name
+     */
+    public Map<String, Object> getStatistics() {
+        lock.lock();
+        try {
+            final Map<String, Object> statistics = new LinkedHashMap<>();
+            statistics.put("capacity", capacity);
+            statistics.put("load", load);
+            statistics.put("runningSimulations", admittedCosts.size());
+            statistics.put("queueDepth", queue.size());
+            statistics.put("admitted", admittedCount);
+            statistics.put("queued", queuedCount);
+            statistics.put("rejected", rejectedCount);
+            statistics.put("averageWaitMillis", waitedCount > 0 ? TimeUnit.NANOSECONDS.toMillis(totalWaitNanos / waitedCount) : 0);
+            statistics.put("maxWaitMillis", TimeUnit.NANOSECONDS.toMillis(maxWaitNanos));
+            return statistics;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean fits(final long cost, final int threads) {
+        // A simulation larger than the whole capacity may still run alone
+        if (load > 0 && load + cost > capacity) {
+            return false;
+        }
+
+        if (threads > 0 && ManagementFactory.getThreadMXBean().getThreadCount() + threads > maxThreads) {
+            return false;
+        }
+
+        final Runtime runtime = Runtime.getRuntime();
+        final long freeHeap = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+
+        return freeHeap * 100 >= runtime.maxMemory() * minFreeHeapPercent;
+    }
+
+    private void register(final String factoryId, final long cost, final long waitNanos) {
+        admittedCosts.put(factoryId, cost);
+        load += cost;
+        admittedCount++;
+        totalWaitNanos += waitNanos;
+        maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+
+        if (waitNanos > 0) {
+            logger.info("Admitted start of factory '{}' after waiting {} ms", factoryId, TimeUnit.NANOSECONDS.toMillis(waitNanos));
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.demo.hosting;
+
+/**
+ * Thrown when the start of a simulation is rejected because the service is at capacity.
+ */
+public class AdmissionRejectedException extends RuntimeException {
+
+    private static final long serialVersionUID = 4518830923625715209L;
+
+    private final long retryAfterSeconds;
+
+    public AdmissionRejectedException(final String message, final long retryAfterSeconds) {
+        super(message);
+
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Gets the delay after which the start may be retried.
+     *
+     * @return The delay in seconds
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
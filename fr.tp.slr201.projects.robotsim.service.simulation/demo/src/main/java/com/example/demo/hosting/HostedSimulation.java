@@ -0,0 +1,179 @@
+package com.example.demo.hosting;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * A factory simulated by the {@link SimulationScheduler}: at each tick, one step of all
+ * its components is queued on the shared worker pool.
+ *
+ * <p>A simulation has at most one step queued or running, so a tick falling while the
+ * previous step is still pending is missed instead of piling up. Steps are charged with
+ * the CPU time of the worker thread; once a simulation used its budget for the current
+ * window, its ticks are throttled until the next window.</p>
+ *
+ * <p>The step state is only accessed by the thread holding the pending flag, either the
+ * dispatcher deciding to queue a step or the worker running it.</p>
+ */
+class HostedSimulation implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(HostedSimulation.class);
+
+    /**
+     * Length of the window over which the CPU budget applies
+     */
+    static final long BUDGET_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    private final String factoryId;
+
+    private final Factory factory;
+
+    private final long cpuBudgetNanos;
+
+    private final Timer tickTimer;
+
+    /**
+     * Set from the queuing of a step to its end
+     */
+    private final AtomicBoolean pending = new AtomicBoolean();
+
+    private long windowStartNanos;
+
+    private long windowCpuNanos;
+
+    private volatile long steps;
+
+    private volatile long missedTicks;
+
+    private volatile long throttledTicks;
+
+    private volatile long cpuNanos;
+
+    /**
+     * @param factoryId The ID of the simulated factory
+     * @param factory The simulated factory, already started without component threads
+     * @param cpuBudgetNanos The CPU time the simulation may use per budget window
+     */
+    HostedSimulation(final String factoryId,
+                     final Factory factory,
+                     final long cpuBudgetNanos) {
+        this(factoryId, factory, cpuBudgetNanos, null);
+    }
+
+    /**
+     * @param factoryId The ID of the simulated factory
+     * @param factory The simulated factory, already started without component threads
+     * @param cpuBudgetNanos The CPU time the simulation may use per budget window
+     * @param tickTimer The timer of the wall clock duration of the steps, null for none
+     */
+    HostedSimulation(final String factoryId,
+                     final Factory factory,
+                     final long cpuBudgetNanos,
+                     final Timer tickTimer) {
+        this.factoryId = factoryId;
+        this.factory = factory;
+        this.cpuBudgetNanos = cpuBudgetNanos;
+        this.tickTimer = tickTimer;
+        this.windowStartNanos = System.nanoTime();
+    }
+
+    String getFactoryId() {
+        return factoryId;
+    }
+
+    Factory getFactory() {
+        return factory;
+    }
+
+    /**
+     * Queues the next step of the simulation unless the previous one is still pending
+     * or the simulation used its CPU budget. Called by the dispatcher at each tick.
+     *
+     * @param workers The shared worker pool
+     * @param now The current time in nanoseconds
+     */
+    void tick(final Executor workers, final long now) {
+        if (!pending.compareAndSet(false, true)) {
+            missedTicks++;
+            return;
+        }
+
+        if (now - windowStartNanos >= BUDGET_WINDOW_NANOS) {
+            windowStartNanos = now;
+            windowCpuNanos = 0;
+        }
+
+        if (windowCpuNanos >= cpuBudgetNanos) {
+            throttledTicks++;
+            pending.set(false);
+            return;
+        }
+
+        workers.execute(this);
+    }
+
+    /**
+     * Runs one step of all the components of the factory.
+     */
+    @Override
+    public void run() {
+        final long start = currentThreadCpuTime();
+        final long wallStart = System.nanoTime();
+
+        try {
+            factory.behaveComponents();
+
+        } catch (RuntimeException e) {
+            logger.error("Error stepping simulation of factory '{}': {}", factoryId, e.getMessage(), e);
+
+        } finally {
+            if (tickTimer != null) {
+                tickTimer.record(System.nanoTime() - wallStart, TimeUnit.NANOSECONDS);
+            }
+
+            final long used = currentThreadCpuTime() - start;
+            windowCpuNanos += used;
+            cpuNanos += used;
+            steps++;
+            pending.set(false);
+        }
+    }
+
+    boolean isStopped() {
+        return !factory.isSimulationStarted();
+    }
+
+    long getSteps() {
+        return steps;
+    }
+
+    long getMissedTicks() {
+        return missedTicks;
+    }
+
+    long getThrottledTicks() {
+        return throttledTicks;
+    }
+
+    long getCpuNanos() {
+        return cpuNanos;
+    }
+
+    private static long currentThreadCpuTime() {
+        // Falls back to wall time where thread CPU time is not measured
+        return THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported() && THREAD_MX_BEAN.isThreadCpuTimeEnabled()
+            ? THREAD_MX_BEAN.getCurrentThreadCpuTime()
+            : System.nanoTime();
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.demo.hosting;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Service hosting headless simulations of many factories on one bounded pool of worker
+ * threads, instead of one thread per component of each factory.
+ *
+ * <p>At each tick, a dispatcher queues one step of each hosted simulation on the worker
+ * pool. Since a simulation never has more than one step queued, the FIFO queue of the
+ * pool serves the simulations in turn: when the pool is saturated every simulation
+ * slows down by the same amount rather than the largest ones starving the others. Each
+ * simulation is also given a budget of CPU time per second, beyond which its steps are
+ * throttled until the next second.</p>
+ */
+@Service
+public class SimulationScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(SimulationScheduler.class);
+
+    /**
+     * Number of worker threads, 0 for the number of available processors
+     */
+    @Value("${simulation.hosting.threads:0}")
+    private int workerThreads;
+
+    /**
+     * Interval between two steps of a simulation, that of the component threads
+     */
+    @Value("${simulation.hosting.tick-interval-ms:50}")
+    private long tickIntervalMillis;
+
+    /**
+     * Share of one processor each simulation may use, in percent
+     */
+    @Value("${simulation.hosting.cpu-budget-percent:25}")
+    private int cpuBudgetPercent;
+
+    /**
+     * Hosted simulations by factory ID
+     */
+    private final Map<String, HostedSimulation> simulations = new ConcurrentHashMap<>();
+
+    private ThreadPoolExecutor workers;
+
+    private ScheduledExecutorService dispatcher;
+
+    @PostConstruct
+    public void init() {
+        final int threads = workerThreads > 0 ? workerThreads : Runtime.getRuntime().availableProcessors();
+        final AtomicInteger threadCount = new AtomicInteger();
+
+        workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            final Thread thread = new Thread(runnable, "simulation-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        dispatcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "simulation-dispatcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dispatcher.scheduleAtFixedRate(this::dispatch, tickIntervalMillis, tickIntervalMillis, TimeUnit.MILLISECONDS);
+
+        logger.info("Simulation scheduler started with {} worker threads, {} ms ticks and {}% CPU budget per simulation",
+                   threads, tickIntervalMillis, cpuBudgetPercent);
+    }
+
+    /**
+     * Starts hosting the simulation of a factory. The simulation is started without
+     * component threads and stepped by the worker pool until it is stopped.
+     *
+     * @param factoryId The ID of the simulated factory
+     * @param factory The simulated factory
+     * @return true if the simulation is now hosted, false if it already was
+     */
+    public boolean host(final String factoryId, final Factory factory) {
+        return host(factoryId, factory, null);
+    }
+
+    /**
+     * Hosts the simulation of a factory, recording the duration of its ticks.
+     *
+     * @param factoryId The ID of the simulated factory
+     * @param factory The simulated factory
+     * @param tickTimer The timer of the ticks of the simulation, null for none
+     * @return true if the simulation is now hosted, false if it already was
+     */
+    public boolean host(final String factoryId, final Factory factory, final Timer tickTimer) {
+        final long cpuBudgetNanos = HostedSimulation.BUDGET_WINDOW_NANOS / 100 * cpuBudgetPercent;
+        final HostedSimulation simulation = new HostedSimulation(factoryId, factory, cpuBudgetNanos, tickTimer);
+
+        if (simulations.putIfAbsent(factoryId, simulation) != null) {
+            return false;
+        }
+
+        factory.startSimulation(false);
+
+        logger.info("Hosting simulation of factory '{}' ({} components)", factoryId, factory.getComponents().size());
+        return true;
+    }
+
+    /**
+     * Stops hosting the simulation of a factory. A step already running completes.
+     *
+     * @param factoryId The ID of the simulated factory
+     * @return true if the simulation was hosted
+     */
+    public boolean unhost(final String factoryId) {
+        final HostedSimulation simulation = simulations.remove(factoryId);
+
+        if (simulation == null) {
+            return false;
+        }
+
+        simulation.getFactory().stopSimulation();
+        logStatistics(simulation);
+        return true;
+    }
+
+    /**
+     * Gets the number of hosted simulations.
+     *
+     * @return The number of hosted simulations
+     */
+    public int getHostedCount() {
+        return simulations.size();
+    }
+
+    /**
+     * Gets the number of steps waiting for a worker thread.
+     *
+     * @return The number of queued steps
+     */
+    public int getQueuedSteps() {
+        return workers.getQueue().size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdownNow();
+
+        for (final String factoryId : simulations.keySet()) {
+            unhost(factoryId);
+        }
+
+        workers.shutdownNow();
+    }
+
+    private void dispatch() {
+        final long now = System.nanoTime();
+
+        for (final HostedSimulation simulation : simulations.values()) {
+            if (simulation.isStopped()) {
+                // Stopped through the model, for instance by its controller
+                if (simulations.remove(simulation.getFactoryId(), simulation)) {
+                    logStatistics(simulation);
+                }
+                continue;
+            }
+
+            simulation.tick(workers, now);
+        }
+    }
+
+    private void logStatistics(final HostedSimulation simulation) {
+        logger.info("Stopped hosting simulation of factory '{}': {} steps, {} ms CPU, {} missed and {} throttled ticks",
+                   simulation.getFactoryId(), simulation.getSteps(), TimeUnit.NANOSECONDS.toMillis(simulation.getCpuNanos()),
+                   simulation.getMissedTicks(), simulation.getThrottledTicks());
+    }
+}
@@ -0,0 +1,383 @@
+package com.example.demo.kafka;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.kafka.support.KafkaNull;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+
+import fr.tp.inf112.projects.robotsim.app.SimulationServiceUtils;
+import fr.tp.inf112.projects.robotsim.model.event.FactoryStateTracker;
+import fr.tp.inf112.projects.robotsim.model.event.LayoutSnapshotEvent;
+import fr.tp.inf112.projects.robotsim.model.event.SimulationEvent;
+import fr.tp.inf112.projects.robotsim.model.event.SimulationLifecycleEvent;
+import fr.tp.inf112.projects.robotsim.model.event.StateDeltaEvent;
+
+/**
+ * Latest-wins publisher of the state of one factory to Kafka.
+ *
+ * <p>Simulation threads only call {@link #signal()}, which flags the model as changed.
+ * A dedicated publisher thread builds the next simulation event from the current state
+ * of the factory at most once per publish interval, so intermediate states are
+ * conflated into the latest one. Events are built by a {@link FactoryStateTracker}:
+ * a layout snapshot first, then state deltas carrying only the changed components.
+ * At most {@code maxInFlight} sends may be pending at the broker; when they are all
+ * pending the publisher waits and conflates further changes, so a slow or unreachable
+ * broker never blocks the simulation.</p>
+ *
+ * <p>Along with each layout snapshot and keyframe, the publisher may also write a
+ * snapshot of the current state to a log-compacted topic keyed by factory ID, from
+ * which new viewers bootstrap without replaying the event topic. The snapshot is
+ * deleted with a tombstone when the publisher is closed.</p>
+ *
+ * <p>The event stream starts with a started lifecycle event, or a paused one for a
+ * simulation loaded without running, and ends with a stopped one, so that viewers
+ * follow the simulation status without polling the service. Like the state events,
+ * they are sent by the publisher thread, as sends block while the broker is down.</p>
+ */
+public class ConflatingFactoryPublisher {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConflatingFactoryPublisher.class);
+
+    /**
+     * How long closing waits for an in-flight slot to publish the final state
+     */
+    private static final long CLOSE_TIMEOUT_MILLIS = 1000;
+
+    private final FactoryStateTracker stateTracker;
+
+    private final KafkaTemplate<String, SimulationEvent> simulationEventTemplate;
+
+    private final String topicName;
+
+    /**
+     * Log-compacted topic of the latest snapshot of the factory, null if disabled
+     */
+    private final String snapshotTopicName;
+
+    private final byte[] factoryIdHeader;
+
+    private final long publishIntervalNanos;
+
+    /**
+     * Permits for the sends not yet acknowledged by the broker
+     */
+    private final Semaphore inFlightPermits;
+
+    /**
+     * Set when the factory changed since the last publication
+     */
+    private final AtomicBoolean dirty = new AtomicBoolean(false);
+
+    private final AtomicLong publishedFrames = new AtomicLong();
+
+    private final AtomicLong deferredFrames = new AtomicLong();
+
+    private final Thread publisherThread;
+
+    /**
+     * Status published first, when the publisher thread starts
+     */
+    private final SimulationLifecycleEvent.Status initialStatus;
+
+    private volatile boolean running;
+
+    /**
+     * Whether the simulation is over once the publisher is closed
+     */
+    private volatile boolean stopped = true;
+
+    /**
+     * Creates and starts the publisher of a factory.
+     *
+     * @param stateTracker The tracker building the events of the factory to publish
+     * @param simulationEventTemplate The Kafka template used to send the events
+     * @param topicName The topic to publish to
+     * @param snapshotTopicName The log-compacted topic of the latest snapshots, null
+     * to publish no snapshot
+     * @param publishIntervalMillis The minimum interval between two publications
+     * @param maxInFlight The maximum number of sends pending at the broker
+     */
+    public ConflatingFactoryPublisher(
+            final FactoryStateTracker stateTracker,
+            final KafkaTemplate<String, SimulationEvent> simulationEventTemplate,
+            final String topicName,
+            final String snapshotTopicName,
+            final long publishIntervalMillis,
+            final int maxInFlight) {
+        this(stateTracker, simulationEventTemplate, topicName, snapshotTopicName, publishIntervalMillis, maxInFlight, false);
+    }
+
+    /**
+     * Creates and starts the publisher of a factory.
+     *
+     * @param stateTracker The tracker building the events of the factory to publish
+     * @param simulationEventTemplate The Kafka template used to send the events
+     * @param topicName The topic to publish to
+     * @param snapshotTopicName The log-compacted topic of the latest snapshots, null
+     * to publish no snapshot
+     * @param publishIntervalMillis The minimum interval between two publications
+     * @param maxInFlight The maximum number of sends pending at the broker
+     * @param paused true if the simulation is loaded without running
+     */
+    public ConflatingFactoryPublisher(
+            final FactoryStateTracker stateTracker,
+            final KafkaTemplate<String, SimulationEvent> simulationEventTemplate,
+            final String topicName,
+            final String snapshotTopicName,
+            final long publishIntervalMillis,
+            final int maxInFlight,
+            final boolean paused) {
+
+        if (publishIntervalMillis < 0) {
+            throw new IllegalArgumentException("Publish interval must not be negative: " + publishIntervalMillis);
+        }
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("At least one in-flight send is required: " + maxInFlight);
+        }
+
+        this.stateTracker = stateTracker;
+        this.simulationEventTemplate = simulationEventTemplate;
+        this.topicName = topicName;
+        this.snapshotTopicName = snapshotTopicName;
+        this.factoryIdHeader = String.valueOf(stateTracker.getFactoryId()).getBytes(StandardCharsets.UTF_8);
+        this.publishIntervalNanos = TimeUnit.MILLISECONDS.toNanos(publishIntervalMillis);
+        this.inFlightPermits = new Semaphore(maxInFlight);
+        this.initialStatus = paused ? SimulationLifecycleEvent.Status.PAUSED : SimulationLifecycleEvent.Status.STARTED;
+        this.running = true;
+
+        this.publisherThread = new Thread(this::publishLoop, "kafka-publisher-" + stateTracker.getFactoryId());
+        this.publisherThread.setDaemon(true);
+        this.publisherThread.start();
+    }
+
+    /**
+     * Flags the factory as changed. Never blocks and never serializes on the calling thread.
+     */
+    public void signal() {
+        if (dirty.get() || !dirty.compareAndSet(false, true)) {
+            // Already pending, the next publication will carry this change
+            return;
+        }
+
+        LockSupport.unpark(publisherThread);
+    }
+
+    /**
+     * Makes the next publication a layout snapshot of the factory.
+     */
+    public void requestLayoutSnapshot() {
+        stateTracker.requestLayoutSnapshot();
+        signal();
+    }
+
+    /**
+     * Stops the publisher after publishing the pending state, if any. Returns without
+     * waiting for the publisher thread.
+     */
+    public void close() {
+        close(true);
+    }
+
+    /**
+     * Stops the publisher after publishing the pending state, if any. Returns without
+     * waiting for the publisher thread.
+     *
+     * @param stopped true if the simulation is over, false if it goes on at another
+     * instance of the service, which publishes its own lifecycle events and snapshots
+     */
+    public void close(final boolean stopped) {
+        this.stopped = stopped;
+        running = false;
+        LockSupport.unpark(publisherThread);
+    }
+
+    /**
+     * Waits for the publisher thread to end after the publisher was closed.
+     *
+     * @param timeoutMillis The maximum time to wait
+     * @return true if the publisher thread ended
+     * @throws InterruptedException If interrupted while waiting
+     */
+    boolean awaitTermination(final long timeoutMillis) throws InterruptedException {
+        publisherThread.join(timeoutMillis);
+        return !publisherThread.isAlive();
+    }
+
+    public long getPublishedFrames() {
+        return publishedFrames.get();
+    }
+
+    public long getDeferredFrames() {
+        return deferredFrames.get();
+    }
+
+    private void publishLoop() {
+        publishLifecycle(initialStatus);
+
+        long lastPublishTime = System.nanoTime() - publishIntervalNanos;
+
+        while (running || dirty.get()) {
+            if (!dirty.get()) {
+                LockSupport.park(this);
+                continue;
+            }
+
+            final long waitNanos = lastPublishTime + publishIntervalNanos - System.nanoTime();
+            if (running && waitNanos > 0) {
+                LockSupport.parkNanos(this, waitNanos);
+                continue;
+            }
+
+            if (!acquireInFlightPermit()) {
+                if (!running) {
+                    logger.warn("Dropping final state of topic '{}': broker did not acknowledge pending sends", topicName);
+                    break;
+                }
+
+                // All sends are pending, keep conflating until the broker catches up
+                deferredFrames.incrementAndGet();
+                continue;
+            }
+
+            dirty.set(false);
+            lastPublishTime = System.nanoTime();
+            publish();
+        }
+
+        if (stopped) {
+            // Sent after the final state, the viewers stop consuming when they receive it
+            publishLifecycle(SimulationLifecycleEvent.Status.STOPPED);
+
+            // The simulation is over, new viewers must not bootstrap from its last state
+            publishSnapshot(null);
+        }
+
+        logger.info("Closed publisher of factory '{}' on topic '{}': {} frames published, {} deferred by broker backpressure",
+                   stateTracker.getFactoryId(), topicName, publishedFrames.get(), deferredFrames.get());
+    }
+
+    private boolean acquireInFlightPermit() {
+        try {
+            final long timeoutMillis = running ? Math.max(1, TimeUnit.NANOSECONDS.toMillis(publishIntervalNanos)) : CLOSE_TIMEOUT_MILLIS;
+            return inFlightPermits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+            return false;
+        }
+    }
+
+    private void publish() {
+        try {
+            final SimulationEvent event = stateTracker.nextEvent(System.currentTimeMillis());
+
+            if (event == null) {
+                // Nothing changed since the previous event
+                inFlightPermits.release();
+                return;
+            }
+
+            // Keyed by factory ID so that the events of a factory stay ordered in one
+            // partition of a shared topic; the raw header lets consumers skip them undecoded
+            final Message<SimulationEvent> eventMessage = MessageBuilder
+                .withPayload(event)
+                .setHeader(KafkaHeaders.TOPIC, topicName)
+                .setHeader(KafkaHeaders.KEY, stateTracker.getFactoryId())
+                .setHeader(SimulationServiceUtils.FACTORY_ID_HEADER, factoryIdHeader)
+                .build();
+
+            // The event serializer runs here, on the publisher thread
+            simulationEventTemplate.send(eventMessage).whenComplete((result, ex) -> {
+                inFlightPermits.release();
+
+                if (ex != null) {
+                    logger.error("Failed to send simulation event to Kafka topic '{}': {}",
+                               topicName, ex.getMessage(), ex);
+                } else {
+                    logger.trace("Successfully sent simulation event to topic '{}'", topicName);
+                }
+            });
+
+            publishedFrames.incrementAndGet();
+
+            if (event instanceof LayoutSnapshotEvent
+                    || event instanceof StateDeltaEvent && ((StateDeltaEvent) event).isKeyframe()) {
+                publishSnapshot(stateTracker.currentSnapshot(event.getTimestamp()));
+            }
+
+        } catch (Exception e) {
+            inFlightPermits.release();
+            logger.error("Error publishing to Kafka topic '{}': {}", topicName, e.getMessage());
+        }
+    }
+
+    /**
+     * Publishes a lifecycle event to the event topic. It does not take an in-flight
+     * permit, so that it is never dropped because of broker backpressure.
+     *
+     * @param status The new status of the simulation
+     */
+    private void publishLifecycle(final SimulationLifecycleEvent.Status status) {
+        try {
+            final Message<SimulationEvent> lifecycleMessage = MessageBuilder
+                .withPayload((SimulationEvent) stateTracker.lifecycleEvent(status, System.currentTimeMillis()))
+                .setHeader(KafkaHeaders.TOPIC, topicName)
+                .setHeader(KafkaHeaders.KEY, stateTracker.getFactoryId())
+                .setHeader(SimulationServiceUtils.FACTORY_ID_HEADER, factoryIdHeader)
+                .build();
+
+            simulationEventTemplate.send(lifecycleMessage).whenComplete((result, ex) -> {
+                if (ex != null) {
+                    logger.error("Failed to send {} event to Kafka topic '{}': {}",
+                               status, topicName, ex.getMessage(), ex);
+                }
+            });
+
+        } catch (Exception e) {
+            logger.error("Error publishing {} event to Kafka topic '{}': {}", status, topicName, e.getMessage());
+        }
+    }
+
+    /**
+     * Replaces the snapshot of the factory in the snapshot topic. Snapshots do not take
+     * an in-flight permit: there is at most one per keyframe and compaction keeps the last.
+     *
+     * @param snapshot The snapshot to publish, or null for a tombstone deleting it
+     */
+    private void publishSnapshot(final LayoutSnapshotEvent snapshot) {
+        if (snapshotTopicName == null) {
+            return;
+        }
+
+        try {
+            final MessageBuilder<?> messageBuilder = snapshot == null
+                ? MessageBuilder.withPayload(KafkaNull.INSTANCE)
+                : MessageBuilder.withPayload(snapshot);
+            final Message<?> snapshotMessage = messageBuilder
+                .setHeader(KafkaHeaders.TOPIC, snapshotTopicName)
+                .setHeader(KafkaHeaders.KEY, stateTracker.getFactoryId())
+                .setHeader(SimulationServiceUtils.FACTORY_ID_HEADER, factoryIdHeader)
+                .build();
+
+            simulationEventTemplate.send(snapshotMessage).whenComplete((result, ex) -> {
+                if (ex != null) {
+                    logger.error("Failed to send snapshot to Kafka topic '{}': {}",
+                               snapshotTopicName, ex.getMessage(), ex);
+                }
+            });
+
+        } catch (Exception e) {
+            logger.error("Error publishing to Kafka topic '{}': {}", snapshotTopicName, e.getMessage());
+        }
+    }
+}
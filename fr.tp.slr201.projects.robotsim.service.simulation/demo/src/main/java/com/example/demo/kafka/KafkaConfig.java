@@ -1,28 +1,33 @@
 package com.example.demo.kafka;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.app.SimulationEventSerializer;
+import fr.tp.inf112.projects.robotsim.model.event.SimulationEvent;
 import org.apache.kafka.clients.admin.NewTopic;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.config.TopicBuilder;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.MicrometerProducerListener;
 import org.springframework.kafka.core.ProducerFactory;
-import org.springframework.kafka.support.serializer.JsonSerializer;
 
 import java.util.HashMap;
 import java.util.Map;
 
 /**
  * Kafka configuration for the simulation microservice.
- * Configures Kafka producers to publish factory simulation events
- * with custom JSON serialization using our configured ObjectMapper.
+ * Configures Kafka producers to publish factory simulation events (layout
+ * snapshots and state deltas) as compact binary frames. The factory JSON of
+ * layout snapshots uses our configured ObjectMapper.
  */
 @Configuration
 public class KafkaConfig {
@@ -36,6 +41,12 @@ public class KafkaConfig {
     @Autowired
     private ObjectMapper objectMapper;
     
+    /**
+     * Registry of the Kafka client metrics of the producers
+     */
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
     /**
      * Kafka bootstrap servers address.
      * Default is localhost:9092 for local development with Docker.
@@ -43,12 +54,19 @@ public class KafkaConfig {
     private static final String BOOTSTRAP_SERVERS = "localhost:9092";
     
     /**
-     * Configures the Kafka producer with custom Jackson serializer.
+     * Maximum time a send waits for the topic metadata or for buffer space, so that
+     * starting a simulation while the broker is unreachable does not hang
+     */
+    @Value("${simulation.kafka.max-block-ms:5000}")
+    private long maxBlockMillis;
+    
+    /**
+     * Configures the Kafka producer with the binary simulation event serializer.
      * 
-     * @return Producer factory for Factory objects
+     * @return Producer factory for simulation events
      */
     @Bean
-    public ProducerFactory<String, Factory> producerFactory() {
+    public ProducerFactory<String, SimulationEvent> producerFactory() {
         Map<String, Object> configProps = new HashMap<>();
         
         // Kafka broker connection
@@ -57,38 +75,90 @@ public class KafkaConfig {
         // Key serializer (simple string)
         configProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
         
-        // Value serializer (custom JSON with our ObjectMapper)
-        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
+        // Value serializer (binary simulation event frames)
+        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, SimulationEventSerializer.class);
         
         // Additional producer settings for reliability
         configProps.put(ProducerConfig.ACKS_CONFIG, "all"); // Wait for all replicas
         configProps.put(ProducerConfig.RETRIES_CONFIG, 3); // Retry on transient errors
         configProps.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, 1); // Ensure ordering
+        configProps.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, maxBlockMillis);
         
         logger.info("Configured Kafka producer with bootstrap servers: {}", BOOTSTRAP_SERVERS);
         
-        // Create producer factory with custom ObjectMapper
-        DefaultKafkaProducerFactory<String, Factory> factory = 
+        // Create producer factory
+        DefaultKafkaProducerFactory<String, SimulationEvent> factory = 
             new DefaultKafkaProducerFactory<>(configProps);
         
-        // Set the custom ObjectMapper for JSON serialization
-        factory.setValueSerializer(new JsonSerializer<>(objectMapper));
+        // Set the custom ObjectMapper for the factory JSON of layout snapshots
+        factory.setValueSerializer(new SimulationEventSerializer(objectMapper));
+        
+        // Kafka client metrics of the producers (record errors, retries, request latency)
+        factory.addListener(new MicrometerProducerListener<>(meterRegistry));
         
         return factory;
     }
     
     /**
-     * Creates the KafkaTemplate bean for sending Factory objects to Kafka.
+     * Creates the KafkaTemplate bean for sending simulation events to Kafka.
      * 
      * @return KafkaTemplate configured with our producer factory
      */
     @Bean
-    public KafkaTemplate<String, Factory> kafkaTemplate() {
-        KafkaTemplate<String, Factory> template = new KafkaTemplate<>(producerFactory());
-        logger.info("Created KafkaTemplate for Factory simulation events");
+    public KafkaTemplate<String, SimulationEvent> kafkaTemplate() {
+        KafkaTemplate<String, SimulationEvent> template = new KafkaTemplate<>(producerFactory());
+        
+        // Times every send until acknowledged, tagged with its result, as spring.kafka.template
+        template.setMicrometerEnabled(true);
+        template.setMicrometerTags(Map.of("publisher", "simulation-events"));
+        logger.info("Created KafkaTemplate for factory simulation events");
         return template;
     }
     
+    /**
+     * Partitioned topic shared by all simulations when the shared topology is
+     * selected. Events are keyed by factory ID, so the number of partitions bounds
+     * the number of consumers reading different factories in parallel.
+     * 
+     * @param topicName The name of the shared topic
+     * @param partitions The number of partitions of the shared topic
+     * @return The shared simulation topic
+     */
+    @Bean
+    @ConditionalOnProperty(name = "simulation.kafka.topology", havingValue = "shared")
+    public NewTopic sharedSimulationTopic(
+            @Value("${simulation.kafka.shared-topic.name:simulation-events}") String topicName,
+            @Value("${simulation.kafka.shared-topic.partitions:12}") int partitions) {
+        logger.info("Declaring shared simulation topic '{}' with {} partitions", topicName, partitions);
+        return TopicBuilder.name(topicName)
+            .partitions(partitions)
+            .replicas(1)
+            .build();
+    }
+    
+    /**
+     * Log-compacted topic keeping the latest snapshot of each simulation, keyed by
+     * factory ID, from which new viewers bootstrap before tailing the live events.
+     * It is partitioned like the shared topic so that viewers find the snapshot of
+     * a factory in a single partition.
+     * 
+     * @param topicName The name of the snapshot topic
+     * @param partitions The number of partitions of the snapshot topic
+     * @return The simulation snapshot topic
+     */
+    @Bean
+    @ConditionalOnProperty(name = "simulation.kafka.snapshot-topic.enabled", havingValue = "true", matchIfMissing = true)
+    public NewTopic simulationSnapshotTopic(
+            @Value("${simulation.kafka.snapshot-topic.name:simulation-snapshots}") String topicName,
+            @Value("${simulation.kafka.snapshot-topic.partitions:12}") int partitions) {
+        logger.info("Declaring compacted simulation snapshot topic '{}' with {} partitions", topicName, partitions);
+        return TopicBuilder.name(topicName)
+            .partitions(partitions)
+            .replicas(1)
+            .compact()
+            .build();
+    }
+    
     /**
      * Example topic bean - topics will be created dynamically per factory,
      * but you can define default topics here if needed.
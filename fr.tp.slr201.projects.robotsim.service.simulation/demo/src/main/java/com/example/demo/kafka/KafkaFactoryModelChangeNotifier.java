@@ -3,41 +3,54 @@ package com.example.demo.kafka;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
-import org.springframework.kafka.support.KafkaHeaders;
-import org.springframework.kafka.support.SendResult;
-import org.springframework.messaging.Message;
-import org.springframework.messaging.support.MessageBuilder;
 
 import fr.tp.inf112.projects.canvas.controller.Observer;
+import fr.tp.inf112.projects.robotsim.app.SimulationServiceUtils;
+import fr.tp.inf112.projects.robotsim.model.CoalescingFactoryModelChangedNotifier;
 import fr.tp.inf112.projects.robotsim.model.Factory;
 import fr.tp.inf112.projects.robotsim.model.FactoryModelChangedNotifier;
-
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.CompletableFuture;
+import fr.tp.inf112.projects.robotsim.model.event.FactoryStateTracker;
+import fr.tp.inf112.projects.robotsim.model.event.SimulationEvent;
 
 /**
  * Kafka-based implementation of FactoryModelChangedNotifier.
  * This class both publishes factory model changes to Kafka topics AND
  * notifies local observers for GUI repaints.
  * 
- * <p>Each factory gets its own Kafka topic named "simulation-{factoryId}"
- * to ensure topic uniqueness and allow multiple factory simulations
- * to run independently.</p>
+ * <p>By default each factory gets its own Kafka topic named
+ * "simulation-{factoryId}". Events may instead be published to a partitioned
+ * topic shared by all factories: they are keyed by factory ID, so the events
+ * of a factory stay ordered within one partition.</p>
+ * 
+ * <p>The topic carries a layout snapshot of the factory, published when the
+ * simulation starts and on request, followed by state deltas listing only the
+ * components that changed, with a full keyframe at a regular interval. The
+ * latest snapshot of the factory may also be kept in a log-compacted topic, so
+ * that new viewers catch up without replaying the event topic.</p>
+ * 
+ * <p>Nothing runs on the simulation threads calling {@link #notifyObservers()}
+ * besides flagging the change: local observers are notified by a coalescing
+ * dispatcher thread and the factory is serialized and sent by a
+ * {@link ConflatingFactoryPublisher}.</p>
  */
 public class KafkaFactoryModelChangeNotifier implements FactoryModelChangedNotifier {
     
     private static final Logger logger = LoggerFactory.getLogger(KafkaFactoryModelChangeNotifier.class);
     
     /**
-     * The factory model being observed
+     * Default minimum interval between two publications of a factory
      */
-    private final Factory factoryModel;
+    public static final long DEFAULT_PUBLISH_INTERVAL_MILLIS = 100;
     
     /**
-     * Kafka template for sending messages
+     * Default maximum number of sends pending at the broker per factory
      */
-    private final KafkaTemplate<String, Factory> simulationEventTemplate;
+    public static final int DEFAULT_MAX_IN_FLIGHT = 2;
+    
+    /**
+     * The factory model being observed
+     */
+    private final Factory factoryModel;
     
     /**
      * The Kafka topic name for this factory
@@ -45,70 +58,73 @@ public class KafkaFactoryModelChangeNotifier implements FactoryModelChangedNotif
     private final String topicName;
     
     /**
-     * List of local observers for GUI repaints
+     * Notifier of the local observers for GUI repaints
+     */
+    private final FactoryModelChangedNotifier localNotifier;
+    
+    /**
+     * Publisher sending the factory to Kafka off the simulation threads
+     */
+    private final ConflatingFactoryPublisher publisher;
+    
+    /**
+     * Creates a new Kafka notifier for the given factory model with the default
+     * publication rate.
+     * 
+     * @param factoryModel The factory model to observe
+     * @param simulationEventTemplate The Kafka template for sending messages
      */
-    private final List<Observer> localObservers = new ArrayList<>();
+    public KafkaFactoryModelChangeNotifier(
+            final Factory factoryModel,
+            final KafkaTemplate<String, SimulationEvent> simulationEventTemplate) {
+        this(factoryModel, simulationEventTemplate, SimulationServiceUtils.getTopicName(factoryModel), null,
+             DEFAULT_PUBLISH_INTERVAL_MILLIS, DEFAULT_MAX_IN_FLIGHT, FactoryStateTracker.DEFAULT_KEYFRAME_INTERVAL, false);
+    }
     
     /**
      * Creates a new Kafka notifier for the given factory model.
      * 
      * @param factoryModel The factory model to observe
      * @param simulationEventTemplate The Kafka template for sending messages
+     * @param topicName The topic to publish to, the topic of the factory or the shared topic
+     * @param snapshotTopicName The log-compacted topic of the latest snapshots, null to
+     * publish no snapshot
+     * @param publishIntervalMillis The minimum interval between two publications
+     * @param maxInFlight The maximum number of sends pending at the broker
+     * @param keyframeInterval The number of state deltas between two keyframes
+     * @param paused true if the simulation is loaded without running
      */
     public KafkaFactoryModelChangeNotifier(
             final Factory factoryModel,
-            final KafkaTemplate<String, Factory> simulationEventTemplate) {
+            final KafkaTemplate<String, SimulationEvent> simulationEventTemplate,
+            final String topicName,
+            final String snapshotTopicName,
+            final long publishIntervalMillis,
+            final int maxInFlight,
+            final int keyframeInterval,
+            final boolean paused) {
         
         this.factoryModel = factoryModel;
-        this.simulationEventTemplate = simulationEventTemplate;
-        this.topicName = "simulation-" + factoryModel.getId();
+        this.topicName = topicName;
+        this.localNotifier = new CoalescingFactoryModelChangedNotifier();
+        this.publisher = new ConflatingFactoryPublisher(
+            new FactoryStateTracker(factoryModel, factoryModel.getId(), keyframeInterval),
+            simulationEventTemplate, topicName, snapshotTopicName, publishIntervalMillis, maxInFlight, paused);
         
-        logger.info("Created Kafka notifier for factory '{}' with topic '{}'", 
-                   factoryModel.getId(), topicName);
+        logger.info("Created Kafka notifier for factory '{}' with topic '{}' and snapshot topic '{}' (publish interval {} ms, max in-flight {}, keyframe interval {})", 
+                   factoryModel.getId(), topicName, snapshotTopicName, publishIntervalMillis, maxInFlight, keyframeInterval);
     }
     
     /**
      * {@inheritDoc}
      * 
-     * Publishes the factory model to Kafka AND notifies local observers for GUI repaints.
+     * Flags the change for the local observers and for the Kafka publisher.
+     * Returns immediately.
      */
     @Override
     public void notifyObservers() {
-        // FIRST: Notify local observers immediately for GUI repaints
-        for (final Observer observer : localObservers) {
-            try {
-                observer.modelChanged();
-            } catch (Exception e) {
-                logger.error("Error notifying local observer: {}", e.getMessage());
-            }
-        }
-        
-        // SECOND: Publish to Kafka for remote viewers (async)
-        try {
-            // Create a Spring Message with the factory as payload
-            final Message<Factory> factoryMessage = MessageBuilder
-                .withPayload(factoryModel)
-                .setHeader(KafkaHeaders.TOPIC, topicName)
-                .build();
-            
-            // Send the message asynchronously
-            final CompletableFuture<SendResult<String, Factory>> sendResult = 
-                simulationEventTemplate.send(factoryMessage);
-            
-            // Handle the result
-            sendResult.whenComplete((result, ex) -> {
-                if (ex != null) {
-                    logger.error("Failed to send factory update to Kafka topic '{}': {}", 
-                               topicName, ex.getMessage(), ex);
-                } else {
-                    logger.trace("Successfully sent factory update to topic '{}'", topicName);
-                }
-            });
-            
-        } catch (Exception e) {
-            logger.error("Error publishing to Kafka for factory '{}': {}", 
-                       factoryModel.getId(), e.getMessage());
-        }
+        localNotifier.notifyObservers();
+        publisher.signal();
     }
     
     /**
@@ -122,7 +138,7 @@ public class KafkaFactoryModelChangeNotifier implements FactoryModelChangedNotif
             return false;
         }
         logger.debug("Adding local observer to Kafka notifier for factory '{}'", factoryModel.getId());
-        return localObservers.add(observer);
+        return localNotifier.addObserver(observer);
     }
     
     /**
@@ -136,7 +152,32 @@ public class KafkaFactoryModelChangeNotifier implements FactoryModelChangedNotif
             return false;
         }
         logger.debug("Removing local observer from Kafka notifier for factory '{}'", factoryModel.getId());
-        return localObservers.remove(observer);
+        return localNotifier.removeObserver(observer);
+    }
+    
+    /**
+     * Requests a layout snapshot of the factory to be published, for viewers that
+     * missed the previous one.
+     */
+    public void requestLayoutSnapshot() {
+        publisher.requestLayoutSnapshot();
+    }
+    
+    /**
+     * Publishes the pending state of the factory, if any, and stops the publisher.
+     */
+    public void close() {
+        publisher.close();
+    }
+    
+    /**
+     * Publishes the pending state of the factory, if any, and stops the publisher.
+     * 
+     * @param stopped true if the simulation is over, false if it goes on at another
+     * instance of the service
+     */
+    public void close(final boolean stopped) {
+        publisher.close(stopped);
     }
     
     /**
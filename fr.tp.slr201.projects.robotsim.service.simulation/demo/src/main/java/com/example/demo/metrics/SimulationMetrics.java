@@ -0,0 +1,201 @@
+package com.example.demo.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.hosting.AdmissionController;
+import com.example.demo.hosting.SimulationScheduler;
+
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.Robot;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Micrometer instrumentation of the simulations, exposed by the actuator metrics and
+ * Prometheus endpoints together with the REST latencies and Kafka producer metrics.
+ *
+ * <p>Each simulated factory gets meters tagged with its ID while it runs: tick duration
+ * histogram, collision query count and path finding time. The counters of the model are
+ * read when the meters are scraped, so the simulation threads only pay for a counter
+ * increment. Service-wide gauges cover the running, hosted and queued simulations.</p>
+ */
+@Component
+public class SimulationMetrics {
+
+    private static final String FACTORY_TAG = "factory";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private SimulationScheduler simulationScheduler;
+
+    @Autowired
+    private AdmissionController admissionController;
+
+    /**
+     * Meters of the running simulations by factory ID
+     */
+    private final Map<String, FactoryMeters> factoryMeters = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("simulation.running", factoryMeters, Map::size)
+            .description("Simulations loaded by the service, running or paused")
+            .register(meterRegistry);
+        Gauge.builder("simulation.hosting.hosted", simulationScheduler, SimulationScheduler::getHostedCount)
+            .description("Headless simulations stepped by the shared scheduler")
+            .register(meterRegistry);
+        Gauge.builder("simulation.hosting.queued.steps", simulationScheduler, SimulationScheduler::getQueuedSteps)
+            .description("Steps waiting for a worker of the shared scheduler")
+            .register(meterRegistry);
+        Gauge.builder("simulation.admission.load", admissionController, AdmissionController::getLoad)
+            .description("Estimated cost of the admitted simulations")
+            .register(meterRegistry);
+        Gauge.builder("simulation.admission.queue.depth", admissionController, AdmissionController::getQueueDepth)
+            .description("Starts waiting for capacity")
+            .register(meterRegistry);
+        FunctionCounter.builder("simulation.admission.rejected", admissionController, AdmissionController::getRejectedCount)
+            .description("Starts rejected for lack of capacity")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Registers the meters of a simulated factory.
+     *
+     * @param factoryId The ID of the simulated factory
+     * @param factory The simulated factory
+     */
+    public void register(final String factoryId, final Factory factory) {
+        final List<Meter> meters = new ArrayList<>();
+
+        final Timer tickTimer = Timer.builder("simulation.tick.duration")
+            .description("Duration of the ticks of a simulation, every component behaving once")
+            .tag(FACTORY_TAG, factoryId)
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        meters.add(tickTimer);
+
+        meters.add(FunctionCounter.builder("simulation.collision.queries", factory, Factory::getCollisionQueryCount)
+            .description("Queries for obstacles or mobile components")
+            .tag(FACTORY_TAG, factoryId)
+            .register(meterRegistry));
+
+        meters.add(FunctionTimer.builder("simulation.pathfinding", factory,
+                                         SimulationMetrics::getPathFindingCount,
+                                         SimulationMetrics::getPathFindingNanos,
+                                         TimeUnit.NANOSECONDS)
+            .description("Path computations of the robots")
+            .tag(FACTORY_TAG, factoryId)
+            .register(meterRegistry));
+
+        final FactoryMeters previous = factoryMeters.put(factoryId, new FactoryMeters(tickTimer, meters));
+        if (previous != null) {
+            remove(previous);
+        }
+    }
+
+    /**
+     * Removes the meters of a factory whose simulation stopped.
+     *
+     * @param factoryId The ID of the simulated factory
+     */
+    public void unregister(final String factoryId) {
+        final FactoryMeters meters = factoryMeters.remove(factoryId);
+
+        if (meters != null) {
+            remove(meters);
+        }
+    }
+
+    /**
+     * Gets the timer of the ticks of a simulated factory.
+     *
+     * @param factoryId The ID of the simulated factory
+     * @return The tick timer, or null if the factory is not registered
+     */
+    public Timer getTickTimer(final String factoryId) {
+        final FactoryMeters meters = factoryMeters.get(factoryId);
+
+        return meters == null ? null : meters.tickTimer;
+    }
+
+    /**
+     * Records the JSON serialization of a response body.
+     *
+     * @param type The type of the serialized value
+     * @param nanos The serialization time in nanoseconds
+     * @param bytes The size of the JSON
+     */
+    public void recordSerialization(final String type, final long nanos, final long bytes) {
+        Timer.builder("simulation.json.serialization")
+            .description("JSON serialization time of the response bodies")
+            .tag("type", type)
+            .register(meterRegistry)
+            .record(nanos, TimeUnit.NANOSECONDS);
+        DistributionSummary.builder("simulation.json.size")
+            .description("JSON size of the response bodies")
+            .baseUnit("bytes")
+            .tag("type", type)
+            .register(meterRegistry)
+            .record(bytes);
+    }
+
+    private void remove(final FactoryMeters meters) {
+        for (final Meter meter : meters.meters) {
+            meterRegistry.remove(meter);
+        }
+    }
+
+    private static long getPathFindingCount(final Factory factory) {
+        long count = 0;
+
+        for (final fr.tp.inf112.projects.robotsim.model.Component component : factory.getComponents()) {
+            if (component instanceof Robot) {
+                count += ((Robot) component).getPathFindingCount();
+            }
+        }
+
+        return count;
+    }
+
+    private static double getPathFindingNanos(final Factory factory) {
+        long nanos = 0;
+
+        for (final fr.tp.inf112.projects.robotsim.model.Component component : factory.getComponents()) {
+            if (component instanceof Robot) {
+                nanos += ((Robot) component).getPathFindingNanos();
+            }
+        }
+
+        return nanos;
+    }
+
+    /**
+     * Meters of a simulated factory
+     */
+    private static final class FactoryMeters {
+
+        private final Timer tickTimer;
+
+        private final List<Meter> meters;
+
+        private FactoryMeters(final Timer tickTimer, final List<Meter> meters) {
+            this.tickTimer = tickTimer;
+            this.meters = meters;
+        }
+    }
+}
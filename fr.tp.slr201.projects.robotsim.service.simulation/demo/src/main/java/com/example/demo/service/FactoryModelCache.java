@@ -0,0 +1,230 @@
+package com.example.demo.service;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import fr.tp.inf112.projects.robotsim.model.Factory;
+
+/**
+ * Cache of the factory layouts loaded to start simulations, so that starting several
+ * simulations of the same layout reads and parses it once.
+ *
+ * <p>Layouts are kept as parsed factories, never simulated, together with a validator:
+ * the modification time and length of the file, or the entity tag returned by the
+ * persistence server. A cached template is reused while its validator still matches,
+ * and each simulation gets its own structural deep copy of it ({@link Factory#copy()}),
+ * since simulations mutate their factory, instead of parsing the layout again. The
+ * cache is bounded by the total size of the templates, estimated from their serialized
+ * size, least recently used first.</p>
+ */
+@Service
+public class FactoryModelCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(FactoryModelCache.class);
+
+    /**
+     * Maximum total serialized size of the cached templates, 0 to disable the cache
+     */
+    @Value("${simulation.factory-cache.max-bytes:67108864}")
+    private long maxBytes;
+
+    /**
+     * REST template for calling the persistence web server
+     */
+    @Autowired
+    private RestTemplate restTemplate;
+
+    /**
+     * Templates by source, in access order, guarded by this
+     */
+    private final LinkedHashMap<String, Template> templates = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long cachedBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Reads a factory file, from the cache while the file is unchanged.
+     *
+     * @param factoryFile The factory file
+     * @return A copy of the factory of the file
+     * @throws IOException If the file cannot be read
+     */
+    public Factory readFile(final File factoryFile) throws IOException {
+        final String key = "file:" + factoryFile.getCanonicalPath();
+        final String validator = factoryFile.lastModified() + ":" + factoryFile.length();
+        final Template template = get(key);
+
+        if (template != null && template.validator.equals(validator)) {
+            hits.incrementAndGet();
+            logger.debug("Factory template cache hit for {}", factoryFile);
+            return template.copy();
+        }
+
+        misses.incrementAndGet();
+        final Factory factory = deserialize(factoryFile);
+        put(key, new Template(factory, factoryFile.length(), validator));
+
+        return factory.copy();
+    }
+
+    /**
+     * Gets a factory from the persistence server, revalidating a cached copy with the
+     * entity tag the server returned for it. Responses without entity tag are not cached.
+     *
+     * @param url The URL of the factory on the persistence server
+     * @return A copy of the factory, or null if the server returned none
+     * @throws IOException If the size of the factory cannot be measured
+     */
+    public Factory readRemote(final String url) throws IOException {
+        final String key = "url:" + url;
+        final Template template = get(key);
+        final HttpHeaders headers = new HttpHeaders();
+
+        if (template != null) {
+            headers.setIfNoneMatch(template.validator);
+        }
+
+        final ResponseEntity<Factory> response =
+            restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), Factory.class);
+
+        if (response.getStatusCode() == HttpStatus.NOT_MODIFIED && template != null) {
+            hits.incrementAndGet();
+            logger.debug("Factory template revalidated with persistence server for {}", url);
+            return template.copy();
+        }
+
+        misses.incrementAndGet();
+        final Factory factory = response.getBody();
+        final String entityTag = response.getHeaders().getETag();
+
+        if (factory == null || entityTag == null) {
+            return factory;
+        }
+
+        put(key, new Template(factory, serializedSize(factory), entityTag));
+
+        return factory.copy();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public synchronized long getCachedBytes() {
+        return cachedBytes;
+    }
+
+    private synchronized Template get(final String key) {
+        return templates.get(key);
+    }
+
+    private synchronized void put(final String key, final Template template) {
+        final Template previous = templates.remove(key);
+
+        if (previous != null) {
+            cachedBytes -= previous.size;
+        }
+
+        if (template.size > maxBytes) {
+            return;
+        }
+
+        templates.put(key, template);
+        cachedBytes += template.size;
+
+        final Iterator<Map.Entry<String, Template>> eldest = templates.entrySet().iterator();
+        while (cachedBytes > maxBytes && eldest.hasNext()) {
+            final Map.Entry<String, Template> entry = eldest.next();
+            cachedBytes -= entry.getValue().size;
+            eldest.remove();
+            logger.debug("Evicted factory template {} from cache", entry.getKey());
+        }
+    }
+
+    /**
+     * Counts the bytes of the Java serialization of a factory without keeping them.
+     */
+    private static long serializedSize(final Factory factory) throws IOException {
+        final ByteCounter counter = new ByteCounter();
+
+        try (ObjectOutputStream output = new ObjectOutputStream(counter)) {
+            output.writeObject(factory);
+        }
+
+        return counter.count;
+    }
+
+    private static Factory deserialize(final File factoryFile) throws IOException {
+        try (ObjectInputStream input = new ObjectInputStream(new BufferedInputStream(new FileInputStream(factoryFile)))) {
+            return (Factory) input.readObject();
+
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Not a factory: " + e.getMessage(), e);
+        }
+    }
+
+    private static final class ByteCounter extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(final int value) {
+            count++;
+        }
+
+        @Override
+        public void write(final byte[] bytes, final int offset, final int length) {
+            count += length;
+        }
+    }
+
+    /**
+     * Parsed layout with its serialized size and the validator of its source
+     */
+    private static final class Template {
+
+        private final Factory factory;
+
+        private final long size;
+
+        private final String validator;
+
+        private Template(final Factory factory, final long size, final String validator) {
+            this.factory = factory;
+            this.size = size;
+            this.validator = validator;
+        }
+
+        private Factory copy() {
+            return factory.copy();
+        }
+    }
+}
@@ -1,12 +1,15 @@
 package com.example.demo.service;
 
-import java.awt.Component;
 import java.awt.GraphicsEnvironment;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.Map;
+import java.util.Set;
 
 import javax.swing.JFrame;
 import javax.swing.SwingUtilities;
@@ -18,15 +21,24 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
+import com.example.demo.hosting.AdmissionController;
+import com.example.demo.hosting.AdmissionRejectedException;
+import com.example.demo.hosting.SimulationScheduler;
 import com.example.demo.kafka.KafkaFactoryModelChangeNotifier;
+import com.example.demo.metrics.SimulationMetrics;
+import com.example.demo.stream.FrameStreamService;
 
 import fr.tp.inf112.projects.canvas.view.CanvasViewer;
 import fr.tp.inf112.projects.canvas.view.FileCanvasChooser;
+import fr.tp.inf112.projects.robotsim.app.SimulationServiceUtils;
 import fr.tp.inf112.projects.robotsim.app.SimulatorController;
+import fr.tp.inf112.projects.robotsim.model.Component;
 import fr.tp.inf112.projects.robotsim.model.Factory;
 import fr.tp.inf112.projects.robotsim.model.FactoryPersistenceManager;
+import fr.tp.inf112.projects.robotsim.model.event.FactoryVersionHistory;
+import fr.tp.inf112.projects.robotsim.model.event.SimulationEvent;
+import io.micrometer.core.instrument.Timer;
 
 /**
  * Service class for managing robot factory simulations.
@@ -42,6 +54,17 @@ public class SimulationService {
      */
     private final Map<String, SimulatorController> runningSimulators = new ConcurrentHashMap<>();
     
+    /**
+     * IDs of the factories whose simulation is starting, reserved until the simulation
+     * is registered in the running ones or fails to start
+     */
+    private final Set<String> startingSimulations = ConcurrentHashMap.newKeySet();
+    
+    /**
+     * Model versions served to polling clients, by factory ID of the running simulations
+     */
+    private final Map<String, FactoryVersionHistory> versionHistories = new ConcurrentHashMap<>();
+    
     /**
      * Persistence manager for loading/saving factory models (initialized after directory is set)
      */
@@ -54,16 +77,53 @@ public class SimulationService {
     private String localFactoryDirectory;
     
     /**
-     * REST template for calling the persistence web server
+     * Cache of the factory layouts, validated against their file or the persistence server
      */
     @Autowired
-    private RestTemplate restTemplate;
+    private FactoryModelCache factoryModelCache;
     
     /**
      * Kafka template for publishing factory events
      */
     @Autowired
-    private KafkaTemplate<String, Factory> kafkaTemplate;
+    private KafkaTemplate<String, SimulationEvent> kafkaTemplate;
+    
+    /**
+     * Service streaming the frames of the simulations to viewers
+     */
+    @Autowired
+    private FrameStreamService frameStreamService;
+    
+    /**
+     * Scheduler stepping the simulations in headless hosting mode
+     */
+    @Autowired
+    private SimulationScheduler simulationScheduler;
+    
+    /**
+     * Admission control of the simulation starts
+     */
+    @Autowired
+    private AdmissionController admissionController;
+    
+    /**
+     * Meters of the simulations
+     */
+    @Autowired
+    private SimulationMetrics simulationMetrics;
+    
+    /**
+     * Hosting mode: "gui" opens a viewer window per simulation whose components run on
+     * their own threads, "headless" steps all simulations on the shared scheduler
+     */
+    @Value("${simulation.hosting.mode:gui}")
+    private String hostingMode;
+    
+    /**
+     * Simulated time of a step, that of the real-time simulations
+     */
+    @Value("${simulation.hosting.tick-interval-ms:50}")
+    private long stepTickIntervalMillis;
     
     /**
      * URL of the persistence web server (from application.yml)
@@ -71,6 +131,55 @@ public class SimulationService {
     @Value("${simulation.persistence.server.url}")
     private String persistenceServerUrl;
     
+    /**
+     * Minimum interval between two Kafka publications of a factory
+     */
+    @Value("${simulation.kafka.publish-interval-ms:100}")
+    private long kafkaPublishIntervalMillis;
+    
+    /**
+     * Maximum number of Kafka sends pending at the broker per factory
+     */
+    @Value("${simulation.kafka.max-in-flight:2}")
+    private int kafkaMaxInFlight;
+    
+    /**
+     * Number of state delta events between two keyframes
+     */
+    @Value("${simulation.kafka.keyframe-interval:50}")
+    private int kafkaKeyframeInterval;
+    
+    /**
+     * Kafka topic topology: "per-factory" for one topic per factory, "shared" for
+     * one partitioned topic keyed by factory ID
+     */
+    @Value("${simulation.kafka.topology:per-factory}")
+    private String kafkaTopology;
+    
+    /**
+     * Name of the partitioned topic shared by all simulations
+     */
+    @Value("${simulation.kafka.shared-topic.name:simulation-events}")
+    private String kafkaSharedTopicName;
+    
+    /**
+     * Whether the latest snapshot of each simulation is kept in a log-compacted topic
+     */
+    @Value("${simulation.kafka.snapshot-topic.enabled:true}")
+    private boolean kafkaSnapshotTopicEnabled;
+    
+    /**
+     * Name of the log-compacted topic of the latest simulation snapshots
+     */
+    @Value("${simulation.kafka.snapshot-topic.name:simulation-snapshots}")
+    private String kafkaSnapshotTopicName;
+    
+    /**
+     * Number of model versions per factory from which deltas can be served to polling clients
+     */
+    @Value("${simulation.versions.history-size:16}")
+    private int versionHistorySize;
+    
     public SimulationService() {
         // Persistence manager will be initialized in @PostConstruct after directory is set
     }
@@ -82,7 +191,9 @@ public class SimulationService {
     public void initializeFileChooser() {
         // CRITICAL: Check and initialize AWT/Swing for GUI windows
         try {
-            if (GraphicsEnvironment.isHeadless()) {
+            if (isHeadlessHosting()) {
+                logger.info("Headless hosting mode - simulations run on the shared scheduler without GUI windows");
+            } else if (GraphicsEnvironment.isHeadless()) {
                 logger.error("!!! HEADLESS MODE DETECTED - GUI WINDOWS WILL NOT WORK !!!");
                 logger.error("!!! Run with -Djava.awt.headless=false to enable GUI !!!");
             } else {
@@ -139,27 +250,81 @@ public class SimulationService {
      * 
      * @param factoryId The ID of the factory to simulate
      * @return true if the simulation started successfully, false otherwise
+     * @throws AdmissionRejectedException If the service has no capacity for the simulation
      */
     public boolean startSimulation(String factoryId) {
+        return startSimulation(factoryId, false);
+    }
+    
+    /**
+     * Starts a simulation for the specified factory ID, possibly paused. A paused
+     * simulation does not run in real time and is only advanced by {@link #stepSimulation}.
+     * 
+     * @param factoryId The ID of the factory to simulate
+     * @param paused true to load the simulation without running it
+     * @return true if the simulation started successfully, false otherwise
+     * @throws AdmissionRejectedException If the service has no capacity for the simulation
+     */
+    public boolean startSimulation(String factoryId, boolean paused) {
         logger.info("Attempting to start simulation for factory ID: {}", factoryId);
         
+        // Check if simulation is already running
+        if (runningSimulators.containsKey(factoryId)) {
+            logger.warn("Simulation for factory ID {} is already running", factoryId);
+            return false;
+        }
+        
+        // Load the factory model from persistence
+        Factory factoryModel = loadFactoryModel(factoryId);
+        if (factoryModel == null) {
+            logger.error("Failed to load factory model with ID: {}", factoryId);
+            return false;
+        }
+        
+        return startSimulation(factoryId, factoryModel, paused);
+    }
+    
+    /**
+     * Starts simulating a given factory model, possibly paused, such as the current
+     * state of a simulation handed over by another instance of the service.
+     * 
+     * @param factoryId The ID of the factory to simulate
+     * @param factoryModel The factory model to simulate, with its simulation stopped
+     * @param paused true to load the simulation without running it
+     * @return true if the simulation started successfully, false otherwise
+     * @throws AdmissionRejectedException If the service has no capacity for the simulation
+     */
+    public boolean startSimulation(String factoryId, Factory factoryModel, boolean paused) {
+        // Concurrent starts of the same factory may both wait for admission, so reserve
+        // the factory ID before checking whether it is already running
+        if (!startingSimulations.add(factoryId)) {
+            logger.warn("Simulation for factory ID {} is already starting", factoryId);
+            return false;
+        }
+        
+        boolean admitted = false;
+        KafkaFactoryModelChangeNotifier kafkaNotifier = null;
+        boolean registered = false;
+        
         try {
-            // Check if simulation is already running
             if (runningSimulators.containsKey(factoryId)) {
                 logger.warn("Simulation for factory ID {} is already running", factoryId);
                 return false;
             }
             
-            // Load the factory model from persistence
-            Factory factoryModel = loadFactoryModel(factoryId);
-            if (factoryModel == null) {
-                logger.error("Failed to load factory model with ID: {}", factoryId);
-                return false;
-            }
+            // Wait for capacity, or reject the start with a retry delay
+            admissionController.admit(factoryId, admissionController.estimateCost(factoryModel),
+                                      isHeadlessHosting() ? 0 : factoryModel.getComponents().size());
+            admitted = true;
             
             // Set the Kafka notifier for this factory so events are published
-            KafkaFactoryModelChangeNotifier kafkaNotifier = 
-                new KafkaFactoryModelChangeNotifier(factoryModel, kafkaTemplate);
+            String topicName = "shared".equalsIgnoreCase(kafkaTopology)
+                ? kafkaSharedTopicName
+                : SimulationServiceUtils.getTopicName(factoryModel);
+            kafkaNotifier = new KafkaFactoryModelChangeNotifier(
+                factoryModel, kafkaTemplate, topicName,
+                kafkaSnapshotTopicEnabled ? kafkaSnapshotTopicName : null,
+                kafkaPublishIntervalMillis, kafkaMaxInFlight, kafkaKeyframeInterval, paused);
             factoryModel.setNotifier(kafkaNotifier);
             
             logger.info("Configured Kafka notifier for factory '{}' with topic '{}'", 
@@ -169,7 +334,22 @@ public class SimulationService {
             SimulatorController simulator = new SimulatorController(factoryModel, persistenceManager);
             
             // Store the simulator in our running simulations map
+            registered = true;
             runningSimulators.put(factoryId, simulator);
+            versionHistories.put(factoryId, new FactoryVersionHistory(factoryModel, versionHistorySize));
+            simulationMetrics.register(factoryId, factoryModel);
+            
+            if (paused) {
+                logger.info("Successfully loaded paused simulation for factory ID: {}", factoryId);
+                return true;
+            }
+            
+            if (isHeadlessHosting()) {
+                simulationScheduler.host(factoryId, factoryModel, simulationMetrics.getTickTimer(factoryId));
+                
+                logger.info("Successfully started headless simulation for factory ID: {}", factoryId);
+                return true;
+            }
             
             // DON'T START ANIMATION HERE - let the GUI window do it after it's created
             // This prevents threading issues
@@ -195,11 +375,29 @@ public class SimulationService {
             logger.info("Successfully started simulation for factory ID: {}", factoryId);
             return true;
             
+        } catch (AdmissionRejectedException e) {
+            logger.warn("Rejected start of simulation for factory ID {}: {}", factoryId, e.getMessage());
+            throw e;
+            
         } catch (Exception e) {
             logger.error("Error starting simulation for factory ID {}: {}", factoryId, e.getMessage(), e);
-            // Clean up in case of error
-            runningSimulators.remove(factoryId);
+            // Clean up what this start created, the factory ID being reserved
+            if (registered) {
+                runningSimulators.remove(factoryId);
+                versionHistories.remove(factoryId);
+                simulationMetrics.unregister(factoryId);
+                simulationScheduler.unhost(factoryId);
+            }
+            if (kafkaNotifier != null) {
+                kafkaNotifier.close();
+            }
+            if (admitted) {
+                admissionController.release(factoryId);
+            }
             return false;
+            
+        } finally {
+            startingSimulations.remove(factoryId);
         }
     }
     
@@ -221,6 +419,83 @@ public class SimulationService {
         return (Factory) simulator.getCanvas();
     }
     
+    /**
+     * Retrieves the history of the model versions served for a running simulation, used
+     * to answer conditional and delta requests of polling clients.
+     * 
+     * @param factoryId The ID of the simulated factory
+     * @return The version history if simulation is running, null otherwise
+     */
+    public FactoryVersionHistory getVersionHistory(String factoryId) {
+        return versionHistories.get(factoryId);
+    }
+    
+    /**
+     * Advances a paused simulation a number of ticks as fast as possible, on the calling
+     * thread. Each tick makes every component behave once, as a real-time step does.
+     * 
+     * @param factoryId The ID of the simulated factory
+     * @param ticks The number of ticks to advance
+     * @return The summary of the steps, or null if no such simulation exists
+     * @throws IllegalStateException If the simulation is running in real time
+     */
+    public StepResult stepSimulation(String factoryId, int ticks) {
+        Factory factory = getSimulatedFactory(factoryId);
+        
+        if (factory == null) {
+            return null;
+        }
+        
+        // Steps of the same simulation never interleave
+        synchronized (factory) {
+            if (factory.isSimulationStarted()) {
+                throw new IllegalStateException("Simulation of factory '" + factoryId + "' is running");
+            }
+            
+            List<Component> mobileComponents = new ArrayList<>();
+            for (Component component : factory.getComponents()) {
+                if (component.isMobile()) {
+                    mobileComponents.add(component);
+                }
+            }
+            
+            Timer tickTimer = simulationMetrics.getTickTimer(factoryId);
+            long start = System.nanoTime();
+            long moves = 0;
+            long blockedSteps = 0;
+            
+            for (int tick = 0; tick < ticks; tick++) {
+                long tickStart = System.nanoTime();
+                moves += factory.step();
+                
+                if (tickTimer != null) {
+                    tickTimer.record(System.nanoTime() - tickStart, TimeUnit.NANOSECONDS);
+                }
+                
+                for (Component component : mobileComponents) {
+                    if ((component.getStateFlags() & Component.STATE_FLAG_BLOCKED) != 0) {
+                        blockedSteps++;
+                    }
+                }
+            }
+            
+            long elapsedMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+            StepResult.ComponentPosition[] positions = new StepResult.ComponentPosition[mobileComponents.size()];
+            
+            for (int index = 0; index < positions.length; index++) {
+                Component component = mobileComponents.get(index);
+                positions[index] = new StepResult.ComponentPosition(component.getName(),
+                                                                    component.getxCoordinate(),
+                                                                    component.getyCoordinate(),
+                                                                    (component.getStateFlags() & Component.STATE_FLAG_BLOCKED) != 0);
+            }
+            
+            logger.debug("Stepped simulation of factory ID {} by {} ticks in {} us", factoryId, ticks, elapsedMicros);
+            return new StepResult(factoryId, ticks, ticks * stepTickIntervalMillis, elapsedMicros,
+                                  moves, blockedSteps, positions);
+        }
+    }
+    
     /**
      * Stops the simulation for the specified factory ID.
      * 
@@ -228,6 +503,22 @@ public class SimulationService {
      * @return true if the simulation was stopped successfully, false otherwise
      */
     public boolean stopSimulation(String factoryId) {
+        return stopSimulation(factoryId, true);
+    }
+    
+    /**
+     * Stops the local simulation of a factory handed over to another instance of the
+     * service. Unlike {@link #stopSimulation(String)}, it does not publish that the
+     * simulation stopped, as it goes on at the other instance.
+     * 
+     * @param factoryId The ID of the handed over factory
+     * @return true if the simulation was stopped successfully, false otherwise
+     */
+    public boolean stopHandedOverSimulation(String factoryId) {
+        return stopSimulation(factoryId, false);
+    }
+    
+    private boolean stopSimulation(String factoryId, boolean stopped) {
         logger.info("Attempting to stop simulation for factory ID: {}", factoryId);
         
         SimulatorController simulator = runningSimulators.get(factoryId);
@@ -239,9 +530,22 @@ public class SimulationService {
         try {
             // Stop the animation/simulation
             simulator.stopAnimation();
+            simulationScheduler.unhost(factoryId);
+            admissionController.release(factoryId);
+            
+            // Publish the final state and stop the Kafka publisher thread
+            final Factory factory = (Factory) simulator.getCanvas();
+            if (factory != null && factory.getNotifier() instanceof KafkaFactoryModelChangeNotifier) {
+                ((KafkaFactoryModelChangeNotifier) factory.getNotifier()).close(stopped);
+            }
+            
+            // End the frame streams of the simulation
+            frameStreamService.closeFactory(factoryId, stopped);
             
             // Remove from running simulations
             runningSimulators.remove(factoryId);
+            versionHistories.remove(factoryId);
+            simulationMetrics.unregister(factoryId);
             
             logger.info("Successfully stopped simulation for factory ID: {}", factoryId);
             return true;
@@ -252,6 +556,25 @@ public class SimulationService {
         }
     }
     
+    /**
+     * Requests a layout snapshot of a running simulation to be published to Kafka,
+     * for viewers that joined after the previous one was published.
+     * 
+     * @param factoryId The ID of the simulated factory
+     * @return true if the snapshot was requested, false if no such simulation is running
+     */
+    public boolean requestLayoutSnapshot(String factoryId) {
+        Factory factory = getSimulatedFactory(factoryId);
+        
+        if (factory == null || !(factory.getNotifier() instanceof KafkaFactoryModelChangeNotifier)) {
+            return false;
+        }
+        
+        ((KafkaFactoryModelChangeNotifier) factory.getNotifier()).requestLayoutSnapshot();
+        logger.info("Requested layout snapshot for factory ID: {}", factoryId);
+        return true;
+    }
+    
     /**
      * Checks if a simulation is currently running for the specified factory ID.
      * 
@@ -273,13 +596,24 @@ public class SimulationService {
     }
     
     /**
-     * Loads a factory model from the persistence web server.
+     * Checks whether simulations are hosted headless on the shared scheduler, which is
+     * also the case when no display is available.
+     * 
+     * @return true in headless hosting mode
+     */
+    private boolean isHeadlessHosting() {
+        return "headless".equalsIgnoreCase(hostingMode) || GraphicsEnvironment.isHeadless();
+    }
+    
+    /**
+     * Loads a factory model from the local factory files or the persistence web server.
      * This method calls the persistence web server on port 8888 to read the factory model.
+     * Each call returns a new copy, from the cache while its source is unchanged.
      * 
      * @param factoryId The ID of the factory to load
      * @return The loaded factory model or null if not found/error occurred
      */
-    private Factory loadFactoryModel(String factoryId) {
+    public Factory loadFactoryModel(String factoryId) {
         // Try local file system FIRST with absolute path
         try {
             logger.info("Attempting to load from local file system for ID: {}", factoryId);
@@ -298,9 +632,9 @@ public class SimulationService {
             }
             
             if (factoryFile.exists()) {
-                // CRITICAL FIX: Pass the ABSOLUTE PATH to read(), not just the factoryId
+                // Copy of the cached layout while the file is unchanged
                 logger.info("File exists, reading with absolute path: {}", factoryFile.getAbsolutePath());
-                Factory factory = (Factory) persistenceManager.read(factoryFile.getAbsolutePath());
+                Factory factory = factoryModelCache.readFile(factoryFile);
                 if (factory != null) {
                     logger.info("Successfully loaded factory from: {}", factoryFile.getAbsolutePath());
                     return factory;
@@ -319,7 +653,7 @@ public class SimulationService {
             String url = persistenceServerUrl + "/factory/" + factoryId;
             logger.debug("Persistence server URL: {}", url);
             
-            Factory factory = restTemplate.getForObject(url, Factory.class);
+            Factory factory = factoryModelCache.readRemote(url);
             
             if (factory != null) {
                 logger.info("Successfully loaded factory model from persistence server with ID: {}", factoryId);
@@ -350,7 +684,7 @@ public class SimulationService {
             logger.info("!!! FileCanvasChooser created");
             
             // CRITICAL: CanvasViewer creates its OWN JFrame window, don't wrap it in another frame!
-            Component factoryViewer = new CanvasViewer(simulator);
+            java.awt.Component factoryViewer = new CanvasViewer(simulator);
             logger.info("!!! CanvasViewer created (with its own window)");
             
             // Link the viewer to the chooser - this makes the CanvasViewer's window appear
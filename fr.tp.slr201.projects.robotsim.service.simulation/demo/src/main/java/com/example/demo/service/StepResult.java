@@ -0,0 +1,130 @@
+package com.example.demo.service;
+
+/**
+ * Summary of the steps of a paused simulation advanced through the step API: the final
+ * positions of the mobile components and counts of their moves and blocked steps.
+ *
+ * <p>Classes are final so that the polymorphic type handling of the service object
+ * mapper does not wrap them with type information.</p>
+ */
+public final class StepResult {
+
+    private final String factoryId;
+
+    private final int ticks;
+
+    private final long simulatedMillis;
+
+    private final long elapsedMicros;
+
+    private final long moves;
+
+    private final long blockedSteps;
+
+    private final ComponentPosition[] positions;
+
+    public StepResult(final String factoryId,
+                      final int ticks,
+                      final long simulatedMillis,
+                      final long elapsedMicros,
+                      final long moves,
+                      final long blockedSteps,
+                      final ComponentPosition[] positions) {
+        this.factoryId = factoryId;
+        this.ticks = ticks;
+        this.simulatedMillis = simulatedMillis;
+        this.elapsedMicros = elapsedMicros;
+        this.moves = moves;
+        this.blockedSteps = blockedSteps;
+        this.positions = positions;
+    }
+
+    public String getFactoryId() {
+        return factoryId;
+    }
+
+    public int getTicks() {
+        return ticks;
+    }
+
+    /**
+     * Gets the simulated time of the steps, at the tick interval of the real-time simulations.
+     *
+     * @return The simulated time in milliseconds
+     */
+    public long getSimulatedMillis() {
+        return simulatedMillis;
+    }
+
+    /**
+     * Gets the wall clock time taken by the steps.
+     *
+     * @return The elapsed time in microseconds
+     */
+    public long getElapsedMicros() {
+        return elapsedMicros;
+    }
+
+    /**
+     * Gets the number of component moves, summed over the steps.
+     *
+     * @return The number of moves
+     */
+    public long getMoves() {
+        return moves;
+    }
+
+    /**
+     * Gets the number of steps after which a mobile component was blocked, summed over
+     * the mobile components.
+     *
+     * @return The number of blocked steps
+     */
+    public long getBlockedSteps() {
+        return blockedSteps;
+    }
+
+    public ComponentPosition[] getPositions() {
+        return positions;
+    }
+
+    /**
+     * Position of a mobile component after the steps
+     */
+    public static final class ComponentPosition {
+
+        private final String name;
+
+        private final int xCoordinate;
+
+        private final int yCoordinate;
+
+        private final boolean blocked;
+
+        public ComponentPosition(final String name,
+                                 final int xCoordinate,
+                                 final int yCoordinate,
+                                 final boolean blocked) {
+            this.name = name;
+            this.xCoordinate = xCoordinate;
+            this.yCoordinate = yCoordinate;
+            this.blocked = blocked;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getxCoordinate() {
+            return xCoordinate;
+        }
+
+        public int getyCoordinate() {
+            return yCoordinate;
+        }
+
+        public boolean isBlocked() {
+            return blocked;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.demo.sharding;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Immutable consistent hash ring assigning factory IDs to the instances of the service.
+ *
+ * <p>Each member is placed at a number of virtual node positions on a ring of 64-bit
+ * hashes, and a factory belongs to the first member found clockwise from the hash of
+ * its ID. Adding or removing a member only moves the factories of the ring arcs it
+ * takes or gives back, about one in the number of members. Hashes are derived from
+ * MD5 digests so that every instance computes the same ring from the same members.</p>
+ */
+public final class ConsistentHashRing {
+
+    private final SortedSet<String> members;
+
+    private final NavigableMap<Long, String> positions = new TreeMap<>();
+
+    /**
+     * Creates the ring of a set of members.
+     *
+     * @param members The base URLs of the member instances
+     * @param virtualNodes The number of positions of each member on the ring
+     */
+    public ConsistentHashRing(final Collection<String> members, final int virtualNodes) {
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("At least one virtual node is required: " + virtualNodes);
+        }
+
+        this.members = Collections.unmodifiableSortedSet(new TreeSet<>(members));
+
+        for (final String member : this.members) {
+            for (int node = 0; node < virtualNodes; node++) {
+                // Collisions are vanishingly rare, the smallest member keeps the position
+                positions.putIfAbsent(hash(member + "#" + node), member);
+            }
+        }
+    }
+
+    /**
+     * Gets the member owning a factory.
+     *
+     * @param factoryId The ID of the factory
+     * @return The base URL of the owner, or null if the ring has no member
+     */
+    public String ownerOf(final String factoryId) {
+        if (positions.isEmpty()) {
+            return null;
+        }
+
+        final Map.Entry<Long, String> position = positions.ceilingEntry(hash(factoryId));
+
+        return position == null ? positions.firstEntry().getValue() : position.getValue();
+    }
+
+    /**
+     * Gets the members of the ring.
+     *
+     * @return The base URLs of the members, sorted
+     */
+    public SortedSet<String> getMembers() {
+        return members;
+    }
+
+    private static long hash(final String key) {
+        final byte[] digest;
+
+        try {
+            digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform provides MD5
+            throw new IllegalStateException(e);
+        }
+
+        long hash = 0;
+        for (int index = 0; index < Long.BYTES; index++) {
+            hash = hash << 8 | (digest[index] & 0xFF);
+        }
+
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "ConsistentHashRing" + members;
+    }
+}
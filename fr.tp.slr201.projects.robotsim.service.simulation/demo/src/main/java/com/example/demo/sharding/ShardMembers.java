@@ -0,0 +1,42 @@
+package com.example.demo.sharding;
+
+/**
+ * Members of the shard ring known by an instance, exchanged when instances join,
+ * exchange heartbeats or leave.
+ */
+public final class ShardMembers {
+
+    /**
+     * Base URL of the instance sending the members
+     */
+    private String sender;
+
+    /**
+     * Base URLs of the members
+     */
+    private String[] members;
+
+    public ShardMembers() {
+    }
+
+    public ShardMembers(final String sender, final String[] members) {
+        this.sender = sender;
+        this.members = members;
+    }
+
+    public String getSender() {
+        return sender;
+    }
+
+    public void setSender(final String sender) {
+        this.sender = sender;
+    }
+
+    public String[] getMembers() {
+        return members;
+    }
+
+    public void setMembers(final String[] members) {
+        this.members = members;
+    }
+}
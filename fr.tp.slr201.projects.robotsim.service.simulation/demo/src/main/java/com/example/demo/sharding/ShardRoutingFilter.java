@@ -0,0 +1,168 @@
+package com.example.demo.sharding;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UriUtils;
+
+import com.example.demo.service.SimulationService;
+
+/**
+ * Filter routing the requests for a factory to the member of the shard ring owning it,
+ * so that clients may call any instance.
+ *
+ * <p>Starts, stops, factory retrievals, steps and snapshot requests are forwarded to
+ * the owner and its response is relayed, without holding a servlet container thread
+ * while the owner answers. Event streams are redirected to the owner instead, so that
+ * they are not relayed for their whole lifetime. Requests for a simulation this
+ * instance still runs, not handed over yet, are served here.</p>
+ */
+@Component
+public class ShardRoutingFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardRoutingFilter.class);
+
+    /**
+     * Paths of the requests for a factory, with the factory ID in the first or second group
+     */
+    private static final Pattern ROUTED_PATH =
+        Pattern.compile("/api/simulation/(?:(?:start|stop|factory|snapshot|stream)/([^/]+)|([^/]+)/step)");
+
+    private static final String STREAM_PATH = "/api/simulation/stream/";
+
+    private static final List<String> FORWARDED_REQUEST_HEADERS =
+        List.of(HttpHeaders.ACCEPT, HttpHeaders.CONTENT_TYPE, HttpHeaders.IF_NONE_MATCH);
+
+    private static final List<String> RELAYED_RESPONSE_HEADERS =
+        List.of(HttpHeaders.CONTENT_TYPE, HttpHeaders.ETAG, HttpHeaders.RETRY_AFTER, HttpHeaders.CACHE_CONTROL);
+
+    @Autowired
+    private ShardingService shardingService;
+
+    @Autowired
+    private SimulationService simulationService;
+
+    /**
+     * Delay after which clients should retry requests whose owner is unreachable
+     */
+    @Value("${simulation.admission.retry-after-seconds:5}")
+    private long retryAfterSeconds;
+
+    @Override
+    protected boolean shouldNotFilter(final HttpServletRequest request) {
+        // Forwarded requests are served here whatever the ring, never forwarded again
+        return !shardingService.isEnabled() || request.getHeader(ShardingService.FORWARDED_HEADER) != null;
+    }
+
+    @Override
+    protected void doFilterInternal(final HttpServletRequest request,
+                                    final HttpServletResponse response,
+                                    final FilterChain filterChain) throws ServletException, IOException {
+        final String path = request.getRequestURI().substring(request.getContextPath().length());
+        final Matcher matcher = ROUTED_PATH.matcher(path);
+
+        if (!matcher.matches()) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        final String factoryId = UriUtils.decode(matcher.group(1) != null ? matcher.group(1) : matcher.group(2),
+                                                 StandardCharsets.UTF_8);
+        final String owner = shardingService.ownerOf(factoryId);
+
+        if (owner == null || owner.equals(shardingService.getSelfUrl())
+                || simulationService.getSimulatedFactory(factoryId) != null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        final String target = owner + request.getRequestURI()
+            + (request.getQueryString() == null ? "" : "?" + request.getQueryString());
+
+        if (path.startsWith(STREAM_PATH)) {
+            logger.debug("Redirecting stream of factory ID {} to {}", factoryId, owner);
+            response.setStatus(HttpStatus.TEMPORARY_REDIRECT.value());
+            response.setHeader(HttpHeaders.LOCATION, target);
+            response.setHeader(ShardingService.OWNER_HEADER, owner);
+            return;
+        }
+
+        forward(factoryId, owner, target, request);
+    }
+
+    private void forward(final String factoryId,
+                         final String owner,
+                         final String target,
+                         final HttpServletRequest request) throws IOException {
+        logger.debug("Forwarding {} {} for factory ID {} to {}", request.getMethod(), request.getRequestURI(), factoryId, owner);
+
+        final byte[] body = request.getInputStream().readAllBytes();
+        final HttpRequest.Builder forwardedRequest = HttpRequest.newBuilder(URI.create(target))
+            .timeout(Duration.ofMillis(shardingService.getRequestTimeoutMillis()))
+            .header(ShardingService.FORWARDED_HEADER, shardingService.getSelfUrl())
+            .method(request.getMethod(), body.length == 0
+                ? HttpRequest.BodyPublishers.noBody()
+                : HttpRequest.BodyPublishers.ofByteArray(body));
+
+        for (final String name : FORWARDED_REQUEST_HEADERS) {
+            final String value = request.getHeader(name);
+            if (value != null) {
+                forwardedRequest.header(name, value);
+            }
+        }
+
+        // The container thread is released while the owner answers
+        final AsyncContext asyncContext = request.startAsync();
+        asyncContext.setTimeout(shardingService.getRequestTimeoutMillis() + 1000);
+
+        shardingService.getHttpClient()
+            .sendAsync(forwardedRequest.build(), HttpResponse.BodyHandlers.ofByteArray())
+            .whenComplete((forwardedResponse, ex) -> {
+                final HttpServletResponse response = (HttpServletResponse) asyncContext.getResponse();
+
+                try {
+                    if (ex != null) {
+                        logger.warn("Could not forward request for factory ID {} to {}: {}", factoryId, owner, ex.getMessage());
+                        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+                        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+                        return;
+                    }
+
+                    response.setStatus(forwardedResponse.statusCode());
+                    response.setHeader(ShardingService.OWNER_HEADER, owner);
+
+                    for (final String name : RELAYED_RESPONSE_HEADERS) {
+                        forwardedResponse.headers().firstValue(name).ifPresent(value -> response.setHeader(name, value));
+                    }
+
+                    response.setContentLength(forwardedResponse.body().length);
+                    response.getOutputStream().write(forwardedResponse.body());
+
+                } catch (IOException e) {
+                    logger.warn("Could not relay response for factory ID {} from {}: {}", factoryId, owner, e.getMessage());
+                } finally {
+                    asyncContext.complete();
+                }
+            });
+    }
+}
@@ -0,0 +1,502 @@
+package com.example.demo.sharding;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.context.WebServerInitializedEvent;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.util.UriUtils;
+
+import com.example.demo.service.SimulationService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fr.tp.inf112.projects.robotsim.model.Factory;
+
+/**
+ * Service sharding the simulations across several instances of the service, each owning
+ * the factory IDs of its slice of a {@link ConsistentHashRing}.
+ *
+ * <p>Instances find each other from a list of seed URLs and then exchange heartbeats
+ * carrying the members they know, so that members learn about each other through any
+ * seed. A member missing several heartbeats in a row is removed from the ring, and an
+ * instance shutting down announces that it leaves. Members removed that way are only
+ * added back when they contact the instance themselves, so that stale views of other
+ * members do not resurrect them.</p>
+ *
+ * <p>Whenever the ring changes, the simulations this instance runs but no longer owns
+ * are handed over to their new owner: started there from their current state, then
+ * stopped here once the owner took them. An instance leaving hands over all its
+ * simulations first. The simulations of an instance that fails are lost with its
+ * memory, and are started again by the next start request, which is routed to their
+ * new owner.</p>
+ *
+ * <p>Requests for a factory are routed to its owner by the {@link ShardRoutingFilter}.</p>
+ */
+@Service
+public class ShardingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardingService.class);
+
+    /**
+     * Header of the requests forwarded by another member, handled locally whatever the
+     * ring of this instance, so that members with different rings never forward in loops
+     */
+    public static final String FORWARDED_HEADER = "X-Simulation-Forwarded";
+
+    /**
+     * Header of the forwarded responses giving the member that answered
+     */
+    public static final String OWNER_HEADER = "X-Simulation-Shard";
+
+    static final String SHARD_PATH = "/api/simulation/shard";
+
+    /**
+     * Whether simulations are sharded across instances
+     */
+    @Value("${simulation.sharding.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * Base URL of this instance as reached by the other members, by default
+     * http://localhost and the port of the web server
+     */
+    @Value("${simulation.sharding.self-url:}")
+    private String selfUrl;
+
+    /**
+     * Base URLs of the instances contacted to join the ring
+     */
+    @Value("${simulation.sharding.seeds:}")
+    private String[] seeds;
+
+    /**
+     * Number of positions of each member on the ring, the more the evener the slices
+     */
+    @Value("${simulation.sharding.virtual-nodes:64}")
+    private int virtualNodes;
+
+    @Value("${simulation.sharding.heartbeat-interval-ms:2000}")
+    private long heartbeatIntervalMillis;
+
+    /**
+     * Number of heartbeats in a row a member may miss before being removed from the ring
+     */
+    @Value("${simulation.sharding.max-missed-heartbeats:3}")
+    private int maxMissedHeartbeats;
+
+    /**
+     * Maximum time of the requests to other members, including forwarded starts
+     * waiting for admission at their owner
+     */
+    @Value("${simulation.sharding.request-timeout-ms:30000}")
+    private long requestTimeoutMillis;
+
+    @Autowired
+    private SimulationService simulationService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final Object membershipLock = new Object();
+
+    /**
+     * Heartbeats missed in a row by the other members, guarded by the membership lock
+     */
+    private final Map<String, Integer> missedHeartbeats = new HashMap<>();
+
+    /**
+     * Members removed from the ring, guarded by the membership lock
+     */
+    private final Set<String> departedMembers = new HashSet<>();
+
+    private volatile ConsistentHashRing ring;
+
+    private volatile boolean leaving;
+
+    private HttpClient httpClient;
+
+    /**
+     * Single thread exchanging heartbeats and handing simulations over, one at a time
+     */
+    private ScheduledExecutorService membershipExecutor;
+
+    /**
+     * Joins the ring once the web server answers the requests of the other members.
+     *
+     * @param event The initialization event of the web server
+     */
+    @EventListener
+    public void onWebServerInitialized(final WebServerInitializedEvent event) {
+        if (!enabled || event.getApplicationContext().getServerNamespace() != null) {
+            return;
+        }
+
+        if (selfUrl == null || selfUrl.isBlank()) {
+            selfUrl = "http://localhost:" + event.getWebServer().getPort();
+        }
+        selfUrl = normalize(selfUrl);
+
+        httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofMillis(Math.min(requestTimeoutMillis, heartbeatIntervalMillis)))
+            .build();
+        membershipExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "shard-membership");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        ring = new ConsistentHashRing(List.of(selfUrl), virtualNodes);
+        membershipExecutor.scheduleWithFixedDelay(this::exchangeHeartbeats, 0, heartbeatIntervalMillis, TimeUnit.MILLISECONDS);
+
+        logger.info("Sharding simulations as {} with seeds {}", selfUrl, String.join(", ", seeds));
+    }
+
+    /**
+     * Leaves the ring before the web server stops: the other members are told, then the
+     * simulations of this instance are handed over to their new owners.
+     *
+     * @param event The closing event of the application context
+     */
+    @EventListener
+    public void onContextClosed(final ContextClosedEvent event) {
+        if (ring == null || leaving) {
+            return;
+        }
+
+        leaving = true;
+        membershipExecutor.shutdown();
+
+        try {
+            // Lets a hand over in progress complete
+            membershipExecutor.awaitTermination(requestTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        final List<String> others;
+        synchronized (membershipLock) {
+            others = new ArrayList<>(missedHeartbeats.keySet());
+            missedHeartbeats.clear();
+            ring = new ConsistentHashRing(others, virtualNodes);
+        }
+
+        for (final String member : others) {
+            try {
+                send(member, "/leave", new ShardMembers(selfUrl, new String[0]));
+            } catch (IOException e) {
+                logger.warn("Could not tell member {} that {} leaves: {}", member, selfUrl, e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+
+        if (!others.isEmpty()) {
+            logger.info("Leaving the ring, handing over {} simulations", simulationService.getRunningSimulationIds().size());
+            rebalance();
+        }
+    }
+
+    /**
+     * Checks whether simulations are sharded across instances.
+     *
+     * @return true if sharding is enabled and this instance joined the ring
+     */
+    public boolean isEnabled() {
+        return ring != null;
+    }
+
+    /**
+     * Gets the base URL of this instance.
+     *
+     * @return The base URL of this instance, null if sharding is disabled
+     */
+    public String getSelfUrl() {
+        return isEnabled() ? selfUrl : null;
+    }
+
+    /**
+     * Gets the member owning a factory.
+     *
+     * @param factoryId The ID of the factory
+     * @return The base URL of the owner, null if sharding is disabled
+     */
+    public String ownerOf(final String factoryId) {
+        final ConsistentHashRing currentRing = ring;
+
+        return currentRing == null ? null : currentRing.ownerOf(factoryId);
+    }
+
+    /**
+     * Handles the heartbeat of another member: the sender is alive and the members it
+     * knows are added to the ring, except those that departed.
+     *
+     * @param heartbeat The heartbeat of the sender
+     * @return The members known by this instance, null if sharding is disabled
+     */
+    public ShardMembers onHeartbeat(final ShardMembers heartbeat) {
+        if (!isEnabled() || leaving) {
+            return null;
+        }
+
+        merge(normalize(heartbeat.getSender()), heartbeat.getMembers());
+
+        return currentMembers();
+    }
+
+    /**
+     * Handles the departure of another member, removed from the ring.
+     *
+     * @param departure The departure message of the leaving member
+     */
+    public void onLeave(final ShardMembers departure) {
+        if (!isEnabled()) {
+            return;
+        }
+
+        final String member = normalize(departure.getSender());
+
+        synchronized (membershipLock) {
+            if (missedHeartbeats.remove(member) != null) {
+                departedMembers.add(member);
+                logger.info("Member {} left the ring", member);
+                updateRing();
+            }
+        }
+    }
+
+    /**
+     * Gets the status of the sharding: this instance, the members of the ring and the
+     * local simulations by owner.
+     *
+     * @return The status by name
+     */
+    public Map<String, Object> getStatus() {
+        final Map<String, Object> status = new LinkedHashMap<>();
+        final ConsistentHashRing currentRing = ring;
+
+        status.put("enabled", currentRing != null);
+
+        if (currentRing != null) {
+            final Map<String, String> owners = new LinkedHashMap<>();
+            for (final String factoryId : new TreeSet<>(simulationService.getRunningSimulationIds())) {
+                owners.put(factoryId, currentRing.ownerOf(factoryId));
+            }
+
+            status.put("self", selfUrl);
+            status.put("members", new ArrayList<>(currentRing.getMembers()));
+            status.put("simulations", owners);
+        }
+
+        return status;
+    }
+
+    HttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    long getRequestTimeoutMillis() {
+        return requestTimeoutMillis;
+    }
+
+    private void exchangeHeartbeats() {
+        final Set<String> targets = new TreeSet<>();
+        final ShardMembers heartbeat;
+
+        for (final String seed : seeds) {
+            targets.add(normalize(seed));
+        }
+
+        synchronized (membershipLock) {
+            targets.addAll(missedHeartbeats.keySet());
+            heartbeat = currentMembers();
+        }
+        targets.remove(selfUrl);
+
+        for (final String member : targets) {
+            try {
+                final ShardMembers view = send(member, "/heartbeat", heartbeat);
+
+                if (view != null) {
+                    merge(member, view.getMembers());
+                }
+
+            } catch (IOException e) {
+                missHeartbeat(member, e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                logger.error("Error exchanging heartbeat with {}: {}", member, e.getMessage(), e);
+            }
+        }
+    }
+
+    private void merge(final String sender, final String[] members) {
+        synchronized (membershipLock) {
+            // A member contacting us or answering is alive, even if it departed before
+            departedMembers.remove(sender);
+            if (missedHeartbeats.put(sender, 0) == null) {
+                logger.info("Member {} joined the ring", sender);
+            }
+
+            if (members != null) {
+                for (final String member : members) {
+                    final String normalized = normalize(member);
+
+                    if (!normalized.equals(selfUrl) && !departedMembers.contains(normalized)
+                            && missedHeartbeats.putIfAbsent(normalized, 0) == null) {
+                        logger.info("Member {} joined the ring, known by {}", normalized, sender);
+                    }
+                }
+            }
+
+            updateRing();
+        }
+    }
+
+    private void missHeartbeat(final String member, final IOException cause) {
+        synchronized (membershipLock) {
+            final Integer missed = missedHeartbeats.computeIfPresent(member, (key, count) -> count + 1);
+
+            if (missed == null) {
+                // A seed not joined yet
+                logger.debug("Seed {} unreachable: {}", member, cause.getMessage());
+
+            } else if (missed >= maxMissedHeartbeats) {
+                missedHeartbeats.remove(member);
+                departedMembers.add(member);
+                logger.warn("Member {} missed {} heartbeats, removed from the ring: {}", member, missed, cause.getMessage());
+                updateRing();
+            }
+        }
+    }
+
+    /**
+     * Replaces the ring when its members changed, and hands over the simulations whose
+     * owner changed. Called holding the membership lock.
+     */
+    private void updateRing() {
+        final Set<String> members = new TreeSet<>(missedHeartbeats.keySet());
+        members.add(selfUrl);
+
+        if (leaving || members.equals(ring.getMembers())) {
+            return;
+        }
+
+        ring = new ConsistentHashRing(members, virtualNodes);
+        logger.info("Shard ring changed to {} members: {}", members.size(), members);
+
+        membershipExecutor.execute(this::rebalance);
+    }
+
+    private ShardMembers currentMembers() {
+        return new ShardMembers(selfUrl, ring.getMembers().toArray(new String[0]));
+    }
+
+    /**
+     * Hands over the local simulations owned by other members.
+     */
+    private void rebalance() {
+        for (final String factoryId : new ArrayList<>(simulationService.getRunningSimulationIds())) {
+            final String owner = ownerOf(factoryId);
+
+            if (owner != null && !owner.equals(selfUrl)) {
+                handOver(factoryId, owner);
+            }
+        }
+    }
+
+    /**
+     * Starts a local simulation at its owner from its current state, then stops it here
+     * without publishing that it stopped, as it goes on at the owner. If the owner does
+     * not take it, including when it already simulates the factory, the simulation keeps
+     * running here.
+     */
+    private void handOver(final String factoryId, final String owner) {
+        final Factory factory = simulationService.getSimulatedFactory(factoryId);
+
+        if (factory == null) {
+            return;
+        }
+
+        final boolean paused = !simulationService.isSimulationRunning(factoryId);
+
+        try {
+            final HttpRequest request = HttpRequest.newBuilder(URI.create(owner + SHARD_PATH + "/adopt/"
+                                                                          + UriUtils.encodePathSegment(factoryId, StandardCharsets.UTF_8)
+                                                                          + "?paused=" + paused))
+                .timeout(Duration.ofMillis(requestTimeoutMillis))
+                .header("Content-Type", MediaType.APPLICATION_JSON_VALUE)
+                .header(FORWARDED_HEADER, selfUrl)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(factory)))
+                .build();
+            final int status = httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+
+            if (status != HttpStatus.OK.value()) {
+                logger.warn("Member {} refused simulation of factory ID {} with status {}, keeping it here",
+                           owner, factoryId, status);
+                return;
+            }
+
+        } catch (IOException e) {
+            logger.warn("Could not hand over simulation of factory ID {} to {}, keeping it here: {}",
+                       factoryId, owner, e.getMessage());
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        if (simulationService.stopHandedOverSimulation(factoryId)) {
+            logger.info("Handed over simulation of factory ID {} to {}", factoryId, owner);
+        }
+    }
+
+    private ShardMembers send(final String member, final String action, final ShardMembers message)
+            throws IOException, InterruptedException {
+        final HttpRequest request = HttpRequest.newBuilder(URI.create(member + SHARD_PATH + action))
+            .timeout(Duration.ofMillis(heartbeatIntervalMillis))
+            .header("Content-Type", MediaType.APPLICATION_JSON_VALUE)
+            .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(message)))
+            .build();
+        final HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+
+        if (response.statusCode() != HttpStatus.OK.value()) {
+            throw new IOException("Status " + response.statusCode() + " from " + request.uri());
+        }
+
+        return response.body().length == 0 ? null : objectMapper.readValue(response.body(), ShardMembers.class);
+    }
+
+    private static String normalize(final String url) {
+        final String trimmed = url.trim();
+
+        return trimmed.endsWith("/") ? trimmed.substring(0, trimmed.length() - 1) : trimmed;
+    }
+}
@@ -0,0 +1,252 @@
+package com.example.demo.stream;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fr.tp.inf112.projects.canvas.controller.Observer;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.event.FactoryStateTracker;
+import fr.tp.inf112.projects.robotsim.model.event.LayoutSnapshotEvent;
+import fr.tp.inf112.projects.robotsim.model.event.SimulationEvent;
+import fr.tp.inf112.projects.robotsim.model.event.SimulationLifecycleEvent;
+import fr.tp.inf112.projects.robotsim.model.event.StateDeltaEvent;
+
+/**
+ * One Server-Sent Events connection streaming the frames of a simulated factory.
+ *
+ * <p>Model changes only flag the connection as dirty. At each tick, at most once per
+ * frame interval, the next frame is built from the current state of the factory by the
+ * connection's own {@link FactoryStateTracker}: a layout snapshot first, then state
+ * deltas. Frames are written to the client by a sender thread, never by the tick
+ * thread, and at most one write is pending per connection: while the client has not
+ * received a frame, later changes are conflated into the next one. A client that does
+ * not receive a frame within the send timeout is disconnected.</p>
+ */
+class FrameStreamConnection implements Observer {
+
+    private static final Logger logger = LoggerFactory.getLogger(FrameStreamConnection.class);
+
+    private final String factoryId;
+
+    private final Factory factory;
+
+    private final SseEmitter emitter;
+
+    private final FactoryStateTracker stateTracker;
+
+    private final ObjectMapper objectMapper;
+
+    private final Executor senderExecutor;
+
+    private final long sendTimeoutNanos;
+
+    /**
+     * Called once when the connection is closed
+     */
+    private final Consumer<FrameStreamConnection> closeListener;
+
+    /**
+     * Set when the factory changed since the last frame
+     */
+    private final AtomicBoolean dirty = new AtomicBoolean(true);
+
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    private final AtomicLong modelChanges = new AtomicLong();
+
+    private final AtomicLong sentFrames = new AtomicLong();
+
+    /**
+     * Whether the simulation was loaded without running when the stream opened
+     */
+    private final boolean paused;
+
+    private boolean started;
+
+    /**
+     * Write of the previous frames, done once the client received them
+     */
+    private CompletableFuture<Void> pendingSend = CompletableFuture.completedFuture(null);
+
+    private long pendingSendStartNanos;
+
+    private volatile ScheduledFuture<?> tickTask;
+
+    FrameStreamConnection(final String factoryId,
+                          final Factory factory,
+                          final boolean paused,
+                          final SseEmitter emitter,
+                          final int keyframeInterval,
+                          final ObjectMapper objectMapper,
+                          final Executor senderExecutor,
+                          final long sendTimeoutNanos,
+                          final Consumer<FrameStreamConnection> closeListener) {
+        this.factoryId = factoryId;
+        this.factory = factory;
+        this.paused = paused;
+        this.emitter = emitter;
+        this.stateTracker = new FactoryStateTracker(factory, factoryId, keyframeInterval);
+        this.objectMapper = objectMapper;
+        this.senderExecutor = senderExecutor;
+        this.sendTimeoutNanos = sendTimeoutNanos;
+        this.closeListener = closeListener;
+    }
+
+    String getFactoryId() {
+        return factoryId;
+    }
+
+    void setTickTask(final ScheduledFuture<?> tickTask) {
+        this.tickTask = tickTask;
+
+        if (closed.get()) {
+            // Closed while being opened
+            tickTask.cancel(false);
+        }
+    }
+
+    /**
+     * Flags the factory as changed. Called on the notifier thread of the factory.
+     */
+    @Override
+    public void modelChanged() {
+        modelChanges.incrementAndGet();
+        dirty.set(true);
+    }
+
+    /**
+     * Sends the next frame if the factory changed since the previous one and the client
+     * received the previous frame.
+     */
+    synchronized void tick() {
+        if (closed.get()) {
+            return;
+        }
+
+        if (!pendingSend.isDone()) {
+            if (System.nanoTime() - pendingSendStartNanos > sendTimeoutNanos) {
+                // The blocked sender thread completes the stream once its write fails
+                logger.warn("Frame stream of factory '{}' timed out writing a frame", factoryId);
+                close();
+            }
+            return;
+        }
+
+        final List<SimulationEvent> events = new ArrayList<>(2);
+
+        if (!started) {
+            started = true;
+            events.add(stateTracker.lifecycleEvent(paused ? SimulationLifecycleEvent.Status.PAUSED : SimulationLifecycleEvent.Status.STARTED,
+                                                   System.currentTimeMillis()));
+        }
+
+        if (dirty.getAndSet(false)) {
+            final SimulationEvent event = stateTracker.nextEvent(System.currentTimeMillis());
+
+            if (event != null) {
+                events.add(event);
+            }
+        }
+
+        if (!events.isEmpty()) {
+            sendAsync(events, false);
+        }
+    }
+
+    /**
+     * Completes the stream after the pending frames, sending the stopped lifecycle event
+     * if the simulation is over.
+     *
+     * @param stopped false if the simulation goes on at another instance, where the
+     * client may stream it from again
+     */
+    synchronized void stop(final boolean stopped) {
+        if (closed.get()) {
+            return;
+        }
+
+        if (tickTask != null) {
+            tickTask.cancel(false);
+        }
+
+        sendAsync(stopped
+            ? List.of(stateTracker.lifecycleEvent(SimulationLifecycleEvent.Status.STOPPED, System.currentTimeMillis()))
+            : List.of(), true);
+    }
+
+    /**
+     * Releases the connection once its stream completed, failed or timed out.
+     *
+     * @return true if the connection was open
+     */
+    boolean close() {
+        if (!closed.compareAndSet(false, true)) {
+            return false;
+        }
+
+        if (tickTask != null) {
+            tickTask.cancel(false);
+        }
+
+        factory.removeObserver(this);
+        closeListener.accept(this);
+
+        logger.info("Closed frame stream of factory '{}': {} frames sent for {} model changes",
+                   factoryId, sentFrames.get(), modelChanges.get());
+        return true;
+    }
+
+    private void sendAsync(final List<SimulationEvent> events, final boolean complete) {
+        pendingSendStartNanos = System.nanoTime();
+        pendingSend = pendingSend.thenRunAsync(() -> send(events, complete), senderExecutor);
+    }
+
+    /**
+     * Writes frames to the client, blocking until they are written. Runs on a sender thread.
+     */
+    private void send(final List<SimulationEvent> events, final boolean complete) {
+        try {
+            for (final SimulationEvent event : events) {
+                emitter.send(SseEmitter.event()
+                    .id(Long.toString(event.getSequence()))
+                    .name(getEventName(event))
+                    .data(objectMapper.writeValueAsString(event), MediaType.APPLICATION_JSON));
+                sentFrames.incrementAndGet();
+            }
+
+            if (complete) {
+                emitter.complete();
+            }
+
+        } catch (IOException | RuntimeException e) {
+            // The client went away, the completion callback releases the connection
+            logger.debug("Failed to send frame to stream of factory '{}': {}", factoryId, e.getMessage());
+            emitter.completeWithError(e);
+            close();
+        }
+    }
+
+    private static String getEventName(final SimulationEvent event) {
+        if (event instanceof LayoutSnapshotEvent) {
+            return "layout";
+        }
+        if (event instanceof StateDeltaEvent) {
+            return ((StateDeltaEvent) event).isKeyframe() ? "keyframe" : "delta";
+        }
+        return "lifecycle";
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.demo.stream;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fr.tp.inf112.projects.robotsim.model.Factory;
+
+/**
+ * Service streaming the frames of simulated factories to viewers over Server-Sent
+ * Events, directly from the in-memory models, without going through Kafka.
+ *
+ * <p>Each connection gets a layout snapshot followed by state deltas in JSON, at most
+ * at the requested frame rate, itself capped by {@code simulation.stream.max-fps}.
+ * Frames carry the time at which their state was captured, so that viewers can
+ * measure the end-to-end frame latency. Frames are built by a small pool of tick
+ * threads and written by sender threads, with at most one pending write, hence one
+ * sender thread, per connection. A slow client only lowers its own frame rate, and a
+ * client that does not receive a frame within {@code simulation.stream.send-timeout-ms}
+ * is disconnected.</p>
+ */
+@Service
+public class FrameStreamService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FrameStreamService.class);
+
+    /**
+     * Frame rate cap of the connections
+     */
+    @Value("${simulation.stream.max-fps:30}")
+    private int maxFramesPerSecond;
+
+    /**
+     * Number of threads building the frames of the connections
+     */
+    @Value("${simulation.stream.tick-threads:4}")
+    private int tickThreads;
+
+    /**
+     * Time after which a client that did not receive a frame is disconnected
+     */
+    @Value("${simulation.stream.send-timeout-ms:10000}")
+    private long sendTimeoutMillis;
+
+    /**
+     * Number of state deltas between two keyframes of a stream
+     */
+    @Value("${simulation.stream.keyframe-interval:50}")
+    private int keyframeInterval;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * Open connections by factory ID
+     */
+    private final Map<String, Set<FrameStreamConnection>> connections = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService tickScheduler;
+
+    private ExecutorService senderExecutor;
+
+    @PostConstruct
+    public void init() {
+        final AtomicInteger tickThreadCount = new AtomicInteger();
+        tickScheduler = Executors.newScheduledThreadPool(tickThreads, runnable -> {
+            final Thread thread = new Thread(runnable, "frame-stream-" + tickThreadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        final AtomicInteger senderThreadCount = new AtomicInteger();
+        senderExecutor = Executors.newCachedThreadPool(runnable -> {
+            final Thread thread = new Thread(runnable, "frame-stream-sender-" + senderThreadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Opens a frame stream of a simulated factory.
+     *
+     * @param factoryId The ID of the simulated factory
+     * @param factory The simulated factory
+     * @param paused true if the simulation is loaded without running, announced to the
+     * viewer instead of its start
+     * @param requestedFramesPerSecond The frame rate requested by the viewer, null for the cap
+     * @return The emitter of the stream
+     */
+    public SseEmitter open(final String factoryId,
+                           final Factory factory,
+                           final boolean paused,
+                           final Integer requestedFramesPerSecond) {
+        // No timeout: the stream ends with the simulation, the client or a timed out send
+        return open(factoryId, factory, paused, requestedFramesPerSecond, new SseEmitter(0L));
+    }
+
+    SseEmitter open(final String factoryId,
+                    final Factory factory,
+                    final boolean paused,
+                    final Integer requestedFramesPerSecond,
+                    final SseEmitter emitter) {
+        final int framesPerSecond = requestedFramesPerSecond == null
+            ? maxFramesPerSecond
+            : Math.max(1, Math.min(requestedFramesPerSecond, maxFramesPerSecond));
+
+        final FrameStreamConnection connection = new FrameStreamConnection(factoryId, factory, paused, emitter,
+            keyframeInterval, objectMapper, senderExecutor, TimeUnit.MILLISECONDS.toNanos(sendTimeoutMillis), this::release);
+
+        emitter.onCompletion(connection::close);
+        emitter.onTimeout(connection::close);
+        emitter.onError(error -> connection.close());
+
+        connections.computeIfAbsent(factoryId, id -> ConcurrentHashMap.newKeySet()).add(connection);
+        factory.addObserver(connection);
+
+        final long frameIntervalMicros = TimeUnit.SECONDS.toMicros(1) / framesPerSecond;
+        connection.setTickTask(tickScheduler.scheduleWithFixedDelay(
+            connection::tick, 0, frameIntervalMicros, TimeUnit.MICROSECONDS));
+
+        logger.info("Opened frame stream of factory '{}' at {} frames per second", factoryId, framesPerSecond);
+        return emitter;
+    }
+
+    /**
+     * Ends the frame streams of a factory whose simulation stopped.
+     *
+     * @param factoryId The ID of the simulated factory
+     */
+    public void closeFactory(final String factoryId) {
+        closeFactory(factoryId, true);
+    }
+
+    /**
+     * Ends the frame streams of a factory no longer simulated by this instance.
+     *
+     * @param factoryId The ID of the simulated factory
+     * @param stopped true if the simulation is over, false if it goes on at another instance
+     */
+    public void closeFactory(final String factoryId, final boolean stopped) {
+        final Set<FrameStreamConnection> factoryConnections = connections.remove(factoryId);
+
+        if (factoryConnections == null) {
+            return;
+        }
+
+        for (final FrameStreamConnection connection : factoryConnections) {
+            connection.stop(stopped);
+            connection.close();
+        }
+    }
+
+    /**
+     * Gets the number of open frame streams of a factory.
+     *
+     * @param factoryId The ID of the simulated factory
+     * @return The number of open streams
+     */
+    public int getConnectionCount(final String factoryId) {
+        final Set<FrameStreamConnection> factoryConnections = connections.get(factoryId);
+        return factoryConnections == null ? 0 : factoryConnections.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (final String factoryId : connections.keySet()) {
+            closeFactory(factoryId);
+        }
+
+        tickScheduler.shutdownNow();
+        // Lets the stopped lifecycle events go out
+        senderExecutor.shutdown();
+    }
+
+    /**
+     * Forgets a connection once closed.
+     */
+    private void release(final FrameStreamConnection connection) {
+        final Set<FrameStreamConnection> factoryConnections = connections.get(connection.getFactoryId());
+        if (factoryConnections != null) {
+            factoryConnections.remove(connection);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.demo;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * HTTP client of the tests calling instances of the service.
+ */
+public final class ServiceClient {
+
+	private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+	/**
+	 * Sends a request and reads its response body.
+	 *
+	 * @param request The request to send
+	 * @return The response
+	 */
+	public HttpResponse<String> send(final HttpRequest request) {
+		try {
+			return client.send(request, HttpResponse.BodyHandlers.ofString());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Sends a request without waiting for its response.
+	 *
+	 * @param request The request to send
+	 * @return The future response
+	 */
+	public CompletableFuture<HttpResponse<String>> sendAsync(final HttpRequest request) {
+		return client.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+	}
+
+	public static HttpRequest get(final String url) {
+		return HttpRequest.newBuilder(URI.create(url)).GET().build();
+	}
+
+	public static HttpRequest post(final String url) {
+		return HttpRequest.newBuilder(URI.create(url)).POST(HttpRequest.BodyPublishers.noBody()).build();
+	}
+
+	public static HttpRequest delete(final String url) {
+		return HttpRequest.newBuilder(URI.create(url)).DELETE().build();
+	}
+}
@@ -0,0 +1,140 @@
+package com.example.demo;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+
+import org.springframework.test.context.DynamicPropertyRegistry;
+
+import com.example.demo.config.ApplicationConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import fr.tp.inf112.projects.robotsim.model.Battery;
+import fr.tp.inf112.projects.robotsim.model.ChargingStation;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.Robot;
+import fr.tp.inf112.projects.robotsim.model.shapes.CircularShape;
+import fr.tp.inf112.projects.robotsim.model.shapes.RectangularShape;
+
+/**
+ * Persistence server of the tests, serving a factory of a charging station and a robot
+ * for every factory ID, except those starting with {@value #MISSING_PREFIX}, which are
+ * not found. It may answer after a delay, like a slow server.
+ */
+public final class StubPersistenceServer implements AutoCloseable {
+
+	public static final String MISSING_PREFIX = "missing";
+
+	private static final ObjectMapper objectMapper = new ApplicationConfig().objectMapper();
+
+	private final HttpServer server;
+
+	private final long delayMillis;
+
+	private final String eTag;
+
+	private StubPersistenceServer(final long delayMillis, final String eTag) throws IOException {
+		this.delayMillis = delayMillis;
+		this.eTag = eTag;
+
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.setExecutor(Executors.newCachedThreadPool());
+		server.createContext("/api/persistence/factory/", this::serveFactory);
+		server.start();
+	}
+
+	/**
+	 * Starts a persistence server answering at once, without entity tags.
+	 *
+	 * @return The started server
+	 */
+	public static StubPersistenceServer start() {
+		return start(0, null);
+	}
+
+	/**
+	 * Starts a persistence server.
+	 *
+	 * @param delayMillis The time the server takes to answer
+	 * @param eTag The entity tag of the factories, null for none
+	 * @return The started server
+	 */
+	public static StubPersistenceServer start(final long delayMillis, final String eTag) {
+		try {
+			return new StubPersistenceServer(delayMillis, eTag);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Creates the factory served by the server.
+	 *
+	 * @return The factory of a charging station and a robot
+	 */
+	public static Factory newFactory() {
+		final Factory factory = new Factory(200, 200, "Test");
+		new ChargingStation(factory, new RectangularShape(150, 150, 10, 10), "Station");
+		new Robot(factory, null, new CircularShape(20, 20, 2), new Battery(10), "Robot");
+
+		return factory;
+	}
+
+	/**
+	 * Gets the base URL of the persistence API of the server.
+	 *
+	 * @return The URL the service reads factories from
+	 */
+	public String getUrl() {
+		return "http://localhost:" + server.getAddress().getPort() + "/api/persistence";
+	}
+
+	/**
+	 * Makes the service of a Spring test read its factories from the server.
+	 *
+	 * @param registry The properties of the test
+	 */
+	public void register(final DynamicPropertyRegistry registry) {
+		registry.add("simulation.persistence.server.url", this::getUrl);
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+	}
+
+	private void serveFactory(final HttpExchange exchange) throws IOException {
+		try (exchange) {
+			if (delayMillis > 0) {
+				try {
+					Thread.sleep(delayMillis);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+
+			final String path = exchange.getRequestURI().getPath();
+			if (path.substring(path.lastIndexOf('/') + 1).startsWith(MISSING_PREFIX)) {
+				exchange.sendResponseHeaders(404, -1);
+				return;
+			}
+
+			final byte[] body = objectMapper.writeValueAsString(newFactory()).getBytes(StandardCharsets.UTF_8);
+
+			exchange.getResponseHeaders().add("Content-Type", "application/json");
+			if (eTag != null) {
+				exchange.getResponseHeaders().add("ETag", eTag);
+			}
+			exchange.sendResponseHeaders(200, body.length);
+
+			try (OutputStream output = exchange.getResponseBody()) {
+				output.write(body);
+			}
+		}
+	}
+}
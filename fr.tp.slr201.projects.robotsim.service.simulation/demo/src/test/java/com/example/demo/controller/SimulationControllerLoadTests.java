@@ -0,0 +1,154 @@
+package com.example.demo.controller;
+
+import static com.example.demo.ServiceClient.delete;
+import static com.example.demo.ServiceClient.get;
+import static com.example.demo.ServiceClient.post;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import com.example.demo.ServiceClient;
+import com.example.demo.StubPersistenceServer;
+import com.example.demo.config.ApplicationConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fr.tp.inf112.projects.robotsim.model.Factory;
+
+/**
+ * Load test of the concurrent request capacity of the controller, with a servlet
+ * container of two threads and a persistence server answering slowly: starts waiting
+ * for the persistence server must not hold the container threads.
+ */
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT,
+				properties = { "server.tomcat.threads.max=2",
+							   "server.tomcat.threads.min-spare=2",
+							   "simulation.hosting.mode=headless",
+							   // No broker: fail the lifecycle event sends fast
+							   "simulation.kafka.max-block-ms=100" })
+class SimulationControllerLoadTests {
+
+	private static final long PERSISTENCE_DELAY_MILLIS = 500;
+
+	private static final int CONCURRENT_STARTS = 16;
+
+	private static final String MISSING_FACTORY = StubPersistenceServer.MISSING_PREFIX + "-%d.factory";
+
+	private static final ObjectMapper objectMapper = new ApplicationConfig().objectMapper();
+
+	private static StubPersistenceServer persistenceServer;
+
+	@LocalServerPort
+	private int port;
+
+	private final ServiceClient client = new ServiceClient();
+
+	@DynamicPropertySource
+	static void persistenceServer(final DynamicPropertyRegistry registry) {
+		persistenceServer = StubPersistenceServer.start(PERSISTENCE_DELAY_MILLIS, "\"1\"");
+		persistenceServer.register(registry);
+	}
+
+	@AfterAll
+	static void stopPersistenceServer() {
+		persistenceServer.close();
+	}
+
+	@Test
+	void slowStartsDoNotExhaustContainerThreads() throws Exception {
+		// Warms up the request path
+		client.send(post(url("/api/simulation/start/" + String.format(MISSING_FACTORY, -1))));
+
+		final long start = System.nanoTime();
+		final List<CompletableFuture<HttpResponse<String>>> starts = new ArrayList<>();
+
+		for (int index = 0; index < CONCURRENT_STARTS; index++) {
+			starts.add(client.sendAsync(post(url("/api/simulation/start/" + String.format(MISSING_FACTORY, index)))));
+		}
+
+		Thread.sleep(100);
+
+		// Served while the starts wait for the persistence server
+		final long healthStart = System.nanoTime();
+		final HttpResponse<String> health = client.send(get(url("/api/simulation/health")));
+		final long healthMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - healthStart);
+
+		assertThat(health.statusCode()).isEqualTo(200);
+		assertThat(healthMillis).isLessThan(PERSISTENCE_DELAY_MILLIS);
+
+		for (final CompletableFuture<HttpResponse<String>> response : starts) {
+			assertThat(response.get(10, TimeUnit.SECONDS).statusCode()).isEqualTo(400);
+		}
+
+		// Two container threads blocked on the persistence server would serve the starts in 8 rounds
+		final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		assertThat(elapsedMillis).isLessThan(CONCURRENT_STARTS / 2 * PERSISTENCE_DELAY_MILLIS);
+	}
+
+	@Test
+	void factoriesAndExperimentsAreServedAsynchronously() throws Exception {
+		assertThat(client.send(post(url("/api/simulation/start/test.factory?paused=true"))).statusCode()).isEqualTo(200);
+
+		try {
+			// Loaded paused, so not running but already simulated
+			assertThat(client.send(post(url("/api/simulation/start/test.factory"))).statusCode()).isEqualTo(409);
+
+			final HttpResponse<String> factory = client.send(get(url("/api/simulation/factory/test.factory")));
+
+			assertThat(factory.statusCode()).isEqualTo(200);
+			assertThat(factory.headers().firstValue("ETag")).isPresent();
+			assertThat(objectMapper.readValue(factory.body(), Factory.class).getComponents()).hasSize(2);
+
+			final HttpRequest experiment = HttpRequest.newBuilder(URI.create(url("/api/simulation/experiments")))
+				.header("Content-Type", "application/json")
+				.POST(HttpRequest.BodyPublishers.ofString("{\"factoryId\":\"test.factory\",\"maxTicks\":10}"))
+				.build();
+			final HttpResponse<String> events = client.send(experiment);
+
+			assertThat(events.statusCode()).isEqualTo(200);
+			assertThat(events.body()).contains("event:result").contains("event:summary");
+
+		} finally {
+			client.send(delete(url("/api/simulation/stop/test.factory")));
+		}
+	}
+
+	@Test
+	void framesAreStreamedUntilTheSimulationStops() throws Exception {
+		assertThat(client.send(post(url("/api/simulation/start/test.factory?paused=true"))).statusCode()).isEqualTo(200);
+
+		final CompletableFuture<HttpResponse<String>> stream =
+			client.sendAsync(get(url("/api/simulation/stream/test.factory?maxFps=10")));
+
+		try {
+			Thread.sleep(500);
+		} finally {
+			client.send(delete(url("/api/simulation/stop/test.factory")));
+		}
+
+		final HttpResponse<String> events = stream.get(10, TimeUnit.SECONDS);
+
+		assertThat(events.statusCode()).isEqualTo(200);
+		assertThat(events.headers().firstValue("Content-Type"))
+			.hasValueSatisfying(type -> assertThat(type).startsWith("text/event-stream"));
+		assertThat(events.body())
+			.containsSubsequence("event:lifecycle", "PAUSED", "event:layout", "event:lifecycle", "STOPPED");
+	}
+
+	private String url(final String path) {
+		return "http://localhost:" + port + path;
+	}
+}
@@ -0,0 +1,120 @@
+package com.example.demo.experiment;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import fr.tp.inf112.projects.robotsim.model.Battery;
+import fr.tp.inf112.projects.robotsim.model.ChargingStation;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.Position;
+import fr.tp.inf112.projects.robotsim.model.Robot;
+import fr.tp.inf112.projects.robotsim.model.path.FactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.shapes.CircularShape;
+import fr.tp.inf112.projects.robotsim.model.shapes.RectangularShape;
+
+class ExperimentServiceTests {
+
+	@Test
+	void parameterGridIsExpanded() {
+		final ExperimentService experimentService = createService(8);
+		final ExperimentRequest request = new ExperimentRequest();
+		request.setFactoryId("test.factory");
+		request.setRobotCounts(new int[] { 1, 2 });
+		request.setDoorStates(new String[] { "open", "closed" });
+		request.setTargetOrders(new String[] { "original", "reversed" });
+
+		assertThat(experimentService.createVariants(request)).hasSize(8);
+
+		request.setRobotCounts(new int[] { 1, 2, 3 });
+		assertThatThrownBy(() -> experimentService.createVariants(request))
+			.isInstanceOf(IllegalArgumentException.class);
+
+		request.setRobotCounts(null);
+		request.setDoorStates(new String[] { "ajar" });
+		assertThatThrownBy(() -> experimentService.createVariants(request))
+			.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void variantsRunUntilRobotsVisitedTheirTargets() {
+		final ExperimentService experimentService = createService(8);
+		final ExperimentRequest request = new ExperimentRequest();
+		request.setFactoryId("test.factory");
+		request.setRobotCounts(new int[] { 0, 1 });
+		request.setTargetOrders(new String[] { "original", "reversed" });
+
+		final List<ExperimentResult> results = new ArrayList<>();
+		for (final ExperimentService.Variant variant : experimentService.createVariants(request)) {
+			results.add(ExperimentService.simulate(variant, createFactory(), 1_000, new AtomicBoolean()));
+		}
+
+		assertThat(results).allMatch(ExperimentResult::isCompleted);
+		// Without robots there is nothing to simulate
+		assertThat(results.get(0).getTicks()).isZero();
+		assertThat(results.get(2).getRobotCount()).isEqualTo(1);
+		assertThat(results.get(2).getTicks()).isPositive();
+		assertThat(results.get(2).getMoves()).isPositive();
+
+		// Visiting the farthest target first takes longer
+		assertThat(results.get(3).getTicks()).isGreaterThan(results.get(2).getTicks());
+
+		final ExperimentSummary summary = ExperimentService.summarize("test.factory", results, 10);
+		assertThat(summary.getCompletedVariants()).isEqualTo(4);
+		assertThat(summary.getBestVariant()).isZero();
+	}
+
+	@Test
+	void variantsStopAtMaxTicks() {
+		final ExperimentService experimentService = createService(8);
+		final ExperimentRequest request = new ExperimentRequest();
+		request.setFactoryId("test.factory");
+
+		final ExperimentResult result = ExperimentService.simulate(
+			experimentService.createVariants(request).get(0), createFactory(), 5, new AtomicBoolean());
+
+		assertThat(result.isCompleted()).isFalse();
+		assertThat(result.getTicks()).isEqualTo(5);
+	}
+
+	private static ExperimentService createService(final int maxVariants) {
+		final ExperimentService experimentService = new ExperimentService();
+		ReflectionTestUtils.setField(experimentService, "maxVariants", maxVariants);
+		return experimentService;
+	}
+
+	private static Factory createFactory() {
+		final Factory factory = new Factory(200, 200, "Experiment");
+		final ChargingStation near = new ChargingStation(factory, new RectangularShape(40, 5, 10, 10), "Near");
+		final ChargingStation far = new ChargingStation(factory, new RectangularShape(150, 5, 10, 10), "Far");
+
+		final Robot robot = new Robot(factory, straightPathFinder(), new CircularShape(5, 10, 2), new Battery(10), "Robot");
+		robot.addTargetComponent(near);
+		robot.addTargetComponent(far);
+
+		return factory;
+	}
+
+	/**
+	 * Path finder moving along the x axis to the middle of the target
+	 */
+	private static FactoryPathFinder straightPathFinder() {
+		return (source, target) -> {
+			final int targetX = target.getxCoordinate() + 5;
+			final int step = targetX >= source.getxCoordinate() ? 1 : -1;
+			final List<Position> path = new ArrayList<>();
+
+			for (int xCoordinate = source.getxCoordinate() + step; xCoordinate != targetX + step; xCoordinate += step) {
+				path.add(new Position(xCoordinate, source.getyCoordinate()));
+			}
+
+			return path;
+		};
+	}
+}
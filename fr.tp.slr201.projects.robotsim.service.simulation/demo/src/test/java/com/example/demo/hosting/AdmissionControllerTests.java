@@ -0,0 +1,100 @@
+package com.example.demo.hosting;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class AdmissionControllerTests {
+
+	private AdmissionController admissionController;
+
+	@BeforeEach
+	void setUp() {
+		admissionController = new AdmissionController();
+		ReflectionTestUtils.setField(admissionController, "capacity", 10L);
+		ReflectionTestUtils.setField(admissionController, "maxThreads", Integer.MAX_VALUE);
+		ReflectionTestUtils.setField(admissionController, "minFreeHeapPercent", 0);
+		ReflectionTestUtils.setField(admissionController, "queueSize", 1);
+		ReflectionTestUtils.setField(admissionController, "maxWaitMillis", 5_000L);
+		ReflectionTestUtils.setField(admissionController, "retryAfterSeconds", 7L);
+		admissionController.init();
+	}
+
+	@Test
+	void startBeyondCapacityWaitsForRelease() throws Exception {
+		admissionController.admit("first", 8, 0);
+
+		final CompletableFuture<Void> queuedStart = CompletableFuture.runAsync(() -> {
+			try {
+				admissionController.admit("second", 5, 0);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+
+		while (admissionController.getQueueDepth() == 0) {
+			Thread.sleep(10);
+		}
+		assertThat(queuedStart).isNotDone();
+
+		// The queue is full
+		assertThatThrownBy(() -> admissionController.admit("third", 1, 0))
+			.isInstanceOf(AdmissionRejectedException.class)
+			.extracting(e -> ((AdmissionRejectedException) e).getRetryAfterSeconds())
+			.isEqualTo(7L);
+
+		admissionController.release("first");
+		queuedStart.get(5, TimeUnit.SECONDS);
+
+		assertThat(admissionController.getQueueDepth()).isZero();
+		assertThat(admissionController.getStatistics())
+			.containsEntry("load", 5L)
+			.containsEntry("admitted", 2L)
+			.containsEntry("queued", 1L)
+			.containsEntry("rejected", 1L);
+	}
+
+	@Test
+	void duplicateStartIsRejectedWhileQueued() throws Exception {
+		admissionController.admit("first", 8, 0);
+
+		final CompletableFuture<Void> queuedStart = CompletableFuture.runAsync(() -> {
+			try {
+				admissionController.admit("second", 5, 0);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+
+		while (admissionController.getQueueDepth() == 0) {
+			Thread.sleep(10);
+		}
+
+		assertThatThrownBy(() -> admissionController.admit("second", 5, 0))
+			.isInstanceOf(IllegalStateException.class);
+		assertThatThrownBy(() -> admissionController.admit("first", 8, 0))
+			.isInstanceOf(IllegalStateException.class);
+
+		admissionController.release("first");
+		queuedStart.get(5, TimeUnit.SECONDS);
+		admissionController.release("second");
+
+		assertThat(admissionController.getLoad()).isZero();
+	}
+
+	@Test
+	void queuedStartIsRejectedAfterMaxWait() throws Exception {
+		ReflectionTestUtils.setField(admissionController, "maxWaitMillis", 50L);
+		admissionController.admit("first", 10, 0);
+
+		assertThatThrownBy(() -> admissionController.admit("second", 1, 0))
+			.isInstanceOf(AdmissionRejectedException.class);
+		assertThat(admissionController.getQueueDepth()).isZero();
+	}
+}
@@ -0,0 +1,49 @@
+package com.example.demo.hosting;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import fr.tp.inf112.projects.robotsim.model.Factory;
+
+class HostedSimulationTests {
+
+	@Test
+	void tickWhileStepPendingIsMissed() {
+		final Factory factory = new Factory(100, 100, "Test");
+		factory.startSimulation(false);
+		final HostedSimulation simulation = new HostedSimulation("test", factory, Long.MAX_VALUE);
+		final List<Runnable> queuedSteps = new ArrayList<>();
+
+		simulation.tick(queuedSteps::add, System.nanoTime());
+		simulation.tick(queuedSteps::add, System.nanoTime());
+
+		assertThat(queuedSteps).hasSize(1);
+		assertThat(simulation.getMissedTicks()).isEqualTo(1);
+
+		queuedSteps.get(0).run();
+		simulation.tick(queuedSteps::add, System.nanoTime());
+
+		assertThat(queuedSteps).hasSize(2);
+		assertThat(simulation.getSteps()).isEqualTo(1);
+	}
+
+	@Test
+	void stepsBeyondCpuBudgetAreThrottledUntilNextWindow() {
+		final Factory factory = new Factory(100, 100, "Test");
+		factory.startSimulation(false);
+		final HostedSimulation simulation = new HostedSimulation("test", factory, 0);
+		final long start = System.nanoTime();
+
+		simulation.tick(Runnable::run, start);
+
+		assertThat(simulation.getSteps()).isZero();
+		assertThat(simulation.getThrottledTicks()).isEqualTo(1);
+
+		factory.stopSimulation();
+		assertThat(simulation.isStopped()).isTrue();
+	}
+}
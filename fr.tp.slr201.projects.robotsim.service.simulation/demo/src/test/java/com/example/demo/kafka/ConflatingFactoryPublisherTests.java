@@ -0,0 +1,100 @@
+package com.example.demo.kafka;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.messaging.Message;
+
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.event.FactoryStateTracker;
+import fr.tp.inf112.projects.robotsim.model.event.SimulationEvent;
+import fr.tp.inf112.projects.robotsim.model.event.SimulationLifecycleEvent;
+
+class ConflatingFactoryPublisherTests {
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void burstOfChangesIsConflated() throws InterruptedException {
+		final KafkaTemplate<String, SimulationEvent> template = mock(KafkaTemplate.class);
+		when(template.send(any(Message.class)))
+			.thenAnswer(invocation -> CompletableFuture.completedFuture(mock(SendResult.class)));
+
+		final ConflatingFactoryPublisher publisher =
+			new ConflatingFactoryPublisher(new FactoryStateTracker(new Factory(100, 100, "Test")), template, "simulation-test", null, 50, 2);
+
+		final long start = System.nanoTime();
+		for (int signal = 0; signal < 100_000; signal++) {
+			publisher.signal();
+		}
+		final long burstMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		publisher.close();
+		assertThat(publisher.awaitTermination(5_000)).isTrue();
+
+		assertThat(publisher.getPublishedFrames()).isBetween(1L, burstMillis / 50 + 2);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void lifecycleEventsAreSentByThePublisherThread() throws InterruptedException {
+		final KafkaTemplate<String, SimulationEvent> template = mock(KafkaTemplate.class);
+		final List<String> sendingThreads = new CopyOnWriteArrayList<>();
+		final List<Object> payloads = new CopyOnWriteArrayList<>();
+		// Sends block on metadata like with a broker down
+		when(template.send(any(Message.class))).thenAnswer(invocation -> {
+			sendingThreads.add(Thread.currentThread().getName());
+			payloads.add(invocation.getArgument(0, Message.class).getPayload());
+			Thread.sleep(200);
+			return CompletableFuture.completedFuture(mock(SendResult.class));
+		});
+
+		final long start = System.nanoTime();
+		final ConflatingFactoryPublisher publisher =
+			new ConflatingFactoryPublisher(new FactoryStateTracker(new Factory(100, 100, "Test")), template, "simulation-test", null, 0, 1, true);
+		publisher.signal();
+		publisher.close();
+
+		assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(200);
+		assertThat(publisher.awaitTermination(5_000)).isTrue();
+
+		assertThat(sendingThreads).allMatch(name -> name.startsWith("kafka-publisher-"));
+		assertThat(payloads.get(0)).isInstanceOfSatisfying(SimulationLifecycleEvent.class,
+			event -> assertThat(event.getStatus()).isEqualTo(SimulationLifecycleEvent.Status.PAUSED));
+		assertThat(payloads.get(payloads.size() - 1)).isInstanceOfSatisfying(SimulationLifecycleEvent.class,
+			event -> assertThat(event.getStatus()).isEqualTo(SimulationLifecycleEvent.Status.STOPPED));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void unresponsiveBrokerNeverBlocksSignals() throws InterruptedException {
+		final KafkaTemplate<String, SimulationEvent> template = mock(KafkaTemplate.class);
+		// Sends are never acknowledged
+		when(template.send(any(Message.class))).thenAnswer(invocation -> new CompletableFuture<>());
+
+		final ConflatingFactoryPublisher publisher =
+			new ConflatingFactoryPublisher(new FactoryStateTracker(new Factory(100, 100, "Test")), template, "simulation-test", null, 0, 1);
+
+		long signalNanos = 0;
+		for (int round = 0; round < 10; round++) {
+			final long start = System.nanoTime();
+			for (int signal = 0; signal < 1_000; signal++) {
+				publisher.signal();
+			}
+			signalNanos += System.nanoTime() - start;
+			Thread.sleep(10);
+		}
+
+		assertThat(TimeUnit.NANOSECONDS.toMillis(signalNanos)).isLessThan(500);
+		assertThat(publisher.getPublishedFrames()).isEqualTo(1);
+		assertThat(publisher.getDeferredFrames()).isPositive();
+	}
+}
@@ -0,0 +1,83 @@
+package com.example.demo.metrics;
+
+import static com.example.demo.ServiceClient.delete;
+import static com.example.demo.ServiceClient.get;
+import static com.example.demo.ServiceClient.post;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import com.example.demo.ServiceClient;
+import com.example.demo.StubPersistenceServer;
+
+/**
+ * Meters of the simulations exposed at the Prometheus endpoint of the actuator.
+ */
+// Tests replace the Prometheus registry unless observability is enabled
+@AutoConfigureObservability
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT,
+				properties = { "simulation.hosting.mode=headless",
+							   // No broker: neither wait for it at startup nor on sends
+							   "spring.kafka.admin.auto-create=false",
+							   "simulation.kafka.snapshot-topic.enabled=false",
+							   "simulation.kafka.max-block-ms=100" })
+class SimulationMetricsTests {
+
+	private static StubPersistenceServer persistenceServer;
+
+	@LocalServerPort
+	private int port;
+
+	private final ServiceClient client = new ServiceClient();
+
+	@DynamicPropertySource
+	static void persistenceServer(final DynamicPropertyRegistry registry) {
+		persistenceServer = StubPersistenceServer.start();
+		persistenceServer.register(registry);
+	}
+
+	@AfterAll
+	static void stopPersistenceServer() {
+		persistenceServer.close();
+	}
+
+	@Test
+	void simulationMetricsAreExposed() {
+		assertThat(client.send(post(url("/api/simulation/start/test.factory?paused=true"))).statusCode()).isEqualTo(200);
+
+		try {
+			assertThat(client.send(post(url("/api/simulation/test.factory/step?ticks=5"))).statusCode()).isEqualTo(200);
+
+			final HttpResponse<String> factory = client.send(get(url("/api/simulation/factory/test.factory")));
+			assertThat(factory.statusCode()).isEqualTo(200);
+			final int factoryBytes = factory.body().getBytes(StandardCharsets.UTF_8).length;
+
+			final HttpResponse<String> metrics = client.send(get(url("/actuator/prometheus")));
+
+			assertThat(metrics.statusCode()).isEqualTo(200);
+			assertThat(metrics.body())
+				.contains("simulation_running 1.0")
+				.contains("simulation_tick_duration_seconds_bucket{factory=\"test.factory\"")
+				.contains("simulation_json_size_bytes_count{type=\"Factory\"} 1")
+				// Counted while streamed to the client
+				.contains("simulation_json_size_bytes_sum{type=\"Factory\"} " + factoryBytes + ".0");
+
+		} finally {
+			client.send(delete(url("/api/simulation/stop/test.factory")));
+		}
+	}
+
+	private String url(final String path) {
+		return "http://localhost:" + port + path;
+	}
+}
@@ -0,0 +1,71 @@
+package com.example.demo.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import fr.tp.inf112.projects.robotsim.model.Battery;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.Robot;
+import fr.tp.inf112.projects.robotsim.model.shapes.CircularShape;
+
+class FactoryModelCacheTests {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void unchangedFileIsCopiedFromCache() throws IOException {
+		final FactoryModelCache cache = new FactoryModelCache();
+		ReflectionTestUtils.setField(cache, "maxBytes", 1_000_000L);
+		final File factoryFile = directory.resolve("test.factory").toFile();
+		write(factoryFile, 1);
+
+		final Factory first = cache.readFile(factoryFile);
+		final Factory second = cache.readFile(factoryFile);
+
+		assertThat(cache.getHits()).isEqualTo(1);
+		assertThat(second).isNotSameAs(first);
+		assertThat(second.getComponents()).hasSize(1).doesNotContainAnyElementsOf(first.getComponents());
+		assertThat(cache.getCachedBytes()).isEqualTo(factoryFile.length());
+
+		write(factoryFile, 2);
+		factoryFile.setLastModified(factoryFile.lastModified() + 1_000);
+
+		assertThat(cache.readFile(factoryFile).getComponents()).hasSize(2);
+		assertThat(cache.getMisses()).isEqualTo(2);
+	}
+
+	@Test
+	void templatesBeyondMaxBytesAreNotCached() throws IOException {
+		final FactoryModelCache cache = new FactoryModelCache();
+		ReflectionTestUtils.setField(cache, "maxBytes", 0L);
+		final File factoryFile = directory.resolve("test.factory").toFile();
+		write(factoryFile, 1);
+
+		cache.readFile(factoryFile);
+		cache.readFile(factoryFile);
+
+		assertThat(cache.getHits()).isZero();
+		assertThat(cache.getCachedBytes()).isZero();
+	}
+
+	private static void write(final File factoryFile, final int robotCount) throws IOException {
+		final Factory factory = new Factory(200, 200, "Test");
+		for (int robot = 0; robot < robotCount; robot++) {
+			new Robot(factory, null, new CircularShape(20 + robot * 20, 100, 2), new Battery(10), "Robot " + robot);
+		}
+
+		try (ObjectOutputStream output = new ObjectOutputStream(new FileOutputStream(factoryFile))) {
+			output.writeObject(factory);
+		}
+	}
+}
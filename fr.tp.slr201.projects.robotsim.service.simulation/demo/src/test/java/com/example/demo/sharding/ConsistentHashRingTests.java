@@ -0,0 +1,48 @@
+package com.example.demo.sharding;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class ConsistentHashRingTests {
+
+	private static final int FACTORIES = 10_000;
+
+	@Test
+	void factoriesAreSpreadEvenly() {
+		final ConsistentHashRing ring = new ConsistentHashRing(List.of("http://a:8090", "http://b:8090", "http://c:8090"), 64);
+		final Map<String, Integer> counts = new HashMap<>();
+
+		for (int index = 0; index < FACTORIES; index++) {
+			counts.merge(ring.ownerOf("factory-" + index + ".factory"), 1, Integer::sum);
+		}
+
+		assertThat(counts).hasSize(3);
+		assertThat(counts.values()).allMatch(count -> count > FACTORIES / 3 * 0.7 && count < FACTORIES / 3 * 1.3);
+	}
+
+	@Test
+	void joiningMemberOnlyTakesFactoriesOver() {
+		final ConsistentHashRing before = new ConsistentHashRing(List.of("http://a:8090", "http://b:8090", "http://c:8090"), 64);
+		final ConsistentHashRing after = new ConsistentHashRing(List.of("http://a:8090", "http://b:8090", "http://c:8090", "http://d:8090"), 64);
+		int moved = 0;
+
+		for (int index = 0; index < FACTORIES; index++) {
+			final String factoryId = "factory-" + index + ".factory";
+			final String owner = after.ownerOf(factoryId);
+
+			if (!owner.equals(before.ownerOf(factoryId))) {
+				// Factories only move to the new member
+				assertThat(owner).isEqualTo("http://d:8090");
+				moved++;
+			}
+		}
+
+		assertThat(moved).isBetween((int) (FACTORIES / 4 * 0.7), (int) (FACTORIES / 4 * 1.3));
+		assertThat(new ConsistentHashRing(List.of(), 64).ownerOf("factory-0.factory")).isNull();
+	}
+}
@@ -0,0 +1,226 @@
+package com.example.demo.sharding;
+
+import static com.example.demo.ServiceClient.delete;
+import static com.example.demo.ServiceClient.get;
+import static com.example.demo.ServiceClient.post;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.example.demo.Application;
+import com.example.demo.ServiceClient;
+import com.example.demo.StubPersistenceServer;
+import com.example.demo.config.ApplicationConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
+
+import fr.tp.inf112.projects.robotsim.model.Factory;
+
+/**
+ * Sharding of the simulations across several local instances of the service on
+ * different ports: requests sent to any instance reach the owner of their factory,
+ * and simulations are handed over when instances join and leave.
+ */
+class ShardingTests {
+
+	private static final int FACTORIES = 16;
+
+	private static final long TIMEOUT_MILLIS = 20_000;
+
+	private static final ObjectMapper objectMapper = new ApplicationConfig().objectMapper();
+
+	/**
+	 * Reads the status maps, typed like all values of the service
+	 */
+	private static final ObjectMapper statusMapper = new ObjectMapper()
+		.activateDefaultTyping(LaissezFaireSubTypeValidator.instance, ObjectMapper.DefaultTyping.NON_FINAL);
+
+	private static StubPersistenceServer persistenceServer;
+
+	private final ServiceClient client = new ServiceClient();
+
+	private final List<ConfigurableApplicationContext> instances = new ArrayList<>();
+
+	@BeforeAll
+	static void startPersistenceServer() {
+		persistenceServer = StubPersistenceServer.start();
+	}
+
+	@AfterAll
+	static void stopPersistenceServer() {
+		persistenceServer.close();
+	}
+
+	@AfterEach
+	void stopInstances() {
+		instances.forEach(ConfigurableApplicationContext::close);
+	}
+
+	@Test
+	void simulationsFollowTheirOwner() throws Exception {
+		final String first = startInstance("");
+		final String second = startInstance(first);
+		awaitMembers(2, first, second);
+
+		for (int index = 0; index < FACTORIES; index++) {
+			assertThat(client.send(post(first + "/api/simulation/start/shard-" + index + ".factory?paused=true")).statusCode())
+				.isEqualTo(200);
+		}
+
+		final Map<String, String> owners = new HashMap<>();
+		owners.putAll(simulations(first));
+		owners.putAll(simulations(second));
+
+		assertThat(owners).hasSize(FACTORIES);
+		assertThat(owners).containsValues(first, second);
+		assertOwnersRunTheirSimulations(FACTORIES, first, second);
+
+		// Requests for a factory of the first instance sent to the second one
+		final String factoryId = simulations(first).keySet().iterator().next();
+		final HttpResponse<String> factory = client.send(get(second + "/api/simulation/factory/" + factoryId));
+
+		assertThat(factory.statusCode()).isEqualTo(200);
+		assertThat(factory.headers().firstValue(ShardingService.OWNER_HEADER)).hasValue(first);
+		assertThat(factory.headers().firstValue("ETag")).isPresent();
+		assertThat(objectMapper.readValue(factory.body(), Factory.class).getComponents()).hasSize(2);
+
+		assertThat(client.send(delete(second + "/api/simulation/stop/" + factoryId))
+			.statusCode()).isEqualTo(200);
+		assertThat(simulations(first)).doesNotContainKey(factoryId);
+
+		// A joining instance takes over its slice of the simulations
+		final String third = startInstance(first);
+		awaitMembers(3, first, second, third);
+		await(() -> !simulations(third).isEmpty());
+		assertOwnersRunTheirSimulations(FACTORIES - 1, first, second, third);
+
+		// And hands them back when leaving
+		instances.remove(2).close();
+		awaitMembers(2, first, second);
+		assertOwnersRunTheirSimulations(FACTORIES - 1, first, second);
+	}
+
+	@Test
+	void refusedHandOverKeepsTheSimulation() throws Exception {
+		final String first = startInstance("");
+		final String second = startInstance(first);
+		awaitMembers(2, first, second);
+
+		// A member that never answers, changing the ring but not the owner of the factory
+		final String unreachable = "http://localhost:1";
+		final ConsistentHashRing ring = new ConsistentHashRing(List.of(first, second), 64);
+		final ConsistentHashRing changedRing = new ConsistentHashRing(List.of(first, second, unreachable), 64);
+		String factoryId = null;
+		for (int index = 0; factoryId == null; index++) {
+			final String candidate = "refused-" + index + ".factory";
+
+			if (second.equals(ring.ownerOf(candidate)) && second.equals(changedRing.ownerOf(candidate))) {
+				factoryId = candidate;
+			}
+		}
+
+		// Simulated by its owner, and by the other instance as a forwarded request
+		assertThat(client.send(post(second + "/api/simulation/start/" + factoryId + "?paused=true")).statusCode()).isEqualTo(200);
+		assertThat(client.send(HttpRequest.newBuilder(URI.create(first + "/api/simulation/start/" + factoryId + "?paused=true"))
+			.header(ShardingService.FORWARDED_HEADER, second)
+			.POST(HttpRequest.BodyPublishers.noBody())
+			.build()).statusCode()).isEqualTo(200);
+
+		// The owner answers the hand over with a conflict, which is not a hand over
+		assertThat(client.send(HttpRequest.newBuilder(URI.create(first + ShardingService.SHARD_PATH + "/heartbeat"))
+			.header("Content-Type", "application/json")
+			.POST(HttpRequest.BodyPublishers.ofByteArray(
+				objectMapper.writeValueAsBytes(new ShardMembers(unreachable, new String[0]))))
+			.build()).statusCode()).isEqualTo(200);
+		awaitMembers(3, first);
+		awaitMembers(2, first);
+
+		assertThat(simulations(first)).containsEntry(factoryId, second);
+		assertThat(simulations(second)).containsEntry(factoryId, second);
+	}
+
+	private String startInstance(final String seeds) {
+		// Arguments, as properties of the builder would be overridden by the configuration file
+		final ConfigurableApplicationContext context = new SpringApplicationBuilder(Application.class)
+			.run("--server.port=0",
+				 "--simulation.sharding.enabled=true",
+				 "--simulation.sharding.seeds=" + seeds,
+				 "--simulation.sharding.heartbeat-interval-ms=200",
+				 "--simulation.hosting.mode=headless",
+				 "--simulation.persistence.server.url=" + persistenceServer.getUrl(),
+				 "--simulation.factory-cache.max-bytes=0",
+				 // No broker: neither wait for it at startup nor on sends
+				 "--spring.kafka.admin.auto-create=false",
+				 "--simulation.kafka.snapshot-topic.enabled=false",
+				 "--simulation.kafka.max-block-ms=100");
+		instances.add(context);
+
+		return "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+	}
+
+	private void awaitMembers(final int count, final String... instanceUrls) throws InterruptedException {
+		for (final String instanceUrl : instanceUrls) {
+			await(() -> ((List<?>) status(instanceUrl).get("members")).size() == count);
+		}
+	}
+
+	/**
+	 * Waits until the instances run the given number of simulations, each on its owner
+	 */
+	private void assertOwnersRunTheirSimulations(final int count, final String... instanceUrls) throws InterruptedException {
+		await(() -> {
+			int total = 0;
+
+			for (final String instanceUrl : instanceUrls) {
+				final Map<String, String> simulations = simulations(instanceUrl);
+
+				if (!simulations.values().stream().allMatch(instanceUrl::equals)) {
+					return false;
+				}
+				total += simulations.size();
+			}
+
+			return total == count;
+		});
+	}
+
+	private void await(final BooleanSupplier condition) throws InterruptedException {
+		final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+
+		while (!condition.getAsBoolean()) {
+			assertThat(System.currentTimeMillis()).as("Timed out waiting for the shard ring").isLessThan(deadline);
+			Thread.sleep(100);
+		}
+	}
+
+	/**
+	 * Gets the owners of the simulations of an instance, by factory ID
+	 */
+	@SuppressWarnings("unchecked")
+	private Map<String, String> simulations(final String instanceUrl) {
+		return (Map<String, String>) status(instanceUrl).get("simulations");
+	}
+
+	private Map<?, ?> status(final String instanceUrl) {
+		try {
+			return statusMapper.readValue(client.send(get(instanceUrl + "/api/simulation/shard")).body(), Map.class);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,212 @@
+package com.example.demo.stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.example.demo.config.ApplicationConfig;
+
+import fr.tp.inf112.projects.robotsim.model.Battery;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.LocalFactoryModelChangedNotifier;
+import fr.tp.inf112.projects.robotsim.model.Robot;
+import fr.tp.inf112.projects.robotsim.model.shapes.CircularShape;
+
+class FrameStreamServiceTests {
+
+	private static final String FACTORY_ID = "test.factory";
+
+	private static final int MAX_FPS = 20;
+
+	private static final long TIMEOUT_MILLIS = 5_000;
+
+	private static final Pattern EVENT_NAME = Pattern.compile("event:(\\w+)");
+
+	private FrameStreamService frameStreamService;
+
+	private Factory factory;
+
+	@BeforeEach
+	void setUp() {
+		frameStreamService = new FrameStreamService();
+		ReflectionTestUtils.setField(frameStreamService, "maxFramesPerSecond", MAX_FPS);
+		// A single tick thread, shared by all the connections
+		ReflectionTestUtils.setField(frameStreamService, "tickThreads", 1);
+		ReflectionTestUtils.setField(frameStreamService, "sendTimeoutMillis", 500L);
+		ReflectionTestUtils.setField(frameStreamService, "keyframeInterval", 50);
+		ReflectionTestUtils.setField(frameStreamService, "objectMapper", new ApplicationConfig().objectMapper());
+		frameStreamService.init();
+
+		factory = new Factory(200, 200, "Stream");
+		factory.setNotifier(new LocalFactoryModelChangedNotifier());
+		new Robot(factory, null, new CircularShape(20, 20, 2), new Battery(10), "Robot");
+	}
+
+	@AfterEach
+	void tearDown() {
+		frameStreamService.shutdown();
+	}
+
+	@Test
+	void streamSendsLayoutDeltasAndLifecycle() throws Exception {
+		final RecordingEmitter emitter = new RecordingEmitter(null);
+		frameStreamService.open(FACTORY_ID, factory, false, null, emitter);
+
+		await(() -> emitter.names.contains("layout"));
+		moveRobot(1);
+		await(() -> emitter.names.contains("delta"));
+
+		frameStreamService.closeFactory(FACTORY_ID);
+		await(() -> emitter.completed);
+
+		assertThat(emitter.names).startsWith("lifecycle", "layout").contains("delta").endsWith("lifecycle");
+		assertThat(emitter.frames.get(0)).contains("STARTED");
+		assertThat(emitter.frames.get(emitter.frames.size() - 1)).contains("STOPPED");
+		assertThat(frameStreamService.getConnectionCount(FACTORY_ID)).isZero();
+	}
+
+	@Test
+	void pausedSimulationStreamStartsPaused() throws Exception {
+		final RecordingEmitter emitter = new RecordingEmitter(null);
+		frameStreamService.open(FACTORY_ID, factory, true, null, emitter);
+		await(() -> emitter.names.contains("layout"));
+
+		assertThat(emitter.frames.get(0)).contains("PAUSED").doesNotContain("STARTED");
+	}
+
+	@Test
+	void handedOverStreamCompletesWithoutStopping() throws Exception {
+		final RecordingEmitter emitter = new RecordingEmitter(null);
+		frameStreamService.open(FACTORY_ID, factory, false, null, emitter);
+		await(() -> emitter.names.contains("layout"));
+
+		frameStreamService.closeFactory(FACTORY_ID, false);
+		await(() -> emitter.completed);
+
+		// The simulation goes on at another instance, where the client may stream it from
+		assertThat(emitter.frames).noneMatch(frame -> frame.contains("STOPPED"));
+		assertThat(frameStreamService.getConnectionCount(FACTORY_ID)).isZero();
+	}
+
+	@Test
+	void frameRateIsCapped() throws Exception {
+		final RecordingEmitter emitter = new RecordingEmitter(null);
+		frameStreamService.open(FACTORY_ID, factory, false, 1_000, emitter);
+
+		final long start = System.nanoTime();
+		for (int step = 1; System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1); step++) {
+			moveRobot(step);
+			Thread.sleep(1);
+		}
+		final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		final long frames = emitter.names.stream().filter("delta"::equals).count();
+
+		assertThat(frames).isBetween(MAX_FPS / 4L, elapsedMillis * MAX_FPS / 1_000 + 2);
+	}
+
+	@Test
+	void stalledClientDoesNotBlockOtherConnections() throws Exception {
+		final CountDownLatch unblock = new CountDownLatch(1);
+		final RecordingEmitter stalled = new RecordingEmitter(unblock);
+		final RecordingEmitter active = new RecordingEmitter(null);
+
+		try {
+			frameStreamService.open(FACTORY_ID, factory, false, null, stalled);
+			frameStreamService.open(FACTORY_ID, factory, false, null, active);
+			assertThat(frameStreamService.getConnectionCount(FACTORY_ID)).isEqualTo(2);
+
+			for (int step = 1; step <= 50; step++) {
+				moveRobot(step);
+				Thread.sleep(10);
+			}
+
+			// Frames of the active client keep flowing, the stalled one is disconnected
+			assertThat(active.names.stream().filter("delta"::equals).count()).isGreaterThan(2);
+			await(() -> frameStreamService.getConnectionCount(FACTORY_ID) == 1);
+			assertThat(stalled.names).hasSize(1);
+		} finally {
+			unblock.countDown();
+		}
+
+		await(() -> stalled.completed);
+	}
+
+	private void moveRobot(final int step) {
+		factory.applyComponentState(0, 20 + step % 100, 20, 0);
+		factory.getNotifier().notifyObservers();
+	}
+
+	private static void await(final BooleanSupplier condition) throws InterruptedException {
+		final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+
+		while (!condition.getAsBoolean()) {
+			assertThat(System.currentTimeMillis()).as("Timed out waiting for the stream").isLessThan(deadline);
+			Thread.sleep(10);
+		}
+	}
+
+	/**
+	 * Emitter recording the frames written to the client, optionally blocking on the
+	 * first write like a client that stopped reading
+	 */
+	private static class RecordingEmitter extends SseEmitter {
+
+		private final CountDownLatch unblock;
+
+		private final List<String> names = new CopyOnWriteArrayList<>();
+
+		private final List<String> frames = new CopyOnWriteArrayList<>();
+
+		private volatile boolean completed;
+
+		RecordingEmitter(final CountDownLatch unblock) {
+			super(0L);
+			this.unblock = unblock;
+		}
+
+		@Override
+		public void send(final SseEventBuilder builder) throws IOException {
+			final StringBuilder frame = new StringBuilder();
+			for (final DataWithMediaType data : builder.build()) {
+				frame.append(data.getData());
+			}
+
+			final Matcher matcher = EVENT_NAME.matcher(frame);
+			names.add(matcher.find() ? matcher.group(1) : "");
+			frames.add(frame.toString());
+
+			if (unblock != null) {
+				try {
+					unblock.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				throw new IOException("Broken pipe");
+			}
+		}
+
+		@Override
+		public void complete() {
+			completed = true;
+		}
+
+		@Override
+		public void completeWithError(final Throwable error) {
+			completed = true;
+		}
+	}
+}